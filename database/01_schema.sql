@@ -6,6 +6,15 @@ CREATE SEQUENCE transaction_seq START WITH 100 INCREMENT BY 50;
 CREATE SEQUENCE audit_seq START WITH 100 INCREMENT BY 50;
 CREATE SEQUENCE beneficiary_seq START WITH 100 INCREMENT BY 50;
 CREATE SEQUENCE login_attempt_seq START WITH 100 INCREMENT BY 50;
+CREATE SEQUENCE exchange_rate_snapshot_seq START WITH 100 INCREMENT BY 50;
+CREATE SEQUENCE deposit_ingestion_job_seq START WITH 100 INCREMENT BY 50;
+CREATE SEQUENCE interest_run_seq START WITH 100 INCREMENT BY 50;
+CREATE SEQUENCE interest_run_partition_seq START WITH 100 INCREMENT BY 50;
+CREATE SEQUENCE account_posting_leg_seq START WITH 100 INCREMENT BY 50;
+CREATE SEQUENCE transaction_archive_file_seq START WITH 100 INCREMENT BY 50;
+-- Bloques de IdGeneratorServiceImpl (el INCREMENT BY es el tamaño del bloque)
+CREATE SEQUENCE reference_code_block_seq START WITH 1000 INCREMENT BY 1000 MINVALUE 1000;
+CREATE SEQUENCE account_number_block_seq START WITH 1000 INCREMENT BY 1000 MINVALUE 1000;
 
 -- 2. TABLAS DE CATALOGO --
 
@@ -77,7 +86,8 @@ CREATE TABLE bank_account (
     currency_id INT NOT NULL REFERENCES currency(id),
     current_balance DECIMAL(19,4) NOT NULL DEFAULT 0.0000,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-    is_active BOOLEAN DEFAULT TRUE
+    is_active BOOLEAN DEFAULT TRUE,
+    version BIGINT NOT NULL DEFAULT 0 -- Control optimista de concurrencia
 );
 
 CREATE TABLE beneficiary (
@@ -89,15 +99,166 @@ CREATE TABLE beneficiary (
     is_active BOOLEAN DEFAULT TRUE
 );
 
-CREATE TABLE bank_transaction (
+CREATE TABLE exchange_rate_snapshot (
     id BIGINT PRIMARY KEY,
+    base_currency VARCHAR(3) NOT NULL,
+    fetched_at TIMESTAMP NOT NULL
+);
+
+CREATE INDEX idx_exchange_rate_snapshot_fetched_at ON exchange_rate_snapshot(fetched_at DESC);
+
+CREATE TABLE exchange_rate_snapshot_rate (
+    snapshot_id BIGINT NOT NULL REFERENCES exchange_rate_snapshot(id),
+    currency_code VARCHAR(3) NOT NULL,
+    rate DECIMAL(38,18) NOT NULL, -- Unidades de la moneda por 1 unidad de base_currency
+    PRIMARY KEY (snapshot_id, currency_code)
+);
+
+-- Particionada por mes (RANGE sobre created_at). Las claves únicas de una tabla particionada deben incluir
+-- la columna de partición: la unicidad global de reference_code la garantiza transaction_reference.
+-- Las particiones mensuales (bank_transaction_pYYYYMM) las crea y separa PartitionMaintenanceServiceImpl
+CREATE TABLE bank_transaction (
+    id BIGINT NOT NULL,
     source_account_id BIGINT REFERENCES bank_account(id),
     target_account_id BIGINT REFERENCES bank_account(id),
     transaction_type_id INT NOT NULL REFERENCES transaction_type(id),
     amount DECIMAL(19,4) NOT NULL,
     currency_id INT NOT NULL REFERENCES currency(id),
     transaction_status_id INT NOT NULL REFERENCES transaction_status(id),
-    reference_code VARCHAR(50) NOT NULL UNIQUE,
+    reference_code VARCHAR(50) NOT NULL,
     description VARCHAR(255),
-    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
-);
\ No newline at end of file
+    source_applied_rate DECIMAL(38,18), -- Moneda de la operación -> moneda de la cuenta origen
+    target_applied_rate DECIMAL(38,18), -- Moneda de la operación -> moneda de la cuenta destino
+    rate_snapshot_id BIGINT REFERENCES exchange_rate_snapshot(id),
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (id, created_at),
+    UNIQUE (reference_code, created_at)
+) PARTITION BY RANGE (created_at);
+
+-- Registro global de códigos de referencia, sin particionar: la única restricción que impide repetir un código
+-- en todos los meses. Se escribe en la misma transacción que bank_transaction y no se archiva ni se separa.
+CREATE TABLE transaction_reference (
+    reference_code VARCHAR(50) PRIMARY KEY,
+    created_at TIMESTAMP NOT NULL
+);
+
+-- Red de seguridad para filas fuera de los meses creados; el mantenimiento las mueve a su mes
+CREATE TABLE bank_transaction_default PARTITION OF bank_transaction DEFAULT;
+
+-- Historial por cuenta (keyset sobre created_at, id): una rama por lado del movimiento
+CREATE INDEX idx_bank_transaction_source_history ON bank_transaction(source_account_id, created_at DESC, id DESC);
+CREATE INDEX idx_bank_transaction_target_history ON bank_transaction(target_account_id, created_at DESC, id DESC);
+
+-- Modelo de lectura del historial: un lado por cuenta y movimiento, con catálogos ya resueltos.
+-- Se escribe en la misma transacción que bank_transaction y se particiona con los mismos meses
+-- (sin FK a bank_transaction: su clave es (id, created_at)). Para mantener el heap ordenado por cuenta,
+-- en los meses ya cerrados y en ventana de mantenimiento:
+--   CLUSTER account_posting_leg_pYYYYMM USING account_posting_leg_pYYYYMM_account_id_created_at_id_idx;
+CREATE TABLE account_posting_leg (
+    id BIGINT NOT NULL,
+    account_id BIGINT NOT NULL REFERENCES bank_account(id),
+    transaction_id BIGINT NOT NULL,
+    side VARCHAR(10) NOT NULL, -- SOURCE, TARGET
+    counterparty_account_number VARCHAR(20), -- NULL: contraparte externa
+    transaction_type VARCHAR(50) NOT NULL,
+    transaction_status VARCHAR(50) NOT NULL,
+    currency_code VARCHAR(3) NOT NULL,
+    amount DECIMAL(19,4) NOT NULL,
+    description VARCHAR(255),
+    reference_code VARCHAR(50) NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+CREATE TABLE account_posting_leg_default PARTITION OF account_posting_leg DEFAULT;
+
+CREATE INDEX idx_account_posting_leg_history ON account_posting_leg(account_id, created_at DESC, id DESC);
+
+-- Archivo frío: meses cerrados movidos a archivos columnares comprimidos en disco (TransactionArchiveServiceImpl).
+-- Cada archivo de lados cubre un rango de cuentas; el historial y la exportación lo leen junto a las filas vivas
+CREATE TABLE transaction_archive_file (
+    id BIGINT PRIMARY KEY,
+    period VARCHAR(7) NOT NULL, -- yyyy-MM
+    source_table VARCHAR(50) NOT NULL, -- account_posting_leg, bank_transaction
+    file_name VARCHAR(255) NOT NULL UNIQUE, -- Relativo a application.archive.directory
+    row_count BIGINT NOT NULL,
+    size_bytes BIGINT NOT NULL,
+    min_account_id BIGINT, -- NULL en bank_transaction (ordenado por id)
+    max_account_id BIGINT,
+    min_created_at TIMESTAMP NOT NULL,
+    max_created_at TIMESTAMP NOT NULL,
+    created_at TIMESTAMP NOT NULL
+);
+
+CREATE INDEX idx_transaction_archive_file_accounts ON transaction_archive_file(source_table, min_account_id, max_account_id);
+CREATE INDEX idx_transaction_archive_file_period ON transaction_archive_file(period);
+
+-- Lados archivados por cuenta, mes y estado: el total del historial sin abrir los archivos del mes
+CREATE TABLE transaction_archive_count (
+    account_id BIGINT NOT NULL,
+    period VARCHAR(7) NOT NULL, -- yyyy-MM
+    transaction_status VARCHAR(50) NOT NULL,
+    leg_count BIGINT NOT NULL,
+    PRIMARY KEY (account_id, period, transaction_status)
+);
+
+-- Agregado diario de la curva del dashboard: cada posting suma su delta en la misma transacción
+-- (TransactionRollupServiceImpl). Cada clave se reparte en slots para no serializar los postings del día
+CREATE TABLE transaction_daily_rollup (
+    day DATE NOT NULL,
+    currency_code VARCHAR(3) NOT NULL,
+    transaction_type VARCHAR(50) NOT NULL,
+    transaction_status VARCHAR(50) NOT NULL,
+    slot INT NOT NULL,
+    tx_count BIGINT NOT NULL,
+    amount_sum DECIMAL(24, 4) NOT NULL,
+    PRIMARY KEY (day, currency_code, transaction_type, transaction_status, slot)
+);
+
+-- Sketches HyperLogLog del dashboard (RetainedUsersServiceImpl): registros en bruto, cada nodo fusiona el suyo
+CREATE TABLE user_activity_sketch (
+    name VARCHAR(50) PRIMARY KEY, -- retained-users
+    registers BYTEA NOT NULL,
+    updated_at TIMESTAMP NOT NULL
+);
+
+CREATE TABLE deposit_ingestion_job (
+    id BIGINT PRIMARY KEY,
+    file_name VARCHAR(255) NOT NULL,
+    format VARCHAR(20) NOT NULL, -- CSV, FIXED_WIDTH
+    status VARCHAR(20) NOT NULL, -- RUNNING, COMPLETED, FAILED
+    file_size BIGINT NOT NULL,
+    checkpoint_offset BIGINT NOT NULL DEFAULT 0, -- Byte siguiente a la última línea confirmada
+    lines_read BIGINT NOT NULL DEFAULT 0,
+    lines_posted BIGINT NOT NULL DEFAULT 0,
+    lines_rejected BIGINT NOT NULL DEFAULT 0,
+    last_error VARCHAR(255),
+    started_at TIMESTAMP NOT NULL,
+    updated_at TIMESTAMP,
+    finished_at TIMESTAMP
+);
+
+CREATE INDEX idx_deposit_ingestion_job_file_name ON deposit_ingestion_job(file_name, id DESC);
+
+CREATE TABLE interest_run (
+    id BIGINT PRIMARY KEY,
+    period VARCHAR(7) NOT NULL UNIQUE, -- yyyy-MM
+    status VARCHAR(20) NOT NULL, -- RUNNING, COMPLETED, FAILED
+    annual_rate DECIMAL(9,6) NOT NULL,
+    account_type_id INT NOT NULL REFERENCES account_type(id),
+    last_error VARCHAR(255),
+    started_at TIMESTAMP NOT NULL,
+    finished_at TIMESTAMP
+);
+
+CREATE TABLE interest_run_partition (
+    id BIGINT PRIMARY KEY,
+    run_id BIGINT NOT NULL REFERENCES interest_run(id),
+    partition_no INT NOT NULL,
+    from_id BIGINT NOT NULL, -- Rango de cuentas (from_id, to_id]
+    to_id BIGINT NOT NULL,
+    last_account_id BIGINT NOT NULL, -- Última cuenta confirmada
+    accounts_credited BIGINT NOT NULL DEFAULT 0,
+    completed BOOLEAN NOT NULL DEFAULT FALSE,
+    UNIQUE (run_id, partition_no)
+);
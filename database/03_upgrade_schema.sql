@@ -0,0 +1,129 @@
+-- Lleva una base creada con el esquema inicial a las tablas, columnas y secuencias que la aplicación valida al
+-- arrancar (spring.jpa.hibernate.ddl-auto=validate). Todo es IF NOT EXISTS: en una base creada con 01_schema.sql
+-- no cambia nada, y puede relanzarse.
+-- Va antes de 04 (carga account_posting_leg) y de 05 (particiona bank_transaction y account_posting_leg copiando
+-- las columnas de tasa y renombrando los índices de historial, que por eso se crean aquí sobre las tablas sin particionar).
+-- Ejecutar con la aplicación detenida.
+
+BEGIN;
+
+CREATE SEQUENCE IF NOT EXISTS exchange_rate_snapshot_seq START WITH 100 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS deposit_ingestion_job_seq START WITH 100 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS interest_run_seq START WITH 100 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS interest_run_partition_seq START WITH 100 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS account_posting_leg_seq START WITH 100 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS transaction_archive_file_seq START WITH 100 INCREMENT BY 50;
+
+-- Control optimista de concurrencia: las cuentas existentes empiezan en la versión 0
+ALTER TABLE bank_account ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+
+CREATE TABLE IF NOT EXISTS exchange_rate_snapshot (
+    id BIGINT PRIMARY KEY,
+    base_currency VARCHAR(3) NOT NULL,
+    fetched_at TIMESTAMP NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_exchange_rate_snapshot_fetched_at ON exchange_rate_snapshot(fetched_at DESC);
+
+CREATE TABLE IF NOT EXISTS exchange_rate_snapshot_rate (
+    snapshot_id BIGINT NOT NULL REFERENCES exchange_rate_snapshot(id),
+    currency_code VARCHAR(3) NOT NULL,
+    rate DECIMAL(38,18) NOT NULL,
+    PRIMARY KEY (snapshot_id, currency_code)
+);
+
+-- Los movimientos anteriores quedan sin tasa ni snapshot (NULL). La FK de rate_snapshot_id la crea 05 al
+-- reconstruir la tabla particionada
+ALTER TABLE bank_transaction ADD COLUMN IF NOT EXISTS source_applied_rate DECIMAL(38,18);
+ALTER TABLE bank_transaction ADD COLUMN IF NOT EXISTS target_applied_rate DECIMAL(38,18);
+ALTER TABLE bank_transaction ADD COLUMN IF NOT EXISTS rate_snapshot_id BIGINT;
+
+CREATE INDEX IF NOT EXISTS idx_bank_transaction_source_history ON bank_transaction(source_account_id, created_at DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_bank_transaction_target_history ON bank_transaction(target_account_id, created_at DESC, id DESC);
+
+-- Sin particionar: 04 la carga y 05 la convierte
+CREATE TABLE IF NOT EXISTS account_posting_leg (
+    id BIGINT NOT NULL,
+    account_id BIGINT NOT NULL REFERENCES bank_account(id),
+    transaction_id BIGINT NOT NULL,
+    side VARCHAR(10) NOT NULL,
+    counterparty_account_number VARCHAR(20),
+    transaction_type VARCHAR(50) NOT NULL,
+    transaction_status VARCHAR(50) NOT NULL,
+    currency_code VARCHAR(3) NOT NULL,
+    amount DECIMAL(19,4) NOT NULL,
+    description VARCHAR(255),
+    reference_code VARCHAR(50) NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (id, created_at)
+);
+
+CREATE INDEX IF NOT EXISTS idx_account_posting_leg_history ON account_posting_leg(account_id, created_at DESC, id DESC);
+
+CREATE TABLE IF NOT EXISTS transaction_archive_file (
+    id BIGINT PRIMARY KEY,
+    period VARCHAR(7) NOT NULL,
+    source_table VARCHAR(50) NOT NULL,
+    file_name VARCHAR(255) NOT NULL UNIQUE,
+    row_count BIGINT NOT NULL,
+    size_bytes BIGINT NOT NULL,
+    min_account_id BIGINT,
+    max_account_id BIGINT,
+    min_created_at TIMESTAMP NOT NULL,
+    max_created_at TIMESTAMP NOT NULL,
+    created_at TIMESTAMP NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_transaction_archive_file_accounts ON transaction_archive_file(source_table, min_account_id, max_account_id);
+CREATE INDEX IF NOT EXISTS idx_transaction_archive_file_period ON transaction_archive_file(period);
+
+CREATE TABLE IF NOT EXISTS transaction_archive_count (
+    account_id BIGINT NOT NULL,
+    period VARCHAR(7) NOT NULL,
+    transaction_status VARCHAR(50) NOT NULL,
+    leg_count BIGINT NOT NULL,
+    PRIMARY KEY (account_id, period, transaction_status)
+);
+
+CREATE TABLE IF NOT EXISTS deposit_ingestion_job (
+    id BIGINT PRIMARY KEY,
+    file_name VARCHAR(255) NOT NULL,
+    format VARCHAR(20) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    file_size BIGINT NOT NULL,
+    checkpoint_offset BIGINT NOT NULL DEFAULT 0,
+    lines_read BIGINT NOT NULL DEFAULT 0,
+    lines_posted BIGINT NOT NULL DEFAULT 0,
+    lines_rejected BIGINT NOT NULL DEFAULT 0,
+    last_error VARCHAR(255),
+    started_at TIMESTAMP NOT NULL,
+    updated_at TIMESTAMP,
+    finished_at TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_deposit_ingestion_job_file_name ON deposit_ingestion_job(file_name, id DESC);
+
+CREATE TABLE IF NOT EXISTS interest_run (
+    id BIGINT PRIMARY KEY,
+    period VARCHAR(7) NOT NULL UNIQUE,
+    status VARCHAR(20) NOT NULL,
+    annual_rate DECIMAL(9,6) NOT NULL,
+    account_type_id INT NOT NULL REFERENCES account_type(id),
+    last_error VARCHAR(255),
+    started_at TIMESTAMP NOT NULL,
+    finished_at TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS interest_run_partition (
+    id BIGINT PRIMARY KEY,
+    run_id BIGINT NOT NULL REFERENCES interest_run(id),
+    partition_no INT NOT NULL,
+    from_id BIGINT NOT NULL,
+    to_id BIGINT NOT NULL,
+    last_account_id BIGINT NOT NULL,
+    accounts_credited BIGINT NOT NULL DEFAULT 0,
+    completed BOOLEAN NOT NULL DEFAULT FALSE,
+    UNIQUE (run_id, partition_no)
+);
+
+COMMIT;
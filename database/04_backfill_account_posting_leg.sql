@@ -0,0 +1,23 @@
+-- Carga account_posting_leg a partir de los movimientos existentes (bases creadas antes del modelo de lectura).
+-- En una base nueva no inserta nada; en una existente puede relanzarse: omite los movimientos ya cargados.
+-- Los ids salen de nextval directo: el optimizador pooled de Hibernate reserva bloques por encima de ellos.
+
+INSERT INTO account_posting_leg (id, account_id, transaction_id, side, counterparty_account_number, transaction_type,
+                                 transaction_status, currency_code, amount, description, reference_code, created_at)
+SELECT nextval('account_posting_leg_seq'), leg.account_id, t.id, leg.side, leg.counterparty, tt.name, ts.name, c.code,
+       t.amount, t.description, t.reference_code, COALESCE(t.created_at, CURRENT_TIMESTAMP)
+FROM bank_transaction t
+JOIN transaction_type tt ON tt.id = t.transaction_type_id
+JOIN transaction_status ts ON ts.id = t.transaction_status_id
+JOIN currency c ON c.id = t.currency_id
+LEFT JOIN bank_account sa ON sa.id = t.source_account_id
+LEFT JOIN bank_account ta ON ta.id = t.target_account_id
+CROSS JOIN LATERAL (
+    SELECT t.source_account_id AS account_id, 'SOURCE' AS side, ta.account_number AS counterparty
+    WHERE t.source_account_id IS NOT NULL
+    UNION ALL
+    SELECT t.target_account_id, 'TARGET', sa.account_number
+    WHERE t.target_account_id IS NOT NULL
+      AND t.source_account_id IS DISTINCT FROM t.target_account_id
+) leg
+WHERE NOT EXISTS (SELECT 1 FROM account_posting_leg l WHERE l.transaction_id = t.id);
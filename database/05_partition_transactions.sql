@@ -0,0 +1,94 @@
+-- Convierte bank_transaction y account_posting_leg (bases creadas antes del particionado) en tablas
+-- particionadas por mes. Todas las filas pasan a la partición DEFAULT; al arrancar, el mantenimiento de
+-- particiones (o POST /api/v1/admin/partitions/maintenance) crea un mes por cada mes con filas y las mueve;
+-- los anteriores a la retención se separan en la misma pasada.
+-- Requiere 03_upgrade_schema.sql (columnas de tasa e índices de historial sobre las tablas sin particionar).
+-- Reescribe ambas tablas: ejecutar en ventana de mantenimiento, con la aplicación detenida.
+
+-- Base ya particionada (creada con 01_schema.sql, también al iniciar docker-compose): no hay nada que convertir
+SELECT EXISTS (SELECT 1 FROM pg_partitioned_table WHERE partrelid = to_regclass('bank_transaction')) AS already_partitioned \gset
+\if :already_partitioned
+\quit
+\endif
+
+BEGIN;
+
+ALTER TABLE account_posting_leg DROP CONSTRAINT IF EXISTS account_posting_leg_transaction_id_fkey;
+
+ALTER TABLE bank_transaction RENAME TO bank_transaction_unpartitioned;
+ALTER TABLE account_posting_leg RENAME TO account_posting_leg_unpartitioned;
+ALTER INDEX idx_bank_transaction_source_history RENAME TO idx_bank_transaction_source_history_old;
+ALTER INDEX idx_bank_transaction_target_history RENAME TO idx_bank_transaction_target_history_old;
+ALTER INDEX idx_account_posting_leg_history RENAME TO idx_account_posting_leg_history_old;
+
+CREATE TABLE bank_transaction (
+    id BIGINT NOT NULL,
+    source_account_id BIGINT REFERENCES bank_account(id),
+    target_account_id BIGINT REFERENCES bank_account(id),
+    transaction_type_id INT NOT NULL REFERENCES transaction_type(id),
+    amount DECIMAL(19,4) NOT NULL,
+    currency_id INT NOT NULL REFERENCES currency(id),
+    transaction_status_id INT NOT NULL REFERENCES transaction_status(id),
+    reference_code VARCHAR(50) NOT NULL,
+    description VARCHAR(255),
+    source_applied_rate DECIMAL(38,18),
+    target_applied_rate DECIMAL(38,18),
+    rate_snapshot_id BIGINT REFERENCES exchange_rate_snapshot(id),
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (id, created_at),
+    UNIQUE (reference_code, created_at)
+) PARTITION BY RANGE (created_at);
+
+CREATE TABLE bank_transaction_default PARTITION OF bank_transaction DEFAULT;
+
+CREATE INDEX idx_bank_transaction_source_history ON bank_transaction(source_account_id, created_at DESC, id DESC);
+CREATE INDEX idx_bank_transaction_target_history ON bank_transaction(target_account_id, created_at DESC, id DESC);
+
+INSERT INTO bank_transaction (id, source_account_id, target_account_id, transaction_type_id, amount, currency_id,
+                              transaction_status_id, reference_code, description, source_applied_rate,
+                              target_applied_rate, rate_snapshot_id, created_at)
+SELECT id, source_account_id, target_account_id, transaction_type_id, amount, currency_id,
+       transaction_status_id, reference_code, description, source_applied_rate,
+       target_applied_rate, rate_snapshot_id, COALESCE(created_at, CURRENT_TIMESTAMP)
+FROM bank_transaction_unpartitioned;
+
+-- El UNIQUE global de reference_code pasa a esta tabla: la particionada solo admite (reference_code, created_at)
+CREATE TABLE IF NOT EXISTS transaction_reference (
+    reference_code VARCHAR(50) PRIMARY KEY,
+    created_at TIMESTAMP NOT NULL
+);
+
+INSERT INTO transaction_reference (reference_code, created_at)
+SELECT reference_code, COALESCE(created_at, CURRENT_TIMESTAMP)
+FROM bank_transaction_unpartitioned
+ON CONFLICT (reference_code) DO NOTHING;
+
+CREATE TABLE account_posting_leg (
+    id BIGINT NOT NULL,
+    account_id BIGINT NOT NULL REFERENCES bank_account(id),
+    transaction_id BIGINT NOT NULL,
+    side VARCHAR(10) NOT NULL,
+    counterparty_account_number VARCHAR(20),
+    transaction_type VARCHAR(50) NOT NULL,
+    transaction_status VARCHAR(50) NOT NULL,
+    currency_code VARCHAR(3) NOT NULL,
+    amount DECIMAL(19,4) NOT NULL,
+    description VARCHAR(255),
+    reference_code VARCHAR(50) NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+CREATE TABLE account_posting_leg_default PARTITION OF account_posting_leg DEFAULT;
+
+CREATE INDEX idx_account_posting_leg_history ON account_posting_leg(account_id, created_at DESC, id DESC);
+
+INSERT INTO account_posting_leg
+SELECT id, account_id, transaction_id, side, counterparty_account_number, transaction_type, transaction_status,
+       currency_code, amount, description, reference_code, created_at
+FROM account_posting_leg_unpartitioned;
+
+DROP TABLE account_posting_leg_unpartitioned;
+DROP TABLE bank_transaction_unpartitioned;
+
+COMMIT;
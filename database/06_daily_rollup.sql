@@ -0,0 +1,28 @@
+-- Crea transaction_daily_rollup en bases existentes y la carga desde bank_transaction (slot 0).
+-- Los meses ya archivados no tienen filas vivas: su curva queda vacía salvo que se carguen antes de archivar.
+-- Ejecutar con la aplicación detenida; luego el job nocturno y los postings la mantienen al día.
+
+BEGIN;
+
+CREATE TABLE IF NOT EXISTS transaction_daily_rollup (
+    day DATE NOT NULL,
+    currency_code VARCHAR(3) NOT NULL,
+    transaction_type VARCHAR(50) NOT NULL,
+    transaction_status VARCHAR(50) NOT NULL,
+    slot INT NOT NULL,
+    tx_count BIGINT NOT NULL,
+    amount_sum DECIMAL(24, 4) NOT NULL,
+    PRIMARY KEY (day, currency_code, transaction_type, transaction_status, slot)
+);
+
+DELETE FROM transaction_daily_rollup;
+
+INSERT INTO transaction_daily_rollup (day, currency_code, transaction_type, transaction_status, slot, tx_count, amount_sum)
+SELECT CAST(t.created_at AS date), c.code, tt.name, ts.name, 0, COUNT(*), SUM(t.amount)
+FROM bank_transaction t
+JOIN currency c ON c.id = t.currency_id
+JOIN transaction_type tt ON tt.id = t.transaction_type_id
+JOIN transaction_status ts ON ts.id = t.transaction_status_id
+GROUP BY CAST(t.created_at AS date), c.code, tt.name, ts.name;
+
+COMMIT;
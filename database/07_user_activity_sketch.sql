@@ -0,0 +1,8 @@
+-- Crea user_activity_sketch en bases existentes. No hace falta cargarla: si no hay sketch guardado,
+-- el primer nodo que arranca lo reconstruye desde el historial (o POST /api/v1/admin/dashboard/retained-users/rebuild).
+
+CREATE TABLE IF NOT EXISTS user_activity_sketch (
+    name VARCHAR(50) PRIMARY KEY,
+    registers BYTEA NOT NULL,
+    updated_at TIMESTAMP NOT NULL
+);
@@ -0,0 +1,31 @@
+-- Crea las secuencias de bloques de IdGeneratorServiceImpl en bases existentes y las arranca por encima de lo emitido.
+-- Los códigos son [secuencia][dígito Luhn]: la secuencia de un código es el código sin su último dígito.
+-- Las bases del esquema inicial guardan códigos de referencia de 10 y números de cuenta de 14 dígitos aleatorios,
+-- repartidos por todo el rango: tomar su máximo agotaría la secuencia. Solo se parte de los que caen en la mitad
+-- inferior del rango (los emitidos por secuencia empiezan abajo y crecen de a uno); los aleatorios que queden por
+-- encima pueden coincidir con uno nuevo. transaction_reference lo rechaza y el posting se reintenta una vez con
+-- otro código (AccountLockServiceImpl); un número de cuenta repetido hace fallar el alta por la restricción UNIQUE.
+-- Puede relanzarse: nunca retrocede una secuencia.
+-- Ejecutar con la aplicación detenida.
+
+BEGIN;
+
+CREATE SEQUENCE IF NOT EXISTS reference_code_block_seq START WITH 1000 INCREMENT BY 1000 MINVALUE 1000;
+CREATE SEQUENCE IF NOT EXISTS account_number_block_seq START WITH 1000 INCREMENT BY 1000 MINVALUE 1000;
+
+-- setval deja la secuencia en el último bloque entregado: el siguiente nextval() empieza en el bloque posterior
+SELECT setval('reference_code_block_seq', GREATEST(
+        (SELECT last_value FROM reference_code_block_seq),
+        (SELECT COALESCE(MAX(CAST(reference_code AS BIGINT) / 10), 0) / 1000 * 1000
+         FROM transaction_reference
+         WHERE reference_code ~ '^[0-9]{10}$'
+           AND CAST(reference_code AS BIGINT) / 10 < 500000000)));
+
+SELECT setval('account_number_block_seq', GREATEST(
+        (SELECT last_value FROM account_number_block_seq),
+        (SELECT COALESCE(MAX(CAST(account_number AS BIGINT) / 10), 0) / 1000 * 1000
+         FROM bank_account
+         WHERE account_number ~ '^[0-9]{14}$'
+           AND CAST(account_number AS BIGINT) / 10 < 5000000000000)));
+
+COMMIT;
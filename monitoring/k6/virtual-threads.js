@@ -0,0 +1,60 @@
+// Prueba de carga: hilos de plataforma vs hilos virtuales.
+//
+// 1. Levantar la app con VIRTUAL_THREADS_ENABLED=false y luego con VIRTUAL_THREADS_ENABLED=true (Java 21).
+// 2. Ejecutar en cada caso:
+//      k6 run -e BASE_URL=http://localhost:8080 -e EMAIL=... -e PASSWORD=... \
+//             -e USER_ID=... -e ACCOUNT=... monitoring/k6/virtual-threads.js
+// 3. Comparar en Prometheus/Grafana durante la meseta:
+//      - http_server_requests_seconds (p95) y el throughput reportado por k6
+//      - jvm_threads_live_threads (con hilos virtuales no crece con la concurrencia)
+//      - jvm_memory_used_bytes{area="heap"} y process_resident_memory_bytes
+//      - hikaricp_connections_pending (el pool pasa a ser el único límite)
+//
+// La meseta (400 VUs) supera el máximo de 200 hilos de Tomcat: con hilos de plataforma las
+// peticiones sobrantes esperan en la cola del conector; con hilos virtuales se atienden todas.
+
+import http from 'k6/http';
+import { check } from 'k6';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8080';
+const PLATEAU_VUS = Number(__ENV.PLATEAU_VUS || 400);
+
+export const options = {
+    scenarios: {
+        ramp: {
+            executor: 'ramping-vus',
+            startVUs: 0,
+            stages: [
+                { duration: '30s', target: 100 },
+                { duration: '30s', target: PLATEAU_VUS },
+                { duration: '2m', target: PLATEAU_VUS },
+                { duration: '15s', target: 0 },
+            ],
+        },
+    },
+    thresholds: {
+        http_req_failed: ['rate<0.01'],
+    },
+};
+
+export function setup() {
+    const res = http.post(`${BASE_URL}/api/v1/auth/login`,
+        JSON.stringify({ email: __ENV.EMAIL, password: __ENV.PASSWORD }),
+        { headers: { 'Content-Type': 'application/json' } });
+
+    check(res, { 'login ok': (r) => r.status === 200 });
+    return { token: res.json('token') };
+}
+
+export default function (data) {
+    const params = { headers: { Authorization: `Bearer ${data.token}` } };
+
+    // Lecturas con bloqueo en JDBC: cuentas del usuario e historial paginado
+    const accounts = http.get(`${BASE_URL}/api/v1/accounts/user/${__ENV.USER_ID}`, params);
+    check(accounts, { 'accounts 200': (r) => r.status === 200 });
+
+    const history = http.get(
+        `${BASE_URL}/api/v1/transactions/history/account/${__ENV.ACCOUNT}?userId=${__ENV.USER_ID}&size=20`,
+        params);
+    check(history, { 'history 200': (r) => r.status === 200 });
+}
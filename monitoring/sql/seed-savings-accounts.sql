@@ -0,0 +1,29 @@
+-- Carga de prueba para la liquidación de intereses: 1 000 000 de cuentas de ahorro sintéticas.
+--
+-- 1. Ejecutar sobre una base de pruebas (nunca en producción):
+--      psql -h localhost -U postgres -d bankdb -f monitoring/sql/seed-savings-accounts.sql
+-- 2. Lanzar la liquidación y consultar el avance:
+--      POST /api/v1/admin/interest/runs/2026-09
+--      GET  /api/v1/admin/interest/runs/2026-09
+-- 3. Revisar en Prometheus:
+--      - bank_interest_run_duration_seconds (duración total por estado)
+--      - rate(bank_interest_accounts_credited_total[1m]) (cuentas por segundo)
+--      - hikaricp_connections_active (una conexión por partición en curso + la del lock)
+--
+-- Los ids se toman por encima de account_seq para no chocar con las cuentas creadas por la app.
+
+INSERT INTO "user" (id, role_id, name, last_name1, document_id, email, password, phone_number)
+VALUES (900000000, 2, 'Carga', 'Intereses', 'SEED-INTERES', 'seed.intereses@bankdemo.test', '{noop}seed', '000000000')
+ON CONFLICT (id) DO NOTHING;
+
+INSERT INTO bank_account (id, user_id, account_type_id, account_number, currency_id, current_balance)
+SELECT 900000000 + g,
+       900000000,
+       (SELECT id FROM account_type WHERE name = 'AHORROS'),
+       '9' || lpad(g::text, 13, '0'),
+       (SELECT id FROM currency WHERE code = 'PEN'),
+       round((random() * 50000)::numeric, 2)
+FROM generate_series(1, 1000000) AS g
+ON CONFLICT (id) DO NOTHING;
+
+ANALYZE bank_account;
@@ -1,26 +1,39 @@
 package com.example.bank_app.controller;
 
 import com.example.bank_app.dto.admin.AdminDashboardResponse;
+import com.example.bank_app.dto.admin.TransactionCurveResponse;
+import com.example.bank_app.dto.archive.TransactionArchiveResponse;
 import com.example.bank_app.dto.admin.UserAdminResponse;
+import com.example.bank_app.dto.ingestion.DepositIngestionRequest;
+import com.example.bank_app.dto.ingestion.DepositIngestionResponse;
+import com.example.bank_app.dto.interest.InterestRunResponse;
+import com.example.bank_app.dto.partition.PartitionMaintenanceResponse;
 import com.example.bank_app.dto.transaction.TransactionResponse;
 import com.example.bank_app.model.User;
 import com.example.bank_app.model.enums.AuditAction;
+import com.example.bank_app.model.enums.ExportFormat;
 import com.example.bank_app.service.*;
 import com.example.bank_app.util.WebUtils;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.YearMonth;
 
 @RestController
 @RequiredArgsConstructor
@@ -31,12 +44,82 @@ public class AdminController {
     private final UserService userService;
     private final LoginAttemptService loginAttemptService;
     private final AuditLogService auditLogService;
+    private final CatalogService catalogService;
+    private final DepositIngestionService depositIngestionService;
+    private final InterestService interestService;
+    private final TransactionExportService transactionExportService;
+    private final PartitionMaintenanceService partitionMaintenanceService;
+    private final TransactionArchiveService transactionArchiveService;
+    private final TransactionRollupService transactionRollupService;
+    private final RetainedUsersService retainedUsersService;
+    private final DashboardStreamService dashboardStreamService;
+
+    @Value("${application.export.timeout-ms:1800000}")
+    private long exportTimeoutMs;
 
     @GetMapping("/dashboard")
     public ResponseEntity<AdminDashboardResponse> getDashboard() {
         return ResponseEntity.ok(adminService.getDashboard());
     }
 
+    // Curva en otra ventana: como mucho "points" puntos por moneda, en cubos de día, semana o mes según el largo
+    @GetMapping("/dashboard/curve")
+    public ResponseEntity<TransactionCurveResponse> getTransactionCurve(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) Integer points
+    ) {
+        return ResponseEntity.ok(adminService.getTransactionCurve(from, to, points));
+    }
+
+    // Dashboard en vivo: evento "snapshot" inicial y luego "delta" agrupados por tick (Server-Sent Events)
+    @GetMapping(value = "/dashboard/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamDashboard() {
+        return dashboardStreamService.subscribe();
+    }
+
+    // Recalcula el agregado de la curva para días cerrados (el cron solo reconcilia el día anterior)
+    @PostMapping("/dashboard/rollup/rebuild")
+    public ResponseEntity<Void> rebuildRollup(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            HttpServletRequest request,
+            Authentication auth
+    ) {
+        int rows = transactionRollupService.rebuild(from, to);
+
+        User admin = (User) auth.getPrincipal();
+        auditLogService.logAction(
+                admin.getId(),
+                AuditAction.ROLLUP_REBUILD,
+                "Admin reconstruyó el agregado diario del " + from + " al " + to + ": " + rows + " filas",
+                WebUtils.getClientIp(request),
+                WebUtils.getUserAgent(request)
+        );
+
+        return ResponseEntity.ok().build();
+    }
+
+    // Rehace el sketch de usuarios retenidos desde el historial (p. ej. tras archivar o cambiar la precisión)
+    @PostMapping("/dashboard/retained-users/rebuild")
+    public ResponseEntity<Void> rebuildRetainedUsers(
+            HttpServletRequest request,
+            Authentication auth
+    ) {
+        long estimate = retainedUsersService.rebuild();
+
+        User admin = (User) auth.getPrincipal();
+        auditLogService.logAction(
+                admin.getId(),
+                AuditAction.RETAINED_USERS_REBUILD,
+                "Admin reconstruyó el sketch de usuarios retenidos: " + estimate + " estimados",
+                WebUtils.getClientIp(request),
+                WebUtils.getUserAgent(request)
+        );
+
+        return ResponseEntity.ok().build();
+    }
+
     @GetMapping("/transactions")
     public ResponseEntity<Page<TransactionResponse>> getAllTransactions(
             @RequestParam(required = false) String accountNumber,
@@ -72,6 +155,34 @@ public class AdminController {
         ));
     }
 
+    @GetMapping("/transactions/export")
+    public ResponseEntity<StreamingResponseBody> exportTransactions(
+            @RequestParam(required = false) String accountNumber,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fromDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate toDate,
+            @RequestParam(defaultValue = "CSV") ExportFormat format,
+            HttpServletRequest request,
+            Authentication auth
+    ) {
+        User admin = (User) auth.getPrincipal();
+        auditLogService.logAction(
+                admin.getId(),
+                AuditAction.EXPORT_TRANSACTIONS,
+                "Admin exportó transacciones" + (accountNumber != null && !accountNumber.isBlank() ? " de la cuenta N°: " + accountNumber : ""),
+                WebUtils.getClientIp(request),
+                WebUtils.getUserAgent(request)
+        );
+
+        LocalDateTime startDateTime = (fromDate != null) ? fromDate.atStartOfDay() : null;
+        LocalDateTime endDateTime = (toDate != null) ? toDate.atTime(LocalTime.MAX) : null;
+
+        TransactionExportService.TransactionExport export = transactionExportService.exportAllTransactions(
+                accountNumber, status, startDateTime, endDateTime, format);
+
+        return WebUtils.exportResponse(export, format, "transacciones", request, exportTimeoutMs);
+    }
+
     @GetMapping("/users")
     public ResponseEntity<Page<UserAdminResponse>> getUsers(
             @RequestParam(required = false) String term,
@@ -117,4 +228,119 @@ public class AdminController {
 
         return ResponseEntity.ok().build();
     }
+
+    @PostMapping("/catalog/reload")
+    public ResponseEntity<Void> reloadCatalog(
+            HttpServletRequest request,
+            Authentication auth
+    ) {
+        catalogService.reload();
+
+        User admin = (User) auth.getPrincipal();
+        auditLogService.logAction(
+                admin.getId(),
+                AuditAction.CATALOG_RELOAD,
+                "Admin recargó los catálogos en memoria",
+                WebUtils.getClientIp(request),
+                WebUtils.getUserAgent(request)
+        );
+
+        return ResponseEntity.ok().build();
+    }
+
+    @PostMapping("/ingestion/deposits")
+    public ResponseEntity<DepositIngestionResponse> ingestDeposits(
+            @RequestBody @Valid DepositIngestionRequest body,
+            HttpServletRequest request,
+            Authentication auth
+    ) {
+        User admin = (User) auth.getPrincipal();
+        auditLogService.logAction(
+                admin.getId(),
+                AuditAction.DEPOSIT_INGESTION,
+                "Admin procesó el archivo de depósitos: " + body.fileName(),
+                WebUtils.getClientIp(request),
+                WebUtils.getUserAgent(request)
+        );
+
+        return ResponseEntity.ok(depositIngestionService.ingest(body));
+    }
+
+    @GetMapping("/ingestion/deposits/{jobId}")
+    public ResponseEntity<DepositIngestionResponse> getDepositIngestion(@PathVariable Long jobId) {
+        return ResponseEntity.ok(depositIngestionService.getJob(jobId));
+    }
+
+    // La liquidación corre en segundo plano; el avance se consulta con GET
+    @PostMapping("/interest/runs/{period}")
+    public ResponseEntity<Void> runInterest(
+            @PathVariable YearMonth period,
+            HttpServletRequest request,
+            Authentication auth
+    ) {
+        interestService.startMonthlyInterest(period);
+
+        User admin = (User) auth.getPrincipal();
+        auditLogService.logAction(
+                admin.getId(),
+                AuditAction.INTEREST_RUN,
+                "Admin lanzó la liquidación de intereses del periodo: " + period,
+                WebUtils.getClientIp(request),
+                WebUtils.getUserAgent(request)
+        );
+
+        return ResponseEntity.accepted().build();
+    }
+
+    @GetMapping("/interest/runs/{period}")
+    public ResponseEntity<InterestRunResponse> getInterestRun(@PathVariable YearMonth period) {
+        return ResponseEntity.ok(interestService.getRun(period));
+    }
+
+    // Crea los meses siguientes y separa los vencidos sin esperar al cron
+    @PostMapping("/partitions/maintenance")
+    public ResponseEntity<PartitionMaintenanceResponse> maintainPartitions(
+            HttpServletRequest request,
+            Authentication auth
+    ) {
+        PartitionMaintenanceResponse response = partitionMaintenanceService.maintainPartitions(YearMonth.now());
+
+        User admin = (User) auth.getPrincipal();
+        auditLogService.logAction(
+                admin.getId(),
+                AuditAction.PARTITION_MAINTENANCE,
+                "Admin ejecutó el mantenimiento de particiones: " + response.created().size() + " creadas, "
+                        + response.detached().size() + " separadas",
+                WebUtils.getClientIp(request),
+                WebUtils.getUserAgent(request)
+        );
+
+        return ResponseEntity.ok(response);
+    }
+
+    // Mueve un mes cerrado al archivo frío (el cron solo archiva el mes que acaba de vencer)
+    @PostMapping("/archive/{period}")
+    public ResponseEntity<TransactionArchiveResponse> archiveMonth(
+            @PathVariable YearMonth period,
+            HttpServletRequest request,
+            Authentication auth
+    ) {
+        TransactionArchiveResponse response = transactionArchiveService.archiveMonth(period);
+
+        User admin = (User) auth.getPrincipal();
+        auditLogService.logAction(
+                admin.getId(),
+                AuditAction.ARCHIVE_TRANSACTIONS,
+                "Admin archivó los movimientos del periodo: " + period,
+                WebUtils.getClientIp(request),
+                WebUtils.getUserAgent(request)
+        );
+
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping("/archive/{period}")
+    public ResponseEntity<TransactionArchiveResponse> getArchive(@PathVariable YearMonth period) {
+        return ResponseEntity.ok(transactionArchiveService.getArchive(period));
+    }
 }
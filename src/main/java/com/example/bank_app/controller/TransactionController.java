@@ -1,34 +1,83 @@
 package com.example.bank_app.controller;
 
 import com.example.bank_app.dto.transaction.*;
+import com.example.bank_app.model.enums.ExportFormat;
+import com.example.bank_app.service.TransactionExportService;
 import com.example.bank_app.service.TransactionService;
+import com.example.bank_app.util.WebUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @RestController
 @RequiredArgsConstructor
 @RequestMapping("/api/v1/transactions")
 public class TransactionController {
+    private static final int MAX_HISTORY_PAGE_SIZE = 100;
+
     private final TransactionService transactionService;
+    private final TransactionExportService transactionExportService;
+    private final ObjectMapper objectMapper;
+
+    @Value("${application.export.timeout-ms:1800000}")
+    private long exportTimeoutMs;
 
     @PostMapping("/user/{id}/transfer")
     public ResponseEntity<TransactionResponse> transfer(@RequestBody @Valid TransferRequest request, @PathVariable Long id) {
         return new ResponseEntity<>(transactionService.transfer(request, id), HttpStatus.CREATED);
     }
 
+    // Cada transferencia se resuelve por separado; el lote responde 200 aunque alguna falle
+    @PostMapping("/user/{id}/transfer/batch")
+    public ResponseEntity<BatchTransferResponse> transferBatch(@RequestBody @Valid BatchTransferRequest request, @PathVariable Long id) {
+        return ResponseEntity.ok(transactionService.transferBatch(request, id));
+    }
+
+    // Planilla: débitos al origen y créditos por bloques; una línea JSON por resultado en cuanto su bloque se
+    // confirma y el resumen al final. Los errores previos al primer bloque (origen, saldo total) responden como
+    // cualquier otro endpoint: aún no se escribió nada
+    @PostMapping(value = "/user/{id}/payroll", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void disbursePayroll(@RequestBody @Valid PayrollRequest request, @PathVariable Long id,
+                                HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        // Si el cliente se desconecta la planilla sigue: lo acreditado queda en el historial de cada cuenta
+        AtomicBoolean disconnected = new AtomicBoolean();
+
+        PayrollResponse.Summary summary = transactionService.disbursePayroll(request, id, line -> {
+            if (disconnected.get()) return;
+            try {
+                writeLine(response.getOutputStream(), line);
+            } catch (IOException e) {
+                disconnected.set(true);
+            }
+        });
+
+        if (!disconnected.get()) {
+            writeLine(response.getOutputStream(), summary);
+        }
+    }
+
     @PostMapping("/deposit")
     public ResponseEntity<TransactionResponse> deposit(@RequestBody @Valid DepositRequest request) {
         return new ResponseEntity<>(transactionService.deposit(request), HttpStatus.CREATED);
@@ -69,4 +118,57 @@ public class TransactionController {
                 pageable
         ));
     }
+
+    // Paginación por cursor (keyset): sin OFFSET ni conteo total, el costo no crece con la profundidad
+    @GetMapping("/history/account/{accountNumber}/cursor")
+    public ResponseEntity<TransactionHistoryResponse> getHistoryPage(
+            @PathVariable String accountNumber,
+            @RequestParam Long userId,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fromDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate toDate,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size
+    ) {
+        LocalDateTime startDateTime = (fromDate != null) ? fromDate.atStartOfDay() : null;
+        LocalDateTime endDateTime = (toDate != null) ? toDate.atTime(LocalTime.MAX) : null;
+
+        return ResponseEntity.ok(transactionService.getHistoryPage(
+                accountNumber,
+                userId,
+                status,
+                startDateTime,
+                endDateTime,
+                cursor,
+                Math.min(Math.max(size, 1), MAX_HISTORY_PAGE_SIZE)
+        ));
+    }
+
+    // Historial completo de la cuenta como descarga; se escribe mientras se lee
+    @GetMapping("/history/account/{accountNumber}/export")
+    public ResponseEntity<StreamingResponseBody> exportHistory(
+            @PathVariable String accountNumber,
+            @RequestParam Long userId,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fromDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate toDate,
+            @RequestParam(defaultValue = "CSV") ExportFormat format,
+            HttpServletRequest request
+    ) {
+        LocalDateTime startDateTime = (fromDate != null) ? fromDate.atStartOfDay() : null;
+        LocalDateTime endDateTime = (toDate != null) ? toDate.atTime(LocalTime.MAX) : null;
+
+        TransactionExportService.TransactionExport export = transactionExportService.exportAccountHistory(
+                accountNumber, userId, status, startDateTime, endDateTime, format);
+
+        return WebUtils.exportResponse(export, format, "movimientos-" + accountNumber, request, exportTimeoutMs);
+    }
+
+    // Métodos privados
+
+    private void writeLine(OutputStream out, Object value) throws IOException {
+        out.write(objectMapper.writeValueAsBytes(value));
+        out.write('\n');
+        out.flush();
+    }
 }
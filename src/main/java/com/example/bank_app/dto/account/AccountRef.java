@@ -0,0 +1,12 @@
+package com.example.bank_app.dto.account;
+
+/**
+ * Datos mínimos de una cuenta activa para preparar un movimiento sin cargar la entidad.
+ */
+public record AccountRef(
+        Long id,
+        String accountNumber,
+        Long userId,
+        Integer currencyId
+) {
+}
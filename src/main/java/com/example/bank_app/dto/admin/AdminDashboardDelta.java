@@ -0,0 +1,31 @@
+package com.example.bank_app.dto.admin;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cambios del dashboard acumulados en un tick del stream (evento "delta"). Los incrementos se suman a lo
+ * recibido en el último "snapshot"; retainedUsersCount es la estimación completa y llega solo si cambió.
+ */
+public record AdminDashboardDelta(
+        Long retainedUsersCount,
+        long totalUsersIncrement,
+        long totalBlockedUsersIncrement,
+        List<BlockedUserChange> blockedUserChanges,
+        // Importe a sumar al punto (día, moneda) de la curva; si el día no está en la curva muestreada
+        // del snapshot es un punto nuevo (normalmente el último)
+        Map<String, List<AdminDashboardResponse.ChartDataPoint>> curveIncrements
+) {
+    public record BlockedUserChange(
+            String name,
+            String documentId,
+            boolean blocked,
+            LocalDateTime changedAt
+    ){}
+
+    public boolean isEmpty() {
+        return retainedUsersCount == null && totalUsersIncrement == 0 && totalBlockedUsersIncrement == 0
+                && blockedUserChanges.isEmpty() && curveIncrements.isEmpty();
+    }
+}
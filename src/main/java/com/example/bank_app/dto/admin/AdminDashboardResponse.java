@@ -11,7 +11,9 @@ public record AdminDashboardResponse(
         Long totalUsers,
         Long totalBlockedUsersCount,
         List<BlockedUserSummary> lastUsersBlocked,
-        Map<String, List<ChartDataPoint>> transactionCurve
+        Map<String, List<ChartDataPoint>> transactionCurve,
+        // Secciones que fallaron o superaron su timeout (sus campos quedan nulos o vacíos)
+        List<String> unavailableSections
 ) {
     public record BlockedUserSummary(
             String name,
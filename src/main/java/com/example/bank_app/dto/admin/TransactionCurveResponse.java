@@ -0,0 +1,15 @@
+package com.example.bank_app.dto.admin;
+
+import com.example.bank_app.model.enums.CurveGranularity;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+public record TransactionCurveResponse(
+        LocalDate from,
+        LocalDate to,
+        // Tamaño del cubo de cada punto: el día, o el inicio de la semana/mes (el primero se recorta a "from")
+        CurveGranularity granularity,
+        Map<String, List<AdminDashboardResponse.ChartDataPoint>> series
+) {}
@@ -0,0 +1,19 @@
+package com.example.bank_app.dto.archive;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Fila de bank_transaction leída del archivo frío: cuentas y catálogos quedan como ids, igual que en la tabla
+public record ArchivedTransaction(
+        Long id,
+        Long sourceAccountId,
+        Long targetAccountId,
+        Long transactionTypeId,
+        BigDecimal amount,
+        Long currencyId,
+        Long transactionStatusId,
+        String referenceCode,
+        String description,
+        LocalDateTime createdAt
+) {
+}
@@ -0,0 +1,10 @@
+package com.example.bank_app.dto.archive;
+
+public record TransactionArchiveResponse(
+        String period,
+        int files,
+        long postingLegRows,
+        long transactionRows,
+        long sizeBytes
+) {
+}
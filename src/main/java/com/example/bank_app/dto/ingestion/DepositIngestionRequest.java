@@ -0,0 +1,16 @@
+package com.example.bank_app.dto.ingestion;
+
+import com.example.bank_app.model.enums.DepositFileFormat;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+public record DepositIngestionRequest(
+        @NotBlank(message = "El nombre del archivo es obligatorio")
+        @Size(max = 255, message = "No se debe exceder los 255 caracteres")
+        String fileName,
+
+        @NotNull(message = "El formato es obligatorio (CSV o FIXED_WIDTH)")
+        DepositFileFormat format
+) {
+}
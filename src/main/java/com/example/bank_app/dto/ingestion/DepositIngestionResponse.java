@@ -0,0 +1,26 @@
+package com.example.bank_app.dto.ingestion;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public record DepositIngestionResponse(
+        Long jobId,
+        String fileName,
+        String format,
+        String status,
+        long linesRead,
+        long linesPosted,
+        long linesRejected,
+        long checkpointOffset,
+        Double linesPerSecond, // Solo de la ejecución actual
+        String lastError,
+        LocalDateTime startedAt,
+        LocalDateTime finishedAt,
+        List<Rejection> rejections
+) {
+    public record Rejection(
+            long lineNumber,
+            String reason
+    ) {
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.bank_app.dto.interest;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+public record InterestRunResponse(
+        String period,
+        String status,
+        BigDecimal annualRate,
+        int partitions,
+        int partitionsCompleted,
+        long accountsCredited,
+        String lastError,
+        LocalDateTime startedAt,
+        LocalDateTime finishedAt
+) {
+}
@@ -0,0 +1,10 @@
+package com.example.bank_app.dto.partition;
+
+import java.util.List;
+
+public record PartitionMaintenanceResponse(
+        String period,
+        List<String> created,
+        List<String> detached
+) {
+}
@@ -0,0 +1,14 @@
+package com.example.bank_app.dto.transaction;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public record BatchTransferRequest(
+    @NotEmpty(message = "El lote debe contener al menos una transferencia")
+    @Size(max = 1000, message = "El lote no debe exceder las 1000 transferencias")
+    List<@Valid TransferRequest> transfers
+) {
+}
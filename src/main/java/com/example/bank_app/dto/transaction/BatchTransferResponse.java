@@ -0,0 +1,31 @@
+package com.example.bank_app.dto.transaction;
+
+import java.util.List;
+
+public record BatchTransferResponse(
+    int total,
+    int succeeded,
+    int failed,
+    List<ItemResult> results
+) {
+    public static BatchTransferResponse of(List<ItemResult> results) {
+        int succeeded = (int) results.stream().filter(result -> result.transaction() != null).count();
+        return new BatchTransferResponse(results.size(), succeeded, results.size() - succeeded, results);
+    }
+
+    // index: posición de la transferencia en el lote recibido
+    public record ItemResult(
+        int index,
+        String status,
+        TransactionResponse transaction,
+        String error
+    ) {
+        public static ItemResult success(int index, TransactionResponse transaction) {
+            return new ItemResult(index, "SUCCESS", transaction, null);
+        }
+
+        public static ItemResult failed(int index, String error) {
+            return new ItemResult(index, "FAILED", null, error);
+        }
+    }
+}
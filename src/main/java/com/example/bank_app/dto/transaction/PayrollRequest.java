@@ -0,0 +1,33 @@
+package com.example.bank_app.dto.transaction;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.*;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public record PayrollRequest(
+    @NotBlank(message = "La cuenta de origen es obligatoria")
+    String sourceAccount,
+
+    @NotBlank(message = "La moneda es obligatoria")
+    @Size(min = 3, max = 3, message = "El código de moneda debe tener 3 letras (Ej: USD)")
+    String currency,
+
+    @Size(max = 255, message = "No se debe exceder los 255 caracteres")
+    String description,
+
+    @NotEmpty(message = "La planilla debe tener al menos una línea")
+    @Size(max = 10000, message = "La planilla no puede exceder las 10000 líneas")
+    List<@Valid Line> lines
+) {
+    public record Line(
+        @NotBlank(message = "La cuenta de destino es obligatoria")
+        String targetAccount,
+
+        @NotNull(message = "El monto es obligatorio")
+        @Positive
+        BigDecimal amount
+    ) {
+    }
+}
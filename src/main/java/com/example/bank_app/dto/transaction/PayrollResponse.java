@@ -0,0 +1,36 @@
+package com.example.bank_app.dto.transaction;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public record PayrollResponse(
+    Summary summary,
+    List<LineResult> lines
+) {
+    public record Summary(
+        String sourceAccount,
+        int total,
+        int succeeded,
+        int failed,
+        BigDecimal totalDebited
+    ) {
+    }
+
+    // index: posición de la línea en la planilla recibida
+    public record LineResult(
+        int index,
+        String targetAccount,
+        String status,
+        String referenceCode,
+        BigDecimal amountCredited,
+        String error
+    ) {
+        public static LineResult success(int index, String targetAccount, String referenceCode, BigDecimal amountCredited) {
+            return new LineResult(index, targetAccount, "SUCCESS", referenceCode, amountCredited, null);
+        }
+
+        public static LineResult failed(int index, String targetAccount, String error) {
+            return new LineResult(index, targetAccount, "FAILED", null, null, error);
+        }
+    }
+}
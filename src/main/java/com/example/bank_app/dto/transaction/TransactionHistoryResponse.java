@@ -0,0 +1,10 @@
+package com.example.bank_app.dto.transaction;
+
+import java.util.List;
+
+// nextCursor: token opaco para pedir la página siguiente; null cuando no hay más movimientos
+public record TransactionHistoryResponse(
+    List<TransactionResponse> content,
+    int size,
+    String nextCursor
+) {}
@@ -0,0 +1,62 @@
+package com.example.bank_app.model;
+
+import com.example.bank_app.model.enums.PostingSide;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Lado de un movimiento visto desde una cuenta (modelo de lectura del historial).
+ * Se escribe en la misma transacción que el BankTransaction y guarda ya resueltos la contraparte
+ * y los nombres de catálogo, para que el historial no toque bank_transaction ni sus joins.
+ */
+@Entity
+@Table(name = "account_posting_leg")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+
+public class AccountPostingLeg {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "account_posting_leg_seq_gen")
+    @SequenceGenerator(name = "account_posting_leg_seq_gen", sequenceName = "account_posting_leg_seq")
+    private Long id;
+
+    @Column(name = "account_id", nullable = false)
+    private Long accountId;
+
+    @Column(name = "transaction_id", nullable = false)
+    private Long transactionId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 10)
+    private PostingSide side;
+
+    // null: la contraparte es externa (ventanilla, servicio, intereses)
+    @Column(name = "counterparty_account_number", length = 20)
+    private String counterpartyAccountNumber;
+
+    @Column(name = "transaction_type", nullable = false, length = 50)
+    private String transactionType;
+
+    @Column(name = "transaction_status", nullable = false, length = 50)
+    private String transactionStatus;
+
+    @Column(name = "currency_code", nullable = false, length = 3)
+    private String currencyCode;
+
+    @Column(nullable = false, precision = 19, scale = 4)
+    private BigDecimal amount;
+
+    private String description;
+
+    @Column(name = "reference_code", nullable = false, length = 50)
+    private String referenceCode;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
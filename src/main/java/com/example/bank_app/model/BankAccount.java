@@ -49,4 +49,8 @@ public class BankAccount {
     @Column(name = "is_active")
     @Builder.Default
     private Boolean isActive = true;
+
+    @Version
+    @Column(nullable = false)
+    private Long version;
 }
\ No newline at end of file
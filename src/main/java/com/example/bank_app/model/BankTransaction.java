@@ -51,6 +51,16 @@ public class BankTransaction {
 
     private String description;
 
+    // Tasas aplicadas (moneda de la operación -> moneda de cada cuenta) y snapshot de origen
+    @Column(name = "source_applied_rate", precision = 38, scale = 18)
+    private BigDecimal sourceAppliedRate;
+
+    @Column(name = "target_applied_rate", precision = 38, scale = 18)
+    private BigDecimal targetAppliedRate;
+
+    @Column(name = "rate_snapshot_id")
+    private Long rateSnapshotId;
+
     @CreatedDate
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt;
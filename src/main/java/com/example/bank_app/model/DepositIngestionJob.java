@@ -0,0 +1,66 @@
+package com.example.bank_app.model;
+
+import com.example.bank_app.model.enums.DepositFileFormat;
+import com.example.bank_app.model.enums.JobStatus;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "deposit_ingestion_job")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+
+public class DepositIngestionJob {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "deposit_ingestion_job_seq_gen")
+    @SequenceGenerator(name = "deposit_ingestion_job_seq_gen", sequenceName = "deposit_ingestion_job_seq")
+    private Long id;
+
+    @Column(name = "file_name", nullable = false)
+    private String fileName;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private DepositFileFormat format;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private JobStatus status;
+
+    @Column(name = "file_size", nullable = false)
+    private Long fileSize;
+
+    // Byte siguiente a la última línea confirmada; una reanudación continúa desde aquí
+    @Builder.Default
+    @Column(name = "checkpoint_offset", nullable = false)
+    private Long checkpointOffset = 0L;
+
+    @Builder.Default
+    @Column(name = "lines_read", nullable = false)
+    private Long linesRead = 0L;
+
+    @Builder.Default
+    @Column(name = "lines_posted", nullable = false)
+    private Long linesPosted = 0L;
+
+    @Builder.Default
+    @Column(name = "lines_rejected", nullable = false)
+    private Long linesRejected = 0L;
+
+    @Column(name = "last_error")
+    private String lastError;
+
+    @Column(name = "started_at", nullable = false)
+    private LocalDateTime startedAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+}
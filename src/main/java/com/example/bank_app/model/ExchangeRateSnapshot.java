@@ -0,0 +1,37 @@
+package com.example.bank_app.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+@Entity
+@Table(name = "exchange_rate_snapshot")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+
+public class ExchangeRateSnapshot {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "exchange_rate_snapshot_seq_gen")
+    @SequenceGenerator(name = "exchange_rate_snapshot_seq_gen", sequenceName = "exchange_rate_snapshot_seq")
+    private Long id;
+
+    @Column(name = "base_currency", nullable = false, length = 3)
+    private String baseCurrency;
+
+    @Column(name = "fetched_at", nullable = false)
+    private LocalDateTime fetchedAt;
+
+    @Builder.Default
+    @ElementCollection(fetch = FetchType.EAGER)
+    @CollectionTable(name = "exchange_rate_snapshot_rate", joinColumns = @JoinColumn(name = "snapshot_id"))
+    @MapKeyColumn(name = "currency_code", length = 3)
+    @Column(name = "rate", nullable = false, precision = 38, scale = 18)
+    private Map<String, BigDecimal> rates = new HashMap<>();
+}
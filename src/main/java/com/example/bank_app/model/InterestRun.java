@@ -0,0 +1,46 @@
+package com.example.bank_app.model;
+
+import com.example.bank_app.model.enums.JobStatus;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "interest_run")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+
+public class InterestRun {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "interest_run_seq_gen")
+    @SequenceGenerator(name = "interest_run_seq_gen", sequenceName = "interest_run_seq")
+    private Long id;
+
+    // Mes liquidado (yyyy-MM); una sola ejecución por periodo
+    @Column(nullable = false, unique = true, length = 7)
+    private String period;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private JobStatus status;
+
+    @Column(name = "annual_rate", nullable = false, precision = 9, scale = 6)
+    private BigDecimal annualRate;
+
+    @Column(name = "account_type_id", nullable = false)
+    private Integer accountTypeId;
+
+    @Column(name = "last_error")
+    private String lastError;
+
+    @Column(name = "started_at", nullable = false)
+    private LocalDateTime startedAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+}
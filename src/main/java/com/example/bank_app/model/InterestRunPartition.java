@@ -0,0 +1,44 @@
+package com.example.bank_app.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+@Entity
+@Table(name = "interest_run_partition")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+
+public class InterestRunPartition {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "interest_run_partition_seq_gen")
+    @SequenceGenerator(name = "interest_run_partition_seq_gen", sequenceName = "interest_run_partition_seq")
+    private Long id;
+
+    @Column(name = "run_id", nullable = false)
+    private Long runId;
+
+    @Column(name = "partition_no", nullable = false)
+    private Integer partitionNo;
+
+    // Rango de ids de cuenta (from_id, to_id]
+    @Column(name = "from_id", nullable = false)
+    private Long fromId;
+
+    @Column(name = "to_id", nullable = false)
+    private Long toId;
+
+    // Última cuenta confirmada; una reanudación continúa desde aquí
+    @Column(name = "last_account_id", nullable = false)
+    private Long lastAccountId;
+
+    @Builder.Default
+    @Column(name = "accounts_credited", nullable = false)
+    private Long accountsCredited = 0L;
+
+    @Builder.Default
+    @Column(nullable = false)
+    private Boolean completed = false;
+}
@@ -0,0 +1,43 @@
+package com.example.bank_app.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+
+/**
+ * Lados archivados por (cuenta, mes, estado), escritos al archivar el mes. El total del historial se suma
+ * de aquí sin abrir los archivos; solo los meses que la ventana de fechas corta se recorren.
+ */
+@Entity
+@Table(name = "transaction_archive_count")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TransactionArchiveCount {
+    @EmbeddedId
+    private Key id;
+
+    @Column(name = "leg_count", nullable = false)
+    private Long legCount;
+
+    @Embeddable
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+        @Column(name = "account_id", nullable = false)
+        private Long accountId;
+
+        // Mes archivado (yyyy-MM)
+        @Column(nullable = false, length = 7)
+        private String period;
+
+        @Column(name = "transaction_status", nullable = false, length = 50)
+        private String transactionStatus;
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.bank_app.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Archivo columnar del archivo frío (un mes de una tabla, o una parte de él).
+ * Los rangos min/max permiten elegir los archivos de una cuenta y un rango de fechas sin abrirlos.
+ */
+@Entity
+@Table(name = "transaction_archive_file")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+
+public class TransactionArchiveFile {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transaction_archive_file_seq_gen")
+    @SequenceGenerator(name = "transaction_archive_file_seq_gen", sequenceName = "transaction_archive_file_seq")
+    private Long id;
+
+    // Mes archivado (yyyy-MM)
+    @Column(nullable = false, length = 7)
+    private String period;
+
+    // Tabla de origen: account_posting_leg o bank_transaction
+    @Column(name = "source_table", nullable = false, length = 50)
+    private String sourceTable;
+
+    // Ruta relativa al directorio del archivo frío
+    @Column(name = "file_name", nullable = false, unique = true)
+    private String fileName;
+
+    @Column(name = "row_count", nullable = false)
+    private Long rowCount;
+
+    @Column(name = "size_bytes", nullable = false)
+    private Long sizeBytes;
+
+    // Solo en archivos de account_posting_leg (ordenados por cuenta)
+    @Column(name = "min_account_id")
+    private Long minAccountId;
+
+    @Column(name = "max_account_id")
+    private Long maxAccountId;
+
+    @Column(name = "min_created_at", nullable = false)
+    private LocalDateTime minCreatedAt;
+
+    @Column(name = "max_created_at", nullable = false)
+    private LocalDateTime maxCreatedAt;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
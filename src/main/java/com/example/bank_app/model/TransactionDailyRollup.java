@@ -0,0 +1,54 @@
+package com.example.bank_app.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Agregado diario de movimientos por (día, moneda, tipo, estado). Cada clave se reparte en varias filas
+ * (slot) para que los postings concurrentes del mismo día no compitan por un único registro; las lecturas
+ * suman los slots.
+ */
+@Entity
+@Table(name = "transaction_daily_rollup")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TransactionDailyRollup {
+    @EmbeddedId
+    private Key id;
+
+    @Column(name = "tx_count", nullable = false)
+    private Long txCount;
+
+    @Column(name = "amount_sum", nullable = false, precision = 24, scale = 4)
+    private BigDecimal amountSum;
+
+    @Embeddable
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+        @Column(nullable = false)
+        private LocalDate day;
+
+        @Column(name = "currency_code", nullable = false, length = 3)
+        private String currencyCode;
+
+        @Column(name = "transaction_type", nullable = false, length = 50)
+        private String transactionType;
+
+        @Column(name = "transaction_status", nullable = false, length = 50)
+        private String transactionStatus;
+
+        @Column(nullable = false)
+        private Integer slot;
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.bank_app.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Registro global de códigos de referencia. bank_transaction está particionada y solo puede exigir
+ * UNIQUE (reference_code, created_at); esta tabla sin particionar es la que impide repetir un código.
+ * Se escribe en la transacción del posting (TransactionJournalServiceImpl, intereses) y no se archiva.
+ */
+@Entity
+@Table(name = "transaction_reference")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TransactionReference {
+    @Id
+    @Column(name = "reference_code", length = 50)
+    private String referenceCode;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
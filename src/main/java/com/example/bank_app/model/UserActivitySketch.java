@@ -0,0 +1,30 @@
+package com.example.bank_app.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Sketch HyperLogLog persistido (registros en bruto). Cada nodo fusiona el suyo con el guardado
+ * tomando el máximo por registro, así la fila converge a la unión de todos los nodos.
+ */
+@Entity
+@Table(name = "user_activity_sketch")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UserActivitySketch {
+    // Nombre del sketch (p. ej. retained-users)
+    @Id
+    @Column(length = 50)
+    private String name;
+
+    @Column(nullable = false)
+    private byte[] registers;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -6,5 +6,13 @@ public enum AuditAction {
     PASSWORD_CHANGED,
     UNBLOCK_USER,
     SEARCH_TRANSACTIONS,
-    SEARCH_USERS
+    SEARCH_USERS,
+    CATALOG_RELOAD,
+    DEPOSIT_INGESTION,
+    INTEREST_RUN,
+    EXPORT_TRANSACTIONS,
+    PARTITION_MAINTENANCE,
+    ARCHIVE_TRANSACTIONS,
+    ROLLUP_REBUILD,
+    RETAINED_USERS_REBUILD
 }
\ No newline at end of file
@@ -0,0 +1,6 @@
+package com.example.bank_app.model.enums;
+
+public enum ExportFormat {
+    CSV,
+    NDJSON
+}
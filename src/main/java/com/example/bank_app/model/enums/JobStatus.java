@@ -0,0 +1,7 @@
+package com.example.bank_app.model.enums;
+
+public enum JobStatus {
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
@@ -0,0 +1,7 @@
+package com.example.bank_app.model.enums;
+
+public enum TransactionStatusCode {
+    PENDING,
+    SUCCESS,
+    FAILED
+}
@@ -0,0 +1,9 @@
+package com.example.bank_app.model.enums;
+
+public enum TransactionTypeCode {
+    TRANSFERENCIA,
+    DEPOSITO,
+    RETIRO,
+    PAGO_SERVICIO,
+    PAGO_INTERESES
+}
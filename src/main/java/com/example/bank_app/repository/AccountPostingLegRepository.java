@@ -0,0 +1,50 @@
+package com.example.bank_app.repository;
+
+import com.example.bank_app.model.AccountPostingLeg;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface AccountPostingLegRepository extends JpaRepository<AccountPostingLeg, Long> {
+    @Query("""
+        SELECT l FROM AccountPostingLeg l
+        WHERE l.accountId = :accountId
+        AND (:status IS NULL OR l.transactionStatus = :status)
+        AND l.createdAt >= :minDate
+        AND l.createdAt <= :maxDate
+    """)
+    Page<AccountPostingLeg> findAllByAccountId(
+            @Param("accountId") Long accountId,
+            @Param("status") String status,
+            @Param("minDate") LocalDateTime minDate,
+            @Param("maxDate") LocalDateTime maxDate,
+            Pageable pageable
+    );
+
+    // Keyset sobre (created_at, id): un único recorrido de idx_account_posting_leg_history desde el cursor.
+    // Sin cursor se pasa (MAX_DATE, Long.MAX_VALUE); maxDate ya viene recortado al cursor para podar particiones
+    @Query("""
+        SELECT l FROM AccountPostingLeg l
+        WHERE l.accountId = :accountId
+        AND (:status IS NULL OR l.transactionStatus = :status)
+        AND l.createdAt >= :minDate
+        AND l.createdAt <= :maxDate
+        AND (l.createdAt, l.id) < (:cursorAt, :cursorId)
+        ORDER BY l.createdAt DESC, l.id DESC
+        LIMIT :limit
+    """)
+    List<AccountPostingLeg> findPageByAccountId(
+            @Param("accountId") Long accountId,
+            @Param("status") String status,
+            @Param("minDate") LocalDateTime minDate,
+            @Param("maxDate") LocalDateTime maxDate,
+            @Param("cursorAt") LocalDateTime cursorAt,
+            @Param("cursorId") Long cursorId,
+            @Param("limit") int limit
+    );
+}
@@ -1,7 +1,14 @@
 package com.example.bank_app.repository;
 
+import com.example.bank_app.dto.account.AccountRef;
 import com.example.bank_app.model.BankAccount;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -10,4 +17,50 @@ public interface BankAccountRepository extends JpaRepository<BankAccount, Long>
     boolean existsByAccountNumber(String accountNumber);
     boolean existsByAccountNumberAndUserId(String accountNumber, Long userId);
     Optional<BankAccount> findByAccountNumberAndIsActiveTrue(String accountNumber);
+
+    @Query("""
+        SELECT new com.example.bank_app.dto.account.AccountRef(a.id, a.accountNumber, a.user.id, a.currency.id)
+        FROM BankAccount a
+        WHERE a.accountNumber = :accountNumber AND a.isActive = true
+    """)
+    Optional<AccountRef> findRefByAccountNumberAndIsActiveTrue(@Param("accountNumber") String accountNumber);
+
+    @Query("""
+        SELECT new com.example.bank_app.dto.account.AccountRef(a.id, a.accountNumber, a.user.id, a.currency.id)
+        FROM BankAccount a
+        WHERE a.accountNumber IN :accountNumbers AND a.isActive = true
+    """)
+    List<AccountRef> findRefsByAccountNumberInAndIsActiveTrue(@Param("accountNumbers") Collection<String> accountNumbers);
+
+    @Query("""
+        SELECT new com.example.bank_app.dto.account.AccountRef(a.id, a.accountNumber, a.user.id, a.currency.id)
+        FROM BankAccount a
+        WHERE a.isActive = true
+    """)
+    List<AccountRef> findAllRefsByIsActiveTrue();
+
+    // Sin filtro de activas: los movimientos archivados pueden apuntar a cuentas ya cerradas
+    @Query("""
+        SELECT new com.example.bank_app.dto.account.AccountRef(a.id, a.accountNumber, a.user.id, a.currency.id)
+        FROM BankAccount a
+        WHERE a.accountNumber = :accountNumber
+    """)
+    Optional<AccountRef> findRefByAccountNumber(@Param("accountNumber") String accountNumber);
+
+    @Query("""
+        SELECT new com.example.bank_app.dto.account.AccountRef(a.id, a.accountNumber, a.user.id, a.currency.id)
+        FROM BankAccount a
+        WHERE a.id IN :ids
+    """)
+    List<AccountRef> findRefsByIdIn(@Param("ids") Collection<Long> ids);
+
+    List<BankAccount> findAllByIdInOrderByIdAsc(Collection<Long> ids);
+
+    @Query("SELECT a.accountType.name FROM BankAccount a WHERE a.id = :id")
+    Optional<String> findAccountTypeNameById(@Param("id") Long id);
+
+    // SELECT ... FOR UPDATE siempre en orden ascendente de id para evitar deadlocks
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT a FROM BankAccount a WHERE a.id IN :ids ORDER BY a.id ASC")
+    List<BankAccount> findAllByIdInForUpdate(@Param("ids") Collection<Long> ids);
 }
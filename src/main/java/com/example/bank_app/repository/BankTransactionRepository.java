@@ -1,5 +1,6 @@
 package com.example.bank_app.repository;
 
+import com.example.bank_app.dto.transaction.TransactionResponse;
 import com.example.bank_app.model.BankTransaction;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -17,8 +18,8 @@ public interface BankTransactionRepository extends JpaRepository <BankTransactio
         SELECT t FROM BankTransaction t
         WHERE (t.sourceAccount.id = :accountId OR t.targetAccount.id = :accountId)
         AND (:status IS NULL OR t.transactionStatus.name = :status)
-        AND (CAST(:minDate AS timestamp) IS NULL OR t.createdAt >= :minDate)
-        AND (CAST(:maxDate AS timestamp) IS NULL OR t.createdAt <= :maxDate)
+        AND t.createdAt >= :minDate
+        AND t.createdAt <= :maxDate
     """)
     Page<BankTransaction> findAllByAccountId(
             @Param("accountId") Long accountId,
@@ -28,38 +29,42 @@ public interface BankTransactionRepository extends JpaRepository <BankTransactio
             Pageable pageable
     );
 
-    @Query("""
-        SELECT COUNT(DISTINCT u)
-        FROM User u
-        WHERE EXISTS (
-            SELECT 1
-            FROM BankTransaction bt
-            WHERE u = bt.sourceAccount.user OR u = bt.targetAccount.user
+    // Proyección a DTO: una sola consulta por página (sin cargas perezosas por fila en el mapeo).
+    // Las fechas llegan siempre acotadas (DateRangeUtils) para que se poden las particiones mensuales
+    @Query(value = """
+        SELECT new com.example.bank_app.dto.transaction.TransactionResponse(
+            t.id,
+            COALESCE(s.accountNumber, 'EXTERNO'),
+            COALESCE(ta.accountNumber, 'EXTERNO/VENTANILLA'),
+            tt.name,
+            t.amount,
+            ts.name,
+            t.description,
+            t.referenceCode,
+            c.code,
+            t.createdAt
         )
-    """)
-    Long getRetainedUsers();
-
-    @Query("""
-        SELECT
-            CAST(t.createdAt AS LocalDate),
-            t.currency.code,
-            SUM(t.amount)
         FROM BankTransaction t
-        GROUP BY CAST(t.createdAt AS LocalDate), t.currency.code
-        ORDER BY CAST(t.createdAt AS LocalDate) ASC
-    """)
-    List<Object[]> getTransactionCurveDataGroupedByCurrency();
-
-    @Query("""
-        SELECT t FROM BankTransaction t
         LEFT JOIN t.sourceAccount s
         LEFT JOIN t.targetAccount ta
+        JOIN t.transactionType tt
+        JOIN t.transactionStatus ts
+        JOIN t.currency c
+        WHERE (:accountNumber IS NULL OR s.accountNumber = :accountNumber OR ta.accountNumber = :accountNumber)
+        AND (:status IS NULL OR ts.name = :status)
+        AND t.createdAt >= :minDate
+        AND t.createdAt <= :maxDate
+    """, countQuery = """
+        SELECT COUNT(t) FROM BankTransaction t
+        LEFT JOIN t.sourceAccount s
+        LEFT JOIN t.targetAccount ta
+        JOIN t.transactionStatus ts
         WHERE (:accountNumber IS NULL OR s.accountNumber = :accountNumber OR ta.accountNumber = :accountNumber)
-        AND (:status IS NULL OR t.transactionStatus = :status)
-        AND (CAST(:minDate AS timestamp) IS NULL OR t.createdAt >= :minDate)
-        AND (CAST(:maxDate AS timestamp) IS NULL OR t.createdAt <= :maxDate)
+        AND (:status IS NULL OR ts.name = :status)
+        AND t.createdAt >= :minDate
+        AND t.createdAt <= :maxDate
     """)
-    Page<BankTransaction> findAllByFilter(
+    Page<TransactionResponse> findAllByFilter(
             @Param("accountNumber") String accountNumber,
             @Param("status") String status,
             @Param("minDate") LocalDateTime minDate,
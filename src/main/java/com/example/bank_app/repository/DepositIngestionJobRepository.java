@@ -0,0 +1,10 @@
+package com.example.bank_app.repository;
+
+import com.example.bank_app.model.DepositIngestionJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Optional;
+
+public interface DepositIngestionJobRepository extends JpaRepository<DepositIngestionJob, Long> {
+    Optional<DepositIngestionJob> findFirstByFileNameOrderByIdDesc(String fileName);
+}
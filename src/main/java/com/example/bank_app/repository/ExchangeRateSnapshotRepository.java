@@ -0,0 +1,10 @@
+package com.example.bank_app.repository;
+
+import com.example.bank_app.model.ExchangeRateSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Optional;
+
+public interface ExchangeRateSnapshotRepository extends JpaRepository<ExchangeRateSnapshot, Long> {
+    Optional<ExchangeRateSnapshot> findFirstByOrderByFetchedAtDesc();
+}
@@ -0,0 +1,10 @@
+package com.example.bank_app.repository;
+
+import com.example.bank_app.model.InterestRunPartition;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface InterestRunPartitionRepository extends JpaRepository<InterestRunPartition, Long> {
+    List<InterestRunPartition> findAllByRunIdOrderByPartitionNo(Long runId);
+}
@@ -0,0 +1,10 @@
+package com.example.bank_app.repository;
+
+import com.example.bank_app.model.InterestRun;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Optional;
+
+public interface InterestRunRepository extends JpaRepository<InterestRun, Long> {
+    Optional<InterestRun> findByPeriod(String period);
+}
@@ -0,0 +1,47 @@
+package com.example.bank_app.repository;
+
+import com.example.bank_app.model.TransactionArchiveFile;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface TransactionArchiveFileRepository extends JpaRepository<TransactionArchiveFile, Long> {
+    List<TransactionArchiveFile> findAllByPeriodOrderByFileName(String period);
+    List<TransactionArchiveFile> findAllBySourceTableOrderByFileName(String sourceTable);
+
+    // Mes archivado más reciente ('yyyy-MM' ordena como texto), o null si no hay ninguno
+    @Query("SELECT MAX(f.period) FROM TransactionArchiveFile f WHERE f.sourceTable = 'account_posting_leg'")
+    String findNewestLegPeriod();
+
+    // Archivos de lados que pueden contener filas de la cuenta en el rango, del más reciente al más antiguo
+    @Query("""
+        SELECT f FROM TransactionArchiveFile f
+        WHERE f.sourceTable = 'account_posting_leg'
+        AND f.minAccountId <= :accountId
+        AND f.maxAccountId >= :accountId
+        AND f.maxCreatedAt >= :minDate
+        AND f.minCreatedAt <= :maxDate
+        ORDER BY f.period DESC, f.fileName
+    """)
+    List<TransactionArchiveFile> findLegFiles(
+            @Param("accountId") Long accountId,
+            @Param("minDate") LocalDateTime minDate,
+            @Param("maxDate") LocalDateTime maxDate
+    );
+
+    // Archivos de movimientos con filas en el rango, del mes más antiguo al más reciente (cada uno ordenado por id)
+    @Query("""
+        SELECT f FROM TransactionArchiveFile f
+        WHERE f.sourceTable = 'bank_transaction'
+        AND f.maxCreatedAt >= :minDate
+        AND f.minCreatedAt <= :maxDate
+        ORDER BY f.period, f.fileName
+    """)
+    List<TransactionArchiveFile> findTransactionFiles(
+            @Param("minDate") LocalDateTime minDate,
+            @Param("maxDate") LocalDateTime maxDate
+    );
+}
@@ -0,0 +1,31 @@
+package com.example.bank_app.repository;
+
+import com.example.bank_app.model.TransactionDailyRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface TransactionDailyRollupRepository extends JpaRepository<TransactionDailyRollup, TransactionDailyRollup.Key> {
+    // Una fila por (día, moneda) sumando tipos, estados y slots: el costo depende de los días, no de los movimientos
+    @Query("""
+        SELECT r.id.day, r.id.currencyCode, SUM(r.amountSum)
+        FROM TransactionDailyRollup r
+        WHERE r.id.day BETWEEN :from AND :to
+        GROUP BY r.id.day, r.id.currencyCode
+        ORDER BY r.id.day ASC
+    """)
+    List<Object[]> getCurveGroupedByCurrency(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    // Igual, pero en cubos de semana o mes ('week' / 'month'), fechados por su inicio, para ventanas largas
+    @Query(value = """
+        SELECT CAST(date_trunc(:unit, r.day) AS DATE) AS bucket, r.currency_code, SUM(r.amount_sum)
+        FROM transaction_daily_rollup r
+        WHERE r.day BETWEEN :from AND :to
+        GROUP BY bucket, r.currency_code
+        ORDER BY bucket ASC
+    """, nativeQuery = true)
+    List<Object[]> getCurveBucketedByCurrency(@Param("unit") String unit, @Param("from") LocalDate from, @Param("to") LocalDate to);
+}
@@ -0,0 +1,17 @@
+package com.example.bank_app.service;
+
+import com.example.bank_app.model.BankAccount;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.Supplier;
+
+public interface AccountLockService {
+    Map<Long, BankAccount> lockAccounts(Collection<Long> accountIds);
+    <T> T executePosting(Supplier<T> posting);
+
+    enum ConcurrencyMode {
+        PESSIMISTIC,
+        OPTIMISTIC
+    }
+}
@@ -1,7 +1,16 @@
 package com.example.bank_app.service;
 
 import com.example.bank_app.dto.admin.AdminDashboardResponse;
+import com.example.bank_app.dto.admin.TransactionCurveResponse;
+
+import java.time.LocalDate;
 
 public interface AdminService {
     AdminDashboardResponse getDashboard();
+
+    // Recalcula sin pasar por la caché (snapshots del stream, que no pueden ir por detrás de los deltas)
+    AdminDashboardResponse getFreshDashboard();
+
+    // Parámetros nulos: ventana y puntos por defecto del dashboard
+    TransactionCurveResponse getTransactionCurve(LocalDate from, LocalDate to, Integer points);
 }
@@ -0,0 +1,21 @@
+package com.example.bank_app.service;
+
+import com.example.bank_app.model.*;
+import com.example.bank_app.model.enums.RoleCode;
+import com.example.bank_app.model.enums.TransactionStatusCode;
+import com.example.bank_app.model.enums.TransactionTypeCode;
+
+import java.util.Collection;
+import java.util.Optional;
+
+public interface CatalogService {
+    TransactionType getTransactionType(TransactionTypeCode code);
+    TransactionStatus getTransactionStatus(TransactionStatusCode code);
+    Role getRole(RoleCode code);
+    Optional<Currency> findCurrency(String code);
+    Currency getCurrency(Integer id);
+    Collection<Currency> getCurrencies();
+    Optional<AccountType> findAccountType(String name);
+    AccountType getAccountType(Integer id);
+    void reload();
+}
@@ -1,7 +1,21 @@
 package com.example.bank_app.service;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 
 public interface CurrencyExchangeService {
     BigDecimal convert(BigDecimal amount, String fromCurrency, String toCurrency);
+    ExchangeQuote quote(String fromCurrency, String toCurrency);
+    void refreshRates();
+
+    /**
+     * Tasa aplicada y snapshot del que proviene (null si no hubo conversión).
+     */
+    record ExchangeQuote(BigDecimal rate, Long snapshotId) {
+        public static final ExchangeQuote IDENTITY = new ExchangeQuote(BigDecimal.ONE, null);
+
+        public BigDecimal apply(BigDecimal amount) {
+            return snapshotId == null ? amount : amount.multiply(rate).setScale(4, RoundingMode.HALF_UP);
+        }
+    }
 }
@@ -0,0 +1,15 @@
+package com.example.bank_app.service;
+
+import com.example.bank_app.model.User;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.Collection;
+
+public interface DashboardStreamService {
+    SseEmitter subscribe();
+
+    // Eventos de origen: se acumulan al confirmarse la transacción y salen agrupados en el siguiente tick
+    void curvePosted(Collection<TransactionRollupService.Delta> deltas);
+    void blockChanged(User user, boolean blocked);
+    void userRegistered();
+}
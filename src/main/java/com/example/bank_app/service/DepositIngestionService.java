@@ -0,0 +1,9 @@
+package com.example.bank_app.service;
+
+import com.example.bank_app.dto.ingestion.DepositIngestionRequest;
+import com.example.bank_app.dto.ingestion.DepositIngestionResponse;
+
+public interface DepositIngestionService {
+    DepositIngestionResponse ingest(DepositIngestionRequest request);
+    DepositIngestionResponse getJob(Long jobId);
+}
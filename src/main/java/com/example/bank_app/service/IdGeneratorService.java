@@ -0,0 +1,6 @@
+package com.example.bank_app.service;
+
+public interface IdGeneratorService {
+    String nextReferenceCode();
+    String nextAccountNumber();
+}
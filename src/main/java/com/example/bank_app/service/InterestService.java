@@ -0,0 +1,11 @@
+package com.example.bank_app.service;
+
+import com.example.bank_app.dto.interest.InterestRunResponse;
+
+import java.time.YearMonth;
+
+public interface InterestService {
+    InterestRunResponse runMonthlyInterest(YearMonth period);
+    void startMonthlyInterest(YearMonth period);
+    InterestRunResponse getRun(YearMonth period);
+}
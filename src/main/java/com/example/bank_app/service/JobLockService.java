@@ -0,0 +1,12 @@
+package com.example.bank_app.service;
+
+import java.util.Optional;
+
+public interface JobLockService {
+    Optional<JobLock> tryLock(String jobName);
+
+    interface JobLock extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.bank_app.service;
+
+import com.example.bank_app.dto.partition.PartitionMaintenanceResponse;
+
+import java.time.YearMonth;
+
+public interface PartitionMaintenanceService {
+    PartitionMaintenanceResponse maintainPartitions(YearMonth current);
+}
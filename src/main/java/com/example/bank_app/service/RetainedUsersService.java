@@ -0,0 +1,16 @@
+package com.example.bank_app.service;
+
+import com.example.bank_app.model.BankTransaction;
+
+import java.util.Collection;
+
+public interface RetainedUsersService {
+    // Registra a los titulares de los movimientos al confirmarse la transacción de posting
+    void record(Collection<BankTransaction> transactions);
+    void addUsers(Collection<Long> userIds);
+
+    long estimate();
+    void flush();
+    long rebuild();
+    long recountExact();
+}
@@ -0,0 +1,31 @@
+package com.example.bank_app.service;
+
+import com.example.bank_app.dto.archive.ArchivedTransaction;
+import com.example.bank_app.dto.archive.TransactionArchiveResponse;
+import com.example.bank_app.model.AccountPostingLeg;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+public interface TransactionArchiveService {
+    TransactionArchiveResponse archiveMonth(YearMonth period);
+    TransactionArchiveResponse getArchive(YearMonth period);
+
+    // Lectura de lados archivados en orden de historial (created_at DESC, id DESC)
+    List<AccountPostingLeg> findLegs(Long accountId, String status, LocalDateTime minDate, LocalDateTime maxDate,
+                                     LocalDateTime cursorAt, Long cursorId, int limit);
+    List<AccountPostingLeg> findLegs(Long accountId, String status, LocalDateTime minDate, LocalDateTime maxDate,
+                                     long offset, int limit);
+    long countLegs(Long accountId, String status, LocalDateTime minDate, LocalDateTime maxDate);
+    void forEachLeg(Long accountId, String status, LocalDateTime minDate, LocalDateTime maxDate,
+                    Consumer<AccountPostingLeg> action);
+
+    // Movimientos archivados del rango, del mes más antiguo al más reciente y por id dentro de cada mes
+    void forEachTransaction(LocalDateTime minDate, LocalDateTime maxDate, Consumer<ArchivedTransaction> action);
+
+    // Cuentas con algún lado archivado: una vez por archivo, pero puede repetirse entre meses
+    void forEachArchivedAccount(LongConsumer action);
+}
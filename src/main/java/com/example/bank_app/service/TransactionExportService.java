@@ -0,0 +1,32 @@
+package com.example.bank_app.service;
+
+import com.example.bank_app.model.enums.ExportFormat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+
+public interface TransactionExportService {
+    TransactionExport exportAccountHistory(
+            String accountNumber,
+            Long userId,
+            String status,
+            LocalDateTime startDate,
+            LocalDateTime endDate,
+            ExportFormat format
+    );
+
+    TransactionExport exportAllTransactions(
+            String accountNumber,
+            String status,
+            LocalDateTime startDate,
+            LocalDateTime endDate,
+            ExportFormat format
+    );
+
+    // Validaciones hechas al crearla; las filas se leen y escriben recién en writeTo
+    @FunctionalInterface
+    interface TransactionExport {
+        void writeTo(OutputStream out) throws IOException;
+    }
+}
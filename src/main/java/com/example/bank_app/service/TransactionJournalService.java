@@ -0,0 +1,10 @@
+package com.example.bank_app.service;
+
+import com.example.bank_app.model.BankTransaction;
+
+import java.util.Collection;
+
+public interface TransactionJournalService {
+    void recordLegs(BankTransaction transaction);
+    void recordLegs(Collection<BankTransaction> transactions);
+}
@@ -0,0 +1,23 @@
+package com.example.bank_app.service;
+
+import com.example.bank_app.model.BankTransaction;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
+
+public interface TransactionRollupService {
+    void record(Collection<BankTransaction> transactions);
+    void add(Collection<Delta> deltas);
+    int rebuild(LocalDate from, LocalDate to);
+
+    record Delta(
+            LocalDate day,
+            String currencyCode,
+            String transactionType,
+            String transactionStatus,
+            long count,
+            BigDecimal amount
+    ) {
+    }
+}
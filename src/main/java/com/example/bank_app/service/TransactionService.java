@@ -6,9 +6,13 @@ import org.springframework.data.domain.Pageable;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface TransactionService {
     TransactionResponse transfer(TransferRequest request, Long userId);
+    BatchTransferResponse transferBatch(BatchTransferRequest request, Long userId);
+    // Cada línea se entrega a onLine en cuanto su bloque se confirma; devuelve el resumen al terminar
+    PayrollResponse.Summary disbursePayroll(PayrollRequest request, Long userId, Consumer<PayrollResponse.LineResult> onLine);
     TransactionResponse deposit(DepositRequest request);
     TransactionResponse withdraw(WithdrawRequest request, Long userId);
     TransactionResponse payService(PayServiceRequest request, Long userId);
@@ -23,6 +27,16 @@ public interface TransactionService {
             Pageable pageable
     );
 
+    TransactionHistoryResponse getHistoryPage(
+            String accountNumber,
+            Long userId,
+            String status,
+            LocalDateTime startDate,
+            LocalDateTime endDate,
+            String cursor,
+            int size
+    );
+
     Page<TransactionResponse> getAllTransactions(
             String accountId,
             String status,
@@ -0,0 +1,237 @@
+package com.example.bank_app.service.impl;
+
+import com.example.bank_app.model.BankAccount;
+import com.example.bank_app.repository.BankAccountRepository;
+import com.example.bank_app.service.AccountLockService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.OptimisticLockException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+@Service
+@Slf4j
+public class AccountLockServiceImpl implements AccountLockService {
+    private static final String UNIQUE_VIOLATION = "23505";
+    // Clave primaria de transaction_reference (database/01_schema.sql)
+    private static final String REFERENCE_CODE_CONSTRAINT = "transaction_reference_pkey";
+
+    private final BankAccountRepository bankAccountRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final ConcurrencyMode mode;
+    private final ReentrantLock[] stripes;
+    private final long lockTimeoutMs;
+    private final int maxAttempts;
+    private final long baseBackoffMs;
+    private final long maxBackoffMs;
+
+    public AccountLockServiceImpl(
+            BankAccountRepository bankAccountRepository,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${application.accounts.concurrency-mode:PESSIMISTIC}") ConcurrencyMode mode,
+            @Value("${application.accounts.lock-stripes:1024}") int stripeCount,
+            @Value("${application.accounts.lock-timeout-ms:5000}") long lockTimeoutMs,
+            @Value("${application.accounts.optimistic.max-attempts:5}") int maxAttempts,
+            @Value("${application.accounts.optimistic.base-backoff-ms:5}") long baseBackoffMs,
+            @Value("${application.accounts.optimistic.max-backoff-ms:100}") long maxBackoffMs
+    ) {
+        this.bankAccountRepository = bankAccountRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+        this.mode = mode;
+        this.lockTimeoutMs = lockTimeoutMs;
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffMs = baseBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.stripes = new ReentrantLock[stripeCount];
+
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Bloquea las cuentas indicadas hasta el fin de la transacción actual.
+     * En modo pesimista toma primero los stripes en memoria (cuentas calientes se serializan sin ir a la BD)
+     * y luego los row locks con SELECT ... FOR UPDATE, ambos en orden ascendente.
+     * En modo optimista solo las lee; el @Version de BankAccount detecta el conflicto en el commit.
+     */
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Map<Long, BankAccount> lockAccounts(Collection<Long> accountIds) {
+        List<Long> orderedIds = accountIds.stream()
+                .distinct()
+                .sorted()
+                .toList();
+
+        List<BankAccount> accounts;
+
+        if (mode == ConcurrencyMode.OPTIMISTIC) {
+            accounts = bankAccountRepository.findAllByIdInOrderByIdAsc(orderedIds);
+        } else {
+            List<ReentrantLock> acquired = acquireStripes(orderedIds);
+            releaseAfterCompletion(acquired);
+            accounts = bankAccountRepository.findAllByIdInForUpdate(orderedIds);
+        }
+
+        Map<Long, BankAccount> lockedAccounts = new LinkedHashMap<>();
+        accounts.forEach(account -> lockedAccounts.put(account.getId(), account));
+
+        return lockedAccounts;
+    }
+
+    /**
+     * Ejecuta el posting en su propia transacción. En modo optimista lo reintenta con backoff
+     * acotado y jitter cuando otra operación modificó la misma cuenta. Si el código de referencia
+     * choca con uno aleatorio de las bases anteriores (ver IdGeneratorServiceImpl) lo repite una vez:
+     * el nuevo intento genera otro código.
+     */
+    @Override
+    public <T> T executePosting(Supplier<T> posting) {
+        meterRegistry.counter("bank.posting.executions", "mode", mode.name()).increment();
+
+        try {
+            return executeInMode(posting);
+
+        } catch (DataIntegrityViolationException e) {
+            if (!isReferenceCodeCollision(e)) {
+                throw e;
+            }
+            meterRegistry.counter("bank.posting.reference.collisions").increment();
+            log.warn("Código de referencia duplicado, se reintenta el posting con otro código");
+            return executeInMode(posting);
+        }
+    }
+
+    // Métodos privados
+
+    private <T> T executeInMode(Supplier<T> posting) {
+        if (mode == ConcurrencyMode.PESSIMISTIC) {
+            return transactionTemplate.execute(status -> posting.get());
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> posting.get());
+
+            } catch (OptimisticLockingFailureException | OptimisticLockException e) {
+                String accountType = resolveAccountType(e);
+
+                if (attempt >= maxAttempts) {
+                    contentionCounter("bank.posting.optimistic.aborts", accountType).increment();
+                    log.warn("Posting abortado tras {} intentos por conflicto de versión ({})", attempt, accountType);
+                    throw new RuntimeException("La cuenta está siendo modificada por otra operación, intente nuevamente");
+                }
+
+                contentionCounter("bank.posting.optimistic.retries", accountType).increment();
+                backoff(attempt);
+            }
+        }
+    }
+
+    private boolean isReferenceCodeCollision(DataIntegrityViolationException e) {
+        return NestedExceptionUtils.getMostSpecificCause(e) instanceof SQLException cause
+                && UNIQUE_VIOLATION.equals(cause.getSQLState())
+                && cause.getMessage() != null
+                && cause.getMessage().contains(REFERENCE_CODE_CONSTRAINT);
+    }
+
+    private List<ReentrantLock> acquireStripes(List<Long> orderedIds) {
+        TreeSet<Integer> stripeIndexes = new TreeSet<>();
+        orderedIds.forEach(id -> stripeIndexes.add(stripeIndex(id)));
+
+        List<ReentrantLock> acquired = new ArrayList<>(stripeIndexes.size());
+
+        try {
+            for (Integer index : stripeIndexes) {
+                ReentrantLock lock = stripes[index];
+
+                if (!lock.tryLock(lockTimeoutMs, TimeUnit.MILLISECONDS)) {
+                    unlockAll(acquired);
+                    throw new RuntimeException("Cuenta ocupada, intente nuevamente en unos segundos");
+                }
+                acquired.add(lock);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            unlockAll(acquired);
+            throw new RuntimeException("Operación interrumpida mientras se esperaba la cuenta");
+        }
+
+        return acquired;
+    }
+
+    private void releaseAfterCompletion(List<ReentrantLock> acquired) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            unlockAll(acquired);
+            throw new IllegalStateException("lockAccounts requiere una transacción activa");
+        }
+
+        // Los row locks se liberan en commit/rollback; los stripes se sueltan en el mismo momento
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                unlockAll(acquired);
+            }
+        });
+    }
+
+    private int stripeIndex(Long accountId) {
+        long h = accountId * 0x9E3779B97F4A7C15L;
+        return (int) Math.floorMod(h ^ (h >>> 32), (long) stripes.length);
+    }
+
+    private void unlockAll(List<ReentrantLock> locks) {
+        for (int i = locks.size() - 1; i >= 0; i--) {
+            locks.get(i).unlock();
+        }
+    }
+
+    private String resolveAccountType(RuntimeException e) {
+        // Solo se consulta ante un conflicto, que en cuentas retail es la excepción
+        if (e instanceof ObjectOptimisticLockingFailureException ex && ex.getIdentifier() instanceof Long accountId) {
+            return bankAccountRepository.findAccountTypeNameById(accountId).orElse("UNKNOWN");
+        }
+        return "UNKNOWN";
+    }
+
+    private Counter contentionCounter(String name, String accountType) {
+        return meterRegistry.counter(name, "account_type", accountType);
+    }
+
+    private void backoff(int attempt) {
+        long ceiling = Math.min(maxBackoffMs, baseBackoffMs << Math.min(attempt, 20));
+
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Operación interrumpida mientras se reintentaba el posting");
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.bank_app.service.impl;
+
+import com.example.bank_app.dto.account.AccountRef;
+
+import java.util.Collection;
+
+/**
+ * Índice en memoria de cuentas activas por la clave numérica de {@link DepositFileReader#accountKey},
+ * con direccionamiento abierto sobre arrays primitivos: consultarlo no crea Strings ni objetos Long.
+ * Las cuentas con números no numéricos o de más de 16 dígitos no se indexan.
+ */
+final class AccountNumberIndex {
+    private static final long EMPTY = 0; // Ninguna clave válida es 0: incluye la longitud (>= 1)
+
+    private final long[] keys;
+    private final AccountRef[] values;
+    private final int mask;
+    private int size;
+
+    AccountNumberIndex(Collection<AccountRef> accounts) {
+        int capacity = Integer.highestOneBit(Math.max(16, accounts.size() * 2 - 1)) << 1;
+
+        this.keys = new long[capacity];
+        this.values = new AccountRef[capacity];
+        this.mask = capacity - 1;
+
+        accounts.forEach(this::put);
+    }
+
+    AccountRef get(long key) {
+        if (key <= 0) return null;
+
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            long current = keys[slot];
+            if (current == key) return values[slot];
+            if (current == EMPTY) return null;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Métodos privados
+
+    private void put(AccountRef account) {
+        long key = DepositFileReader.accountKey(account.accountNumber());
+        if (key <= 0) return;
+
+        int slot = slot(key);
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+
+        if (keys[slot] == EMPTY) size++;
+        keys[slot] = key;
+        values[slot] = account;
+    }
+
+    private int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
@@ -6,26 +6,25 @@ import com.example.bank_app.model.AccountType;
 import com.example.bank_app.model.BankAccount;
 import com.example.bank_app.model.Currency;
 import com.example.bank_app.model.User;
-import com.example.bank_app.repository.AccountTypeRepository;
 import com.example.bank_app.repository.BankAccountRepository;
-import com.example.bank_app.repository.CurrencyRepository;
 import com.example.bank_app.repository.UserRepository;
 import com.example.bank_app.service.AccountService;
+import com.example.bank_app.service.CatalogService;
+import com.example.bank_app.service.IdGeneratorService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
-import java.security.SecureRandom;
 
 @Service
 @RequiredArgsConstructor
 @Transactional
 public class AccountServiceImpl implements AccountService {
-    private final AccountTypeRepository accountTypeRepository;
     private final BankAccountRepository bankAccountRepository;
-    private final CurrencyRepository currencyRepository;
     private final UserRepository userRepository;
+    private final CatalogService catalogService;
+    private final IdGeneratorService idGeneratorService;
 
     @Override
     @Transactional(readOnly = true)
@@ -34,9 +33,9 @@ public class AccountServiceImpl implements AccountService {
                 .stream()
                 .map(bankAccount -> new AccountResponse(
                         bankAccount.getId(),
-                        bankAccount.getCurrency().getCode(),
+                        catalogService.getCurrency(bankAccount.getCurrency().getId()).getCode(),
                         bankAccount.getCurrentBalance(),
-                        bankAccount.getAccountType().getName(),
+                        catalogService.getAccountType(bankAccount.getAccountType().getId()).getName(),
                         bankAccount.getAccountNumber()
                 ))
                 .toList();
@@ -51,16 +50,16 @@ public class AccountServiceImpl implements AccountService {
 
     @Override
     public AccountResponse createAccount(AccountCreationRequest request, User user) {
-        Currency currency = currencyRepository.findByCode(request.currency())
+        Currency currency = catalogService.findCurrency(request.currency())
                 .orElseThrow(() -> new RuntimeException("Código de moneda no encontrada en la base de datos."));
 
-        AccountType accountType = accountTypeRepository.findByName(request.accountType())
+        AccountType accountType = catalogService.findAccountType(request.accountType())
                 .orElseThrow(() -> new RuntimeException("Tipo de cuenta no encontrada en la base de datos."));
 
         BankAccount bankAccount = BankAccount.builder()
                 .user(user)
                 .accountType(accountType)
-                .accountNumber(generateAccountNumber())
+                .accountNumber(idGeneratorService.nextAccountNumber())
                 .currency(currency)
                 .build();
 
@@ -74,24 +73,4 @@ public class AccountServiceImpl implements AccountService {
                 saved.getAccountNumber()
         );
     }
-
-    private String generateAccountNumber() {
-        String accountNumber;
-        do {
-            accountNumber = generateRandomDigits(14);
-
-        } while (bankAccountRepository.existsByAccountNumber(accountNumber));
-
-        return accountNumber;
-    }
-
-    private String generateRandomDigits(int length) {
-        SecureRandom random = new SecureRandom();
-        StringBuilder sb = new StringBuilder();
-
-        for (int i = 0; i < length; i++) {
-            sb.append(random.nextInt(10));
-        }
-        return sb.toString();
-    }
 }
@@ -1,64 +1,317 @@
 package com.example.bank_app.service.impl;
 
 import com.example.bank_app.dto.admin.AdminDashboardResponse;
+import com.example.bank_app.dto.admin.TransactionCurveResponse;
 import com.example.bank_app.model.LoginAttempt;
-import com.example.bank_app.repository.BankTransactionRepository;
+import com.example.bank_app.model.enums.CurveGranularity;
 import com.example.bank_app.repository.LoginAttemptRepository;
+import com.example.bank_app.repository.TransactionDailyRollupRepository;
 import com.example.bank_app.repository.UserRepository;
 import com.example.bank_app.service.AdminService;
-import lombok.RequiredArgsConstructor;
+import com.example.bank_app.service.RetainedUsersService;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.sql.Date;
 import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
+/**
+ * Dashboard de administración. Las consultas son independientes: se lanzan a la vez, cada una en su propia
+ * transacción de solo lectura, y la respuesta espera a la más lenta en lugar de a la suma de todas.
+ * Una consulta que falla o supera su timeout deja su sección vacía (y listada en unavailableSections)
+ * sin tumbar el resto del dashboard.
+ * <p>
+ * Delante hay una caché de una sola respuesta: fresca durante el TTL, luego se sirve vencida mientras se
+ * recalcula en segundo plano (stale-while-revalidate). Los recálculos son single-flight: las peticiones
+ * simultáneas esperan al mismo cálculo en lugar de lanzar uno cada una.
+ * <p>
+ * La curva se lee en una ventana de fechas y se reduce con LTTB a un número fijo de puntos por moneda;
+ * en ventanas largas se agrega antes por semana o mes para no traer un día por fila.
+ */
 @Service
-@RequiredArgsConstructor
+@Slf4j
 public class AdminServiceImpl implements AdminService {
-    private final BankTransactionRepository bankTransactionRepository;
+    // Cubos que se leen como máximo por punto pedido: margen para que LTTB elija los picos
+    private static final int CURVE_OVERSAMPLING = 4;
+
     private final LoginAttemptRepository loginAttemptRepository;
+    private final TransactionDailyRollupRepository transactionDailyRollupRepository;
     private final UserRepository userRepository;
+    private final RetainedUsersService retainedUsersService;
+    private final MeterRegistry meterRegistry;
+    private final TransactionTemplate readOnlyTransaction;
+    private final SimpleAsyncTaskExecutor executor;
+    private final long queryTimeoutMs;
+    private final long cacheTtlNanos;
+    private final long cacheStaleNanos;
+    private final int curveDefaultDays;
+    private final int curveDefaultPoints;
+    private final int curveMaxPoints;
+    private final SimpleAsyncTaskExecutor refreshExecutor = new SimpleAsyncTaskExecutor("dashboard-refresh-");
+
+    private volatile CachedDashboard cached;
+    // Recálculo en curso; null si no hay ninguno
+    private final AtomicReference<CompletableFuture<AdminDashboardResponse>> refreshing = new AtomicReference<>();
+
+    public AdminServiceImpl(
+            LoginAttemptRepository loginAttemptRepository,
+            TransactionDailyRollupRepository transactionDailyRollupRepository,
+            UserRepository userRepository,
+            RetainedUsersService retainedUsersService,
+            MeterRegistry meterRegistry,
+            PlatformTransactionManager transactionManager,
+            Environment environment,
+            @Value("${application.dashboard.max-concurrency:16}") int maxConcurrency,
+            @Value("${application.dashboard.query-timeout-ms:2000}") long queryTimeoutMs,
+            @Value("${application.dashboard.cache-ttl-ms:5000}") long cacheTtlMs,
+            @Value("${application.dashboard.cache-stale-ms:30000}") long cacheStaleMs,
+            @Value("${application.dashboard.curve.default-days:365}") int curveDefaultDays,
+            @Value("${application.dashboard.curve.default-points:120}") int curveDefaultPoints,
+            @Value("${application.dashboard.curve.max-points:1000}") int curveMaxPoints
+    ) {
+        this.loginAttemptRepository = loginAttemptRepository;
+        this.transactionDailyRollupRepository = transactionDailyRollupRepository;
+        this.userRepository = userRepository;
+        this.retainedUsersService = retainedUsersService;
+        this.meterRegistry = meterRegistry;
+        this.queryTimeoutMs = queryTimeoutMs;
+        this.cacheTtlNanos = TimeUnit.MILLISECONDS.toNanos(cacheTtlMs);
+        this.cacheStaleNanos = TimeUnit.MILLISECONDS.toNanos(cacheStaleMs);
+        this.curveDefaultDays = curveDefaultDays;
+        this.curveDefaultPoints = curveDefaultPoints;
+        this.curveMaxPoints = curveMaxPoints;
+
+        // El timeout de la transacción (en segundos) cancela la sentencia en la BD; el de la espera corta antes
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.readOnlyTransaction.setTimeout((int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(queryTimeoutMs + 999)));
+
+        // Hilos virtuales con Java 21+ y spring.threads.virtual.enabled; el límite acota las consultas simultáneas
+        this.executor = new SimpleAsyncTaskExecutor("dashboard-");
+        this.executor.setVirtualThreads(Threading.VIRTUAL.isActive(environment));
+        this.executor.setConcurrencyLimit(maxConcurrency);
+    }
 
     @Override
     public AdminDashboardResponse getDashboard() {
-        Long retainedUsers = bankTransactionRepository.getRetainedUsers();
-        Long totalBlocked = loginAttemptRepository.countByIsBlockedTrue();
-        Long totalUsers = userRepository.countByRole_Name("CLIENT");
+        if (cacheTtlNanos <= 0) return loadDashboard();
+
+        CachedDashboard snapshot = cached;
+        long now = System.nanoTime();
+
+        if (snapshot != null && now - snapshot.freshUntil() < 0) {
+            countCache("hit");
+            return snapshot.response();
+        }
+        if (snapshot != null && now - snapshot.staleUntil() < 0) {
+            countCache("stale");
+            refresh(true);
+            return snapshot.response();
+        }
+
+        countCache("miss");
+        try {
+            return refresh(false).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+    }
+
+    @Override
+    public AdminDashboardResponse getFreshDashboard() {
+        AdminDashboardResponse response = loadDashboard();
+        if (cacheTtlNanos > 0) {
+            store(response);
+        }
+        return response;
+    }
+
+    @Override
+    public TransactionCurveResponse getTransactionCurve(LocalDate from, LocalDate to, Integer points) {
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from : end.minusDays(curveDefaultDays - 1L);
+        int target = points != null ? points : curveDefaultPoints;
+
+        if (start.isAfter(end)) {
+            throw new RuntimeException("Rango de fechas inválido");
+        }
+        if (target < 3 || target > curveMaxPoints) {
+            throw new RuntimeException("La curva admite entre 3 y " + curveMaxPoints + " puntos");
+        }
+
+        return readOnlyTransaction.execute(status -> loadCurve(start, end, target));
+    }
+
+    // Métodos privados
+
+    // Single-flight: solo el primero que encuentra el hueco libre recalcula; el resto recibe su mismo futuro
+    private CompletableFuture<AdminDashboardResponse> refresh(boolean background) {
+        while (true) {
+            CompletableFuture<AdminDashboardResponse> current = refreshing.get();
+            if (current != null) return current;
+
+            CompletableFuture<AdminDashboardResponse> mine = new CompletableFuture<>();
+            if (refreshing.compareAndSet(null, mine)) {
+                if (background) {
+                    refreshExecutor.execute(() -> recompute(mine));
+                } else {
+                    recompute(mine);
+                }
+                return mine;
+            }
+        }
+    }
+
+    private void recompute(CompletableFuture<AdminDashboardResponse> future) {
+        try {
+            AdminDashboardResponse response = loadDashboard();
+            store(response);
+
+            meterRegistry.counter("bank.dashboard.cache.refresh", "outcome", "success").increment();
+            future.complete(response);
+        } catch (RuntimeException e) {
+            meterRegistry.counter("bank.dashboard.cache.refresh", "outcome", "error").increment();
+            log.warn("Recálculo del dashboard fallido: {}", e.getMessage());
+            future.completeExceptionally(e);
+        } finally {
+            refreshing.set(null);
+        }
+    }
+
+    // Una respuesta degradada se sirve pero nace vencida: la siguiente petición ya la revalida
+    private void store(AdminDashboardResponse response) {
+        long now = System.nanoTime();
+        long freshUntil = response.unavailableSections().isEmpty() ? now + cacheTtlNanos : now;
+        cached = new CachedDashboard(response, freshUntil, freshUntil + cacheStaleNanos);
+    }
+
+    private void countCache(String result) {
+        meterRegistry.counter("bank.dashboard.cache", "result", result).increment();
+    }
+
+    private AdminDashboardResponse loadDashboard() {
+        Set<String> unavailable = new ConcurrentSkipListSet<>();
+
+        CompletableFuture<Long> totalBlocked = query("blocked-count", unavailable, null,
+                loginAttemptRepository::countByIsBlockedTrue);
+        CompletableFuture<Long> totalUsers = query("user-count", unavailable, null,
+                () -> userRepository.countByRole_Name("CLIENT"));
+        CompletableFuture<List<AdminDashboardResponse.BlockedUserSummary>> blockedUsers = query("last-blocked", unavailable,
+                List.of(), this::findLastBlockedUsers);
+        CompletableFuture<Map<String, List<AdminDashboardResponse.ChartDataPoint>>> curveMap = query("curve", unavailable,
+                Map.of(), this::loadDefaultCurve);
+
+        // Estimación en memoria (HyperLogLog): no recorre usuarios ni movimientos
+        long retainedUsers = retainedUsersService.estimate();
+
+        CompletableFuture.allOf(totalBlocked, totalUsers, blockedUsers, curveMap).join();
 
+        return new AdminDashboardResponse(
+                retainedUsers,
+                totalUsers.join(),
+                totalBlocked.join(),
+                blockedUsers.join(),
+                curveMap.join(),
+                List.copyOf(new TreeSet<>(unavailable))
+        );
+    }
+
+    private List<AdminDashboardResponse.BlockedUserSummary> findLastBlockedUsers() {
         List<LoginAttempt> blockedAttempts = loginAttemptRepository.findLastBlockedUsers(PageRequest.of(0, 3));
-        List<AdminDashboardResponse.BlockedUserSummary> blockedUsers = blockedAttempts.stream()
+        return blockedAttempts.stream()
                 .map(loginAttempt -> new AdminDashboardResponse.BlockedUserSummary(
                         loginAttempt.getUser().getName() + " " + loginAttempt.getUser().getLastName1(),
                         loginAttempt.getUser().getDocumentId(),
                         loginAttempt.getLastAttempt()
                 ))
                 .toList();
+    }
+
+    private Map<String, List<AdminDashboardResponse.ChartDataPoint>> loadDefaultCurve() {
+        LocalDate today = LocalDate.now();
+        return loadCurve(today.minusDays(curveDefaultDays - 1L), today, curveDefaultPoints).series();
+    }
 
-        List<Object[]> rawData = bankTransactionRepository.getTransactionCurveDataGroupedByCurrency();
+    private TransactionCurveResponse loadCurve(LocalDate from, LocalDate to, int points) {
+        CurveGranularity granularity = granularityFor(ChronoUnit.DAYS.between(from, to) + 1, points);
 
-        Map<String, List<AdminDashboardResponse.ChartDataPoint>> curveMap = rawData.stream()
-                .collect(Collectors.groupingBy(
-                        row -> (String) row[1],
-                        Collectors.mapping(
-                                row -> new AdminDashboardResponse.ChartDataPoint(
-                                        (LocalDate) row[0],
-                                        (BigDecimal) row[2]
-                                ),
-                                Collectors.toList()
-                        )
-                ));
+        // Curva desde el agregado diario (TransactionRollupServiceImpl), no desde bank_transaction
+        List<Object[]> rawData = granularity == CurveGranularity.DAY
+                ? transactionDailyRollupRepository.getCurveGroupedByCurrency(from, to)
+                : transactionDailyRollupRepository.getCurveBucketedByCurrency(
+                        granularity.name().toLowerCase(Locale.ROOT), from, to);
 
-        return new AdminDashboardResponse(
-                retainedUsers != null ? retainedUsers : 0L,
-                totalUsers,
-                totalBlocked,
-                blockedUsers,
-                curveMap
-        );
+        Map<String, List<AdminDashboardResponse.ChartDataPoint>> series = new TreeMap<>();
+        for (Object[] row : rawData) {
+            LocalDate bucket = row[0] instanceof Date date ? date.toLocalDate() : (LocalDate) row[0];
+            // El primer cubo de semana/mes puede empezar antes de la ventana
+            series.computeIfAbsent((String) row[1], currency -> new ArrayList<>())
+                    .add(new AdminDashboardResponse.ChartDataPoint(bucket.isBefore(from) ? from : bucket, (BigDecimal) row[2]));
+        }
+        series.replaceAll((currency, curve) -> CurveDownsampler.lttb(curve, points));
+
+        return new TransactionCurveResponse(from, to, granularity, series);
     }
+
+    // El cubo más fino que no trae más de CURVE_OVERSAMPLING filas por punto pedido y moneda
+    private static CurveGranularity granularityFor(long days, int points) {
+        long maxBuckets = (long) points * CURVE_OVERSAMPLING;
+        if (days <= maxBuckets) return CurveGranularity.DAY;
+        if (days / 7 <= maxBuckets) return CurveGranularity.WEEK;
+        return CurveGranularity.MONTH;
+    }
+
+    // Nunca completa con error: ante fallo o timeout devuelve el valor por defecto y anota la sección
+    private <T> CompletableFuture<T> query(String name, Set<String> unavailable, T fallback, Supplier<T> query) {
+        long start = System.nanoTime();
+
+        return CompletableFuture
+                .supplyAsync(() -> readOnlyTransaction.execute(status -> query.get()), executor)
+                .orTimeout(queryTimeoutMs, TimeUnit.MILLISECONDS)
+                .handle((value, error) -> {
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                    String outcome = cause == null ? "success" : cause instanceof TimeoutException ? "timeout" : "error";
+
+                    meterRegistry.timer("bank.dashboard.query", "query", name, "outcome", outcome)
+                            .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+                    if (cause == null) return value;
+
+                    log.warn("Sección {} del dashboard no disponible ({}): {}", name, outcome, cause.getMessage());
+                    unavailable.add(name);
+                    return fallback;
+                });
+    }
+
+    // Instantes en System.nanoTime()
+    private record CachedDashboard(
+            AdminDashboardResponse response,
+            long freshUntil,
+            long staleUntil
+    ) {}
 }
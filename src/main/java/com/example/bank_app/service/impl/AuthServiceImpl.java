@@ -7,10 +7,11 @@ import com.example.bank_app.dto.auth.LoginRequest;
 import com.example.bank_app.dto.auth.RegisterRequest;
 import com.example.bank_app.model.Role;
 import com.example.bank_app.model.User;
-import com.example.bank_app.repository.RoleRepository;
+import com.example.bank_app.model.enums.RoleCode;
 import com.example.bank_app.repository.UserRepository;
 import com.example.bank_app.service.AccountService;
 import com.example.bank_app.service.AuthService;
+import com.example.bank_app.service.CatalogService;
 import com.example.bank_app.service.LoginAttemptService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -27,7 +28,7 @@ import org.springframework.transaction.annotation.Transactional;
 public class AuthServiceImpl implements AuthService {
 
     private final UserRepository userRepository;
-    private final RoleRepository roleRepository;
+    private final CatalogService catalogService;
     private final AccountService accountService;
     private final PasswordEncoder passwordEncoder;
     private final JwtService jwtService;
@@ -72,8 +73,7 @@ public class AuthServiceImpl implements AuthService {
             throw new RuntimeException("El DNI ya está registrado");
         }
 
-        Role defaultRole = roleRepository.findByName("CLIENT")
-                .orElseThrow(() -> new RuntimeException("Error: Rol por defecto no encontrado en BD"));
+        Role defaultRole = catalogService.getRole(RoleCode.CLIENT);
 
         User user = User.builder()
                 .name(request.name())
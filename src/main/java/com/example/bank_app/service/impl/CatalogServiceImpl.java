@@ -0,0 +1,163 @@
+package com.example.bank_app.service.impl;
+
+import com.example.bank_app.model.*;
+import com.example.bank_app.model.enums.RoleCode;
+import com.example.bank_app.model.enums.TransactionStatusCode;
+import com.example.bank_app.model.enums.TransactionTypeCode;
+import com.example.bank_app.repository.*;
+import com.example.bank_app.service.CatalogService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Catálogos (tipos y estados de transacción, monedas, tipos de cuenta y roles) en memoria.
+ * Se cargan una vez al arrancar y se publican como un snapshot inmutable; un reload
+ * reemplaza el snapshot completo sin bloquear a los lectores.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CatalogServiceImpl implements CatalogService {
+    private static final Pattern CURRENCY_CODE = Pattern.compile("^[A-Z]{3}$");
+
+    private final TransactionTypeRepository transactionTypeRepository;
+    private final TransactionStatusRepository transactionStatusRepository;
+    private final CurrencyRepository currencyRepository;
+    private final AccountTypeRepository accountTypeRepository;
+    private final RoleRepository roleRepository;
+
+    // Intervalo mínimo entre recargas provocadas por una búsqueda fallida
+    @Value("${application.catalog.miss-reload-interval-ms:1000}")
+    private long missReloadIntervalMs;
+
+    private volatile Catalog catalog = Catalog.EMPTY;
+    private final AtomicLong lastReloadMillis = new AtomicLong(0);
+
+    // Antes que otros listeners de arranque que dependen de los catálogos (p. ej. tipos de cambio)
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void loadOnStartup() {
+        reload();
+    }
+
+    @Override
+    public TransactionType getTransactionType(TransactionTypeCode code) {
+        return lookup(Catalog::transactionTypes, code.name())
+                .orElseThrow(() -> new RuntimeException("Tipo de transacción no existente"));
+    }
+
+    @Override
+    public TransactionStatus getTransactionStatus(TransactionStatusCode code) {
+        return lookup(Catalog::transactionStatuses, code.name())
+                .orElseThrow(() -> new RuntimeException("Estado de transacción no encontrado"));
+    }
+
+    @Override
+    public Role getRole(RoleCode code) {
+        return lookup(Catalog::roles, code.name())
+                .orElseThrow(() -> new RuntimeException("Error: Rol " + code + " no encontrado en BD"));
+    }
+
+    @Override
+    public Optional<Currency> findCurrency(String code) {
+        // Un código que no es ISO 4217 no puede estar en BD: no gasta la recarga por búsqueda fallida
+        if (code == null || !CURRENCY_CODE.matcher(code).matches()) {
+            return Optional.empty();
+        }
+        return lookup(Catalog::currenciesByCode, code);
+    }
+
+    @Override
+    public Currency getCurrency(Integer id) {
+        return lookup(Catalog::currenciesById, id)
+                .orElseThrow(() -> new RuntimeException("Tipo de moneda no soportada"));
+    }
+
+    @Override
+    public Collection<Currency> getCurrencies() {
+        return catalog.currenciesByCode().values();
+    }
+
+    @Override
+    public Optional<AccountType> findAccountType(String name) {
+        return lookup(Catalog::accountTypesByName, name);
+    }
+
+    @Override
+    public AccountType getAccountType(Integer id) {
+        return lookup(Catalog::accountTypesById, id)
+                .orElseThrow(() -> new RuntimeException("Tipo de cuenta no encontrada en la base de datos."));
+    }
+
+    @Override
+    public void reload() {
+        List<Currency> currencies = currencyRepository.findAll();
+        List<AccountType> accountTypes = accountTypeRepository.findAll();
+
+        catalog = new Catalog(
+                index(transactionTypeRepository.findAll(), TransactionType::getName),
+                index(transactionStatusRepository.findAll(), TransactionStatus::getName),
+                index(currencies, Currency::getCode),
+                index(currencies, Currency::getId),
+                index(accountTypes, AccountType::getName),
+                index(accountTypes, AccountType::getId),
+                index(roleRepository.findAll(), Role::getName)
+        );
+        lastReloadMillis.set(System.currentTimeMillis());
+
+        log.info("Catálogos cargados: {} monedas, {} tipos de transacción, {} tipos de cuenta",
+                currencies.size(), catalog.transactionTypes().size(), accountTypes.size());
+    }
+
+    // Métodos privados
+
+    private <K, T> Optional<T> lookup(Function<Catalog, Map<K, T>> table, K key) {
+        T value = table.apply(catalog).get(key);
+
+        // Un valor nuevo en BD (o un arranque sin datos) se resuelve con una recarga acotada
+        if (value == null && tryAcquireMissReload()) {
+            reload();
+            value = table.apply(catalog).get(key);
+        }
+
+        return Optional.ofNullable(value);
+    }
+
+    private boolean tryAcquireMissReload() {
+        long now = System.currentTimeMillis();
+        long last = lastReloadMillis.get();
+
+        return now - last >= missReloadIntervalMs && lastReloadMillis.compareAndSet(last, now);
+    }
+
+    private static <K, T> Map<K, T> index(List<T> rows, Function<T, K> key) {
+        return rows.stream().collect(Collectors.toUnmodifiableMap(key, Function.identity()));
+    }
+
+    private record Catalog(
+            Map<String, TransactionType> transactionTypes,
+            Map<String, TransactionStatus> transactionStatuses,
+            Map<String, Currency> currenciesByCode,
+            Map<Integer, Currency> currenciesById,
+            Map<String, AccountType> accountTypesByName,
+            Map<Integer, AccountType> accountTypesById,
+            Map<String, Role> roles
+    ) {
+        private static final Catalog EMPTY = new Catalog(Map.of(), Map.of(), Map.of(), Map.of(), Map.of(), Map.of(), Map.of());
+    }
+}
@@ -0,0 +1,220 @@
+package com.example.bank_app.service.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Archivo columnar comprimido del archivo frío de movimientos.
+ * <p>
+ * Cabecera: {@code "BKAR"}, versión, columnas (nombre y tipo). Cuerpo: grupos de filas, cada uno con su
+ * número de filas y un bloque Deflate por columna precedido de su longitud; un grupo de 0 filas cierra el archivo.
+ * Cada columna se comprime por separado, así el lector solo descomprime las columnas que necesita
+ * (p. ej. account_id para descartar el grupo) y salta las demás sin tocarlas.
+ */
+final class ColumnarArchiveFile {
+    private static final int MAGIC = 0x424B4152; // "BKAR"
+    private static final int VERSION = 1;
+
+    private ColumnarArchiveFile() {
+    }
+
+    enum ColumnType {
+        LONG, STRING, DECIMAL, TIMESTAMP;
+
+        static ColumnType fromSqlType(int sqlType) {
+            return switch (sqlType) {
+                case Types.BIGINT, Types.INTEGER, Types.SMALLINT, Types.TINYINT -> LONG;
+                case Types.NUMERIC, Types.DECIMAL -> DECIMAL;
+                case Types.TIMESTAMP -> TIMESTAMP;
+                default -> STRING;
+            };
+        }
+    }
+
+    record Column(String name, ColumnType type) {
+    }
+
+    /**
+     * Escribe filas (un valor por columna, en el orden de la cabecera); guarda en memoria solo el grupo en curso.
+     */
+    static final class Writer implements AutoCloseable {
+        private final DataOutputStream out;
+        private final List<Column> columns;
+        private final int rowGroupSize;
+        private final List<Object[]> group = new ArrayList<>();
+
+        Writer(Path file, List<Column> columns, int rowGroupSize) throws IOException {
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+            this.columns = List.copyOf(columns);
+            this.rowGroupSize = rowGroupSize;
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(columns.size());
+            for (Column column : columns) {
+                out.writeUTF(column.name());
+                out.writeByte(column.type().ordinal());
+            }
+        }
+
+        void write(Object[] row) throws IOException {
+            group.add(row);
+            if (group.size() >= rowGroupSize) {
+                flushGroup();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flushGroup();
+                out.writeInt(0);
+            } finally {
+                out.close();
+            }
+        }
+
+        private void flushGroup() throws IOException {
+            if (group.isEmpty()) return;
+
+            out.writeInt(group.size());
+            for (int c = 0; c < columns.size(); c++) {
+                ByteArrayOutputStream block = new ByteArrayOutputStream();
+                try (DataOutputStream column = new DataOutputStream(new DeflaterOutputStream(block))) {
+                    for (Object[] row : group) {
+                        writeValue(column, columns.get(c).type(), row[c]);
+                    }
+                }
+                out.writeInt(block.size());
+                block.writeTo(out);
+            }
+            group.clear();
+        }
+
+        private static void writeValue(DataOutputStream out, ColumnType type, Object value) throws IOException {
+            out.writeBoolean(value != null);
+            if (value == null) return;
+
+            switch (type) {
+                case LONG -> out.writeLong(((Number) value).longValue());
+                case STRING -> out.writeUTF(value.toString());
+                case DECIMAL -> {
+                    BigDecimal decimal = (BigDecimal) value;
+                    byte[] unscaled = decimal.unscaledValue().toByteArray();
+                    out.writeByte(decimal.scale());
+                    out.writeByte(unscaled.length);
+                    out.write(unscaled);
+                }
+                case TIMESTAMP -> {
+                    LocalDateTime dateTime = (LocalDateTime) value;
+                    out.writeLong(dateTime.toEpochSecond(ZoneOffset.UTC));
+                    out.writeInt(dateTime.getNano());
+                }
+            }
+        }
+    }
+
+    /**
+     * Lee grupo a grupo; las columnas de cada grupo se descomprimen solo cuando se piden.
+     */
+    static final class Reader implements AutoCloseable {
+        private final DataInputStream in;
+        private final List<Column> columns;
+        private byte[][] blocks;
+        private int groupRows;
+
+        Reader(Path file) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)));
+
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                in.close();
+                throw new IOException("Archivo de archivo frío no reconocido: " + file.getFileName());
+            }
+
+            int count = in.readInt();
+            List<Column> read = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                read.add(new Column(in.readUTF(), ColumnType.values()[in.readByte()]));
+            }
+            this.columns = List.copyOf(read);
+        }
+
+        List<Column> columns() {
+            return columns;
+        }
+
+        int indexOf(String name) {
+            for (int i = 0; i < columns.size(); i++) {
+                if (columns.get(i).name().equals(name)) return i;
+            }
+            throw new IllegalArgumentException("Columna inexistente en el archivo: " + name);
+        }
+
+        /**
+         * Avanza al siguiente grupo; devuelve sus filas o 0 al final del archivo.
+         */
+        int nextGroup() throws IOException {
+            groupRows = in.readInt();
+            if (groupRows == 0) return 0;
+
+            blocks = new byte[columns.size()][];
+            for (int c = 0; c < columns.size(); c++) {
+                blocks[c] = new byte[in.readInt()];
+                in.readFully(blocks[c]);
+            }
+            return groupRows;
+        }
+
+        Object[] column(int index) throws IOException {
+            ColumnType type = columns.get(index).type();
+            Object[] values = new Object[groupRows];
+
+            try (DataInputStream column = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(blocks[index])))) {
+                for (int r = 0; r < groupRows; r++) {
+                    values[r] = readValue(column, type);
+                }
+            } catch (EOFException e) {
+                throw new IOException("Bloque de columna truncado: " + columns.get(index).name(), e);
+            }
+            return values;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        private static Object readValue(DataInputStream in, ColumnType type) throws IOException {
+            if (!in.readBoolean()) return null;
+
+            return switch (type) {
+                case LONG -> in.readLong();
+                case STRING -> in.readUTF();
+                case DECIMAL -> {
+                    int scale = in.readByte();
+                    byte[] unscaled = new byte[in.readUnsignedByte()];
+                    in.readFully(unscaled);
+                    yield new BigDecimal(new BigInteger(unscaled), scale);
+                }
+                case TIMESTAMP -> LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+            };
+        }
+    }
+}
@@ -1,77 +1,232 @@
 package com.example.bank_app.service.impl;
 
 import com.example.bank_app.dto.external.ExchangeRateResponse;
+import com.example.bank_app.model.Currency;
+import com.example.bank_app.model.ExchangeRateSnapshot;
+import com.example.bank_app.repository.ExchangeRateSnapshotRepository;
+import com.example.bank_app.service.CatalogService;
 import com.example.bank_app.service.CurrencyExchangeService;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
 
+/**
+ * Tipos de cambio servidos desde una tabla en memoria (base USD) que se refresca en segundo plano
+ * antes de vencer. convert() nunca consulta la API: solo lee el snapshot publicado.
+ * Cada juego de tasas obtenido se persiste; si la API falla se usa el último snapshot guardado
+ * mientras no supere max-stale-ms.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class CurrencyExchangeServiceImpl implements CurrencyExchangeService {
+    private static final String BASE_CURRENCY = "USD";
+    private static final int RATE_SCALE = 18;
+    private static final String EXCHANGE_API = "exchangeRates";
 
     private final WebClient webClient;
+    private final CatalogService catalogService;
+    private final ExchangeRateSnapshotRepository exchangeRateSnapshotRepository;
+    private final MeterRegistry meterRegistry;
+    private final CircuitBreakerRegistry circuitBreakerRegistry;
+    private final BulkheadRegistry bulkheadRegistry;
+
     @Value("${openexchangerates.api.key}")
     private String apiKey;
 
+    // Edad a partir de la cual el snapshot se refresca (refresh-ahead)
+    @Value("${application.exchange.refresh-after-ms:600000}")
+    private long refreshAfterMs;
+
+    // Edad hasta la que el snapshot se considera fresco
+    @Value("${application.exchange.ttl-ms:900000}")
+    private long ttlMs;
+
+    // Edad máxima con la que un snapshot vencido aún puede usarse para convertir
+    @Value("${application.exchange.max-stale-ms:86400000}")
+    private long maxStaleMs;
+
+    private final AtomicReference<RateTable> rateTable = new AtomicReference<>();
+    private final ReentrantLock refreshLock = new ReentrantLock();
+
+    @PostConstruct
+    void registerMetrics() {
+        Gauge.builder("bank.fx.rates.age", this, service -> service.currentAgeMillis() / 1000.0)
+                .description("Antigüedad del snapshot de tipos de cambio")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        // El último snapshot guardado permite convertir aunque la API no responda al arrancar
+        loadLatestSnapshotQuietly();
+        refreshQuietly();
+    }
+
+    @Scheduled(
+            initialDelayString = "${application.exchange.check-interval-ms:30000}",
+            fixedDelayString = "${application.exchange.check-interval-ms:30000}"
+    )
+    public void refreshIfDue() {
+        if (currentAgeMillis() >= refreshAfterMs) {
+            refreshQuietly();
+        }
+    }
+
     @Override
     public BigDecimal convert(BigDecimal amount, String fromCurrency, String toCurrency) {
+        return quote(fromCurrency, toCurrency).apply(amount);
+    }
+
+    @Override
+    public ExchangeQuote quote(String fromCurrency, String toCurrency) {
         if (fromCurrency.equals(toCurrency)) {
-            return amount;
+            return ExchangeQuote.IDENTITY;
+        }
+
+        RateTable table = rateTable.get();
+        long age = table == null ? Long.MAX_VALUE : ageMillis(table);
+
+        if (age > maxStaleMs) {
+            throw new RuntimeException("Error obteniendo el tipo de cambio de " + fromCurrency + " a " + toCurrency);
+        }
+
+        Map<String, BigDecimal> fromRates = table.crossRates().get(fromCurrency);
+        if (fromRates == null) throw new RuntimeException("Tasa no encontrada para: " + fromCurrency);
+
+        BigDecimal rate = fromRates.get(toCurrency);
+        if (rate == null) throw new RuntimeException("Tasa no encontrada para: " + toCurrency);
+
+        if (age > ttlMs) {
+            meterRegistry.counter("bank.fx.stale.quotes").increment();
+        }
+
+        return new ExchangeQuote(rate, table.snapshotId());
+    }
+
+    @Override
+    public void refreshRates() {
+        // Un solo refresco a la vez; si ya hay uno en curso, su resultado sirve a todos
+        if (!refreshLock.tryLock()) {
+            return;
         }
 
-        Map<String, BigDecimal> rates;
+        try {
+            String symbols = catalogService.getCurrencies().stream()
+                    .map(Currency::getCode)
+                    .filter(code -> !code.equals(BASE_CURRENCY))
+                    .sorted()
+                    .collect(Collectors.joining(","));
+
+            if (symbols.isEmpty()) {
+                log.warn("Sin monedas en catálogo, se omite la carga de tipos de cambio");
+                return;
+            }
 
-        if (fromCurrency.equals("USD")) {
-            rates = getExchangeRateFromApi(fromCurrency, toCurrency);
+            Map<String, BigDecimal> usdRates = getExchangeRateFromApi(BASE_CURRENCY, symbols);
 
-            if (!rates.containsKey(toCurrency)) throw new RuntimeException("Tasa no encontrada para: " + toCurrency);
+            ExchangeRateSnapshot snapshot = exchangeRateSnapshotRepository.save(ExchangeRateSnapshot.builder()
+                    .baseCurrency(BASE_CURRENCY)
+                    .fetchedAt(LocalDateTime.now())
+                    .rates(new HashMap<>(usdRates))
+                    .build());
 
-            return amount.multiply(rates.get(toCurrency)).setScale(4, RoundingMode.HALF_UP);
+            rateTable.set(RateTable.of(snapshot.getId(), usdRates, System.currentTimeMillis()));
+
+            log.info("Tipos de cambio actualizados: {} monedas (snapshot {})", usdRates.size(), snapshot.getId());
+        } finally {
+            refreshLock.unlock();
         }
+    }
 
-        if (toCurrency.equals("USD")) {
-            rates = getExchangeRateFromApi(toCurrency, fromCurrency);
+    // Métodos privados
 
-            if (!rates.containsKey(fromCurrency)) throw new RuntimeException("Tasa no encontrada para: " + fromCurrency);
+    private void refreshQuietly() {
+        try {
+            refreshRates();
+        } catch (RuntimeException e) {
+            meterRegistry.counter("bank.fx.refresh.failures").increment();
+            log.warn("No se pudo refrescar los tipos de cambio: {}", e.getMessage());
 
-            return amount.divide(rates.get(fromCurrency), 4, RoundingMode.HALF_UP);
+            // Otra instancia pudo haber guardado un snapshot más reciente
+            loadLatestSnapshotQuietly();
         }
+    }
 
-        rates = getExchangeRateFromApi("USD", fromCurrency, toCurrency);
+    private void loadLatestSnapshotQuietly() {
+        try {
+            exchangeRateSnapshotRepository.findFirstByOrderByFetchedAtDesc().ifPresent(snapshot -> {
+                long fetchedAtMillis = toEpochMillis(snapshot.getFetchedAt());
 
-        if (!rates.containsKey(fromCurrency) || !rates.containsKey(toCurrency)) {
-            throw new RuntimeException("Faltan tasas para realizar la conversión cruzada.");
+                rateTable.updateAndGet(current -> current == null || current.fetchedAtMillis() < fetchedAtMillis
+                        ? RateTable.of(snapshot.getId(), snapshot.getRates(), fetchedAtMillis)
+                        : current);
+            });
+        } catch (RuntimeException e) {
+            log.warn("No se pudo leer el último snapshot de tipos de cambio: {}", e.getMessage());
         }
+    }
 
-        return amount.multiply(rates.get(toCurrency)).divide(rates.get(fromCurrency), 4, RoundingMode.HALF_UP);
+    private long currentAgeMillis() {
+        RateTable table = rateTable.get();
+        return table == null ? Long.MAX_VALUE : ageMillis(table);
     }
 
-    private Map<String, BigDecimal> getExchangeRateFromApi(String base, String symbol1, String symbol2) {
-        return getExchangeRateFromApi(base, symbol1 + "," + symbol2);
+    private static long ageMillis(RateTable table) {
+        return System.currentTimeMillis() - table.fetchedAtMillis();
+    }
+
+    private static long toEpochMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
     }
 
     private Map<String, BigDecimal> getExchangeRateFromApi(String from, String to) {
         log.info("Consultando WebClient: {} -> {}", from, to);
 
-        ExchangeRateResponse response = webClient.get()
-                .uri(uriBuilder -> uriBuilder
-                        .path("/latest.json")
-                        .queryParam("app_id", apiKey)
-                        .queryParam("base", from)
-                        .queryParam("symbols", to)
-                        .build())
-                .retrieve()
-                .bodyToMono(ExchangeRateResponse.class)
-                .block();
+        CircuitBreaker circuitBreaker = circuitBreakerRegistry.circuitBreaker(EXCHANGE_API);
+        Bulkhead bulkhead = bulkheadRegistry.bulkhead(EXCHANGE_API);
+        ExchangeRateResponse response;
 
+        try {
+            // El bulkhead va por fuera: un rechazo por saturación no cuenta como fallo del proveedor
+            response = bulkhead.executeSupplier(circuitBreaker.decorateSupplier(() -> webClient.get()
+                    .uri(uriBuilder -> uriBuilder
+                            .path("/latest.json")
+                            .queryParam("app_id", apiKey)
+                            .queryParam("base", from)
+                            .queryParam("symbols", to)
+                            .build())
+                    .retrieve()
+                    .bodyToMono(ExchangeRateResponse.class)
+                    .block()));
+        } catch (CallNotPermittedException | BulkheadFullException e) {
+            throw new RuntimeException("Servicio de tipo de cambio no disponible: " + e.getMessage(), e);
+        }
 
         if (response != null && response.rates() != null && !response.rates().isEmpty()) {
             return response.rates();
@@ -79,4 +234,32 @@ public class CurrencyExchangeServiceImpl implements CurrencyExchangeService {
 
         throw new RuntimeException("Error obteniendo el tipo de cambio de " + from + " a " + to);
     }
-}
\ No newline at end of file
+
+    /**
+     * Snapshot inmutable: tasas contra USD y la matriz de tasas cruzadas (from -> to) ya calculada,
+     * de modo que una conversión es un lookup y una multiplicación.
+     */
+    private record RateTable(
+            Long snapshotId,
+            Map<String, Map<String, BigDecimal>> crossRates,
+            long fetchedAtMillis
+    ) {
+        private static RateTable of(Long snapshotId, Map<String, BigDecimal> apiRates, long fetchedAtMillis) {
+            Map<String, BigDecimal> usdRates = new HashMap<>();
+            apiRates.forEach((code, rate) -> {
+                if (rate != null && rate.signum() > 0) usdRates.put(code, rate);
+            });
+            usdRates.put(BASE_CURRENCY, BigDecimal.ONE);
+
+            // Escala fija: la tasa guardada en la transacción es exactamente la que se aplicó
+            Map<String, Map<String, BigDecimal>> crossRates = new HashMap<>();
+            usdRates.forEach((from, fromRate) -> {
+                Map<String, BigDecimal> row = new HashMap<>();
+                usdRates.forEach((to, toRate) -> row.put(to, toRate.divide(fromRate, RATE_SCALE, RoundingMode.HALF_UP)));
+                crossRates.put(from, Map.copyOf(row));
+            });
+
+            return new RateTable(snapshotId, Map.copyOf(crossRates), fetchedAtMillis);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.bank_app.service.impl;
+
+import com.example.bank_app.dto.admin.AdminDashboardResponse.ChartDataPoint;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reducción de series para gráficos con LTTB (Largest-Triangle-Three-Buckets, Steinarsson 2013).
+ * <p>
+ * Conserva el primer y el último punto y reparte el resto en {@code threshold - 2} cubos; de cada cubo elige
+ * el punto que forma el triángulo de mayor área con el último elegido y el promedio del cubo siguiente.
+ * Así sobreviven los picos y valles que un promedio aplanaría. Una pasada, O(n).
+ */
+final class CurveDownsampler {
+    private CurveDownsampler() {}
+
+    static List<ChartDataPoint> lttb(List<ChartDataPoint> points, int threshold) {
+        int size = points.size();
+        if (threshold < 3 || size <= threshold) return points;
+
+        double[] x = new double[size];
+        double[] y = new double[size];
+        for (int i = 0; i < size; i++) {
+            x[i] = points.get(i).date().toEpochDay();
+            y[i] = points.get(i).amount().doubleValue();
+        }
+
+        List<ChartDataPoint> sampled = new ArrayList<>(threshold);
+        sampled.add(points.get(0));
+
+        double bucketSize = (double) (size - 2) / (threshold - 2);
+        int previous = 0;
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            // Tercer vértice: promedio del cubo siguiente (en el último cubo, el punto final)
+            int nextStart = (int) ((bucket + 1) * bucketSize) + 1;
+            int nextEnd = Math.min((int) ((bucket + 2) * bucketSize) + 1, size);
+            double avgX = 0;
+            double avgY = 0;
+            for (int i = nextStart; i < nextEnd; i++) {
+                avgX += x[i];
+                avgY += y[i];
+            }
+            avgX /= nextEnd - nextStart;
+            avgY /= nextEnd - nextStart;
+
+            int start = (int) (bucket * bucketSize) + 1;
+            int end = nextStart;
+            int chosen = start;
+            double maxArea = -1;
+            for (int i = start; i < end; i++) {
+                // Doble del área: la constante no cambia cuál es el mayor
+                double area = Math.abs((x[previous] - avgX) * (y[i] - y[previous])
+                        - (x[previous] - x[i]) * (avgY - y[previous]));
+                if (area > maxArea) {
+                    maxArea = area;
+                    chosen = i;
+                }
+            }
+
+            sampled.add(points.get(chosen));
+            previous = chosen;
+        }
+
+        sampled.add(points.get(size - 1));
+        return sampled;
+    }
+}
@@ -0,0 +1,260 @@
+package com.example.bank_app.service.impl;
+
+import com.example.bank_app.dto.admin.AdminDashboardDelta;
+import com.example.bank_app.dto.admin.AdminDashboardResponse;
+import com.example.bank_app.model.User;
+import com.example.bank_app.service.AdminService;
+import com.example.bank_app.service.DashboardStreamService;
+import com.example.bank_app.service.RetainedUsersService;
+import com.example.bank_app.service.TransactionRollupService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Dashboard en vivo por Server-Sent Events. Cada suscriptor recibe un "snapshot" completo y luego un "delta"
+ * por tick con lo acumulado desde el anterior (puntos de curva, bloqueos y conteos). Los eventos de origen
+ * solo se suman a un acumulador: por mucho tráfico que haya, sale como máximo un evento por tick y suscriptor.
+ * Los eventos son locales al nodo; el snapshot periódico trae lo que se confirmó en los demás.
+ */
+@Service
+@Slf4j
+public class DashboardStreamServiceImpl implements DashboardStreamService {
+    // Los conteos siguen siendo exactos aunque se descarten los cambios más antiguos del tick
+    private static final int MAX_BLOCK_CHANGES = 50;
+
+    private final AdminService adminService;
+    private final RetainedUsersService retainedUsersService;
+    private final MeterRegistry meterRegistry;
+    private final long emitterTimeoutMs;
+    private final long snapshotIntervalNanos;
+    private final long heartbeatNanos;
+
+    private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+
+    // Acumulado del tick en curso: se escribe y se vacía bajo este lock
+    private final ReentrantLock pendingLock = new ReentrantLock();
+    private final Map<String, Map<LocalDate, BigDecimal>> pendingCurve = new TreeMap<>();
+    private final Map<String, AdminDashboardDelta.BlockedUserChange> pendingBlocks = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, AdminDashboardDelta.BlockedUserChange> eldest) {
+            return size() > MAX_BLOCK_CHANGES;
+        }
+    };
+    private long pendingUsers;
+    private long pendingBlocked;
+    private long lastRetained = -1;
+
+    // Solo los toca el hilo del tick
+    private long lastSnapshotAt = System.nanoTime();
+    private long lastSentAt = System.nanoTime();
+
+    public DashboardStreamServiceImpl(
+            AdminService adminService,
+            RetainedUsersService retainedUsersService,
+            MeterRegistry meterRegistry,
+            @Value("${application.dashboard.stream.timeout-ms:1800000}") long emitterTimeoutMs,
+            @Value("${application.dashboard.stream.snapshot-interval-ms:60000}") long snapshotIntervalMs,
+            @Value("${application.dashboard.stream.heartbeat-ms:15000}") long heartbeatMs
+    ) {
+        this.adminService = adminService;
+        this.retainedUsersService = retainedUsersService;
+        this.meterRegistry = meterRegistry;
+        this.emitterTimeoutMs = emitterTimeoutMs;
+        this.snapshotIntervalNanos = TimeUnit.MILLISECONDS.toNanos(snapshotIntervalMs);
+        this.heartbeatNanos = TimeUnit.MILLISECONDS.toNanos(heartbeatMs);
+    }
+
+    @PostConstruct
+    void registerMetrics() {
+        Gauge.builder("bank.dashboard.stream.subscribers", emitters, List::size)
+                .description("Suscriptores conectados al stream del dashboard")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        emitter.onCompletion(() -> emitters.remove(emitter));
+        emitter.onTimeout(() -> emitters.remove(emitter));
+        emitter.onError(e -> emitters.remove(emitter));
+
+        // Se registra antes de leer el snapshot: lo confirmado mientras se calcula llega en el siguiente delta
+        emitters.add(emitter);
+        try {
+            // Sale de la caché del dashboard: muchas suscripciones a la vez no recalculan cada una
+            emitter.send(SseEmitter.event().name("snapshot").data(adminService.getDashboard()));
+        } catch (IOException e) {
+            emitters.remove(emitter);
+            emitter.completeWithError(e);
+        }
+        return emitter;
+    }
+
+    @Scheduled(fixedDelayString = "${application.dashboard.stream.tick-ms:1000}")
+    public void tick() {
+        // Se vacía aunque no haya nadie escuchando: el acumulado no crece entre suscripciones
+        AdminDashboardDelta delta = drain();
+        if (emitters.isEmpty()) return;
+
+        long now = System.nanoTime();
+        AdminDashboardResponse snapshot = now - lastSnapshotAt >= snapshotIntervalNanos ? loadSnapshot() : null;
+        if (snapshot != null) {
+            // Se calcula después de vaciar el acumulado y sin caché: ya contiene todo lo confirmado en el delta descartado
+            broadcast("snapshot", () -> SseEmitter.event().name("snapshot").data(snapshot));
+            lastSnapshotAt = now;
+            lastSentAt = now;
+        } else if (!delta.isEmpty()) {
+            broadcast("delta", () -> SseEmitter.event().name("delta").data(delta));
+            lastSentAt = now;
+        } else if (now - lastSentAt >= heartbeatNanos) {
+            // Comentario SSE: mantiene viva la conexión en proxies y detecta clientes desconectados
+            broadcast("heartbeat", () -> SseEmitter.event().comment("ping"));
+            lastSentAt = now;
+        }
+    }
+
+    @Override
+    public void curvePosted(Collection<TransactionRollupService.Delta> deltas) {
+        if (emitters.isEmpty() || deltas.isEmpty()) return;
+
+        List<TransactionRollupService.Delta> posted = List.copyOf(deltas);
+        afterCommit(() -> {
+            pendingLock.lock();
+            try {
+                for (TransactionRollupService.Delta delta : posted) {
+                    pendingCurve.computeIfAbsent(delta.currencyCode(), currency -> new TreeMap<>())
+                            .merge(delta.day(), delta.amount(), BigDecimal::add);
+                }
+            } finally {
+                pendingLock.unlock();
+            }
+        });
+    }
+
+    @Override
+    public void blockChanged(User user, boolean blocked) {
+        if (emitters.isEmpty()) return;
+
+        AdminDashboardDelta.BlockedUserChange change = new AdminDashboardDelta.BlockedUserChange(
+                user.getName() + " " + user.getLastName1(),
+                user.getDocumentId(),
+                blocked,
+                LocalDateTime.now()
+        );
+        afterCommit(() -> {
+            pendingLock.lock();
+            try {
+                // Solo el último cambio de cada usuario, en orden de llegada
+                pendingBlocks.remove(change.documentId());
+                pendingBlocks.put(change.documentId(), change);
+                pendingBlocked += blocked ? 1 : -1;
+            } finally {
+                pendingLock.unlock();
+            }
+        });
+    }
+
+    @Override
+    public void userRegistered() {
+        if (emitters.isEmpty()) return;
+
+        afterCommit(() -> {
+            pendingLock.lock();
+            try {
+                pendingUsers++;
+            } finally {
+                pendingLock.unlock();
+            }
+        });
+    }
+
+    AdminDashboardDelta drain() {
+        long retained = retainedUsersService.estimate();
+
+        pendingLock.lock();
+        try {
+            Map<String, List<AdminDashboardResponse.ChartDataPoint>> curve = new TreeMap<>();
+            pendingCurve.forEach((currency, days) -> curve.put(currency, days.entrySet().stream()
+                    .map(day -> new AdminDashboardResponse.ChartDataPoint(day.getKey(), day.getValue()))
+                    .toList()));
+
+            AdminDashboardDelta delta = new AdminDashboardDelta(
+                    retained != lastRetained ? retained : null,
+                    pendingUsers,
+                    pendingBlocked,
+                    List.copyOf(pendingBlocks.values()),
+                    curve
+            );
+
+            pendingCurve.clear();
+            pendingBlocks.clear();
+            pendingUsers = 0;
+            pendingBlocked = 0;
+            lastRetained = retained;
+            return delta;
+        } finally {
+            pendingLock.unlock();
+        }
+    }
+
+    // Métodos privados
+
+    // Si el recálculo falla, este tick envía el delta y el snapshot se reintenta en el siguiente
+    private AdminDashboardResponse loadSnapshot() {
+        try {
+            return adminService.getFreshDashboard();
+        } catch (RuntimeException e) {
+            log.warn("Snapshot del dashboard en vivo no calculado: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    // El builder de SSE no se puede reutilizar entre envíos: uno por suscriptor
+    private void broadcast(String type, Supplier<SseEmitter.SseEventBuilder> event) {
+        for (SseEmitter emitter : emitters) {
+            try {
+                emitter.send(event.get());
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Suscriptor del dashboard desconectado: {}", e.getMessage());
+                emitters.remove(emitter);
+            }
+        }
+        meterRegistry.counter("bank.dashboard.stream.events", "type", type).increment();
+    }
+
+    // Un posting revertido no debe llegar al dashboard
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,306 @@
+package com.example.bank_app.service.impl;
+
+import com.example.bank_app.model.enums.DepositFileFormat;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Lee un archivo de depósitos mapeado en memoria (por ventanas) y parsea cada línea sobre los bytes:
+ * cuenta, monto y moneda se convierten a primitivos sin crear Strings; solo se materializa la descripción.
+ * <p>
+ * CSV: {@code cuenta,monto,moneda[,descripción]}; una primera línea que no empiece con dígito es cabecera.
+ * Ancho fijo: cuenta [0,20) alineada a la izquierda, monto en céntimos [20,35), moneda [35,38), descripción [38,...).
+ */
+final class DepositFileReader implements AutoCloseable {
+    static final int FIXED_ACCOUNT_END = 20;
+    static final int FIXED_AMOUNT_END = 35;
+    static final int FIXED_CURRENCY_END = 38;
+
+    private static final int MAX_ACCOUNT_DIGITS = 16;
+    private static final int MAX_AMOUNT_DIGITS = 18;
+    private static final int MAX_AMOUNT_SCALE = 4;
+    private static final int MAX_DESCRIPTION_LENGTH = 255;
+
+    private final FileChannel channel;
+    private final DepositFileFormat format;
+    private final long fileSize;
+    private final int windowBytes;
+
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long position;
+    private long lineNumber;
+
+    DepositFileReader(Path file, DepositFileFormat format, long startOffset, long startLineNumber, int windowBytes) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.format = format;
+        this.fileSize = channel.size();
+        this.windowBytes = windowBytes;
+        this.position = startOffset;
+        this.lineNumber = startLineNumber;
+    }
+
+    /**
+     * Siguiente línea con datos, o null al final del archivo. Las líneas en blanco y la cabecera
+     * se saltan pero cuentan para la numeración.
+     */
+    Line next() throws IOException {
+        while (position < fileSize) {
+            long lineOffset = position;
+            int start = map(lineOffset);
+            int end = findLineEnd(start);
+
+            // Si la línea cruza el final de la ventana se vuelve a mapear empezando en ella
+            if (end < 0) {
+                start = remap(lineOffset);
+                end = findLineEnd(start);
+                if (end < 0) {
+                    throw new IOException("La línea " + (lineNumber + 1) + " excede el tamaño de ventana (" + windowBytes + " bytes)");
+                }
+            }
+
+            boolean hasNewline = end < window.limit() && window.get(end) == '\n';
+            position = windowStart + end + (hasNewline ? 1 : 0);
+            lineNumber++;
+
+            int contentEnd = end > start && window.get(end - 1) == '\r' ? end - 1 : end;
+
+            if (contentEnd == start || isHeader(lineOffset, start)) {
+                continue;
+            }
+
+            return format == DepositFileFormat.CSV
+                    ? parseCsv(start, contentEnd)
+                    : parseFixedWidth(start, contentEnd);
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Clave numérica de un número de cuenta: dígitos * 100 + longitud (conserva los ceros a la izquierda).
+     * Devuelve -1 si no es numérico o supera 16 dígitos.
+     */
+    static long accountKey(CharSequence accountNumber) {
+        int length = accountNumber.length();
+        if (length == 0 || length > MAX_ACCOUNT_DIGITS) return -1;
+
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            char c = accountNumber.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value * 100 + length;
+    }
+
+    // Código ISO de 3 letras empaquetado en un int; -1 si no es válido
+    static int currencyKey(CharSequence code) {
+        if (code.length() != 3) return -1;
+
+        int key = 0;
+        for (int i = 0; i < 3; i++) {
+            char c = code.charAt(i);
+            if (c < 'A' || c > 'Z') return -1;
+            key = (key << 8) | c;
+        }
+        return key;
+    }
+
+    // Métodos privados
+
+    private boolean isHeader(long lineOffset, int start) {
+        if (format != DepositFileFormat.CSV || lineOffset != 0) return false;
+
+        byte first = window.get(start);
+        return first < '0' || first > '9';
+    }
+
+    private Line parseCsv(int start, int end) {
+        int firstComma = indexOf(',', start, end);
+        int secondComma = firstComma < 0 ? -1 : indexOf(',', firstComma + 1, end);
+
+        if (secondComma < 0) {
+            return Line.rejected(lineNumber, position, "Formato de línea inválido");
+        }
+
+        int thirdComma = indexOf(',', secondComma + 1, end);
+        int currencyEnd = thirdComma < 0 ? end : thirdComma;
+        String description = thirdComma < 0 ? null : description(thirdComma + 1, end);
+
+        return parseFields(start, firstComma, firstComma + 1, secondComma, -1, secondComma + 1, currencyEnd, description);
+    }
+
+    private Line parseFixedWidth(int start, int end) {
+        if (end - start < FIXED_CURRENCY_END) {
+            return Line.rejected(lineNumber, position, "Formato de línea inválido");
+        }
+
+        return parseFields(
+                start, start + FIXED_ACCOUNT_END,
+                start + FIXED_ACCOUNT_END, start + FIXED_AMOUNT_END, 2,
+                start + FIXED_AMOUNT_END, start + FIXED_CURRENCY_END,
+                description(start + FIXED_CURRENCY_END, end)
+        );
+    }
+
+    private Line parseFields(
+            int accountStart, int accountEnd,
+            int amountStart, int amountEnd, int impliedScale,
+            int currencyStart, int currencyEnd,
+            String description
+    ) {
+        long accountKey = parseAccountKey(accountStart, accountEnd);
+        if (accountKey < 0) return Line.rejected(lineNumber, position, "Número de cuenta inválido");
+
+        BigDecimal amount = parseAmount(amountStart, amountEnd, impliedScale);
+        if (amount == null) return Line.rejected(lineNumber, position, "Monto inválido");
+
+        int currencyKey = parseCurrencyKey(currencyStart, currencyEnd);
+        if (currencyKey < 0) return Line.rejected(lineNumber, position, "Moneda inválida");
+
+        return new Line(lineNumber, position, accountKey, amount, currencyKey, description, null);
+    }
+
+    private long parseAccountKey(int from, int to) {
+        from = skipSpaces(from, to);
+        to = trimSpaces(from, to);
+
+        int length = to - from;
+        if (length == 0 || length > MAX_ACCOUNT_DIGITS) return -1;
+
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = window.get(i) - '0';
+            if (digit < 0 || digit > 9) return -1;
+            value = value * 10 + digit;
+        }
+        return value * 100 + length;
+    }
+
+    // impliedScale >= 0: solo dígitos con decimales implícitos; -1: decimal con punto opcional
+    private BigDecimal parseAmount(int from, int to, int impliedScale) {
+        from = skipSpaces(from, to);
+        to = trimSpaces(from, to);
+
+        long unscaled = 0;
+        int digits = 0;
+        int scale = -1;
+
+        for (int i = from; i < to; i++) {
+            byte b = window.get(i);
+
+            if (b == '.' && impliedScale < 0 && scale < 0) {
+                scale = 0;
+                continue;
+            }
+
+            int digit = b - '0';
+            if (digit < 0 || digit > 9 || ++digits > MAX_AMOUNT_DIGITS) return null;
+
+            unscaled = unscaled * 10 + digit;
+            if (scale >= 0) scale++;
+        }
+
+        scale = impliedScale >= 0 ? impliedScale : Math.max(scale, 0);
+
+        if (digits == 0 || unscaled == 0 || scale > MAX_AMOUNT_SCALE) return null;
+
+        return BigDecimal.valueOf(unscaled, scale);
+    }
+
+    private int parseCurrencyKey(int from, int to) {
+        from = skipSpaces(from, to);
+        to = trimSpaces(from, to);
+        if (to - from != 3) return -1;
+
+        int key = 0;
+        for (int i = from; i < to; i++) {
+            byte b = window.get(i);
+            if (b < 'A' || b > 'Z') return -1;
+            key = (key << 8) | b;
+        }
+        return key;
+    }
+
+    private String description(int from, int to) {
+        from = skipSpaces(from, to);
+        to = trimSpaces(from, to);
+        if (from == to) return null;
+
+        byte[] bytes = new byte[to - from];
+        window.get(from, bytes);
+        String description = new String(bytes, StandardCharsets.UTF_8);
+
+        return description.length() > MAX_DESCRIPTION_LENGTH ? description.substring(0, MAX_DESCRIPTION_LENGTH) : description;
+    }
+
+    private int indexOf(char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (window.get(i) == c) return i;
+        }
+        return -1;
+    }
+
+    private int skipSpaces(int from, int to) {
+        while (from < to && window.get(from) == ' ') from++;
+        return from;
+    }
+
+    private int trimSpaces(int from, int to) {
+        while (to > from && window.get(to - 1) == ' ') to--;
+        return to;
+    }
+
+    // Posición relativa de offset dentro de la ventana actual, mapeando una nueva si hace falta
+    private int map(long offset) throws IOException {
+        if (window == null || offset < windowStart || offset >= windowStart + window.limit()) {
+            return remap(offset);
+        }
+        return (int) (offset - windowStart);
+    }
+
+    private int remap(long offset) throws IOException {
+        windowStart = offset;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(windowBytes, fileSize - offset));
+        return 0;
+    }
+
+    // Índice del '\n' (o del fin de archivo); -1 si la línea sigue más allá de la ventana
+    private int findLineEnd(int start) {
+        int limit = window.limit();
+
+        for (int i = start; i < limit; i++) {
+            if (window.get(i) == '\n') return i;
+        }
+        return windowStart + limit == fileSize ? limit : -1;
+    }
+
+    /**
+     * Línea parseada. endOffset es el byte siguiente a la línea (checkpoint si es la última confirmada).
+     * Si error no es null la línea se rechaza y el resto de campos no es válido.
+     */
+    record Line(
+            long number,
+            long endOffset,
+            long accountKey,
+            BigDecimal amount,
+            int currencyKey,
+            String description,
+            String error
+    ) {
+        static Line rejected(long number, long endOffset, String error) {
+            return new Line(number, endOffset, -1, null, -1, null, error);
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package com.example.bank_app.service.impl;
+
+import com.example.bank_app.dto.account.AccountRef;
+import com.example.bank_app.dto.ingestion.DepositIngestionRequest;
+import com.example.bank_app.dto.ingestion.DepositIngestionResponse;
+import com.example.bank_app.model.*;
+import com.example.bank_app.model.enums.JobStatus;
+import com.example.bank_app.model.enums.TransactionStatusCode;
+import com.example.bank_app.model.enums.TransactionTypeCode;
+import com.example.bank_app.repository.BankAccountRepository;
+import com.example.bank_app.repository.BankTransactionRepository;
+import com.example.bank_app.repository.DepositIngestionJobRepository;
+import com.example.bank_app.service.*;
+import com.example.bank_app.service.CurrencyExchangeService.ExchangeQuote;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ingesta de archivos de depósitos (liquidaciones de agencias y socios) desde el directorio de entrada.
+ * Cada bloque de líneas se postea en una transacción junto con el checkpoint del job, por lo que
+ * una ejecución fallida se reanuda desde el último bloque confirmado sin duplicar depósitos.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DepositIngestionServiceImpl implements DepositIngestionService {
+    private static final int MAX_REPORTED_REJECTIONS = 100;
+    private static final String JOB_NAME = "deposit-ingestion:";
+
+    private final DepositIngestionJobRepository depositIngestionJobRepository;
+    private final BankAccountRepository bankAccountRepository;
+    private final BankTransactionRepository bankTransactionRepository;
+    private final TransactionJournalService transactionJournalService;
+    private final AccountLockService accountLockService;
+    private final CatalogService catalogService;
+    private final CurrencyExchangeService currencyExchangeService;
+    private final IdGeneratorService idGeneratorService;
+    private final JobLockService jobLockService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${application.ingestion.deposits.directory:./inbox/deposits}")
+    private String directory;
+
+    @Value("${application.ingestion.deposits.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${application.ingestion.deposits.window-bytes:67108864}")
+    private int windowBytes;
+
+    @Override
+    public DepositIngestionResponse ingest(DepositIngestionRequest request) {
+        Path file = resolveFile(request.fileName());
+
+        // Lock por archivo entre nodos: openJob lee el último job y run lo reanuda, nadie más puede hacerlo a la vez
+        try (JobLockService.JobLock ignored = jobLockService.tryLock(JOB_NAME + request.fileName())
+                .orElseThrow(() -> new RuntimeException("El archivo ya se está procesando"))) {
+            return run(openJob(request, file), file);
+        }
+    }
+
+    @Override
+    public DepositIngestionResponse getJob(Long jobId) {
+        DepositIngestionJob job = depositIngestionJobRepository.findById(jobId)
+                .orElseThrow(() -> new RuntimeException("Ingesta no encontrada"));
+
+        return mapToResponse(job, null, List.of());
+    }
+
+    // Métodos privados
+
+    private Path resolveFile(String fileName) {
+        Path base = Path.of(directory).toAbsolutePath().normalize();
+        Path file = base.resolve(fileName).normalize();
+
+        if (!file.startsWith(base) || !Files.isRegularFile(file)) {
+            throw new RuntimeException("Archivo no encontrado: " + fileName);
+        }
+        return file;
+    }
+
+    // Reanuda la última ejecución no completada del archivo o crea una nueva
+    private DepositIngestionJob openJob(DepositIngestionRequest request, Path file) {
+        long fileSize = fileSize(file);
+        DepositIngestionJob previous = depositIngestionJobRepository.findFirstByFileNameOrderByIdDesc(request.fileName())
+                .orElse(null);
+
+        if (previous == null) {
+            return DepositIngestionJob.builder()
+                    .fileName(request.fileName())
+                    .format(request.format())
+                    .status(JobStatus.RUNNING)
+                    .fileSize(fileSize)
+                    .startedAt(LocalDateTime.now())
+                    .build();
+        }
+
+        if (previous.getStatus() == JobStatus.COMPLETED) {
+            throw new RuntimeException("El archivo ya fue procesado");
+        }
+        if (previous.getFormat() != request.format()) {
+            throw new RuntimeException("El formato no coincide con la ingesta en curso del archivo");
+        }
+        if (previous.getFileSize() != fileSize) {
+            throw new RuntimeException("El archivo cambió desde la última ejecución");
+        }
+
+        log.info("Reanudando ingesta {} de {} desde el byte {} (línea {})",
+                previous.getId(), previous.getFileName(), previous.getCheckpointOffset(), previous.getLinesRead());
+
+        previous.setStatus(JobStatus.RUNNING);
+        previous.setLastError(null);
+        return previous;
+    }
+
+    private DepositIngestionResponse run(DepositIngestionJob job, Path file) {
+        job.setUpdatedAt(LocalDateTime.now());
+        job = depositIngestionJobRepository.save(job);
+
+        long startNanos = System.nanoTime();
+        long linesAtStart = job.getLinesRead();
+        List<DepositIngestionResponse.Rejection> rejections = new ArrayList<>();
+
+        try (DepositFileReader reader = new DepositFileReader(
+                file, job.getFormat(), job.getCheckpointOffset(), job.getLinesRead(), windowBytes)) {
+
+            // Fase de precio: índice de cuentas y monedas una vez por ejecución, cotizaciones memoizadas
+            AccountNumberIndex accounts = new AccountNumberIndex(bankAccountRepository.findAllRefsByIsActiveTrue());
+            Map<Integer, Currency> currencies = new HashMap<>();
+            catalogService.getCurrencies().forEach(currency ->
+                    currencies.put(DepositFileReader.currencyKey(currency.getCode()), currency));
+            Map<String, ExchangeQuote> quotes = new HashMap<>();
+
+            List<PricedDeposit> chunk = new ArrayList<>(chunkSize);
+            DepositFileReader.Line line;
+
+            while ((line = reader.next()) != null) {
+                chunk.add(priceDeposit(line, accounts, currencies, quotes));
+
+                if (chunk.size() == chunkSize) {
+                    job = postChunk(job, chunk, rejections);
+                    chunk.clear();
+                }
+            }
+
+            if (!chunk.isEmpty()) {
+                job = postChunk(job, chunk, rejections);
+            }
+
+            job.setStatus(JobStatus.COMPLETED);
+            job.setFinishedAt(LocalDateTime.now());
+
+        } catch (IOException | RuntimeException e) {
+            // job conserva el último checkpoint confirmado
+            log.error("Ingesta {} de {} detenida en el byte {}: {}",
+                    job.getId(), job.getFileName(), job.getCheckpointOffset(), e.getMessage());
+            job.setStatus(JobStatus.FAILED);
+            job.setLastError(truncate(e.getMessage()));
+        }
+
+        job.setUpdatedAt(LocalDateTime.now());
+        job = depositIngestionJobRepository.save(job);
+
+        double seconds = Math.max(System.nanoTime() - startNanos, 1) / 1_000_000_000.0;
+        double linesPerSecond = (job.getLinesRead() - linesAtStart) / seconds;
+
+        log.info("Ingesta {} de {}: {} ({} líneas en {} s, {} líneas/s)",
+                job.getId(), job.getFileName(), job.getStatus(),
+                job.getLinesRead() - linesAtStart, String.format("%.2f", seconds), Math.round(linesPerSecond));
+
+        return mapToResponse(job, linesPerSecond, rejections);
+    }
+
+    private PricedDeposit priceDeposit(
+            DepositFileReader.Line line,
+            AccountNumberIndex accounts,
+            Map<Integer, Currency> currencies,
+            Map<String, ExchangeQuote> quotes
+    ) {
+        if (line.error() != null) {
+            return PricedDeposit.rejected(line, line.error());
+        }
+
+        AccountRef target = accounts.get(line.accountKey());
+        if (target == null) {
+            return PricedDeposit.rejected(line, "Cuenta destino no disponible");
+        }
+
+        Currency currency = currencies.get(line.currencyKey());
+        if (currency == null) {
+            return PricedDeposit.rejected(line, "Tipo de moneda no soportada");
+        }
+
+        String targetCode = catalogService.getCurrency(target.currencyId()).getCode();
+        ExchangeQuote quote = quotes.computeIfAbsent(currency.getCode() + ">" + targetCode,
+                pair -> currencyExchangeService.quote(currency.getCode(), targetCode));
+
+        return new PricedDeposit(line, target, currency, quote, null);
+    }
+
+    private DepositIngestionJob postChunk(
+            DepositIngestionJob job,
+            List<PricedDeposit> chunk,
+            List<DepositIngestionResponse.Rejection> rejections
+    ) {
+        DepositFileReader.Line last = chunk.get(chunk.size() - 1).line();
+
+        // Se ejecuta dentro de executePosting: puede repetirse completo ante un conflicto optimista
+        ChunkResult result = accountLockService.executePosting(() -> {
+            List<Long> targetIds = chunk.stream()
+                    .filter(deposit -> deposit.error() == null)
+                    .map(deposit -> deposit.target().id())
+                    .toList();
+
+            Map<Long, BankAccount> lockedAccounts = targetIds.isEmpty() ? Map.of() : accountLockService.lockAccounts(targetIds);
+            TransactionType transactionType = catalogService.getTransactionType(TransactionTypeCode.DEPOSITO);
+            TransactionStatus transactionStatus = catalogService.getTransactionStatus(TransactionStatusCode.SUCCESS);
+
+            List<BankTransaction> bankTransactions = new ArrayList<>();
+            List<DepositIngestionResponse.Rejection> chunkRejections = new ArrayList<>();
+
+            for (PricedDeposit deposit : chunk) {
+                BankAccount targetAccount = deposit.error() == null ? lockedAccounts.get(deposit.target().id()) : null;
+                String error = deposit.error() != null ? deposit.error()
+                        : targetAccount == null || !Boolean.TRUE.equals(targetAccount.getIsActive()) ? "Cuenta destino no disponible"
+                        : null;
+
+                if (error != null) {
+                    chunkRejections.add(new DepositIngestionResponse.Rejection(deposit.line().number(), error));
+                    continue;
+                }
+
+                BigDecimal amountToAdd = deposit.quote().apply(deposit.line().amount());
+                targetAccount.setCurrentBalance(targetAccount.getCurrentBalance().add(amountToAdd));
+
+                bankTransactions.add(BankTransaction.builder()
+                        .sourceAccount(null)
+                        .targetAccount(targetAccount)
+                        .transactionType(transactionType)
+                        .amount(deposit.line().amount())
+                        .currency(deposit.currency())
+                        .transactionStatus(transactionStatus)
+                        .referenceCode(idGeneratorService.nextReferenceCode())
+                        .description(deposit.line().description())
+                        .targetAppliedRate(deposit.quote().rate())
+                        .rateSnapshotId(deposit.quote().snapshotId())
+                        .build());
+            }
+
+            // Inserciones agrupadas por Hibernate (hibernate.jdbc.batch_size)
+            transactionJournalService.recordLegs(bankTransactionRepository.saveAll(bankTransactions));
+
+            // El checkpoint se confirma con los depósitos del bloque (o con ninguno)
+            DepositIngestionJob progress = depositIngestionJobRepository.findById(job.getId())
+                    .orElseThrow(() -> new RuntimeException("Ingesta no encontrada"));
+            progress.setCheckpointOffset(last.endOffset());
+            progress.setLinesRead(last.number());
+            progress.setLinesPosted(job.getLinesPosted() + bankTransactions.size());
+            progress.setLinesRejected(job.getLinesRejected() + chunkRejections.size());
+            progress.setUpdatedAt(LocalDateTime.now());
+
+            return new ChunkResult(depositIngestionJobRepository.save(progress), bankTransactions.size(), chunkRejections);
+        });
+
+        meterRegistry.counter("bank.ingestion.deposits.lines", "outcome", "posted").increment(result.posted());
+        meterRegistry.counter("bank.ingestion.deposits.lines", "outcome", "rejected").increment(result.rejections().size());
+
+        result.rejections().stream()
+                .limit(Math.max(0, MAX_REPORTED_REJECTIONS - rejections.size()))
+                .forEach(rejections::add);
+
+        return result.job();
+    }
+
+    private DepositIngestionResponse mapToResponse(
+            DepositIngestionJob job,
+            Double linesPerSecond,
+            List<DepositIngestionResponse.Rejection> rejections
+    ) {
+        return new DepositIngestionResponse(
+                job.getId(),
+                job.getFileName(),
+                job.getFormat().name(),
+                job.getStatus().name(),
+                job.getLinesRead(),
+                job.getLinesPosted(),
+                job.getLinesRejected(),
+                job.getCheckpointOffset(),
+                linesPerSecond,
+                job.getLastError(),
+                job.getStartedAt(),
+                job.getFinishedAt(),
+                rejections
+        );
+    }
+
+    private static long fileSize(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            throw new RuntimeException("No se pudo leer el archivo: " + file.getFileName());
+        }
+    }
+
+    private static String truncate(String message) {
+        if (message == null) return null;
+        return message.length() > 255 ? message.substring(0, 255) : message;
+    }
+
+    private record PricedDeposit(
+            DepositFileReader.Line line,
+            AccountRef target,
+            Currency currency,
+            ExchangeQuote quote,
+            String error
+    ) {
+        static PricedDeposit rejected(DepositFileReader.Line line, String error) {
+            return new PricedDeposit(line, null, null, null, error);
+        }
+    }
+
+    private record ChunkResult(
+            DepositIngestionJob job,
+            int posted,
+            List<DepositIngestionResponse.Rejection> rejections
+    ) {}
+}
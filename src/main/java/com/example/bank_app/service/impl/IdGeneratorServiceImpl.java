@@ -0,0 +1,170 @@
+package com.example.bank_app.service.impl;
+
+import com.example.bank_app.service.IdGeneratorService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Genera identificadores únicos sin consultar la BD por cada uno.
+ * Formato: [secuencia][dígito Luhn]. La secuencia sale de bloques de {@value #BLOCK_SIZE} valores
+ * reservados con nextval() sobre una secuencia de Postgres (INCREMENT BY {@value #BLOCK_SIZE}), compartida por
+ * todos los nodos: ningún bloque se entrega dos veces, así que no hace falta un dígito de nodo. Un reinicio
+ * reserva un bloque nuevo y como mucho pierde lo que quedaba del suyo. nextval() no participa de la transacción:
+ * un posting revertido no devuelve su bloque.
+ * <p>
+ * Las bases anteriores guardan códigos de 10 y números de cuenta de 14 dígitos aleatorios, repartidos por todo el
+ * rango: un código nuevo puede coincidir con uno de ellos (probabilidad = códigos antiguos / 10^10 por código).
+ * transaction_reference lo rechaza y AccountLockService reintenta el posting una vez con otro código; los lotes de
+ * intereses no se reintentan, la corrida falla y se reanuda. Con los números de cuenta (cuentas antiguas / 10^14)
+ * el alta falla por la restricción UNIQUE de bank_account y se repite.
+ */
+@Service
+public class IdGeneratorServiceImpl implements IdGeneratorService {
+    // Debe coincidir con el INCREMENT BY de las secuencias (database/08_id_block_sequences.sql)
+    public static final int BLOCK_SIZE = 1000;
+    static final String REFERENCE_SEQUENCE = "reference_code_block_seq";
+    static final String ACCOUNT_SEQUENCE = "account_number_block_seq";
+
+    private static final int REFERENCE_CODE_LENGTH = 10;
+    private static final int ACCOUNT_NUMBER_LENGTH = 14;
+
+    private final BlockSequence referenceSequence;
+    private final BlockSequence accountSequence;
+
+    @Autowired
+    public IdGeneratorServiceImpl(DataSource dataSource) {
+        this(sequenceBlocks(new JdbcTemplate(dataSource)));
+    }
+
+    public IdGeneratorServiceImpl(BlockSource blocks) {
+        this.referenceSequence = new BlockSequence(blocks, REFERENCE_SEQUENCE, capacity(REFERENCE_CODE_LENGTH));
+        this.accountSequence = new BlockSequence(blocks, ACCOUNT_SEQUENCE, capacity(ACCOUNT_NUMBER_LENGTH));
+    }
+
+    @Override
+    public String nextReferenceCode() {
+        return format(referenceSequence.next(), REFERENCE_CODE_LENGTH);
+    }
+
+    @Override
+    public String nextAccountNumber() {
+        return format(accountSequence.next(), ACCOUNT_NUMBER_LENGTH);
+    }
+
+    static boolean hasValidCheckDigit(String identifier) {
+        int last = identifier.length() - 1;
+        return luhnDigit(identifier.toCharArray(), last) == identifier.charAt(last) - '0';
+    }
+
+    // Métodos privados
+
+    private static String format(long sequence, int length) {
+        char[] digits = new char[length];
+        long payload = sequence;
+
+        for (int i = length - 2; i >= 0; i--) {
+            digits[i] = (char) ('0' + payload % 10);
+            payload /= 10;
+        }
+        digits[length - 1] = (char) ('0' + luhnDigit(digits, length - 1));
+
+        return new String(digits);
+    }
+
+    private static int luhnDigit(char[] digits, int payloadLength) {
+        int sum = 0;
+        boolean doubled = true;
+
+        for (int i = payloadLength - 1; i >= 0; i--) {
+            int digit = digits[i] - '0';
+            if (doubled) {
+                digit *= 2;
+                if (digit > 9) digit -= 9;
+            }
+            sum += digit;
+            doubled = !doubled;
+        }
+        return (10 - sum % 10) % 10;
+    }
+
+    // Secuencia disponible sin el dígito de control
+    private static long capacity(int length) {
+        long capacity = 1;
+        for (int i = 0; i < length - 1; i++) {
+            capacity *= 10;
+        }
+        return capacity;
+    }
+
+    // Si hay una transacción en curso nextval() usa su misma conexión: no pide otra al pool
+    private static BlockSource sequenceBlocks(JdbcTemplate jdbcTemplate) {
+        return sequence -> {
+            Long start = jdbcTemplate.queryForObject("SELECT nextval(CAST(? AS regclass))", Long.class, sequence);
+            if (start == null) {
+                throw new RuntimeException("La secuencia " + sequence + " no devolvió un bloque");
+            }
+            return start;
+        };
+    }
+
+    // Devuelve el primer valor de un bloque nuevo de BLOCK_SIZE valores
+    @FunctionalInterface
+    public interface BlockSource {
+        long reserve(String sequence);
+    }
+
+    private static final class BlockSequence {
+        private static final Block EXHAUSTED = new Block(0, 0);
+
+        private final BlockSource blocks;
+        private final String name;
+        private final long capacity;
+        private final ReentrantLock reserveLock = new ReentrantLock();
+        private volatile Block current = EXHAUSTED;
+
+        private BlockSequence(BlockSource blocks, String name, long capacity) {
+            this.blocks = blocks;
+            this.name = name;
+            this.capacity = capacity;
+        }
+
+        // Lock-free dentro del bloque; solo un hilo reserva el siguiente y el resto espera a que lo publique
+        private long next() {
+            while (true) {
+                Block block = current;
+                long value = block.next().getAndIncrement();
+                if (value < block.end()) {
+                    return value;
+                }
+
+                reserveLock.lock();
+                try {
+                    if (current == block) {
+                        current = reserve();
+                    }
+                } finally {
+                    reserveLock.unlock();
+                }
+            }
+        }
+
+        private Block reserve() {
+            long start = blocks.reserve(name);
+            if (start < 0 || start + BLOCK_SIZE > capacity) {
+                throw new RuntimeException("Secuencia de identificadores agotada: " + name);
+            }
+            return new Block(start, start + BLOCK_SIZE);
+        }
+    }
+
+    private record Block(AtomicLong next, long end) {
+        private Block(long start, long end) {
+            this(new AtomicLong(start), end);
+        }
+    }
+}
@@ -0,0 +1,451 @@
+package com.example.bank_app.service.impl;
+
+import com.example.bank_app.dto.interest.InterestRunResponse;
+import com.example.bank_app.model.InterestRun;
+import com.example.bank_app.model.InterestRunPartition;
+import com.example.bank_app.model.TransactionStatus;
+import com.example.bank_app.model.TransactionType;
+import com.example.bank_app.model.enums.JobStatus;
+import com.example.bank_app.model.enums.PostingSide;
+import com.example.bank_app.model.enums.TransactionStatusCode;
+import com.example.bank_app.model.enums.TransactionTypeCode;
+import com.example.bank_app.repository.InterestRunPartitionRepository;
+import com.example.bank_app.repository.InterestRunRepository;
+import com.example.bank_app.service.CatalogService;
+import com.example.bank_app.service.IdGeneratorService;
+import com.example.bank_app.service.InterestService;
+import com.example.bank_app.service.JobLockService;
+import com.example.bank_app.service.RetainedUsersService;
+import com.example.bank_app.service.TransactionRollupService;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Liquidación mensual de intereses de las cuentas de ahorro.
+ * Las cuentas activas se reparten en rangos de id que se procesan en paralelo (ForkJoinPool);
+ * cada bloque de cuentas se acredita con UPDATE/INSERT en lotes JDBC y confirma el avance de su
+ * partición en la misma transacción, así una ejecución interrumpida se reanuda sin pagar dos veces.
+ * Un advisory lock de Postgres garantiza que solo un nodo del cluster ejecute el motor.
+ */
+@Service
+@Slf4j
+public class InterestServiceImpl implements InterestService {
+    private static final String JOB_NAME = "interest-engine";
+    // Debe coincidir con INCREMENT BY de transaction_seq y account_posting_leg_seq (allocationSize de Hibernate)
+    private static final int SEQUENCE_INCREMENT = 50;
+    private static final int DAYS_PER_YEAR = 365;
+    private static final int AMOUNT_SCALE = 4;
+
+    private final InterestRunRepository interestRunRepository;
+    private final InterestRunPartitionRepository interestRunPartitionRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final JobLockService jobLockService;
+    private final CatalogService catalogService;
+    private final IdGeneratorService idGeneratorService;
+    private final TransactionRollupService transactionRollupService;
+    private final RetainedUsersService retainedUsersService;
+    private final MeterRegistry meterRegistry;
+    private final String accountTypeName;
+    private final BigDecimal annualRate;
+    private final int partitions;
+    private final int parallelism;
+    private final int chunkSize;
+
+    public InterestServiceImpl(
+            InterestRunRepository interestRunRepository,
+            InterestRunPartitionRepository interestRunPartitionRepository,
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            JobLockService jobLockService,
+            CatalogService catalogService,
+            IdGeneratorService idGeneratorService,
+            TransactionRollupService transactionRollupService,
+            RetainedUsersService retainedUsersService,
+            MeterRegistry meterRegistry,
+            @Value("${application.interest.account-type:AHORROS}") String accountTypeName,
+            @Value("${application.interest.annual-rate:0.025}") BigDecimal annualRate,
+            @Value("${application.interest.partitions:16}") int partitions,
+            @Value("${application.interest.parallelism:4}") int parallelism,
+            @Value("${application.interest.chunk-size:1000}") int chunkSize
+    ) {
+        this.interestRunRepository = interestRunRepository;
+        this.interestRunPartitionRepository = interestRunPartitionRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.jobLockService = jobLockService;
+        this.catalogService = catalogService;
+        this.idGeneratorService = idGeneratorService;
+        this.transactionRollupService = transactionRollupService;
+        this.retainedUsersService = retainedUsersService;
+        this.meterRegistry = meterRegistry;
+        this.accountTypeName = accountTypeName;
+        this.annualRate = annualRate;
+        this.partitions = partitions;
+        this.parallelism = parallelism;
+        this.chunkSize = chunkSize;
+    }
+
+    // Día 1 de cada mes se liquida el mes anterior
+    @Scheduled(cron = "${application.interest.cron:0 0 2 1 * *}")
+    public void runScheduled() {
+        try {
+            runMonthlyInterest(YearMonth.now().minusMonths(1));
+        } catch (RuntimeException e) {
+            log.warn("Liquidación de intereses programada no ejecutada: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public InterestRunResponse runMonthlyInterest(YearMonth period) {
+        try (JobLockService.JobLock ignored = jobLockService.tryLock(JOB_NAME)
+                .orElseThrow(() -> new RuntimeException("La liquidación de intereses ya se está ejecutando en otro nodo"))) {
+
+            InterestRun run = openRun(period);
+
+            if (run.getStatus() == JobStatus.COMPLETED) {
+                return mapToResponse(run);
+            }
+
+            long startNanos = System.nanoTime();
+            List<InterestRunPartition> pending = interestRunPartitionRepository.findAllByRunIdOrderByPartitionNo(run.getId())
+                    .stream()
+                    .filter(partition -> !partition.getCompleted())
+                    .toList();
+
+            AccrualContext context = new AccrualContext(
+                    run,
+                    periodRate(run, period),
+                    catalogService.getTransactionType(TransactionTypeCode.PAGO_INTERESES),
+                    catalogService.getTransactionStatus(TransactionStatusCode.SUCCESS),
+                    "Intereses " + period,
+                    new AtomicBoolean()
+            );
+
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            boolean interrupted = false;
+            try {
+                pool.submit(() -> pending.parallelStream().forEach(partition -> processPartition(partition, context))).get();
+
+                run.setStatus(JobStatus.COMPLETED);
+                run.setFinishedAt(LocalDateTime.now());
+                run.setLastError(null);
+
+            } catch (InterruptedException e) {
+                interrupted = true;
+                failRun(run, "Liquidación interrumpida");
+            } catch (ExecutionException e) {
+                failRun(run, NestedExceptionUtils.getMostSpecificCause(e).getMessage());
+            } finally {
+                stopWorkers(pool, context.stopped());
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+
+            run = interestRunRepository.save(run);
+
+            meterRegistry.timer("bank.interest.run.duration", "status", run.getStatus().name())
+                    .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+
+            log.info("Intereses {}: {} en {} s ({} particiones pendientes, paralelismo {})",
+                    period, run.getStatus(), (System.nanoTime() - startNanos) / 1_000_000_000, pending.size(), parallelism);
+
+            return mapToResponse(run);
+        }
+    }
+
+    @Override
+    @Async
+    public void startMonthlyInterest(YearMonth period) {
+        try {
+            runMonthlyInterest(period);
+        } catch (RuntimeException e) {
+            log.warn("Liquidación de intereses {} no ejecutada: {}", period, e.getMessage());
+        }
+    }
+
+    @Override
+    public InterestRunResponse getRun(YearMonth period) {
+        InterestRun run = interestRunRepository.findByPeriod(period.toString())
+                .orElseThrow(() -> new RuntimeException("Liquidación de intereses no encontrada"));
+
+        return mapToResponse(run);
+    }
+
+    // Métodos privados
+
+    // Reanuda la ejecución del periodo o la crea con sus particiones por rango de id
+    private InterestRun openRun(YearMonth period) {
+        InterestRun existing = interestRunRepository.findByPeriod(period.toString()).orElse(null);
+
+        if (existing != null) {
+            if (existing.getStatus() != JobStatus.COMPLETED) {
+                log.info("Reanudando liquidación de intereses {}", period);
+                existing.setStatus(JobStatus.RUNNING);
+                existing = interestRunRepository.save(existing);
+            }
+            return existing;
+        }
+
+        Integer accountTypeId = catalogService.findAccountType(accountTypeName)
+                .orElseThrow(() -> new RuntimeException("Tipo de cuenta no encontrada en la base de datos."))
+                .getId();
+
+        InterestRun run = interestRunRepository.save(InterestRun.builder()
+                .period(period.toString())
+                .status(JobStatus.RUNNING)
+                .annualRate(annualRate)
+                .accountTypeId(accountTypeId)
+                .startedAt(LocalDateTime.now())
+                .build());
+
+        Map<String, Object> bounds = jdbcTemplate.queryForMap(
+                "SELECT MIN(id) AS min_id, MAX(id) AS max_id FROM bank_account WHERE account_type_id = ? AND is_active = true",
+                accountTypeId);
+
+        interestRunPartitionRepository.saveAll(partition(run.getId(), (Number) bounds.get("min_id"), (Number) bounds.get("max_id")));
+
+        return run;
+    }
+
+    private List<InterestRunPartition> partition(Long runId, Number minId, Number maxId) {
+        List<InterestRunPartition> result = new ArrayList<>();
+        if (minId == null) return result;
+
+        long from = minId.longValue() - 1;
+        long span = maxId.longValue() - from;
+        long size = Math.max(1, (span + partitions - 1) / partitions);
+
+        for (int i = 0; from < maxId.longValue(); i++, from += size) {
+            long to = Math.min(from + size, maxId.longValue());
+            result.add(InterestRunPartition.builder()
+                    .runId(runId)
+                    .partitionNo(i)
+                    .fromId(from)
+                    .toId(to)
+                    .lastAccountId(from)
+                    .build());
+        }
+        return result;
+    }
+
+    // Tasa del periodo: anual * días del mes / 365 (la tasa anual queda fijada en la ejecución)
+    private BigDecimal periodRate(InterestRun run, YearMonth period) {
+        return run.getAnnualRate()
+                .multiply(BigDecimal.valueOf(period.lengthOfMonth()))
+                .divide(BigDecimal.valueOf(DAYS_PER_YEAR), 18, RoundingMode.HALF_EVEN);
+    }
+
+    // Cuando una partición falla, las demás terminan su bloque en curso y no empiezan otro
+    private void processPartition(InterestRunPartition partition, AccrualContext context) {
+        try {
+            boolean more = true;
+            while (more && !context.stopped().get()) {
+                more = Boolean.TRUE.equals(transactionTemplate.execute(status -> postChunk(partition, context)));
+            }
+        } catch (RuntimeException e) {
+            // El parallelStream no propaga el fallo hasta que vuelven las demás particiones: se las avisa aquí
+            context.stopped().set(true);
+            throw e;
+        }
+    }
+
+    // Una transacción: bloquea el cursor y el bloque de cuentas, acredita, registra movimientos y avanza el cursor.
+    // El cursor se relee de la BD (no de memoria): lo que otra ejecución ya confirmó nunca se vuelve a pagar.
+    // Devuelve si quedan cuentas; el último bloque marca la partición como completada en la misma transacción
+    private boolean postChunk(InterestRunPartition partition, AccrualContext context) {
+        Long afterId = jdbcTemplate.queryForObject(
+                "SELECT last_account_id FROM interest_run_partition WHERE id = ? FOR UPDATE", Long.class, partition.getId());
+
+        List<Credit> accounts = jdbcTemplate.query("""
+                SELECT id, current_balance, currency_id, user_id
+                FROM bank_account
+                WHERE account_type_id = ? AND is_active = true AND id > ? AND id <= ?
+                ORDER BY id
+                LIMIT ?
+                FOR UPDATE
+                """,
+                (rs, rowNum) -> new Credit(rs.getLong(1), accrue(rs.getBigDecimal(2), context.periodRate()), rs.getInt(3), rs.getLong(4)),
+                context.run().getAccountTypeId(), afterId, partition.getToId(), chunkSize);
+
+        List<Credit> credits = accounts.stream()
+                .filter(credit -> credit.interest().signum() > 0)
+                .toList();
+
+        if (!credits.isEmpty()) {
+            postCredits(credits, context);
+        }
+
+        boolean last = accounts.size() < chunkSize;
+        long lastAccountId = accounts.isEmpty() ? afterId : accounts.get(accounts.size() - 1).accountId();
+        jdbcTemplate.update("""
+                UPDATE interest_run_partition
+                SET last_account_id = ?, accounts_credited = accounts_credited + ?, completed = ?
+                WHERE id = ?
+                """, lastAccountId, credits.size(), last, partition.getId());
+
+        meterRegistry.counter("bank.interest.accounts.credited").increment(credits.size());
+
+        return !last;
+    }
+
+    private void postCredits(List<Credit> credits, AccrualContext context) {
+        long[] ids = allocateIds("transaction_seq", credits.size());
+        long[] legIds = allocateIds("account_posting_leg_seq", credits.size());
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+
+        // version + 1: en modo optimista los postings concurrentes detectan el cambio y reintentan
+        jdbcTemplate.batchUpdate(
+                "UPDATE bank_account SET current_balance = current_balance + ?, version = version + 1 WHERE id = ?",
+                credits, credits.size(),
+                (ps, credit) -> {
+                    ps.setBigDecimal(1, credit.interest());
+                    ps.setLong(2, credit.accountId());
+                });
+
+        List<Object[]> rows = new ArrayList<>(credits.size());
+        List<Object[]> legs = new ArrayList<>(credits.size());
+        List<Object[]> references = new ArrayList<>(credits.size());
+        List<TransactionRollupService.Delta> deltas = new ArrayList<>(credits.size());
+        for (int i = 0; i < credits.size(); i++) {
+            Credit credit = credits.get(i);
+            String referenceCode = idGeneratorService.nextReferenceCode();
+            // Tasa 1 sin snapshot, igual que ExchangeQuote.IDENTITY en los depósitos de la misma moneda
+            rows.add(new Object[]{
+                    ids[i], credit.accountId(), context.transactionType().getId(), credit.interest(), credit.currencyId(),
+                    context.transactionStatus().getId(), referenceCode, context.description(), BigDecimal.ONE, now
+            });
+            references.add(new Object[]{ referenceCode, now });
+            legs.add(new Object[]{
+                    legIds[i], credit.accountId(), ids[i], PostingSide.TARGET.name(), context.transactionType().getName(),
+                    context.transactionStatus().getName(), catalogService.getCurrency(credit.currencyId()).getCode(),
+                    credit.interest(), context.description(), referenceCode, now
+            });
+            deltas.add(new TransactionRollupService.Delta(
+                    now.toLocalDateTime().toLocalDate(), catalogService.getCurrency(credit.currencyId()).getCode(),
+                    context.transactionType().getName(), context.transactionStatus().getName(), 1, credit.interest()
+            ));
+        }
+
+        jdbcTemplate.batchUpdate("""
+                INSERT INTO bank_transaction (id, target_account_id, transaction_type_id, amount, currency_id,
+                        transaction_status_id, reference_code, description, target_applied_rate, created_at)
+                VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+                """, rows);
+
+        // Registro global de códigos (ver TransactionReference)
+        jdbcTemplate.batchUpdate("INSERT INTO transaction_reference (reference_code, created_at) VALUES (?, ?)",
+                references);
+
+        // Historial por cuenta (ver TransactionJournalServiceImpl): el pago de intereses solo tiene lado destino
+        jdbcTemplate.batchUpdate("""
+                INSERT INTO account_posting_leg (id, account_id, transaction_id, side, transaction_type,
+                        transaction_status, currency_code, amount, description, reference_code, created_at)
+                VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+                """, legs);
+
+        // Agregados del dashboard: el bloque entero se suma en una fila por moneda; los titulares, al confirmar
+        transactionRollupService.add(deltas);
+        retainedUsersService.addUsers(credits.stream().map(Credit::userId).toList());
+    }
+
+    // Mismo esquema que el optimizador pooled de Hibernate: cada nextval reserva los INCREMENT ids que terminan en él
+    private long[] allocateIds(String sequence, int count) {
+        int blocks = (count + SEQUENCE_INCREMENT - 1) / SEQUENCE_INCREMENT;
+        List<Long> highs = jdbcTemplate.queryForList(
+                "SELECT nextval('" + sequence + "') FROM generate_series(1, ?)", Long.class, blocks);
+
+        long[] ids = new long[count];
+        for (int i = 0; i < count; i++) {
+            long high = highs.get(i / SEQUENCE_INCREMENT);
+            ids[i] = high - SEQUENCE_INCREMENT + 1 + (i % SEQUENCE_INCREMENT);
+        }
+        return ids;
+    }
+
+    private static BigDecimal accrue(BigDecimal balance, BigDecimal periodRate) {
+        if (balance == null || balance.signum() <= 0) return BigDecimal.ZERO;
+
+        return balance.multiply(periodRate).setScale(AMOUNT_SCALE, RoundingMode.HALF_EVEN);
+    }
+
+    // El estado FAILED y la liberación del lock solo llegan cuando ningún worker puede seguir acreditando:
+    // una reanudación concurrente releería cursores que aún avanzan
+    private static void stopWorkers(ForkJoinPool pool, AtomicBoolean stopped) {
+        stopped.set(true);
+        pool.shutdownNow();
+
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (pool.awaitTermination(1, TimeUnit.MINUTES)) break;
+                log.warn("Esperando a que terminen los bloques de intereses en curso");
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void failRun(InterestRun run, String message) {
+        log.error("Liquidación de intereses {} detenida: {}", run.getPeriod(), message);
+        run.setStatus(JobStatus.FAILED);
+        run.setLastError(message != null && message.length() > 255 ? message.substring(0, 255) : message);
+    }
+
+    private InterestRunResponse mapToResponse(InterestRun run) {
+        List<InterestRunPartition> runPartitions = interestRunPartitionRepository.findAllByRunIdOrderByPartitionNo(run.getId());
+
+        return new InterestRunResponse(
+                run.getPeriod(),
+                run.getStatus().name(),
+                run.getAnnualRate(),
+                runPartitions.size(),
+                (int) runPartitions.stream().filter(InterestRunPartition::getCompleted).count(),
+                runPartitions.stream().mapToLong(InterestRunPartition::getAccountsCredited).sum(),
+                run.getLastError(),
+                run.getStartedAt(),
+                run.getFinishedAt()
+        );
+    }
+
+    private record AccrualContext(
+            InterestRun run,
+            BigDecimal periodRate,
+            TransactionType transactionType,
+            TransactionStatus transactionStatus,
+            String description,
+            AtomicBoolean stopped
+    ) {}
+
+    private record Credit(
+            long accountId,
+            BigDecimal interest,
+            int currencyId,
+            long userId
+    ) {}
+}
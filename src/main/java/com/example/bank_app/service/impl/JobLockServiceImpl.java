@@ -0,0 +1,86 @@
+package com.example.bank_app.service.impl;
+
+import com.example.bank_app.service.JobLockService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Exclusión entre nodos para jobs programados con advisory locks de Postgres a nivel de sesión.
+ * El lock vive en una conexión dedicada que se mantiene abierta hasta close(); si el nodo muere,
+ * Postgres lo libera al cerrarse la sesión.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class JobLockServiceImpl implements JobLockService {
+    private final DataSource dataSource;
+
+    @Override
+    public Optional<JobLock> tryLock(String jobName) {
+        long key = lockKey(jobName);
+        Connection connection = null;
+
+        try {
+            connection = dataSource.getConnection();
+
+            if (!query(connection, "SELECT pg_try_advisory_lock(?)", key)) {
+                connection.close();
+                return Optional.empty();
+            }
+
+            Connection held = connection;
+            return Optional.of(() -> release(held, jobName, key));
+
+        } catch (SQLException e) {
+            closeQuietly(connection);
+            throw new RuntimeException("No se pudo obtener el lock del job " + jobName + ": " + e.getMessage());
+        }
+    }
+
+    // Métodos privados
+
+    private void release(Connection connection, String jobName, long key) {
+        try {
+            query(connection, "SELECT pg_advisory_unlock(?)", key);
+        } catch (SQLException e) {
+            log.warn("No se pudo liberar el lock del job {}: {}", jobName, e.getMessage());
+        } finally {
+            closeQuietly(connection);
+        }
+    }
+
+    private static boolean query(Connection connection, String sql, long key) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setLong(1, key);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() && resultSet.getBoolean(1);
+            }
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        if (connection == null) return;
+
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+            // La conexión vuelve al pool o se descarta
+        }
+    }
+
+    // Clave estable entre nodos y reinicios (String.hashCode solo da 32 bits)
+    private static long lockKey(String jobName) {
+        return UUID.nameUUIDFromBytes(jobName.getBytes(StandardCharsets.UTF_8)).getMostSignificantBits();
+    }
+}
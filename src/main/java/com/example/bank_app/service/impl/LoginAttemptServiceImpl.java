@@ -3,6 +3,7 @@ package com.example.bank_app.service.impl;
 import com.example.bank_app.model.LoginAttempt;
 import com.example.bank_app.model.User;
 import com.example.bank_app.repository.LoginAttemptRepository;
+import com.example.bank_app.service.DashboardStreamService;
 import com.example.bank_app.service.LoginAttemptService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
@@ -16,6 +17,7 @@ import java.time.LocalDateTime;
 @Transactional
 public class LoginAttemptServiceImpl implements LoginAttemptService {
     private final LoginAttemptRepository loginAttemptRepository;
+    private final DashboardStreamService dashboardStreamService;
 
     @Override
     public void unblockUser(Long userId) {
@@ -25,6 +27,8 @@ public class LoginAttemptServiceImpl implements LoginAttemptService {
         loginAttempt.setAttempts(0);
         loginAttempt.setIsBlocked(false);
         loginAttempt.setLastAttempt(null);
+
+        dashboardStreamService.blockChanged(loginAttempt.getUser(), false);
     }
 
     @Override
@@ -32,8 +36,13 @@ public class LoginAttemptServiceImpl implements LoginAttemptService {
         LoginAttempt loginAttempt = loginAttemptRepository.findByUserId(user.getId())
                 .orElseThrow(() -> new RuntimeException("Relación no creada"));
 
+        boolean wasBlocked = Boolean.TRUE.equals(loginAttempt.getIsBlocked());
         loginAttempt.setAttempts(0);
         loginAttempt.setIsBlocked(false);
+
+        if (wasBlocked) {
+            dashboardStreamService.blockChanged(user, false);
+        }
     }
 
     @Override
@@ -42,6 +51,8 @@ public class LoginAttemptServiceImpl implements LoginAttemptService {
         LoginAttempt loginAttempt = loginAttemptRepository.findByUserId(user.getId())
                 .orElseThrow(() -> new RuntimeException("Relación no creada"));
 
+        boolean wasBlocked = Boolean.TRUE.equals(loginAttempt.getIsBlocked());
+
         if (loginAttempt.getAttempts() == 2) {
             loginAttempt.setIsBlocked(true);
         }
@@ -51,6 +62,10 @@ public class LoginAttemptServiceImpl implements LoginAttemptService {
         }
 
         loginAttempt.setAttempts(loginAttempt.getAttempts() + 1);
+
+        if (!wasBlocked && Boolean.TRUE.equals(loginAttempt.getIsBlocked())) {
+            dashboardStreamService.blockChanged(user, true);
+        }
     }
 
 
@@ -60,6 +75,9 @@ public class LoginAttemptServiceImpl implements LoginAttemptService {
         loginAttemptRepository.save(LoginAttempt.builder()
                 .user(user)
                 .build());
+
+        // Se crea una sola vez por usuario, al registrarse
+        dashboardStreamService.userRegistered();
     }
 
     @Override
@@ -71,6 +89,7 @@ public class LoginAttemptServiceImpl implements LoginAttemptService {
 
         if (loginAttempt.getAttempts() < 5 && loginAttempt.getIsBlocked() && loginAttempt.getLastAttempt().isBefore(tenMinutesAgo)) {
             loginAttempt.setIsBlocked(false);
+            dashboardStreamService.blockChanged(user, false);
         }
 
         return loginAttempt.getIsBlocked();
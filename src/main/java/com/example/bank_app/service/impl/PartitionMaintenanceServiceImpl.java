@@ -0,0 +1,188 @@
+package com.example.bank_app.service.impl;
+
+import com.example.bank_app.dto.partition.PartitionMaintenanceResponse;
+import com.example.bank_app.service.JobLockService;
+import com.example.bank_app.service.PartitionMaintenanceService;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Mantenimiento de las particiones mensuales (RANGE sobre created_at) de bank_transaction y account_posting_leg.
+ * Crea por adelantado las particiones de los próximos meses y separa (DETACH) las que superan la retención;
+ * las tablas separadas quedan como tablas sueltas para archivarlas. Las filas que caen fuera de toda partición
+ * mensual van a la partición DEFAULT: el mantenimiento crea su mes y las mueve antes del ATTACH.
+ * Las tablas que no están particionadas (p. ej. el esquema que genera Hibernate en los tests) se ignoran.
+ */
+@Service
+@Slf4j
+public class PartitionMaintenanceServiceImpl implements PartitionMaintenanceService {
+    private static final String JOB_NAME = "partition-maintenance";
+    // Los nombres se concatenan en el DDL: solo constantes, nunca entrada del usuario
+    private static final List<String> PARTITIONED_TABLES = List.of("bank_transaction", "account_posting_leg");
+    private static final Pattern MONTH_PARTITION = Pattern.compile("_p(\\d{6})$");
+    private static final DateTimeFormatter MONTH_SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final JobLockService jobLockService;
+    private final MeterRegistry meterRegistry;
+    private final int monthsAhead;
+    private final int retentionMonths;
+
+    public PartitionMaintenanceServiceImpl(
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            JobLockService jobLockService,
+            MeterRegistry meterRegistry,
+            @Value("${application.partitions.months-ahead:3}") int monthsAhead,
+            @Value("${application.partitions.retention-months:24}") int retentionMonths
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.jobLockService = jobLockService;
+        this.meterRegistry = meterRegistry;
+        this.monthsAhead = monthsAhead;
+        this.retentionMonths = retentionMonths;
+    }
+
+    // Al arrancar también: el mes en curso debe existir antes de aceptar movimientos
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${application.partitions.cron:0 30 3 * * *}")
+    public void runScheduled() {
+        try {
+            maintainPartitions(YearMonth.now());
+        } catch (RuntimeException e) {
+            log.warn("Mantenimiento de particiones no ejecutado: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public PartitionMaintenanceResponse maintainPartitions(YearMonth current) {
+        try (JobLockService.JobLock ignored = jobLockService.tryLock(JOB_NAME)
+                .orElseThrow(() -> new RuntimeException("El mantenimiento de particiones ya se está ejecutando en otro nodo"))) {
+
+            List<String> created = new ArrayList<>();
+            List<String> detached = new ArrayList<>();
+
+            for (String table : PARTITIONED_TABLES) {
+                if (!isPartitioned(table)) {
+                    log.debug("{} no está particionada, se omite", table);
+                    continue;
+                }
+
+                Map<YearMonth, String> existing = findMonthPartitions(table);
+
+                // Meses por adelantado más los que tengan filas en DEFAULT (bases migradas, relojes desfasados)
+                Set<YearMonth> wanted = new TreeSet<>(findDefaultMonths(table));
+                for (int i = 0; i <= monthsAhead; i++) {
+                    wanted.add(current.plusMonths(i));
+                }
+
+                for (YearMonth month : wanted) {
+                    if (!existing.containsKey(month)) {
+                        String partition = createPartition(table, month);
+                        existing.put(month, partition);
+                        created.add(partition);
+                    }
+                }
+
+                // retention-months = 0 desactiva la separación
+                if (retentionMonths > 0) {
+                    YearMonth oldestKept = current.minusMonths(retentionMonths);
+                    existing.forEach((month, partition) -> {
+                        if (month.isBefore(oldestKept)) {
+                            detached.add(detachPartition(table, partition));
+                        }
+                    });
+                }
+            }
+
+            if (!created.isEmpty() || !detached.isEmpty()) {
+                log.info("Particiones {}: creadas {}, separadas {}", current, created, detached);
+            }
+
+            return new PartitionMaintenanceResponse(current.toString(), created, detached);
+        }
+    }
+
+    // Métodos privados
+
+    private boolean isPartitioned(String table) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table WHERE partrelid = to_regclass(?))",
+                Boolean.class,
+                table));
+    }
+
+    // Particiones mensuales adjuntas, por mes (la DEFAULT no sigue el patrón de nombre)
+    private Map<YearMonth, String> findMonthPartitions(String table) {
+        List<String> names = jdbcTemplate.queryForList("""
+                SELECT c.relname
+                FROM pg_inherits i
+                JOIN pg_class c ON c.oid = i.inhrelid
+                WHERE i.inhparent = to_regclass(?)
+                """, String.class, table);
+
+        Map<YearMonth, String> partitions = new TreeMap<>();
+        for (String name : names) {
+            Matcher matcher = MONTH_PARTITION.matcher(name);
+            if (matcher.find()) {
+                partitions.put(YearMonth.parse(matcher.group(1), MONTH_SUFFIX), name);
+            }
+        }
+        return partitions;
+    }
+
+    private List<YearMonth> findDefaultMonths(String table) {
+        return jdbcTemplate.query(
+                "SELECT DISTINCT date_trunc('month', created_at) FROM " + table + "_default",
+                (rs, rowNum) -> YearMonth.from(rs.getTimestamp(1).toLocalDateTime()));
+    }
+
+    // Se crea suelta, se le pasan las filas del mes que hubieran caído en DEFAULT y se adjunta,
+    // todo en una transacción: el ATTACH falla si DEFAULT aún tiene filas del rango
+    private String createPartition(String table, YearMonth month) {
+        String partition = table + "_p" + month.format(MONTH_SUFFIX);
+        Timestamp from = Timestamp.valueOf(month.atDay(1).atStartOfDay());
+        Timestamp to = Timestamp.valueOf(month.plusMonths(1).atDay(1).atStartOfDay());
+
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.execute("CREATE TABLE " + partition + " (LIKE " + table + " INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+            jdbcTemplate.update("WITH moved AS (DELETE FROM " + table + "_default WHERE created_at >= ? AND created_at < ? RETURNING *) "
+                    + "INSERT INTO " + partition + " SELECT * FROM moved", from, to);
+            jdbcTemplate.execute("ALTER TABLE " + table + " ATTACH PARTITION " + partition
+                    + " FOR VALUES FROM ('" + from + "') TO ('" + to + "')");
+        });
+
+        meterRegistry.counter("bank.partitions.created", "table", table).increment();
+        return partition;
+    }
+
+    private String detachPartition(String table, String partition) {
+        transactionTemplate.executeWithoutResult(status ->
+                jdbcTemplate.execute("ALTER TABLE " + table + " DETACH PARTITION " + partition));
+
+        meterRegistry.counter("bank.partitions.detached", "table", table).increment();
+        return partition;
+    }
+}
@@ -0,0 +1,337 @@
+package com.example.bank_app.service.impl;
+
+import com.example.bank_app.model.BankAccount;
+import com.example.bank_app.model.BankTransaction;
+import com.example.bank_app.service.JobLockService;
+import com.example.bank_app.service.RetainedUsersService;
+import com.example.bank_app.service.TransactionArchiveService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Usuarios retenidos (titulares con al menos un movimiento) como sketch HyperLogLog en memoria.
+ * Cada posting suma a sus titulares al confirmarse; el dashboard lee la estimación sin consultar la BD.
+ * Periódicamente cada nodo fusiona su sketch con el guardado en user_activity_sketch y se queda con la unión,
+ * así la estimación de cada nodo incluye los postings de los demás. Si no hay sketch guardado (primer arranque)
+ * se reconstruye desde el historial; el recuento exacto queda como job de auditoría.
+ * <p>
+ * La reconstrucción y el recuento cubren también los meses del archivo frío: sus cuentas se cargan en una tabla
+ * temporal de la transacción y se cruzan con bank_account junto con las que tienen lados vivos.
+ */
+@Service
+@Slf4j
+public class RetainedUsersServiceImpl implements RetainedUsersService {
+    private static final String SKETCH_NAME = "retained-users";
+    private static final String JOB_NAME = "retained-users-rebuild";
+    private static final int ARCHIVED_BATCH_SIZE = 1_000;
+
+    // Titulares con algún lado, vivo o archivado (requiere la tabla temporal de loadArchivedAccounts)
+    private static final String RETAINED_ACCOUNTS = """
+            FROM bank_account a
+            WHERE EXISTS (SELECT 1 FROM account_posting_leg l WHERE l.account_id = a.id)
+               OR EXISTS (SELECT 1 FROM archived_account x WHERE x.id = a.id)
+            """;
+
+    private final TransactionArchiveService transactionArchiveService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final JobLockService jobLockService;
+    private final MeterRegistry meterRegistry;
+    private final int precision;
+
+    // sketch, rebuilding y cachedEstimate se leen y escriben siempre bajo este lock
+    private final ReentrantLock sketchLock = new ReentrantLock();
+    private HyperLogLog sketch;
+    // Durante una reconstrucción recibe también los postings nuevos, que el recorrido puede no ver
+    private HyperLogLog rebuilding;
+    private long cachedEstimate = -1;
+    private final AtomicLong lastExactCount = new AtomicLong(-1);
+
+    public RetainedUsersServiceImpl(
+            TransactionArchiveService transactionArchiveService,
+            DataSource dataSource,
+            PlatformTransactionManager transactionManager,
+            JobLockService jobLockService,
+            MeterRegistry meterRegistry,
+            @Value("${application.retained-users.precision:14}") int precision,
+            @Value("${application.export.fetch-size:1000}") int fetchSize
+    ) {
+        this.transactionArchiveService = transactionArchiveService;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.jobLockService = jobLockService;
+        this.meterRegistry = meterRegistry;
+        this.precision = precision;
+        this.sketch = new HyperLogLog(precision);
+    }
+
+    @PostConstruct
+    void registerMetrics() {
+        Gauge.builder("bank.retained_users.estimate", this, RetainedUsersServiceImpl::estimate)
+                .description("Usuarios retenidos estimados (HyperLogLog)")
+                .register(meterRegistry);
+        Gauge.builder("bank.retained_users.exact", lastExactCount, AtomicLong::get)
+                .description("Último recuento exacto de usuarios retenidos (-1 si no se ha ejecutado)")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        try {
+            List<byte[]> stored = jdbcTemplate.queryForList(
+                    "SELECT registers FROM user_activity_sketch WHERE name = ?", byte[].class, SKETCH_NAME);
+            if (stored.isEmpty()) {
+                rebuild();
+                return;
+            }
+            mergeIntoLocal(HyperLogLog.fromBytes(stored.get(0)));
+        } catch (RuntimeException e) {
+            log.warn("Sketch de usuarios retenidos no cargado: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(
+            initialDelayString = "${application.retained-users.flush-interval-ms:60000}",
+            fixedDelayString = "${application.retained-users.flush-interval-ms:60000}"
+    )
+    public void flushScheduled() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.warn("Sketch de usuarios retenidos no guardado: {}", e.getMessage());
+        }
+    }
+
+    // Desactivado por defecto ("-"): el recuento exacto recorre todos los usuarios y movimientos
+    @Scheduled(cron = "${application.retained-users.recount-cron:-}")
+    public void recountScheduled() {
+        try {
+            recountExact();
+        } catch (RuntimeException e) {
+            log.warn("Recuento exacto de usuarios retenidos no ejecutado: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void record(Collection<BankTransaction> transactions) {
+        List<Long> userIds = new ArrayList<>(transactions.size() * 2);
+        for (BankTransaction transaction : transactions) {
+            addOwner(userIds, transaction.getSourceAccount());
+            addOwner(userIds, transaction.getTargetAccount());
+        }
+        addUsers(userIds);
+    }
+
+    @Override
+    public void addUsers(Collection<Long> userIds) {
+        if (userIds.isEmpty()) return;
+
+        // Un posting revertido no debe contar: se suma al confirmarse
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            List<Long> pending = List.copyOf(userIds);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(pending);
+                }
+            });
+        } else {
+            apply(userIds);
+        }
+    }
+
+    @Override
+    public long estimate() {
+        sketchLock.lock();
+        try {
+            if (cachedEstimate < 0) {
+                cachedEstimate = sketch.estimate();
+            }
+            return cachedEstimate;
+        } finally {
+            sketchLock.unlock();
+        }
+    }
+
+    @Override
+    public void flush() {
+        HyperLogLog local;
+        sketchLock.lock();
+        try {
+            local = sketch.copy();
+        } finally {
+            sketchLock.unlock();
+        }
+
+        HyperLogLog union = transactionTemplate.execute(status -> {
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            jdbcTemplate.update("""
+                    INSERT INTO user_activity_sketch (name, registers, updated_at) VALUES (?, ?, ?)
+                    ON CONFLICT (name) DO NOTHING
+                    """, SKETCH_NAME, local.toBytes(), now);
+
+            // FOR UPDATE: dos nodos que guardan a la vez no se pisan los registros
+            byte[] stored = jdbcTemplate.queryForObject(
+                    "SELECT registers FROM user_activity_sketch WHERE name = ? FOR UPDATE", byte[].class, SKETCH_NAME);
+            HyperLogLog merged = HyperLogLog.fromBytes(stored);
+            if (merged.precision() != precision) {
+                throw new RuntimeException("El sketch guardado tiene otra precisión; reconstruya los usuarios retenidos");
+            }
+            merged.merge(local);
+
+            jdbcTemplate.update("UPDATE user_activity_sketch SET registers = ?, updated_at = ? WHERE name = ?",
+                    merged.toBytes(), now, SKETCH_NAME);
+            return merged;
+        });
+
+        if (union != null) {
+            mergeIntoLocal(union);
+        }
+    }
+
+    @Override
+    public long rebuild() {
+        try (JobLockService.JobLock ignored = jobLockService.tryLock(JOB_NAME)
+                .orElseThrow(() -> new RuntimeException("La reconstrucción de usuarios retenidos ya se está ejecutando en otro nodo"))) {
+
+            HyperLogLog fresh = new HyperLogLog(precision);
+            sketchLock.lock();
+            try {
+                rebuilding = new HyperLogLog(precision);
+            } finally {
+                sketchLock.unlock();
+            }
+
+            try {
+                // Una pasada por las cuentas: la existencia de un lado vivo se resuelve con idx_account_posting_leg_history.
+                // No es de solo lectura: la tabla temporal se escribe (y se descarta al confirmar)
+                transactionTemplate.executeWithoutResult(status -> {
+                    loadArchivedAccounts();
+                    jdbcTemplate.query("SELECT a.user_id " + RETAINED_ACCOUNTS, rs -> {
+                        fresh.add(rs.getLong(1));
+                    });
+                });
+
+                sketchLock.lock();
+                try {
+                    fresh.merge(rebuilding);
+                    sketch = fresh.copy();
+                    cachedEstimate = -1;
+                } finally {
+                    sketchLock.unlock();
+                }
+            } finally {
+                sketchLock.lock();
+                try {
+                    rebuilding = null;
+                } finally {
+                    sketchLock.unlock();
+                }
+            }
+
+            // Reemplaza el guardado: lo que otros nodos sumen desde ahora llega en su próximo guardado
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.update("""
+                    INSERT INTO user_activity_sketch (name, registers, updated_at) VALUES (?, ?, ?)
+                    ON CONFLICT (name) DO UPDATE SET registers = EXCLUDED.registers, updated_at = EXCLUDED.updated_at
+                    """, SKETCH_NAME, fresh.toBytes(), Timestamp.valueOf(LocalDateTime.now())));
+
+            long estimate = estimate();
+            log.info("Sketch de usuarios retenidos reconstruido: {} usuarios estimados", estimate);
+            return estimate;
+        }
+    }
+
+    @Override
+    public long recountExact() {
+        Long exact = transactionTemplate.execute(status -> {
+            loadArchivedAccounts();
+            return jdbcTemplate.queryForObject("SELECT COUNT(DISTINCT a.user_id) " + RETAINED_ACCOUNTS, Long.class);
+        });
+        long count = exact != null ? exact : 0L;
+        lastExactCount.set(count);
+
+        long estimate = estimate();
+        double error = count == 0 ? 0 : 100.0 * (estimate - count) / count;
+        log.info("Usuarios retenidos: exacto {}, estimado {} (error {}%)", count, estimate, String.format("%.2f", error));
+        return count;
+    }
+
+    // Métodos privados
+
+    // Sin ON COMMIT DROP la tabla viviría en la conexión del pool hasta que se cerrara
+    private void loadArchivedAccounts() {
+        jdbcTemplate.execute("CREATE TEMP TABLE archived_account (id BIGINT PRIMARY KEY) ON COMMIT DROP");
+
+        List<Object[]> batch = new ArrayList<>(ARCHIVED_BATCH_SIZE);
+        transactionArchiveService.forEachArchivedAccount(accountId -> {
+            batch.add(new Object[]{accountId});
+            if (batch.size() == ARCHIVED_BATCH_SIZE) {
+                insertArchivedAccounts(batch);
+                batch.clear();
+            }
+        });
+        if (!batch.isEmpty()) {
+            insertArchivedAccounts(batch);
+        }
+    }
+
+    // La misma cuenta aparece en cada mes archivado en que tuvo movimientos
+    private void insertArchivedAccounts(List<Object[]> batch) {
+        jdbcTemplate.batchUpdate("INSERT INTO archived_account (id) VALUES (?) ON CONFLICT DO NOTHING", batch);
+    }
+
+    private void apply(Collection<Long> userIds) {
+        sketchLock.lock();
+        try {
+            for (Long userId : userIds) {
+                if (sketch.add(userId)) {
+                    cachedEstimate = -1;
+                }
+                if (rebuilding != null) {
+                    rebuilding.add(userId);
+                }
+            }
+        } finally {
+            sketchLock.unlock();
+        }
+    }
+
+    private void mergeIntoLocal(HyperLogLog other) {
+        sketchLock.lock();
+        try {
+            sketch.merge(other);
+            cachedEstimate = -1;
+        } finally {
+            sketchLock.unlock();
+        }
+    }
+
+    private static void addOwner(List<Long> userIds, BankAccount account) {
+        // getId() de un proxy perezoso no inicializa el usuario
+        if (account != null && account.getUser() != null) {
+            userIds.add(account.getUser().getId());
+        }
+    }
+}
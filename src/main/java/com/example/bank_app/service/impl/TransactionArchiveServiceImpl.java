@@ -0,0 +1,662 @@
+package com.example.bank_app.service.impl;
+
+import com.example.bank_app.dto.archive.ArchivedTransaction;
+import com.example.bank_app.dto.archive.TransactionArchiveResponse;
+import com.example.bank_app.model.AccountPostingLeg;
+import com.example.bank_app.model.TransactionArchiveFile;
+import com.example.bank_app.model.enums.PostingSide;
+import com.example.bank_app.repository.TransactionArchiveFileRepository;
+import com.example.bank_app.service.JobLockService;
+import com.example.bank_app.service.TransactionArchiveService;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.Year;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.function.Predicate;
+
+/**
+ * Archivo frío de movimientos: los meses cerrados se mueven de bank_transaction y account_posting_leg a
+ * archivos columnares comprimidos en disco (ver {@link ColumnarArchiveFile}) y sus filas salen de la base.
+ * <p>
+ * Los lados se escriben ordenados por (account_id, created_at DESC, id DESC) y se reparten en archivos por
+ * rangos de cuenta (una cuenta nunca queda partida entre dos archivos del mismo mes); transaction_archive_file
+ * guarda los rangos min/max de cada archivo para que el historial abra solo los que pueden contener la cuenta,
+ * y transaction_archive_count los lados por cuenta y estado para contar sin abrirlos.
+ * bank_transaction se guarda completo (orden por id) para conservar tasas y snapshot de cada movimiento; la
+ * exportación general lo lee después de las filas vivas.
+ */
+@Service
+@Slf4j
+public class TransactionArchiveServiceImpl implements TransactionArchiveService {
+    private static final String JOB_NAME = "transaction-archive";
+    private static final String LEG_TABLE = "account_posting_leg";
+    private static final String TRANSACTION_TABLE = "bank_transaction";
+    private static final String FILE_EXTENSION = ".bkar";
+    private static final int ROW_GROUP_SIZE = 16_384;
+    private static final YearMonth NOTHING_ARCHIVED = YearMonth.of(Year.MIN_VALUE, 1);
+
+    private static final Comparator<AccountPostingLeg> HISTORY_ORDER = Comparator
+            .comparing(AccountPostingLeg::getCreatedAt, Comparator.reverseOrder())
+            .thenComparing(AccountPostingLeg::getId, Comparator.reverseOrder());
+
+    private final TransactionArchiveFileRepository transactionArchiveFileRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final JobLockService jobLockService;
+    private final MeterRegistry meterRegistry;
+    private final Path directory;
+    private final int afterMonths;
+    private final int rowsPerFile;
+
+    // Mes archivado más reciente; null mientras no se haya leído el índice (entonces se consulta siempre)
+    private final AtomicReference<YearMonth> newestArchivedMonth = new AtomicReference<>();
+
+    public TransactionArchiveServiceImpl(
+            TransactionArchiveFileRepository transactionArchiveFileRepository,
+            DataSource dataSource,
+            PlatformTransactionManager transactionManager,
+            JobLockService jobLockService,
+            MeterRegistry meterRegistry,
+            @Value("${application.archive.directory:./archive/transactions}") String directory,
+            @Value("${application.archive.after-months:12}") int afterMonths,
+            @Value("${application.archive.rows-per-file:250000}") int rowsPerFile,
+            @Value("${application.export.fetch-size:1000}") int fetchSize
+    ) {
+        this.transactionArchiveFileRepository = transactionArchiveFileRepository;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.jobLockService = jobLockService;
+        this.meterRegistry = meterRegistry;
+        this.directory = Path.of(directory).toAbsolutePath().normalize();
+        this.afterMonths = afterMonths;
+        this.rowsPerFile = rowsPerFile;
+    }
+
+    // Día 2 de cada mes se archiva el mes que acaba de superar la antigüedad (los anteriores, a mano)
+    @Scheduled(cron = "${application.archive.cron:0 0 4 2 * *}")
+    public void runScheduled() {
+        try {
+            archiveMonth(oldestHotMonth().minusMonths(1));
+        } catch (RuntimeException e) {
+            log.warn("Archivo frío programado no ejecutado: {}", e.getMessage());
+        }
+    }
+
+    // El índice solo crece: los meses que archive otro nodo se ven aquí en el siguiente refresco
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(
+            initialDelayString = "${application.archive.index-refresh-ms:60000}",
+            fixedDelayString = "${application.archive.index-refresh-ms:60000}"
+    )
+    public void refreshArchiveIndex() {
+        try {
+            String newest = transactionArchiveFileRepository.findNewestLegPeriod();
+            markArchived(newest != null ? YearMonth.parse(newest) : NOTHING_ARCHIVED);
+        } catch (RuntimeException e) {
+            log.warn("Índice del archivo frío no actualizado: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public TransactionArchiveResponse archiveMonth(YearMonth period) {
+        if (!period.isBefore(oldestHotMonth())) {
+            throw new RuntimeException("Solo se archivan meses anteriores a " + oldestHotMonth());
+        }
+
+        try (JobLockService.JobLock ignored = jobLockService.tryLock(JOB_NAME)
+                .orElseThrow(() -> new RuntimeException("El archivo frío ya se está ejecutando en otro nodo"))) {
+
+            // Idempotente: un mes ya archivado no se vuelve a escribir
+            List<TransactionArchiveFile> existing = transactionArchiveFileRepository.findAllByPeriodOrderByFileName(period.toString());
+            if (!existing.isEmpty()) {
+                return mapToResponse(period, existing);
+            }
+
+            long startNanos = System.nanoTime();
+            List<TransactionArchiveFile> files = new ArrayList<>();
+            files.addAll(writeFiles(period, LEG_TABLE, "account_id, created_at DESC, id DESC", true));
+            files.addAll(writeFiles(period, TRANSACTION_TABLE, "id", false));
+
+            // Los archivos ya están completos en disco: se registran y se borran las filas vivas en una transacción
+            transactionTemplate.executeWithoutResult(status -> {
+                transactionArchiveFileRepository.saveAll(files);
+                recordLegCounts(period);
+                purge(LEG_TABLE, period);
+                purge(TRANSACTION_TABLE, period);
+            });
+            if (newestArchivedMonth.get() != null) {
+                markArchived(period);
+            }
+
+            TransactionArchiveResponse response = mapToResponse(period, files);
+            meterRegistry.counter("bank.archive.rows", "table", LEG_TABLE).increment(response.postingLegRows());
+            meterRegistry.counter("bank.archive.rows", "table", TRANSACTION_TABLE).increment(response.transactionRows());
+
+            log.info("Archivo frío {}: {} archivos, {} lados, {} movimientos, {} bytes en {} ms",
+                    period, response.files(), response.postingLegRows(), response.transactionRows(), response.sizeBytes(),
+                    (System.nanoTime() - startNanos) / 1_000_000);
+
+            return response;
+        }
+    }
+
+    @Override
+    public TransactionArchiveResponse getArchive(YearMonth period) {
+        List<TransactionArchiveFile> files = transactionArchiveFileRepository.findAllByPeriodOrderByFileName(period.toString());
+        if (files.isEmpty()) {
+            throw new RuntimeException("Mes no archivado");
+        }
+        return mapToResponse(period, files);
+    }
+
+    @Override
+    public List<AccountPostingLeg> findLegs(
+            Long accountId,
+            String status,
+            LocalDateTime minDate,
+            LocalDateTime maxDate,
+            LocalDateTime cursorAt,
+            Long cursorId,
+            int limit
+    ) {
+        List<AccountPostingLeg> legs = new ArrayList<>();
+        scan(accountId, status, minDate, maxDate, leg -> {
+            boolean afterCursor = leg.getCreatedAt().isBefore(cursorAt)
+                    || (leg.getCreatedAt().isEqual(cursorAt) && leg.getId() < cursorId);
+            if (afterCursor) {
+                legs.add(leg);
+            }
+            return legs.size() < limit;
+        });
+        return legs;
+    }
+
+    @Override
+    public List<AccountPostingLeg> findLegs(
+            Long accountId,
+            String status,
+            LocalDateTime minDate,
+            LocalDateTime maxDate,
+            long offset,
+            int limit
+    ) {
+        List<AccountPostingLeg> legs = new ArrayList<>();
+        long[] skipped = {0};
+        scan(accountId, status, minDate, maxDate, leg -> {
+            if (skipped[0] < offset) {
+                skipped[0]++;
+                return true;
+            }
+            legs.add(leg);
+            return legs.size() < limit;
+        });
+        return legs;
+    }
+
+    // Los meses que la ventana cubre enteros se suman de transaction_archive_count; solo los que corta se recorren
+    @Override
+    public long countLegs(Long accountId, String status, LocalDateTime minDate, LocalDateTime maxDate) {
+        if (!mayBeArchived(minDate)) return 0;
+
+        StringBuilder sql = new StringBuilder("SELECT period, SUM(leg_count) FROM transaction_archive_count WHERE account_id = ?");
+        List<Object> args = new ArrayList<>(List.of(accountId));
+        if (status != null) {
+            sql.append(" AND transaction_status = ?");
+            args.add(status);
+        }
+        sql.append(" GROUP BY period");
+
+        long count = 0;
+        for (Map.Entry<String, Long> month : jdbcTemplate.query(sql.toString(),
+                (rs, rowNum) -> Map.entry(rs.getString(1), rs.getLong(2)), args.toArray())) {
+            YearMonth period = YearMonth.parse(month.getKey());
+            LocalDateTime start = period.atDay(1).atStartOfDay();
+            LocalDateTime next = period.plusMonths(1).atDay(1).atStartOfDay();
+
+            if (!next.isAfter(minDate) || start.isAfter(maxDate)) continue;
+
+            if (!minDate.isAfter(start) && !maxDate.isBefore(next)) {
+                count += month.getValue();
+            } else {
+                count += scanCount(accountId, status,
+                        minDate.isAfter(start) ? minDate : start,
+                        maxDate.isBefore(next) ? maxDate : next.minusNanos(1_000));
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public void forEachLeg(
+            Long accountId,
+            String status,
+            LocalDateTime minDate,
+            LocalDateTime maxDate,
+            Consumer<AccountPostingLeg> action
+    ) {
+        scan(accountId, status, minDate, maxDate, leg -> {
+            action.accept(leg);
+            return true;
+        });
+    }
+
+    @Override
+    public void forEachTransaction(LocalDateTime minDate, LocalDateTime maxDate, Consumer<ArchivedTransaction> action) {
+        if (!mayBeArchived(minDate)) return;
+
+        for (TransactionArchiveFile file : transactionArchiveFileRepository.findTransactionFiles(minDate, maxDate)) {
+            try (ColumnarArchiveFile.Reader reader = new ColumnarArchiveFile.Reader(directory.resolve(file.getFileName()))) {
+                int createdAtColumn = reader.indexOf("created_at");
+
+                int rows;
+                while ((rows = reader.nextGroup()) > 0) {
+                    Object[] createdAt = reader.column(createdAtColumn);
+                    Object[][] columns = null;
+
+                    for (int r = 0; r < rows; r++) {
+                        LocalDateTime at = (LocalDateTime) createdAt[r];
+                        if (at.isBefore(minDate) || at.isAfter(maxDate)) continue;
+
+                        if (columns == null) {
+                            columns = new Object[reader.columns().size()][];
+                            for (int c = 0; c < columns.length; c++) {
+                                columns[c] = reader.column(c);
+                            }
+                        }
+                        action.accept(toTransaction(reader, columns, r));
+                    }
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("No se pudo leer el archivo frío: " + file.getFileName());
+            }
+        }
+    }
+
+    @Override
+    public void forEachArchivedAccount(LongConsumer action) {
+        for (TransactionArchiveFile file : transactionArchiveFileRepository.findAllBySourceTableOrderByFileName(LEG_TABLE)) {
+            // Solo se descomprime account_id; el archivo está ordenado por ella, basta comparar con la anterior
+            try (ColumnarArchiveFile.Reader reader = new ColumnarArchiveFile.Reader(directory.resolve(file.getFileName()))) {
+                int accountColumn = reader.indexOf("account_id");
+                Long previous = null;
+
+                int rows;
+                while ((rows = reader.nextGroup()) > 0) {
+                    Object[] accounts = reader.column(accountColumn);
+                    for (int r = 0; r < rows; r++) {
+                        Long accountId = (Long) accounts[r];
+                        if (!accountId.equals(previous)) {
+                            action.accept(accountId);
+                            previous = accountId;
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("No se pudo leer el archivo frío: " + file.getFileName());
+            }
+        }
+    }
+
+    // Métodos privados
+
+    private long scanCount(Long accountId, String status, LocalDateTime minDate, LocalDateTime maxDate) {
+        long[] count = {0};
+        scan(accountId, status, minDate, maxDate, leg -> {
+            count[0]++;
+            return true;
+        });
+        return count[0];
+    }
+
+    private void markArchived(YearMonth period) {
+        newestArchivedMonth.accumulateAndGet(period, (current, archived) ->
+                current == null || archived.isAfter(current) ? archived : current);
+    }
+
+    // Con el índice leído, una ventana que empieza después del último mes archivado no consulta transaction_archive_file
+    private boolean mayBeArchived(LocalDateTime minDate) {
+        YearMonth newest = newestArchivedMonth.get();
+        return newest == null || minDate.isBefore(newest.plusMonths(1).atDay(1).atStartOfDay());
+    }
+
+    private YearMonth oldestHotMonth() {
+        return YearMonth.now().minusMonths(afterMonths);
+    }
+
+    // Recorre los lados archivados de la cuenta en orden de historial hasta que el visitante devuelve false.
+    // Sin archivos candidatos no se toca el disco (solo la consulta al índice de archivos)
+    private void scan(
+            Long accountId,
+            String status,
+            LocalDateTime minDate,
+            LocalDateTime maxDate,
+            Predicate<AccountPostingLeg> visitor
+    ) {
+        if (!mayBeArchived(minDate)) return;
+
+        List<TransactionArchiveFile> files = transactionArchiveFileRepository.findLegFiles(accountId, minDate, maxDate);
+        if (files.isEmpty()) return;
+
+        // Los meses no se solapan: se leen del más reciente al más antiguo y se ordena solo dentro de cada mes
+        Map<String, List<TransactionArchiveFile>> byPeriod = new LinkedHashMap<>();
+        for (TransactionArchiveFile file : files) {
+            byPeriod.computeIfAbsent(file.getPeriod(), period -> new ArrayList<>()).add(file);
+        }
+
+        for (List<TransactionArchiveFile> periodFiles : byPeriod.values()) {
+            List<AccountPostingLeg> legs = new ArrayList<>();
+            for (TransactionArchiveFile file : periodFiles) {
+                readLegs(file, accountId, status, minDate, maxDate, legs);
+            }
+            legs.sort(HISTORY_ORDER);
+
+            for (AccountPostingLeg leg : legs) {
+                if (!visitor.test(leg)) return;
+            }
+        }
+    }
+
+    private void readLegs(
+            TransactionArchiveFile file,
+            Long accountId,
+            String status,
+            LocalDateTime minDate,
+            LocalDateTime maxDate,
+            List<AccountPostingLeg> target
+    ) {
+        try (ColumnarArchiveFile.Reader reader = new ColumnarArchiveFile.Reader(directory.resolve(file.getFileName()))) {
+            int accountColumn = reader.indexOf("account_id");
+            int createdAtColumn = reader.indexOf("created_at");
+            int statusColumn = reader.indexOf("transaction_status");
+
+            int rows;
+            while ((rows = reader.nextGroup()) > 0) {
+                // Solo se descomprime account_id hasta dar con la cuenta; el archivo está ordenado por ella
+                Object[] accounts = reader.column(accountColumn);
+                if ((Long) accounts[0] > accountId) return;
+                if ((Long) accounts[rows - 1] < accountId) continue;
+
+                Object[] createdAt = reader.column(createdAtColumn);
+                Object[] statuses = reader.column(statusColumn);
+                Object[][] columns = null;
+
+                for (int r = 0; r < rows; r++) {
+                    if (!accountId.equals(accounts[r])) continue;
+
+                    LocalDateTime at = (LocalDateTime) createdAt[r];
+                    if (at.isBefore(minDate) || at.isAfter(maxDate)) continue;
+                    if (status != null && !status.equals(statuses[r])) continue;
+
+                    if (columns == null) {
+                        columns = new Object[reader.columns().size()][];
+                        for (int c = 0; c < columns.length; c++) {
+                            columns[c] = reader.column(c);
+                        }
+                    }
+                    target.add(toLeg(reader, columns, r));
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("No se pudo leer el archivo frío: " + file.getFileName());
+        }
+    }
+
+    private static AccountPostingLeg toLeg(ColumnarArchiveFile.Reader reader, Object[][] columns, int row) {
+        return AccountPostingLeg.builder()
+                .id((Long) columns[reader.indexOf("id")][row])
+                .accountId((Long) columns[reader.indexOf("account_id")][row])
+                .transactionId((Long) columns[reader.indexOf("transaction_id")][row])
+                .side(PostingSide.valueOf((String) columns[reader.indexOf("side")][row]))
+                .counterpartyAccountNumber((String) columns[reader.indexOf("counterparty_account_number")][row])
+                .transactionType((String) columns[reader.indexOf("transaction_type")][row])
+                .transactionStatus((String) columns[reader.indexOf("transaction_status")][row])
+                .currencyCode((String) columns[reader.indexOf("currency_code")][row])
+                .amount((BigDecimal) columns[reader.indexOf("amount")][row])
+                .description((String) columns[reader.indexOf("description")][row])
+                .referenceCode((String) columns[reader.indexOf("reference_code")][row])
+                .createdAt((LocalDateTime) columns[reader.indexOf("created_at")][row])
+                .build();
+    }
+
+    private static ArchivedTransaction toTransaction(ColumnarArchiveFile.Reader reader, Object[][] columns, int row) {
+        return new ArchivedTransaction(
+                (Long) columns[reader.indexOf("id")][row],
+                (Long) columns[reader.indexOf("source_account_id")][row],
+                (Long) columns[reader.indexOf("target_account_id")][row],
+                (Long) columns[reader.indexOf("transaction_type_id")][row],
+                (BigDecimal) columns[reader.indexOf("amount")][row],
+                (Long) columns[reader.indexOf("currency_id")][row],
+                (Long) columns[reader.indexOf("transaction_status_id")][row],
+                (String) columns[reader.indexOf("reference_code")][row],
+                (String) columns[reader.indexOf("description")][row],
+                (LocalDateTime) columns[reader.indexOf("created_at")][row]
+        );
+    }
+
+    // Escribe el mes de una tabla con un cursor de solo avance; cada archivo se escribe como .tmp y se renombra al cerrarlo
+    private List<TransactionArchiveFile> writeFiles(YearMonth period, String table, String orderBy, boolean byAccount) {
+        Timestamp from = Timestamp.valueOf(period.atDay(1).atStartOfDay());
+        Timestamp to = Timestamp.valueOf(period.plusMonths(1).atDay(1).atStartOfDay());
+        String sql = "SELECT * FROM " + sourceOf(table, period) + " WHERE created_at >= ? AND created_at < ? ORDER BY " + orderBy;
+
+        FileSink sink = new FileSink(period, table, byAccount);
+        try {
+            readOnlyTransaction.executeWithoutResult(status -> jdbcTemplate.query(sql, rs -> {
+                try {
+                    sink.write(rs);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, from, to));
+            sink.close();
+
+        } catch (IOException | UncheckedIOException e) {
+            throw new RuntimeException("No se pudo escribir el archivo frío de " + table + " " + period);
+        }
+        return sink.files;
+    }
+
+    // Se cuenta de las mismas filas que se acaban de escribir, antes de borrarlas y en la misma transacción
+    private void recordLegCounts(YearMonth period) {
+        jdbcTemplate.update("INSERT INTO transaction_archive_count (account_id, period, transaction_status, leg_count) "
+                        + "SELECT account_id, ?, transaction_status, COUNT(*) FROM " + sourceOf(LEG_TABLE, period)
+                        + " WHERE created_at >= ? AND created_at < ? GROUP BY account_id, transaction_status",
+                period.toString(),
+                Timestamp.valueOf(period.atDay(1).atStartOfDay()),
+                Timestamp.valueOf(period.plusMonths(1).atDay(1).atStartOfDay()));
+    }
+
+    // Un mes ya separado (DETACH) se lee de su tabla suelta; si no, de la tabla padre por rango
+    private String sourceOf(String table, YearMonth period) {
+        String partition = table + "_p" + period.toString().replace("-", "");
+        return isDetached(partition) ? partition : table;
+    }
+
+    private boolean isDetached(String partition) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("""
+                SELECT to_regclass(?) IS NOT NULL
+                   AND NOT EXISTS (SELECT 1 FROM pg_inherits WHERE inhrelid = to_regclass(?))
+                """, Boolean.class, partition, partition));
+    }
+
+    // La partición del mes (adjunta o suelta) se elimina entera; el DELETE cubre DEFAULT y esquemas sin particionar
+    private void purge(String table, YearMonth period) {
+        String partition = table + "_p" + period.toString().replace("-", "");
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + partition);
+        jdbcTemplate.update("DELETE FROM " + table + " WHERE created_at >= ? AND created_at < ?",
+                Timestamp.valueOf(period.atDay(1).atStartOfDay()),
+                Timestamp.valueOf(period.plusMonths(1).atDay(1).atStartOfDay()));
+    }
+
+    private static Object readValue(ResultSet rs, int index, ColumnarArchiveFile.ColumnType type) throws SQLException {
+        Object value = switch (type) {
+            case LONG -> rs.getLong(index);
+            case DECIMAL -> rs.getBigDecimal(index);
+            case TIMESTAMP -> {
+                Timestamp timestamp = rs.getTimestamp(index);
+                yield timestamp != null ? timestamp.toLocalDateTime() : null;
+            }
+            case STRING -> rs.getString(index);
+        };
+        return rs.wasNull() ? null : value;
+    }
+
+    private static TransactionArchiveResponse mapToResponse(YearMonth period, List<TransactionArchiveFile> files) {
+        long legRows = 0;
+        long transactionRows = 0;
+        long sizeBytes = 0;
+        for (TransactionArchiveFile file : files) {
+            if (LEG_TABLE.equals(file.getSourceTable())) {
+                legRows += file.getRowCount();
+            } else {
+                transactionRows += file.getRowCount();
+            }
+            sizeBytes += file.getSizeBytes();
+        }
+        return new TransactionArchiveResponse(period.toString(), files.size(), legRows, transactionRows, sizeBytes);
+    }
+
+    /**
+     * Reparte las filas del cursor en archivos de hasta rows-per-file filas y acumula los rangos min/max de cada uno.
+     */
+    private final class FileSink {
+        private final YearMonth period;
+        private final String table;
+        private final boolean byAccount;
+        private final List<TransactionArchiveFile> files = new ArrayList<>();
+
+        private List<ColumnarArchiveFile.Column> columns;
+        private int accountColumn = -1;
+        private int createdAtColumn;
+
+        private ColumnarArchiveFile.Writer writer;
+        private Path tempFile;
+        private String fileName;
+        private long rows;
+        private Long lastAccountId;
+        private Long minAccountId;
+        private LocalDateTime minCreatedAt;
+        private LocalDateTime maxCreatedAt;
+
+        FileSink(YearMonth period, String table, boolean byAccount) {
+            this.period = period;
+            this.table = table;
+            this.byAccount = byAccount;
+        }
+
+        void write(ResultSet rs) throws SQLException, IOException {
+            if (columns == null) {
+                readColumns(rs.getMetaData());
+            }
+
+            Object[] row = new Object[columns.size()];
+            for (int c = 0; c < row.length; c++) {
+                row[c] = readValue(rs, c + 1, columns.get(c).type());
+            }
+
+            Long accountId = accountColumn >= 0 ? (Long) row[accountColumn] : null;
+            // Se corta al llenar el archivo, pero nunca en medio de una cuenta
+            if (writer != null && rows >= rowsPerFile && (!byAccount || !accountId.equals(lastAccountId))) {
+                closeFile();
+            }
+            if (writer == null) {
+                openFile();
+            }
+
+            writer.write(row);
+            rows++;
+
+            if (byAccount) {
+                if (minAccountId == null) minAccountId = accountId;
+                lastAccountId = accountId;
+            }
+            LocalDateTime createdAt = (LocalDateTime) row[createdAtColumn];
+            if (minCreatedAt == null || createdAt.isBefore(minCreatedAt)) minCreatedAt = createdAt;
+            if (maxCreatedAt == null || createdAt.isAfter(maxCreatedAt)) maxCreatedAt = createdAt;
+        }
+
+        void close() throws IOException {
+            if (writer != null) {
+                closeFile();
+            }
+        }
+
+        private void readColumns(ResultSetMetaData metaData) throws SQLException {
+            columns = new ArrayList<>();
+            for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                String name = metaData.getColumnLabel(i);
+                columns.add(new ColumnarArchiveFile.Column(name, ColumnarArchiveFile.ColumnType.fromSqlType(metaData.getColumnType(i))));
+                if (byAccount && name.equals("account_id")) accountColumn = i - 1;
+                if (name.equals("created_at")) createdAtColumn = i - 1;
+            }
+        }
+
+        private void openFile() throws IOException {
+            Path periodDirectory = directory.resolve(period.toString());
+            Files.createDirectories(periodDirectory);
+
+            fileName = period + "/" + table + "-" + String.format("%04d", files.size()) + FILE_EXTENSION;
+            tempFile = directory.resolve(fileName + ".tmp");
+            writer = new ColumnarArchiveFile.Writer(tempFile, columns, ROW_GROUP_SIZE);
+        }
+
+        private void closeFile() throws IOException {
+            writer.close();
+            Path file = directory.resolve(fileName);
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            files.add(TransactionArchiveFile.builder()
+                    .period(period.toString())
+                    .sourceTable(table)
+                    .fileName(fileName)
+                    .rowCount(rows)
+                    .sizeBytes(Files.size(file))
+                    .minAccountId(minAccountId)
+                    .maxAccountId(lastAccountId)
+                    .minCreatedAt(minCreatedAt)
+                    .maxCreatedAt(maxCreatedAt)
+                    .createdAt(LocalDateTime.now())
+                    .build());
+
+            writer = null;
+            rows = 0;
+            minAccountId = null;
+            lastAccountId = null;
+            minCreatedAt = null;
+            maxCreatedAt = null;
+        }
+    }
+}
@@ -0,0 +1,447 @@
+package com.example.bank_app.service.impl;
+
+import com.example.bank_app.dto.account.AccountRef;
+import com.example.bank_app.dto.archive.ArchivedTransaction;
+import com.example.bank_app.dto.transaction.TransactionResponse;
+import com.example.bank_app.model.AccountPostingLeg;
+import com.example.bank_app.model.enums.ExportFormat;
+import com.example.bank_app.model.enums.PostingSide;
+import com.example.bank_app.repository.BankAccountRepository;
+import com.example.bank_app.service.TransactionArchiveService;
+import com.example.bank_app.service.TransactionExportService;
+import com.example.bank_app.util.DateRangeUtils;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Exportación completa de movimientos en CSV o NDJSON.
+ * Las filas se leen con un cursor de solo avance (fetch size fijo dentro de una transacción de lectura,
+ * requisito del driver de Postgres) y se escriben una a una en la respuesta: la memoria usada no depende
+ * del número de filas. Ambas exportaciones siguen con los meses del archivo frío: la de una cuenta con sus
+ * lados archivados y la general con los movimientos archivados de bank_transaction.
+ */
+@Service
+@Slf4j
+public class TransactionExportServiceImpl implements TransactionExportService {
+    private static final String CSV_HEADER =
+            "id,sourceAccount,targetAccount,transactionType,amount,transactionStatus,description,referenceCode,currency,createdAt";
+
+    private final BankAccountRepository bankAccountRepository;
+    private final TransactionArchiveService transactionArchiveService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final int fetchSize;
+
+    public TransactionExportServiceImpl(
+            BankAccountRepository bankAccountRepository,
+            TransactionArchiveService transactionArchiveService,
+            DataSource dataSource,
+            PlatformTransactionManager transactionManager,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${application.export.fetch-size:1000}") int fetchSize
+    ) {
+        this.bankAccountRepository = bankAccountRepository;
+        this.transactionArchiveService = transactionArchiveService;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.fetchSize = fetchSize;
+    }
+
+    @Override
+    public TransactionExport exportAccountHistory(
+            String accountNumber,
+            Long userId,
+            String status,
+            LocalDateTime startDate,
+            LocalDateTime endDate,
+            ExportFormat format
+    ) {
+        AccountRef account = bankAccountRepository.findRefByAccountNumberAndIsActiveTrue(accountNumber)
+                .orElseThrow(() -> new RuntimeException("Cuenta origen no disponible"));
+
+        if (!account.userId().equals(userId)) {
+            throw new RuntimeException("La cuenta origen no te pertenece");
+        }
+
+        // Historial de la cuenta desde account_posting_leg (un recorrido de idx_account_posting_leg_history)
+        StringBuilder sql = new StringBuilder("""
+                SELECT transaction_id, side, counterparty_account_number, transaction_type, amount, transaction_status,
+                       description, reference_code, currency_code, created_at
+                FROM account_posting_leg
+                WHERE account_id = ?
+                """);
+        List<Object> args = new ArrayList<>(List.of(account.id()));
+        appendFilters(sql, args, "transaction_status", "created_at", status, startDate, endDate);
+        sql.append("ORDER BY created_at DESC, id DESC");
+
+        // Después de las filas vivas, los meses del archivo frío (siempre más antiguos) en el mismo orden
+        ArchivedRows archived = sink -> transactionArchiveService.forEachLeg(
+                account.id(), status, DateRangeUtils.lowerBound(startDate), DateRangeUtils.upperBound(endDate), leg -> {
+                    try {
+                        sink.accept(mapLegToResponse(leg, account.accountNumber()));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+
+        return out -> stream(sql.toString(), args, format, "account", out, archived, rs -> {
+            String counterparty = rs.getString(3);
+            boolean isSource = PostingSide.SOURCE.name().equals(rs.getString(2));
+
+            return new TransactionResponse(
+                    rs.getLong(1),
+                    isSource ? account.accountNumber() : counterparty != null ? counterparty : "EXTERNO",
+                    !isSource ? account.accountNumber() : counterparty != null ? counterparty : "EXTERNO/VENTANILLA",
+                    rs.getString(4),
+                    rs.getBigDecimal(5),
+                    rs.getString(6),
+                    rs.getString(7),
+                    rs.getString(8),
+                    rs.getString(9),
+                    toLocalDateTime(rs.getTimestamp(10))
+            );
+        });
+    }
+
+    @Override
+    public TransactionExport exportAllTransactions(
+            String accountNumber,
+            String status,
+            LocalDateTime startDate,
+            LocalDateTime endDate,
+            ExportFormat format
+    ) {
+        // Orden por id (PK): el cursor recorre el índice sin ordenar millones de filas en el servidor
+        StringBuilder sql = new StringBuilder("""
+                SELECT t.id, s.account_number, ta.account_number, tt.name, t.amount, ts.name,
+                       t.description, t.reference_code, c.code, t.created_at
+                FROM bank_transaction t
+                LEFT JOIN bank_account s ON s.id = t.source_account_id
+                LEFT JOIN bank_account ta ON ta.id = t.target_account_id
+                JOIN transaction_type tt ON tt.id = t.transaction_type_id
+                JOIN transaction_status ts ON ts.id = t.transaction_status_id
+                JOIN currency c ON c.id = t.currency_id
+                WHERE 1 = 1
+                """);
+        List<Object> args = new ArrayList<>();
+        if (accountNumber != null && !accountNumber.isBlank()) {
+            sql.append("AND (s.account_number = ? OR ta.account_number = ?)\n");
+            args.add(accountNumber);
+            args.add(accountNumber);
+        }
+        appendFilters(sql, args, "ts.name", "t.created_at", status, startDate, endDate);
+        sql.append("ORDER BY t.id");
+
+        ArchivedRows archived = sink -> writeArchivedTransactions(accountNumber, status, startDate, endDate, sink);
+
+        return out -> stream(sql.toString(), args, format, "all", out, archived, rs -> new TransactionResponse(
+                rs.getLong(1),
+                rs.getString(2) != null ? rs.getString(2) : "EXTERNO",
+                rs.getString(3) != null ? rs.getString(3) : "EXTERNO/VENTANILLA",
+                rs.getString(4),
+                rs.getBigDecimal(5),
+                rs.getString(6),
+                rs.getString(7),
+                rs.getString(8),
+                rs.getString(9),
+                toLocalDateTime(rs.getTimestamp(10))
+        ));
+    }
+
+    // Métodos privados
+
+    // Movimientos archivados (meses más antiguos que las filas vivas). Catálogos una vez por exportación y números
+    // de cuenta por lotes de fetch-size filas: la memoria no depende del número de cuentas
+    private void writeArchivedTransactions(
+            String accountNumber,
+            String status,
+            LocalDateTime startDate,
+            LocalDateTime endDate,
+            RowSink sink
+    ) {
+        Long accountId = null;
+        if (accountNumber != null && !accountNumber.isBlank()) {
+            AccountRef account = bankAccountRepository.findRefByAccountNumber(accountNumber).orElse(null);
+            if (account == null) return;
+            accountId = account.id();
+        }
+
+        Map<Long, String> transactionTypes = names("SELECT id, name FROM transaction_type");
+        Map<Long, String> transactionStatuses = names("SELECT id, name FROM transaction_status");
+        Map<Long, String> currencies = names("SELECT id, code FROM currency");
+
+        Long filterAccountId = accountId;
+        List<ArchivedTransaction> batch = new ArrayList<>(fetchSize);
+        transactionArchiveService.forEachTransaction(DateRangeUtils.lowerBound(startDate), DateRangeUtils.upperBound(endDate), transaction -> {
+            if (filterAccountId != null
+                    && !filterAccountId.equals(transaction.sourceAccountId())
+                    && !filterAccountId.equals(transaction.targetAccountId())) return;
+            if (status != null && !status.equals(transactionStatuses.get(transaction.transactionStatusId()))) return;
+
+            batch.add(transaction);
+            if (batch.size() == fetchSize) {
+                writeArchivedBatch(batch, transactionTypes, transactionStatuses, currencies, sink);
+                batch.clear();
+            }
+        });
+        if (!batch.isEmpty()) {
+            writeArchivedBatch(batch, transactionTypes, transactionStatuses, currencies, sink);
+        }
+    }
+
+    private void writeArchivedBatch(
+            List<ArchivedTransaction> batch,
+            Map<Long, String> transactionTypes,
+            Map<Long, String> transactionStatuses,
+            Map<Long, String> currencies,
+            RowSink sink
+    ) {
+        Set<Long> accountIds = new HashSet<>();
+        for (ArchivedTransaction transaction : batch) {
+            if (transaction.sourceAccountId() != null) accountIds.add(transaction.sourceAccountId());
+            if (transaction.targetAccountId() != null) accountIds.add(transaction.targetAccountId());
+        }
+        Map<Long, String> accountNumbers = new HashMap<>();
+        if (!accountIds.isEmpty()) {
+            bankAccountRepository.findRefsByIdIn(accountIds).forEach(ref -> accountNumbers.put(ref.id(), ref.accountNumber()));
+        }
+
+        try {
+            for (ArchivedTransaction transaction : batch) {
+                String source = transaction.sourceAccountId() != null ? accountNumbers.get(transaction.sourceAccountId()) : null;
+                String target = transaction.targetAccountId() != null ? accountNumbers.get(transaction.targetAccountId()) : null;
+
+                sink.accept(new TransactionResponse(
+                        transaction.id(),
+                        source != null ? source : "EXTERNO",
+                        target != null ? target : "EXTERNO/VENTANILLA",
+                        transactionTypes.get(transaction.transactionTypeId()),
+                        transaction.amount(),
+                        transactionStatuses.get(transaction.transactionStatusId()),
+                        transaction.description(),
+                        transaction.referenceCode(),
+                        currencies.get(transaction.currencyId()),
+                        transaction.createdAt()
+                ));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Map<Long, String> names(String sql) {
+        Map<Long, String> names = new HashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            names.put(rs.getLong(1), rs.getString(2));
+        });
+        return names;
+    }
+
+    private static void appendFilters(
+            StringBuilder sql,
+            List<Object> args,
+            String statusColumn,
+            String createdAtColumn,
+            String status,
+            LocalDateTime startDate,
+            LocalDateTime endDate
+    ) {
+        if (status != null) {
+            sql.append("AND ").append(statusColumn).append(" = ?\n");
+            args.add(status);
+        }
+        if (startDate != null) {
+            sql.append("AND ").append(createdAtColumn).append(" >= ?\n");
+            args.add(Timestamp.valueOf(startDate));
+        }
+        if (endDate != null) {
+            sql.append("AND ").append(createdAtColumn).append(" <= ?\n");
+            args.add(Timestamp.valueOf(endDate));
+        }
+    }
+
+    private void stream(
+            String sql,
+            List<Object> args,
+            ExportFormat format,
+            String scope,
+            OutputStream out,
+            ArchivedRows archived,
+            RowReader rowReader
+    ) throws IOException {
+        long startNanos = System.nanoTime();
+        RowWriter writer = format == ExportFormat.NDJSON ? new NdjsonWriter(out) : new CsvWriter(out);
+        long[] rows = {0};
+
+        try {
+            readOnlyTransaction.executeWithoutResult(status -> jdbcTemplate.query(sql, rs -> {
+                try {
+                    writer.write(rowReader.read(rs));
+                    rows[0]++;
+                } catch (IOException e) {
+                    // Cliente desconectado: se corta la lectura y se libera el cursor
+                    throw new UncheckedIOException(e);
+                }
+            }, args.toArray()));
+
+            if (archived != null) {
+                archived.writeTo(row -> {
+                    writer.write(row);
+                    rows[0]++;
+                });
+            }
+
+            writer.finish();
+
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            meterRegistry.counter("bank.export.rows", "scope", scope, "format", format.name()).increment(rows[0]);
+            log.info("Exportación {} ({}): {} filas en {} ms",
+                    scope, format, rows[0], (System.nanoTime() - startNanos) / 1_000_000);
+        }
+    }
+
+    private static TransactionResponse mapLegToResponse(AccountPostingLeg leg, String accountNumber) {
+        String counterparty = leg.getCounterpartyAccountNumber();
+        boolean isSource = leg.getSide() == PostingSide.SOURCE;
+
+        return new TransactionResponse(
+                leg.getTransactionId(),
+                isSource ? accountNumber : counterparty != null ? counterparty : "EXTERNO",
+                !isSource ? accountNumber : counterparty != null ? counterparty : "EXTERNO/VENTANILLA",
+                leg.getTransactionType(),
+                leg.getAmount(),
+                leg.getTransactionStatus(),
+                leg.getDescription(),
+                leg.getReferenceCode(),
+                leg.getCurrencyCode(),
+                leg.getCreatedAt()
+        );
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+
+    @FunctionalInterface
+    private interface RowReader {
+        TransactionResponse read(ResultSet rs) throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface ArchivedRows {
+        void writeTo(RowSink sink);
+    }
+
+    @FunctionalInterface
+    private interface RowSink {
+        void accept(TransactionResponse row) throws IOException;
+    }
+
+    private interface RowWriter {
+        void write(TransactionResponse row) throws IOException;
+        void finish() throws IOException;
+    }
+
+    private static final class CsvWriter implements RowWriter {
+        private final Writer writer;
+
+        CsvWriter(OutputStream out) throws IOException {
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            this.writer.write(CSV_HEADER);
+            this.writer.write('\n');
+        }
+
+        @Override
+        public void write(TransactionResponse row) throws IOException {
+            writer.write(String.valueOf(row.id()));
+            writeField(row.sourceAccount());
+            writeField(row.targetAccount());
+            writeField(row.transactionType());
+            writeField(row.amount() != null ? row.amount().toPlainString() : null);
+            writeField(row.transactionStatus());
+            writeField(row.description());
+            writeField(row.referenceCode());
+            writeField(row.currency());
+            writeField(row.createdAt() != null ? row.createdAt().toString() : null);
+            writer.write('\n');
+        }
+
+        @Override
+        public void finish() throws IOException {
+            writer.flush();
+        }
+
+        // RFC 4180: comillas solo si el valor contiene separador, comillas o saltos de línea
+        private void writeField(String value) throws IOException {
+            writer.write(',');
+            if (value == null) return;
+
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+    }
+
+    private final class NdjsonWriter implements RowWriter {
+        private final JsonGenerator generator;
+        // Sin flush por fila: el buffer del generador agrupa las escrituras a la respuesta
+        private final ObjectWriter rowWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        NdjsonWriter(OutputStream out) throws IOException {
+            this.generator = objectMapper.getFactory().createGenerator(out);
+            this.generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void write(TransactionResponse row) throws IOException {
+            rowWriter.writeValue(generator, row);
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void finish() throws IOException {
+            generator.flush();
+        }
+    }
+}
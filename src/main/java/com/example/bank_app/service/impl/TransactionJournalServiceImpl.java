@@ -0,0 +1,92 @@
+package com.example.bank_app.service.impl;
+
+import com.example.bank_app.model.AccountPostingLeg;
+import com.example.bank_app.model.BankAccount;
+import com.example.bank_app.model.BankTransaction;
+import com.example.bank_app.model.enums.PostingSide;
+import com.example.bank_app.repository.AccountPostingLegRepository;
+import com.example.bank_app.service.RetainedUsersService;
+import com.example.bank_app.service.TransactionJournalService;
+import com.example.bank_app.service.TransactionRollupService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Escribe el historial por cuenta (account_posting_leg) a partir de movimientos ya guardados.
+ * Corre dentro de la transacción de posting que guarda el BankTransaction: ambos se confirman o
+ * se revierten juntos. En la misma pasada registra los códigos de referencia (transaction_reference,
+ * el UNIQUE global que la tabla particionada no puede tener) y suma los movimientos a los agregados
+ * del dashboard (curva diaria y usuarios retenidos).
+ */
+@Service
+@RequiredArgsConstructor
+@Transactional(propagation = Propagation.MANDATORY)
+public class TransactionJournalServiceImpl implements TransactionJournalService {
+    private final AccountPostingLegRepository accountPostingLegRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionRollupService transactionRollupService;
+    private final RetainedUsersService retainedUsersService;
+
+    @Override
+    public void recordLegs(BankTransaction transaction) {
+        recordLegs(List.of(transaction));
+    }
+
+    @Override
+    public void recordLegs(Collection<BankTransaction> transactions) {
+        List<AccountPostingLeg> legs = new ArrayList<>(transactions.size() * 2);
+
+        for (BankTransaction transaction : transactions) {
+            BankAccount source = transaction.getSourceAccount();
+            BankAccount target = transaction.getTargetAccount();
+
+            if (source != null) {
+                legs.add(legOf(transaction, source, PostingSide.SOURCE, target));
+            }
+            // Una transferencia a la misma cuenta aparece una sola vez en su historial
+            if (target != null && (source == null || !Objects.equals(source.getId(), target.getId()))) {
+                legs.add(legOf(transaction, target, PostingSide.TARGET, source));
+            }
+        }
+
+        // Un código repetido falla aquí con DuplicateKeyException y revierte el posting entero
+        jdbcTemplate.batchUpdate("INSERT INTO transaction_reference (reference_code, created_at) VALUES (?, ?)",
+                transactions, transactions.size(),
+                (ps, transaction) -> {
+                    ps.setString(1, transaction.getReferenceCode());
+                    ps.setTimestamp(2, Timestamp.valueOf(transaction.getCreatedAt()));
+                });
+
+        // Inserciones agrupadas por Hibernate (hibernate.jdbc.batch_size)
+        accountPostingLegRepository.saveAll(legs);
+        transactionRollupService.record(transactions);
+        retainedUsersService.record(transactions);
+    }
+
+    // Métodos privados
+
+    private static AccountPostingLeg legOf(BankTransaction transaction, BankAccount account, PostingSide side, BankAccount counterparty) {
+        return AccountPostingLeg.builder()
+                .accountId(account.getId())
+                .transactionId(transaction.getId())
+                .side(side)
+                .counterpartyAccountNumber(counterparty != null ? counterparty.getAccountNumber() : null)
+                .transactionType(transaction.getTransactionType().getName())
+                .transactionStatus(transaction.getTransactionStatus().getName())
+                .currencyCode(transaction.getCurrency().getCode())
+                .amount(transaction.getAmount())
+                .description(transaction.getDescription())
+                .referenceCode(transaction.getReferenceCode())
+                .createdAt(transaction.getCreatedAt())
+                .build();
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.bank_app.service.impl;
+
+import com.example.bank_app.model.BankTransaction;
+import com.example.bank_app.service.DashboardStreamService;
+import com.example.bank_app.service.JobLockService;
+import com.example.bank_app.service.TransactionRollupService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Mantiene transaction_daily_rollup, el agregado diario que lee la curva del dashboard.
+ * Los postings suman su delta dentro de su propia transacción (UPSERT sobre un slot al azar de la clave);
+ * un job nocturno reconstruye el día anterior desde bank_transaction para corregir cualquier desvío
+ * (cargas por script, restauraciones).
+ */
+@Service
+@Slf4j
+public class TransactionRollupServiceImpl implements TransactionRollupService {
+    private static final String JOB_NAME = "daily-rollup";
+    // Orden fijo de las claves: dos postings que tocan las mismas filas las bloquean en el mismo orden
+    private static final Comparator<Delta> KEY_ORDER = Comparator
+            .comparing(Delta::day)
+            .thenComparing(Delta::currencyCode)
+            .thenComparing(Delta::transactionType)
+            .thenComparing(Delta::transactionStatus);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final JobLockService jobLockService;
+    private final DashboardStreamService dashboardStreamService;
+    private final int slots;
+
+    public TransactionRollupServiceImpl(
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            JobLockService jobLockService,
+            DashboardStreamService dashboardStreamService,
+            @Value("${application.rollup.slots:8}") int slots
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.jobLockService = jobLockService;
+        this.dashboardStreamService = dashboardStreamService;
+        this.slots = slots;
+    }
+
+    // Reconciliación del día que acaba de cerrar
+    @Scheduled(cron = "${application.rollup.cron:0 15 0 * * *}")
+    public void runScheduled() {
+        try {
+            LocalDate yesterday = LocalDate.now().minusDays(1);
+            rebuild(yesterday, yesterday);
+        } catch (RuntimeException e) {
+            log.warn("Reconstrucción del agregado diario no ejecutada: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(Collection<BankTransaction> transactions) {
+        List<Delta> deltas = new ArrayList<>(transactions.size());
+        for (BankTransaction transaction : transactions) {
+            LocalDateTime createdAt = transaction.getCreatedAt() != null ? transaction.getCreatedAt() : LocalDateTime.now();
+            deltas.add(new Delta(
+                    createdAt.toLocalDate(),
+                    transaction.getCurrency().getCode(),
+                    transaction.getTransactionType().getName(),
+                    transaction.getTransactionStatus().getName(),
+                    1,
+                    transaction.getAmount()
+            ));
+        }
+        add(deltas);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void add(Collection<Delta> deltas) {
+        if (deltas.isEmpty()) return;
+
+        // Un lote o una planilla suman primero en memoria: una fila por clave en el UPSERT
+        Map<Delta, Delta> merged = new TreeMap<>(KEY_ORDER);
+        for (Delta delta : deltas) {
+            merged.merge(delta, delta, (a, b) -> new Delta(a.day(), a.currencyCode(), a.transactionType(),
+                    a.transactionStatus(), a.count() + b.count(), a.amount().add(b.amount())));
+        }
+
+        int slot = ThreadLocalRandom.current().nextInt(slots);
+        List<Delta> rows = new ArrayList<>(merged.values());
+
+        jdbcTemplate.batchUpdate("""
+                INSERT INTO transaction_daily_rollup (day, currency_code, transaction_type, transaction_status, slot,
+                        tx_count, amount_sum)
+                VALUES (?, ?, ?, ?, ?, ?, ?)
+                ON CONFLICT (day, currency_code, transaction_type, transaction_status, slot) DO UPDATE
+                SET tx_count = transaction_daily_rollup.tx_count + EXCLUDED.tx_count,
+                    amount_sum = transaction_daily_rollup.amount_sum + EXCLUDED.amount_sum
+                """, rows, rows.size(), (ps, delta) -> {
+            ps.setDate(1, Date.valueOf(delta.day()));
+            ps.setString(2, delta.currencyCode());
+            ps.setString(3, delta.transactionType());
+            ps.setString(4, delta.transactionStatus());
+            ps.setInt(5, slot);
+            ps.setLong(6, delta.count());
+            ps.setBigDecimal(7, delta.amount());
+        });
+
+        // Puntos nuevos de la curva para el dashboard en vivo (salen al confirmar)
+        dashboardStreamService.curvePosted(rows);
+    }
+
+    @Override
+    public int rebuild(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new RuntimeException("Rango de fechas inválido");
+        }
+        if (!to.isBefore(LocalDate.now())) {
+            throw new RuntimeException("Solo se reconstruyen días cerrados");
+        }
+
+        try (JobLockService.JobLock ignored = jobLockService.tryLock(JOB_NAME)
+                .orElseThrow(() -> new RuntimeException("La reconstrucción del agregado diario ya se está ejecutando en otro nodo"))) {
+
+            Timestamp start = Timestamp.valueOf(from.atStartOfDay());
+            Timestamp end = Timestamp.valueOf(to.plusDays(1).atStartOfDay());
+
+            Integer inserted = transactionTemplate.execute(status -> {
+                // Solo se reemplazan los días con filas vivas: los meses archivados conservan su agregado
+                jdbcTemplate.update("""
+                        DELETE FROM transaction_daily_rollup
+                        WHERE day IN (
+                            SELECT DISTINCT CAST(created_at AS date) FROM bank_transaction
+                            WHERE created_at >= ? AND created_at < ?
+                        )
+                        """, start, end);
+
+                return jdbcTemplate.update("""
+                        INSERT INTO transaction_daily_rollup (day, currency_code, transaction_type, transaction_status, slot,
+                                tx_count, amount_sum)
+                        SELECT CAST(t.created_at AS date), c.code, tt.name, ts.name, 0, COUNT(*), SUM(t.amount)
+                        FROM bank_transaction t
+                        JOIN currency c ON c.id = t.currency_id
+                        JOIN transaction_type tt ON tt.id = t.transaction_type_id
+                        JOIN transaction_status ts ON ts.id = t.transaction_status_id
+                        WHERE t.created_at >= ? AND t.created_at < ?
+                        GROUP BY CAST(t.created_at AS date), c.code, tt.name, ts.name
+                        """, start, end);
+            });
+
+            log.info("Agregado diario reconstruido del {} al {}: {} filas", from, to, inserted);
+            return inserted != null ? inserted : 0;
+        }
+    }
+}
@@ -1,262 +1,414 @@
 package com.example.bank_app.service.impl;
 
+import com.example.bank_app.dto.account.AccountRef;
 import com.example.bank_app.dto.transaction.*;
 import com.example.bank_app.model.*;
-import com.example.bank_app.repository.*;
+import com.example.bank_app.model.enums.PostingSide;
+import com.example.bank_app.model.enums.TransactionStatusCode;
+import com.example.bank_app.model.enums.TransactionTypeCode;
+import com.example.bank_app.repository.AccountPostingLegRepository;
+import com.example.bank_app.repository.BankAccountRepository;
+import com.example.bank_app.repository.BankTransactionRepository;
+import com.example.bank_app.service.AccountLockService;
+import com.example.bank_app.service.CatalogService;
 import com.example.bank_app.service.CurrencyExchangeService;
+import com.example.bank_app.service.CurrencyExchangeService.ExchangeQuote;
+import com.example.bank_app.service.IdGeneratorService;
+import com.example.bank_app.service.TransactionArchiveService;
+import com.example.bank_app.service.TransactionJournalService;
 import com.example.bank_app.service.TransactionService;
+import com.example.bank_app.util.DateRangeUtils;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
-import java.security.SecureRandom;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Transactional
 public class TransactionServiceImpl implements TransactionService {
     private final BankAccountRepository bankAccountRepository;
-    private final CurrencyRepository currencyRepository;
     private final CurrencyExchangeService currencyExchangeService;
-    private final TransactionTypeRepository transactionTypeRepository;
-    private final TransactionStatusRepository transactionStatusRepository;
+    private final CatalogService catalogService;
     private final BankTransactionRepository bankTransactionRepository;
+    private final AccountPostingLegRepository accountPostingLegRepository;
+    private final TransactionJournalService transactionJournalService;
+    private final TransactionArchiveService transactionArchiveService;
+    private final AccountLockService accountLockService;
+    private final IdGeneratorService idGeneratorService;
+
+    // Transferencias (lote) o créditos (planilla) por bloque de posting
+    @Value("${application.transactions.batch.chunk-size:100}")
+    private int batchChunkSize;
 
     @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public TransactionResponse transfer(TransferRequest request, Long userId) {
-        BankAccount sourceAccount = bankAccountRepository.findByAccountNumberAndIsActiveTrue(request.sourceAccount())
-                .orElseThrow(() -> new RuntimeException("Cuenta origen no disponible"));
+        AccountRef source = resolveAccount(request.sourceAccount(), "Cuenta origen no disponible");
+        checkOwnership(source, userId);
+        AccountRef target = resolveAccount(request.targetAccount(), "Cuenta destino no disponible");
 
-        if (!sourceAccount.getUser().getId().equals(userId)) {
-            throw new RuntimeException("La cuenta origen no te pertenece");
-        }
+        Currency currency = resolveCurrency(request.currency());
 
-        BankAccount targetAccount = bankAccountRepository.findByAccountNumberAndIsActiveTrue(request.targetAccount())
-                .orElseThrow(() -> new RuntimeException("Cuenta destino no disponible"));
+        ExchangeQuote sourceQuote = currencyExchangeService.quote(currency.getCode(), currencyCodeOf(source));
+        ExchangeQuote targetQuote = currencyExchangeService.quote(currency.getCode(), currencyCodeOf(target));
 
-        Currency currency = currencyRepository.findByCode(request.currency())
-                .orElseThrow(() -> new RuntimeException("Tipo de moneda no soportada"));
+        BigDecimal amountToSubtract = sourceQuote.apply(request.amount());
+        BigDecimal amountToAdd = targetQuote.apply(request.amount());
 
-        BigDecimal amountToSubtract = currencyExchangeService.convert(
-                request.amount(),
-                currency.getCode(),
-                sourceAccount.getCurrency().getCode()
-        );
+        return accountLockService.executePosting(() -> {
+            Map<Long, BankAccount> lockedAccounts = accountLockService.lockAccounts(List.of(source.id(), target.id()));
+            BankAccount sourceAccount = getLockedAccount(lockedAccounts, source.id(), "Cuenta origen no disponible");
+            BankAccount targetAccount = getLockedAccount(lockedAccounts, target.id(), "Cuenta destino no disponible");
 
-        BigDecimal amountToAdd = currencyExchangeService.convert(
-                request.amount(),
-                currency.getCode(),
-                targetAccount.getCurrency().getCode()
-        );
+            if (sourceAccount.getCurrentBalance().compareTo(amountToSubtract) < 0) {
+                throw new RuntimeException("Saldo no disponible");
+            }
 
-        if (sourceAccount.getCurrentBalance().compareTo(amountToSubtract) < 0) {
-            throw new RuntimeException("Saldo no disponible");
+            sourceAccount.setCurrentBalance(sourceAccount.getCurrentBalance().subtract(amountToSubtract));
+            targetAccount.setCurrentBalance(targetAccount.getCurrentBalance().add(amountToAdd));
+
+            TransactionType transactionType = catalogService.getTransactionType(TransactionTypeCode.TRANSFERENCIA);
+
+            TransactionStatus transactionStatus = catalogService.getTransactionStatus(TransactionStatusCode.SUCCESS);
+
+            BankTransaction bankTransaction = BankTransaction.builder()
+                    .sourceAccount(sourceAccount)
+                    .targetAccount(targetAccount)
+                    .transactionType(transactionType)
+                    .amount(request.amount())
+                    .currency(currency)
+                    .transactionStatus(transactionStatus)
+                    .referenceCode(idGeneratorService.nextReferenceCode())
+                    .description(request.description())
+                    .sourceAppliedRate(sourceQuote.rate())
+                    .targetAppliedRate(targetQuote.rate())
+                    .rateSnapshotId(sourceQuote.snapshotId() != null ? sourceQuote.snapshotId() : targetQuote.snapshotId())
+                    .build();
+
+            BankTransaction saved = bankTransactionRepository.save(bankTransaction);
+            transactionJournalService.recordLegs(saved);
+
+            return mapToTransactionResponse(saved);
+        });
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public BatchTransferResponse transferBatch(BatchTransferRequest request, Long userId) {
+        List<TransferRequest> transfers = request.transfers();
+        BatchTransferResponse.ItemResult[] results = new BatchTransferResponse.ItemResult[transfers.size()];
+
+        // Fase de precio: una sola consulta IN para todas las cuentas y una cotización por par de monedas
+        Set<String> accountNumbers = new HashSet<>();
+        transfers.forEach(transfer -> {
+            accountNumbers.add(transfer.sourceAccount());
+            accountNumbers.add(transfer.targetAccount());
+        });
+
+        Map<String, AccountRef> accounts = bankAccountRepository.findRefsByAccountNumberInAndIsActiveTrue(accountNumbers)
+                .stream()
+                .collect(Collectors.toMap(AccountRef::accountNumber, Function.identity()));
+        Map<String, ExchangeQuote> quotes = new HashMap<>();
+
+        List<PricedTransfer> pricedTransfers = new ArrayList<>();
+        for (int i = 0; i < transfers.size(); i++) {
+            try {
+                pricedTransfers.add(priceTransfer(i, transfers.get(i), userId, accounts, quotes));
+            } catch (RuntimeException e) {
+                results[i] = BatchTransferResponse.ItemResult.failed(i, e.getMessage());
+            }
+        }
+
+        // Fase de posting: una transacción por bloque; un error de bloque solo afecta a sus transferencias
+        for (int from = 0; from < pricedTransfers.size(); from += batchChunkSize) {
+            List<PricedTransfer> chunk = pricedTransfers.subList(from, Math.min(from + batchChunkSize, pricedTransfers.size()));
+
+            try {
+                accountLockService.executePosting(() -> postTransferChunk(chunk))
+                        .forEach(result -> results[result.index()] = result);
+            } catch (RuntimeException e) {
+                chunk.forEach(transfer -> results[transfer.index()] =
+                        BatchTransferResponse.ItemResult.failed(transfer.index(), e.getMessage()));
+            }
         }
 
-        sourceAccount.setCurrentBalance(sourceAccount.getCurrentBalance().subtract(amountToSubtract));
-        targetAccount.setCurrentBalance(targetAccount.getCurrentBalance().add(amountToAdd));
+        return BatchTransferResponse.of(Arrays.asList(results));
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public PayrollResponse.Summary disbursePayroll(PayrollRequest request, Long userId, Consumer<PayrollResponse.LineResult> onLine) {
+        List<PayrollRequest.Line> lines = request.lines();
+        List<PayrollResponse.LineResult> rejected = new ArrayList<>();
+
+        // Fase de precio: origen y su cotización una sola vez; destinos con una sola consulta IN
+        AccountRef source = resolveAccount(request.sourceAccount(), "Cuenta origen no disponible");
+        checkOwnership(source, userId);
+
+        Currency currency = resolveCurrency(request.currency());
+        ExchangeQuote sourceQuote = currencyExchangeService.quote(currency.getCode(), currencyCodeOf(source));
 
-        TransactionType transactionType = transactionTypeRepository.findById(1) // TRANSFERENCIA
-                .orElseThrow(() -> new RuntimeException("Tipo de transacción no existente"));
+        Set<String> targetNumbers = new HashSet<>();
+        lines.forEach(line -> targetNumbers.add(line.targetAccount()));
 
-        TransactionStatus transactionStatus = transactionStatusRepository.findById(2) // SUCCESS
-                .orElseThrow(() -> new RuntimeException("Estado de transacción no encontrado"));
+        Map<String, AccountRef> targets = bankAccountRepository.findRefsByAccountNumberInAndIsActiveTrue(targetNumbers)
+                .stream()
+                .collect(Collectors.toMap(AccountRef::accountNumber, Function.identity()));
+        Map<String, ExchangeQuote> targetQuotes = new HashMap<>();
+        targetQuotes.put(currencyCodeOf(source), sourceQuote);
 
-        BankTransaction bankTransaction = BankTransaction.builder()
-                .sourceAccount(sourceAccount)
-                .targetAccount(targetAccount)
-                .transactionType(transactionType)
-                .amount(request.amount())
-                .currency(currency)
-                .transactionStatus(transactionStatus)
-                .referenceCode(generateReferenceCode())
-                .description(request.description())
-                .build();
+        List<PayrollCredit> credits = new ArrayList<>();
+        BigDecimal totalDebit = BigDecimal.ZERO;
 
-        BankTransaction saved = bankTransactionRepository.save(bankTransaction);
+        for (int i = 0; i < lines.size(); i++) {
+            PayrollRequest.Line line = lines.get(i);
+            AccountRef target = targets.get(line.targetAccount());
+
+            if (target == null || target.id().equals(source.id())) {
+                rejected.add(PayrollResponse.LineResult.failed(i, line.targetAccount(), "Cuenta destino no disponible"));
+                continue;
+            }
+
+            ExchangeQuote targetQuote = targetQuotes.computeIfAbsent(currencyCodeOf(target),
+                    code -> currencyExchangeService.quote(currency.getCode(), code));
+            BigDecimal amountToSubtract = sourceQuote.apply(line.amount());
+
+            credits.add(new PayrollCredit(i, line, target, targetQuote, amountToSubtract));
+            totalDebit = totalDebit.add(amountToSubtract);
+        }
 
-        return mapToTransactionResponse(saved);
+        // Bloques en orden ascendente de id de destino; cada bloque es su propia transacción
+        credits.sort(Comparator.comparing(credit -> credit.target().id()));
+
+        int succeeded = 0;
+        BigDecimal totalDebited = BigDecimal.ZERO;
+
+        for (int from = 0; from < credits.size(); from += batchChunkSize) {
+            List<PayrollCredit> chunk = credits.subList(from, Math.min(from + batchChunkSize, credits.size()));
+            // El primer bloque valida el total de la planilla: si no alcanza, falla entera sin acreditar nada
+            BigDecimal requiredBalance = from == 0 ? totalDebit : null;
+
+            PayrollChunk posted;
+            try {
+                posted = accountLockService.executePosting(() ->
+                        postPayrollChunk(source, currency, sourceQuote, chunk, requiredBalance, request.description()));
+            } catch (RuntimeException e) {
+                if (from == 0) throw e;
+                posted = new PayrollChunk(chunk.stream()
+                        .map(credit -> PayrollResponse.LineResult.failed(credit.index(), credit.line().targetAccount(), e.getMessage()))
+                        .toList(), BigDecimal.ZERO);
+            }
+
+            // Confirmado el bloque, sus líneas salen ya hacia el cliente
+            for (PayrollResponse.LineResult line : posted.lines()) {
+                if (line.error() == null) succeeded++;
+                onLine.accept(line);
+            }
+            totalDebited = totalDebited.add(posted.debited());
+        }
+
+        rejected.forEach(onLine);
+
+        return new PayrollResponse.Summary(request.sourceAccount(), lines.size(), succeeded, lines.size() - succeeded, totalDebited);
     }
 
     @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public TransactionResponse deposit(DepositRequest request) {
-        BankAccount targetAccount = bankAccountRepository.findByAccountNumberAndIsActiveTrue(request.targetAccount())
-                .orElseThrow(() -> new RuntimeException("Cuenta destino no disponible"));
+        AccountRef target = resolveAccount(request.targetAccount(), "Cuenta destino no disponible");
 
-        Currency currency = currencyRepository.findByCode(request.currency())
-                .orElseThrow(() -> new RuntimeException("Tipo de moneda no soportada"));
+        Currency currency = resolveCurrency(request.currency());
 
-        BigDecimal amountToAdd = currencyExchangeService.convert(
-                request.amount(),
-                currency.getCode(),
-                targetAccount.getCurrency().getCode()
-        );
+        ExchangeQuote targetQuote = currencyExchangeService.quote(currency.getCode(), currencyCodeOf(target));
+        BigDecimal amountToAdd = targetQuote.apply(request.amount());
+
+        return accountLockService.executePosting(() -> {
+            BankAccount targetAccount = lockAccount(target, "Cuenta destino no disponible");
 
-        targetAccount.setCurrentBalance(targetAccount.getCurrentBalance().add(amountToAdd));
+            targetAccount.setCurrentBalance(targetAccount.getCurrentBalance().add(amountToAdd));
 
-        TransactionType transactionType = transactionTypeRepository.findById(2) // DEPOSITO
-                .orElseThrow(() -> new RuntimeException("Tipo de transacción no existente"));
+            TransactionType transactionType = catalogService.getTransactionType(TransactionTypeCode.DEPOSITO);
 
-        TransactionStatus transactionStatus = transactionStatusRepository.findById(2) // SUCCESS
-                .orElseThrow(() -> new RuntimeException("Estado de transacción no encontrado"));
+            TransactionStatus transactionStatus = catalogService.getTransactionStatus(TransactionStatusCode.SUCCESS);
 
-        BankTransaction bankTransaction = BankTransaction.builder()
-                .sourceAccount(null)
-                .targetAccount(targetAccount)
-                .transactionType(transactionType)
-                .amount(request.amount())
-                .currency(currency)
-                .transactionStatus(transactionStatus)
-                .referenceCode(generateReferenceCode())
-                .description(request.description())
-                .build();
+            BankTransaction bankTransaction = BankTransaction.builder()
+                    .sourceAccount(null)
+                    .targetAccount(targetAccount)
+                    .transactionType(transactionType)
+                    .amount(request.amount())
+                    .currency(currency)
+                    .transactionStatus(transactionStatus)
+                    .referenceCode(idGeneratorService.nextReferenceCode())
+                    .description(request.description())
+                    .targetAppliedRate(targetQuote.rate())
+                    .rateSnapshotId(targetQuote.snapshotId())
+                    .build();
 
-        BankTransaction saved = bankTransactionRepository.save(bankTransaction);
+            BankTransaction saved = bankTransactionRepository.save(bankTransaction);
+            transactionJournalService.recordLegs(saved);
 
-        return mapToTransactionResponse(saved);
+            return mapToTransactionResponse(saved);
+        });
     }
 
     @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public TransactionResponse withdraw(WithdrawRequest request, Long userId) {
-        BankAccount sourceAccount = bankAccountRepository.findByAccountNumberAndIsActiveTrue(request.sourceAccount())
-                .orElseThrow(() -> new RuntimeException("Cuenta origen no disponible"));
+        AccountRef source = resolveAccount(request.sourceAccount(), "Cuenta origen no disponible");
+        checkOwnership(source, userId);
 
-        if (!sourceAccount.getUser().getId().equals(userId)) {
-            throw new RuntimeException("La cuenta origen no te pertenece");
-        }
+        Currency currency = resolveCurrency(request.currency());
 
-        Currency currency = currencyRepository.findByCode(request.currency())
-                .orElseThrow(() -> new RuntimeException("Tipo de moneda no soportada"));
+        ExchangeQuote sourceQuote = currencyExchangeService.quote(currency.getCode(), currencyCodeOf(source));
+        BigDecimal amountToSubtract = sourceQuote.apply(request.amount());
 
-        BigDecimal amountToSubtract = currencyExchangeService.convert(
-                request.amount(),
-                currency.getCode(),
-                sourceAccount.getCurrency().getCode()
-        );
+        return accountLockService.executePosting(() -> {
+            BankAccount sourceAccount = lockAccount(source, "Cuenta origen no disponible");
 
-        if (sourceAccount.getCurrentBalance().compareTo(amountToSubtract) < 0) {
-            throw new RuntimeException("Saldo no disponible");
-        }
+            if (sourceAccount.getCurrentBalance().compareTo(amountToSubtract) < 0) {
+                throw new RuntimeException("Saldo no disponible");
+            }
 
-        sourceAccount.setCurrentBalance(sourceAccount.getCurrentBalance().subtract(amountToSubtract));
+            sourceAccount.setCurrentBalance(sourceAccount.getCurrentBalance().subtract(amountToSubtract));
 
-        TransactionType transactionType = transactionTypeRepository.findById(3) // RETIRO
-                .orElseThrow(() -> new RuntimeException("Tipo de transacción no existente"));
+            TransactionType transactionType = catalogService.getTransactionType(TransactionTypeCode.RETIRO);
 
-        TransactionStatus transactionStatus = transactionStatusRepository.findById(2) // SUCCESS
-                .orElseThrow(() -> new RuntimeException("Estado de transacción no encontrado"));
+            TransactionStatus transactionStatus = catalogService.getTransactionStatus(TransactionStatusCode.SUCCESS);
 
-        BankTransaction bankTransaction = BankTransaction.builder()
-                .sourceAccount(sourceAccount)
-                .targetAccount(null)
-                .transactionType(transactionType)
-                .amount(request.amount())
-                .currency(currency)
-                .transactionStatus(transactionStatus)
-                .referenceCode(generateReferenceCode())
-                .description(request.description())
-                .build();
+            BankTransaction bankTransaction = BankTransaction.builder()
+                    .sourceAccount(sourceAccount)
+                    .targetAccount(null)
+                    .transactionType(transactionType)
+                    .amount(request.amount())
+                    .currency(currency)
+                    .transactionStatus(transactionStatus)
+                    .referenceCode(idGeneratorService.nextReferenceCode())
+                    .description(request.description())
+                    .sourceAppliedRate(sourceQuote.rate())
+                    .rateSnapshotId(sourceQuote.snapshotId())
+                    .build();
 
-        BankTransaction saved = bankTransactionRepository.save(bankTransaction);
+            BankTransaction saved = bankTransactionRepository.save(bankTransaction);
+            transactionJournalService.recordLegs(saved);
 
-        return mapToTransactionResponse(saved);
+            return mapToTransactionResponse(saved);
+        });
     }
 
     @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public TransactionResponse payService(PayServiceRequest request, Long userId) {
-        BankAccount sourceAccount = bankAccountRepository.findByAccountNumberAndIsActiveTrue(request.sourceAccount())
-                .orElseThrow(() -> new RuntimeException("Cuenta origen no disponible"));
+        AccountRef source = resolveAccount(request.sourceAccount(), "Cuenta origen no disponible");
+        checkOwnership(source, userId);
 
-        if (!sourceAccount.getUser().getId().equals(userId)) {
-            throw new RuntimeException("La cuenta origen no te pertenece");
-        }
+        Currency currency = resolveCurrency(request.currency());
 
-        Currency currency = currencyRepository.findByCode(request.currency())
-                .orElseThrow(() -> new RuntimeException("Tipo de moneda no soportada"));
+        ExchangeQuote sourceQuote = currencyExchangeService.quote(currency.getCode(), currencyCodeOf(source));
+        BigDecimal amountToSubtract = sourceQuote.apply(request.amount());
 
-        BigDecimal amountToSubtract = currencyExchangeService.convert(
-                request.amount(),
-                currency.getCode(),
-                sourceAccount.getCurrency().getCode()
-        );
+        return accountLockService.executePosting(() -> {
+            BankAccount sourceAccount = lockAccount(source, "Cuenta origen no disponible");
 
-        if (sourceAccount.getCurrentBalance().compareTo(amountToSubtract) < 0) {
-            throw new RuntimeException("Saldo no disponible");
-        }
+            if (sourceAccount.getCurrentBalance().compareTo(amountToSubtract) < 0) {
+                throw new RuntimeException("Saldo no disponible");
+            }
 
-        sourceAccount.setCurrentBalance(sourceAccount.getCurrentBalance().subtract(amountToSubtract));
+            sourceAccount.setCurrentBalance(sourceAccount.getCurrentBalance().subtract(amountToSubtract));
 
-        TransactionType transactionType = transactionTypeRepository.findById(4) // PAGO_SERVICIO
-                .orElseThrow(() -> new RuntimeException("Tipo de transacción no existente"));
+            TransactionType transactionType = catalogService.getTransactionType(TransactionTypeCode.PAGO_SERVICIO);
 
-        TransactionStatus transactionStatus = transactionStatusRepository.findById(2) // SUCCESS
-                .orElseThrow(() -> new RuntimeException("Estado de transacción no encontrado"));
+            TransactionStatus transactionStatus = catalogService.getTransactionStatus(TransactionStatusCode.SUCCESS);
 
-        String userDescription = request.description() != null ? request.description() : "";
+            String userDescription = request.description() != null ? request.description() : "";
 
-        String requestDescription = "SERVICIO: " + request.serviceName()
-                + "\nSUMINISTRO: " + request.supplyCode()
-                + "\n" + userDescription;
+            String requestDescription = "SERVICIO: " + request.serviceName()
+                    + "\nSUMINISTRO: " + request.supplyCode()
+                    + "\n" + userDescription;
 
-        BankTransaction bankTransaction = BankTransaction.builder()
-                .sourceAccount(sourceAccount)
-                .targetAccount(null)
-                .transactionType(transactionType)
-                .amount(request.amount())
-                .currency(currency)
-                .transactionStatus(transactionStatus)
-                .referenceCode(generateReferenceCode())
-                .description(requestDescription)
-                .build();
+            BankTransaction bankTransaction = BankTransaction.builder()
+                    .sourceAccount(sourceAccount)
+                    .targetAccount(null)
+                    .transactionType(transactionType)
+                    .amount(request.amount())
+                    .currency(currency)
+                    .transactionStatus(transactionStatus)
+                    .referenceCode(idGeneratorService.nextReferenceCode())
+                    .description(requestDescription)
+                    .sourceAppliedRate(sourceQuote.rate())
+                    .rateSnapshotId(sourceQuote.snapshotId())
+                    .build();
 
-        BankTransaction saved = bankTransactionRepository.save(bankTransaction);
+            BankTransaction saved = bankTransactionRepository.save(bankTransaction);
+            transactionJournalService.recordLegs(saved);
 
-        return mapToTransactionResponse(saved);
+            return mapToTransactionResponse(saved);
+        });
     }
 
     @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public TransactionResponse payInterest(PayInterestRequest request) {
-        BankAccount targetAccount = bankAccountRepository.findByAccountNumberAndIsActiveTrue(request.targetAccount())
-                .orElseThrow(() -> new RuntimeException("Cuenta destino no disponible"));
+        AccountRef target = resolveAccount(request.targetAccount(), "Cuenta destino no disponible");
 
-        Currency currency = currencyRepository.findByCode(request.currency())
-                .orElseThrow(() -> new RuntimeException("Tipo de moneda no soportada"));
+        Currency currency = resolveCurrency(request.currency());
 
-        BigDecimal amountToAdd = currencyExchangeService.convert(
-                request.amount(),
-                currency.getCode(),
-                targetAccount.getCurrency().getCode()
-        );
+        ExchangeQuote targetQuote = currencyExchangeService.quote(currency.getCode(), currencyCodeOf(target));
+        BigDecimal amountToAdd = targetQuote.apply(request.amount());
+
+        return accountLockService.executePosting(() -> {
+            BankAccount targetAccount = lockAccount(target, "Cuenta destino no disponible");
 
-        targetAccount.setCurrentBalance(targetAccount.getCurrentBalance().add(amountToAdd));
+            targetAccount.setCurrentBalance(targetAccount.getCurrentBalance().add(amountToAdd));
 
-        TransactionType transactionType = transactionTypeRepository.findById(5) // PAGO_INTERESES
-                .orElseThrow(() -> new RuntimeException("Tipo de transacción no existente"));
+            TransactionType transactionType = catalogService.getTransactionType(TransactionTypeCode.PAGO_INTERESES);
 
-        TransactionStatus transactionStatus = transactionStatusRepository.findById(2) // SUCCESS
-                .orElseThrow(() -> new RuntimeException("Estado de transacción no encontrado"));
+            TransactionStatus transactionStatus = catalogService.getTransactionStatus(TransactionStatusCode.SUCCESS);
 
-        BankTransaction bankTransaction = BankTransaction.builder()
-                .sourceAccount(null)
-                .targetAccount(targetAccount)
-                .transactionType(transactionType)
-                .amount(request.amount())
-                .currency(currency)
-                .transactionStatus(transactionStatus)
-                .referenceCode(generateReferenceCode())
-                .description(request.description())
-                .build();
+            BankTransaction bankTransaction = BankTransaction.builder()
+                    .sourceAccount(null)
+                    .targetAccount(targetAccount)
+                    .transactionType(transactionType)
+                    .amount(request.amount())
+                    .currency(currency)
+                    .transactionStatus(transactionStatus)
+                    .referenceCode(idGeneratorService.nextReferenceCode())
+                    .description(request.description())
+                    .targetAppliedRate(targetQuote.rate())
+                    .rateSnapshotId(targetQuote.snapshotId())
+                    .build();
 
-        BankTransaction saved = bankTransactionRepository.save(bankTransaction);
+            BankTransaction saved = bankTransactionRepository.save(bankTransaction);
+            transactionJournalService.recordLegs(saved);
 
-        return mapToTransactionResponse(saved);
+            return mapToTransactionResponse(saved);
+        });
     }
 
+    // Historial desde account_posting_leg: un recorrido del índice por cuenta, sin tocar bank_transaction.
+    // Los meses archivados son siempre más antiguos que las filas vivas: van detrás de ellas en el orden del historial
     @Override
+    @Transactional(readOnly = true)
     public Page<TransactionResponse> getHistory(
             String accountNumber,
             Long userId,
@@ -265,18 +417,97 @@ public class TransactionServiceImpl implements TransactionService {
             LocalDateTime endDate,
             Pageable pageable
     ) {
-        BankAccount account = bankAccountRepository.findByAccountNumberAndIsActiveTrue(accountNumber)
-                .orElseThrow(() -> new RuntimeException("Cuenta origen no disponible"));
+        AccountRef account = resolveAccount(accountNumber, "Cuenta origen no disponible");
+        checkOwnership(account, userId);
 
-        if (!account.getUser().getId().equals(userId)) {
-            throw new RuntimeException("La cuenta origen no te pertenece");
+        LocalDateTime lower = DateRangeUtils.lowerBound(startDate);
+        LocalDateTime upper = DateRangeUtils.upperBound(endDate);
+
+        Page<AccountPostingLeg> hot = accountPostingLegRepository.findAllByAccountId(account.id(), status, lower, upper, pageable);
+        long archived = transactionArchiveService.countLegs(account.id(), status, lower, upper);
+
+        if (archived == 0) {
+            return hot.map(leg -> mapLegToTransactionResponse(leg, account.accountNumber()));
+        }
+
+        // La página se completa con lados archivados cuando las filas vivas no alcanzan
+        List<AccountPostingLeg> content = new ArrayList<>(hot.getContent());
+        if (content.size() < pageable.getPageSize()) {
+            long archiveOffset = Math.max(0, pageable.getOffset() - hot.getTotalElements());
+            content.addAll(transactionArchiveService.findLegs(
+                    account.id(), status, lower, upper, archiveOffset, pageable.getPageSize() - content.size()));
         }
 
-        return bankTransactionRepository.findAllByAccountId(account.getId(), status, startDate, endDate, pageable)
-                .map(this::mapToTransactionResponse);
+        return new PageImpl<>(
+                content.stream().map(leg -> mapLegToTransactionResponse(leg, account.accountNumber())).toList(),
+                pageable,
+                hot.getTotalElements() + archived
+        );
     }
 
     @Override
+    @Transactional(readOnly = true)
+    public TransactionHistoryResponse getHistoryPage(
+            String accountNumber,
+            Long userId,
+            String status,
+            LocalDateTime startDate,
+            LocalDateTime endDate,
+            String cursor,
+            int size
+    ) {
+        AccountRef account = resolveAccount(accountNumber, "Cuenta origen no disponible");
+        checkOwnership(account, userId);
+
+        HistoryCursor after = cursor != null ? HistoryCursor.decode(cursor) : null;
+        LocalDateTime cursorAt = after != null ? after.createdAt() : DateRangeUtils.MAX_DATE;
+        Long cursorId = after != null ? after.id() : Long.MAX_VALUE;
+
+        // El cursor también acota por arriba: las páginas profundas no tocan las particiones más recientes
+        LocalDateTime upper = DateRangeUtils.upperBound(endDate);
+        if (cursorAt.isBefore(upper)) {
+            upper = cursorAt;
+        }
+
+        // Se pide una fila de más para saber si existe página siguiente sin contar
+        List<AccountPostingLeg> legs = accountPostingLegRepository.findPageByAccountId(
+                account.id(),
+                status,
+                DateRangeUtils.lowerBound(startDate),
+                upper,
+                cursorAt,
+                cursorId,
+                size + 1
+        );
+
+        // Con la página sin llenar se sigue en el archivo frío con el mismo cursor (sus filas son todas más antiguas)
+        if (legs.size() <= size) {
+            List<AccountPostingLeg> archived = transactionArchiveService.findLegs(
+                    account.id(), status, DateRangeUtils.lowerBound(startDate), upper, cursorAt, cursorId, size + 1 - legs.size());
+            if (!archived.isEmpty()) {
+                legs = new ArrayList<>(legs);
+                legs.addAll(archived);
+            }
+        }
+
+        boolean hasMore = legs.size() > size;
+        List<AccountPostingLeg> page = hasMore ? legs.subList(0, size) : legs;
+
+        List<TransactionResponse> content = page.stream()
+                .map(leg -> mapLegToTransactionResponse(leg, account.accountNumber()))
+                .toList();
+
+        String nextCursor = null;
+        if (hasMore) {
+            AccountPostingLeg last = page.get(page.size() - 1);
+            nextCursor = new HistoryCursor(last.getCreatedAt(), last.getId()).encode();
+        }
+
+        return new TransactionHistoryResponse(content, content.size(), nextCursor);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public Page<TransactionResponse> getAllTransactions(
             String accountNumber,
             String status,
@@ -284,12 +515,256 @@ public class TransactionServiceImpl implements TransactionService {
             LocalDateTime endDate,
             Pageable pageable
     ) {
-        return bankTransactionRepository.findAllByFilter(accountNumber, status, startDate, endDate, pageable)
-                .map(this::mapToTransactionResponse);
+        return bankTransactionRepository.findAllByFilter(
+                accountNumber, status, DateRangeUtils.lowerBound(startDate), DateRangeUtils.upperBound(endDate), pageable);
     }
 
     // Métodos privados
 
+    // Fase de precio: lecturas cortas fuera de la transacción de posting
+
+    private AccountRef resolveAccount(String accountNumber, String errorMessage) {
+        return bankAccountRepository.findRefByAccountNumberAndIsActiveTrue(accountNumber)
+                .orElseThrow(() -> new RuntimeException(errorMessage));
+    }
+
+    private void checkOwnership(AccountRef account, Long userId) {
+        if (!account.userId().equals(userId)) {
+            throw new RuntimeException("La cuenta origen no te pertenece");
+        }
+    }
+
+    private Currency resolveCurrency(String currencyCode) {
+        return catalogService.findCurrency(currencyCode)
+                .orElseThrow(() -> new RuntimeException("Tipo de moneda no soportada"));
+    }
+
+    private String currencyCodeOf(AccountRef account) {
+        return catalogService.getCurrency(account.currencyId()).getCode();
+    }
+
+    // Fase de posting: bloqueo, validación de saldo y escritura
+
+    private BankAccount lockAccount(AccountRef account, String errorMessage) {
+        return getLockedAccount(accountLockService.lockAccounts(List.of(account.id())), account.id(), errorMessage);
+    }
+
+    private BankAccount getLockedAccount(Map<Long, BankAccount> lockedAccounts, Long accountId, String errorMessage) {
+        BankAccount account = lockedAccounts.get(accountId);
+
+        if (!isAvailable(account)) {
+            throw new RuntimeException(errorMessage);
+        }
+
+        return account;
+    }
+
+    // La cuenta pudo desactivarse entre la búsqueda y el bloqueo
+    private static boolean isAvailable(BankAccount account) {
+        return account != null && Boolean.TRUE.equals(account.getIsActive());
+    }
+
+    private PricedTransfer priceTransfer(
+            int index,
+            TransferRequest transfer,
+            Long userId,
+            Map<String, AccountRef> accounts,
+            Map<String, ExchangeQuote> quotes
+    ) {
+        AccountRef source = accounts.get(transfer.sourceAccount());
+        if (source == null) throw new RuntimeException("Cuenta origen no disponible");
+        checkOwnership(source, userId);
+
+        AccountRef target = accounts.get(transfer.targetAccount());
+        if (target == null) throw new RuntimeException("Cuenta destino no disponible");
+
+        Currency currency = resolveCurrency(transfer.currency());
+
+        ExchangeQuote sourceQuote = quotes.computeIfAbsent(currency.getCode() + ">" + currencyCodeOf(source),
+                pair -> currencyExchangeService.quote(currency.getCode(), currencyCodeOf(source)));
+        ExchangeQuote targetQuote = quotes.computeIfAbsent(currency.getCode() + ">" + currencyCodeOf(target),
+                pair -> currencyExchangeService.quote(currency.getCode(), currencyCodeOf(target)));
+
+        return new PricedTransfer(index, transfer, source, target, currency, sourceQuote, targetQuote);
+    }
+
+    // Se ejecuta dentro de executePosting: puede repetirse completo ante un conflicto optimista
+    private List<BatchTransferResponse.ItemResult> postTransferChunk(List<PricedTransfer> chunk) {
+        Set<Long> accountIds = new HashSet<>();
+        chunk.forEach(transfer -> {
+            accountIds.add(transfer.source().id());
+            accountIds.add(transfer.target().id());
+        });
+
+        Map<Long, BankAccount> lockedAccounts = accountLockService.lockAccounts(accountIds);
+        TransactionType transactionType = catalogService.getTransactionType(TransactionTypeCode.TRANSFERENCIA);
+        TransactionStatus transactionStatus = catalogService.getTransactionStatus(TransactionStatusCode.SUCCESS);
+
+        List<BatchTransferResponse.ItemResult> results = new ArrayList<>();
+        List<PricedTransfer> posted = new ArrayList<>();
+        List<BankTransaction> bankTransactions = new ArrayList<>();
+
+        for (PricedTransfer transfer : chunk) {
+            BankAccount sourceAccount = lockedAccounts.get(transfer.source().id());
+            BankAccount targetAccount = lockedAccounts.get(transfer.target().id());
+            BigDecimal amountToSubtract = transfer.sourceQuote().apply(transfer.request().amount());
+            BigDecimal amountToAdd = transfer.targetQuote().apply(transfer.request().amount());
+
+            String error = !isAvailable(sourceAccount) ? "Cuenta origen no disponible"
+                    : !isAvailable(targetAccount) ? "Cuenta destino no disponible"
+                    : sourceAccount.getCurrentBalance().compareTo(amountToSubtract) < 0 ? "Saldo no disponible"
+                    : null;
+
+            if (error != null) {
+                results.add(BatchTransferResponse.ItemResult.failed(transfer.index(), error));
+                continue;
+            }
+
+            sourceAccount.setCurrentBalance(sourceAccount.getCurrentBalance().subtract(amountToSubtract));
+            targetAccount.setCurrentBalance(targetAccount.getCurrentBalance().add(amountToAdd));
+
+            posted.add(transfer);
+            bankTransactions.add(BankTransaction.builder()
+                    .sourceAccount(sourceAccount)
+                    .targetAccount(targetAccount)
+                    .transactionType(transactionType)
+                    .amount(transfer.request().amount())
+                    .currency(transfer.currency())
+                    .transactionStatus(transactionStatus)
+                    .referenceCode(idGeneratorService.nextReferenceCode())
+                    .description(transfer.request().description())
+                    .sourceAppliedRate(transfer.sourceQuote().rate())
+                    .targetAppliedRate(transfer.targetQuote().rate())
+                    .rateSnapshotId(transfer.sourceQuote().snapshotId() != null
+                            ? transfer.sourceQuote().snapshotId()
+                            : transfer.targetQuote().snapshotId())
+                    .build());
+        }
+
+        // Inserciones agrupadas por Hibernate (hibernate.jdbc.batch_size)
+        List<BankTransaction> saved = bankTransactionRepository.saveAll(bankTransactions);
+        transactionJournalService.recordLegs(saved);
+
+        for (int i = 0; i < saved.size(); i++) {
+            results.add(BatchTransferResponse.ItemResult.success(posted.get(i).index(), mapToTransactionResponse(saved.get(i))));
+        }
+
+        return results;
+    }
+
+    private record PricedTransfer(
+            int index,
+            TransferRequest request,
+            AccountRef source,
+            AccountRef target,
+            Currency currency,
+            ExchangeQuote sourceQuote,
+            ExchangeQuote targetQuote
+    ) {}
+
+    // Se ejecuta dentro de executePosting: puede repetirse completo ante un conflicto optimista.
+    // Origen y destinos del bloque se bloquean juntos en una sola llamada (orden ascendente de id)
+    private PayrollChunk postPayrollChunk(
+            AccountRef source,
+            Currency currency,
+            ExchangeQuote sourceQuote,
+            List<PayrollCredit> chunk,
+            BigDecimal requiredBalance,
+            String description
+    ) {
+        Set<Long> accountIds = new HashSet<>();
+        accountIds.add(source.id());
+        chunk.forEach(credit -> accountIds.add(credit.target().id()));
+
+        Map<Long, BankAccount> lockedAccounts = accountLockService.lockAccounts(accountIds);
+        BankAccount sourceAccount = getLockedAccount(lockedAccounts, source.id(), "Cuenta origen no disponible");
+
+        BigDecimal chunkDebit = chunk.stream().map(PayrollCredit::amountToSubtract).reduce(BigDecimal.ZERO, BigDecimal::add);
+        if (sourceAccount.getCurrentBalance().compareTo(requiredBalance != null ? requiredBalance : chunkDebit) < 0) {
+            throw new RuntimeException("Saldo no disponible");
+        }
+
+        TransactionType transactionType = catalogService.getTransactionType(TransactionTypeCode.TRANSFERENCIA);
+        TransactionStatus transactionStatus = catalogService.getTransactionStatus(TransactionStatusCode.SUCCESS);
+        BigDecimal debited = BigDecimal.ZERO;
+
+        List<PayrollResponse.LineResult> lines = new ArrayList<>(chunk.size());
+        List<BankTransaction> bankTransactions = new ArrayList<>();
+
+        for (PayrollCredit credit : chunk) {
+            BankAccount targetAccount = lockedAccounts.get(credit.target().id());
+
+            if (!isAvailable(targetAccount)) {
+                lines.add(PayrollResponse.LineResult.failed(
+                        credit.index(), credit.line().targetAccount(), "Cuenta destino no disponible"));
+                continue;
+            }
+
+            BigDecimal amountToAdd = credit.targetQuote().apply(credit.line().amount());
+            targetAccount.setCurrentBalance(targetAccount.getCurrentBalance().add(amountToAdd));
+            debited = debited.add(credit.amountToSubtract());
+
+            BankTransaction bankTransaction = BankTransaction.builder()
+                    .sourceAccount(sourceAccount)
+                    .targetAccount(targetAccount)
+                    .transactionType(transactionType)
+                    .amount(credit.line().amount())
+                    .currency(currency)
+                    .transactionStatus(transactionStatus)
+                    .referenceCode(idGeneratorService.nextReferenceCode())
+                    .description(description)
+                    .sourceAppliedRate(sourceQuote.rate())
+                    .targetAppliedRate(credit.targetQuote().rate())
+                    .rateSnapshotId(sourceQuote.snapshotId() != null
+                            ? sourceQuote.snapshotId()
+                            : credit.targetQuote().snapshotId())
+                    .build();
+
+            bankTransactions.add(bankTransaction);
+            lines.add(PayrollResponse.LineResult.success(
+                    credit.index(), credit.line().targetAccount(), bankTransaction.getReferenceCode(), amountToAdd));
+        }
+
+        // Un único UPDATE del origen por bloque
+        sourceAccount.setCurrentBalance(sourceAccount.getCurrentBalance().subtract(debited));
+
+        // Inserciones agrupadas por Hibernate (hibernate.jdbc.batch_size)
+        transactionJournalService.recordLegs(bankTransactionRepository.saveAll(bankTransactions));
+
+        return new PayrollChunk(lines, debited);
+    }
+
+    private record PayrollChunk(
+            List<PayrollResponse.LineResult> lines,
+            BigDecimal debited
+    ) {}
+
+    private record PayrollCredit(
+            int index,
+            PayrollRequest.Line line,
+            AccountRef target,
+            ExchangeQuote targetQuote,
+            BigDecimal amountToSubtract
+    ) {}
+
+    private TransactionResponse mapLegToTransactionResponse(AccountPostingLeg leg, String accountNumber) {
+        String counterparty = leg.getCounterpartyAccountNumber();
+        boolean isSource = leg.getSide() == PostingSide.SOURCE;
+
+        return new TransactionResponse(
+                leg.getTransactionId(),
+                isSource ? accountNumber : counterparty != null ? counterparty : "EXTERNO",
+                !isSource ? accountNumber : counterparty != null ? counterparty : "EXTERNO/VENTANILLA",
+                leg.getTransactionType(),
+                leg.getAmount(),
+                leg.getTransactionStatus(),
+                leg.getDescription(),
+                leg.getReferenceCode(),
+                leg.getCurrencyCode(),
+                leg.getCreatedAt()
+        );
+    }
+
     private TransactionResponse mapToTransactionResponse(BankTransaction transaction) {
         return new TransactionResponse(
                 transaction.getId(),
@@ -305,23 +780,24 @@ public class TransactionServiceImpl implements TransactionService {
         );
     }
 
-    private String generateReferenceCode() {
-        String referenceCode;
-        do {
-            referenceCode = generateRandomDigits(10);
-
-        } while (bankTransactionRepository.existsByReferenceCode(referenceCode));
-
-        return referenceCode;
-    }
-
-    private String generateRandomDigits(int length) {
-        SecureRandom random = new SecureRandom();
-        StringBuilder sb = new StringBuilder();
+    // Posición (created_at, id) del último lado de movimiento entregado, codificada en Base64 URL-safe
+    private record HistoryCursor(LocalDateTime createdAt, Long id) {
+        String encode() {
+            String raw = createdAt + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
 
-        for (int i = 0; i < length; i++) {
-            sb.append(random.nextInt(10));
+        static HistoryCursor decode(String token) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+                int separator = raw.indexOf('|');
+                return new HistoryCursor(
+                        LocalDateTime.parse(raw.substring(0, separator)),
+                        Long.parseLong(raw.substring(separator + 1))
+                );
+            } catch (RuntimeException e) {
+                throw new RuntimeException("Cursor de paginación inválido");
+            }
         }
-        return sb.toString();
     }
 }
@@ -0,0 +1,29 @@
+package com.example.bank_app.util;
+
+import java.time.LocalDateTime;
+
+public class DateRangeUtils {
+    // Límites centinela dentro del rango de timestamp de Postgres. Las consultas siempre comparan
+    // created_at contra un rango cerrado (sin "IS NULL OR"), así el planner descarta las particiones
+    // mensuales que quedan fuera también con planes genéricos
+    public static final LocalDateTime MIN_DATE = LocalDateTime.of(1970, 1, 1, 0, 0);
+    public static final LocalDateTime MAX_DATE = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+
+    private DateRangeUtils() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Límite inferior del filtro, o el centinela mínimo si no se indicó.
+     */
+    public static LocalDateTime lowerBound(LocalDateTime from) {
+        return from != null ? from : MIN_DATE;
+    }
+
+    /**
+     * Límite superior del filtro, o el centinela máximo si no se indicó.
+     */
+    public static LocalDateTime upperBound(LocalDateTime to) {
+        return to != null ? to : MAX_DATE;
+    }
+}
@@ -1,6 +1,17 @@
 package com.example.bank_app.util;
 
+import com.example.bank_app.model.enums.ExportFormat;
+import com.example.bank_app.service.TransactionExportService;
 import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.nio.charset.StandardCharsets;
 
 public class WebUtils {
 
@@ -32,4 +43,31 @@ public class WebUtils {
         String userAgent = request.getHeader("User-Agent");
         return (userAgent != null && !userAgent.isEmpty()) ? userAgent : "Unknown Device";
     }
+
+    /**
+     * Respuesta de descarga que escribe la exportación directamente en el cuerpo (sin armarla en memoria).
+     * El plazo de la respuesta asíncrona se amplía solo para esta petición; las demás conservan el del contenedor.
+     */
+    public static ResponseEntity<StreamingResponseBody> exportResponse(
+            TransactionExportService.TransactionExport export,
+            ExportFormat format,
+            String baseName,
+            HttpServletRequest request,
+            long timeoutMs
+    ) {
+        AsyncWebRequest asyncWebRequest = WebAsyncUtils.getAsyncManager(request).getAsyncWebRequest();
+        if (asyncWebRequest != null) {
+            asyncWebRequest.setTimeout(timeoutMs);
+        }
+
+        MediaType mediaType = format == ExportFormat.NDJSON
+                ? MediaType.APPLICATION_NDJSON
+                : new MediaType("text", "csv", StandardCharsets.UTF_8);
+        String fileName = baseName + "." + format.name().toLowerCase();
+
+        return ResponseEntity.ok()
+                .contentType(mediaType)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(fileName).build().toString())
+                .body(export::writeTo);
+    }
 }
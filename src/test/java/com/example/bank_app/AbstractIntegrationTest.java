@@ -1,5 +1,12 @@
 package com.example.bank_app;
 
+import com.example.bank_app.service.CatalogService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
@@ -20,11 +27,44 @@ public abstract class AbstractIntegrationTest {
         postgres.start();
     }
 
+    @Autowired
+    private CatalogService catalogService;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
     @DynamicPropertySource
     static void configureProperties(DynamicPropertyRegistry registry) {
         registry.add("spring.datasource.url", postgres::getJdbcUrl);
         registry.add("spring.datasource.username", postgres::getUsername);
         registry.add("spring.datasource.password", postgres::getPassword);
         registry.add("spring.jpa.hibernate.ddl-auto", () -> "create-drop");
+        // Contadores de sentencias para los tests que vigilan N+1 (ver countStatements)
+        registry.add("spring.jpa.properties.hibernate.generate_statistics", () -> "true");
+        // Cada test inserta sus propios catálogos y hace rollback: sin throttle entre recargas
+        registry.add("application.catalog.miss-reload-interval-ms", () -> "0");
+    }
+
+    // Dentro de la transacción del test pero antes de sus datos: el snapshot no retiene filas que luego se revierten
+    @BeforeEach
+    void reloadCatalog() {
+        catalogService.reload();
+    }
+
+    // Sentencias JDBC preparadas por Hibernate durante la acción, con el contexto de persistencia vacío
+    // (sin entidades ya cargadas que oculten consultas perezosas)
+    protected long countStatements(ThrowingRunnable action) throws Exception {
+        entityManager.flush();
+        entityManager.clear();
+
+        Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        action.run();
+        return statistics.getPrepareStatementCount();
+    }
+
+    @FunctionalInterface
+    protected interface ThrowingRunnable {
+        void run() throws Exception;
     }
-}
\ No newline at end of file
+}
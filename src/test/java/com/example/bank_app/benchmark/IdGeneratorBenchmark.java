@@ -0,0 +1,65 @@
+package com.example.bank_app.benchmark;
+
+import com.example.bank_app.service.impl.IdGeneratorServiceImpl;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compara el generador actual contra el esquema anterior (SecureRandom nuevo por llamada).
+ * Ejecutar: ./mvnw test-compile y luego lanzar main() desde el IDE.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdGeneratorBenchmark {
+    private IdGeneratorServiceImpl generator;
+
+    @Setup
+    public void setUp() {
+        // Bloques en memoria: mide el generador, no el nextval() de cada BLOCK_SIZE valores
+        AtomicLong blocks = new AtomicLong();
+        generator = new IdGeneratorServiceImpl(sequence -> blocks.getAndAdd(IdGeneratorServiceImpl.BLOCK_SIZE));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String referenceCode() {
+        return generator.nextReferenceCode();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String accountNumber() {
+        return generator.nextAccountNumber();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String legacySecureRandomDigits() {
+        SecureRandom random = new SecureRandom();
+        StringBuilder sb = new StringBuilder();
+
+        for (int i = 0; i < 10; i++) {
+            sb.append(random.nextInt(10));
+        }
+        return sb.toString();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(IdGeneratorBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(options).run();
+    }
+}
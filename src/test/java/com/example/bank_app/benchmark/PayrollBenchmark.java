@@ -0,0 +1,167 @@
+package com.example.bank_app.benchmark;
+
+import com.example.bank_app.dto.account.AccountRef;
+import com.example.bank_app.dto.transaction.PayrollRequest;
+import com.example.bank_app.dto.transaction.TransferRequest;
+import com.example.bank_app.model.*;
+import com.example.bank_app.model.enums.TransactionStatusCode;
+import com.example.bank_app.model.enums.TransactionTypeCode;
+import com.example.bank_app.repository.AccountPostingLegRepository;
+import com.example.bank_app.repository.BankAccountRepository;
+import com.example.bank_app.repository.BankTransactionRepository;
+import com.example.bank_app.service.AccountLockService;
+import com.example.bank_app.service.CatalogService;
+import com.example.bank_app.service.CurrencyExchangeService;
+import com.example.bank_app.service.CurrencyExchangeService.ExchangeQuote;
+import com.example.bank_app.service.IdGeneratorService;
+import com.example.bank_app.service.TransactionArchiveService;
+import com.example.bank_app.service.TransactionJournalService;
+import com.example.bank_app.service.impl.TransactionServiceImpl;
+import org.mockito.stubbing.Answer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Planilla de LINES empleados: disbursePayroll contra un transfer() por empleado.
+ * Cada llamada a repositorio o al servicio de bloqueos simula un viaje a la BD de roundTripMicros,
+ * así el resultado (líneas/s) refleja los viajes ahorrados y no solo el costo en CPU.
+ * Ejecutar: ./mvnw test-compile y luego lanzar main() desde el IDE.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PayrollBenchmark {
+    private static final int LINES = 1000;
+
+    @Param({"0", "200"})
+    private long roundTripMicros;
+
+    private TransactionServiceImpl transactionService;
+    private PayrollRequest payrollRequest;
+    private List<TransferRequest> transferRequests;
+
+    @Setup
+    public void setUp() {
+        Currency pen = Currency.builder().id(1).code("PEN").build();
+        User employer = User.builder().id(1L).build();
+        User employee = User.builder().id(2L).build();
+
+        Map<Long, BankAccount> accounts = new HashMap<>();
+        Map<String, AccountRef> refs = new HashMap<>();
+        List<PayrollRequest.Line> lines = new ArrayList<>();
+        transferRequests = new ArrayList<>();
+
+        for (long id = 0; id <= LINES; id++) {
+            BankAccount account = BankAccount.builder()
+                    .id(id)
+                    .user(id == 0 ? employer : employee)
+                    .accountNumber(String.format("%014d", id))
+                    .currency(pen)
+                    .currentBalance(new BigDecimal("1000000000.00"))
+                    .isActive(true)
+                    .build();
+            accounts.put(id, account);
+            refs.put(account.getAccountNumber(), new AccountRef(id, account.getAccountNumber(), account.getUser().getId(), 1));
+
+            if (id > 0) {
+                lines.add(new PayrollRequest.Line(account.getAccountNumber(), new BigDecimal("1500.00")));
+                transferRequests.add(new TransferRequest(String.format("%014d", 0), account.getAccountNumber(),
+                        new BigDecimal("1500.00"), "PEN", "Planilla"));
+            }
+        }
+        payrollRequest = new PayrollRequest(String.format("%014d", 0), "PEN", "Planilla", lines);
+
+        BankAccountRepository bankAccountRepository = mock(BankAccountRepository.class);
+        when(bankAccountRepository.findRefByAccountNumberAndIsActiveTrue(anyString()))
+                .thenAnswer(roundTrip(inv -> Optional.ofNullable(refs.get(inv.<String>getArgument(0)))));
+        when(bankAccountRepository.findRefsByAccountNumberInAndIsActiveTrue(any()))
+                .thenAnswer(roundTrip(inv -> inv.<Collection<String>>getArgument(0).stream().map(refs::get).toList()));
+
+        AccountLockService accountLockService = mock(AccountLockService.class);
+        when(accountLockService.executePosting(any())).thenAnswer(inv -> inv.<Supplier<?>>getArgument(0).get());
+        when(accountLockService.lockAccounts(any())).thenAnswer(roundTrip(inv -> {
+            Map<Long, BankAccount> locked = new HashMap<>();
+            inv.<Collection<Long>>getArgument(0).forEach(id -> locked.put(id, accounts.get(id)));
+            return locked;
+        }));
+
+        BankTransactionRepository bankTransactionRepository = mock(BankTransactionRepository.class);
+        when(bankTransactionRepository.save(any())).thenAnswer(roundTrip(inv -> inv.getArgument(0)));
+        when(bankTransactionRepository.saveAll(any())).thenAnswer(roundTrip(inv -> inv.getArgument(0)));
+
+        CatalogService catalogService = mock(CatalogService.class);
+        when(catalogService.findCurrency("PEN")).thenReturn(Optional.of(pen));
+        when(catalogService.getCurrency(1)).thenReturn(pen);
+        when(catalogService.getTransactionType(TransactionTypeCode.TRANSFERENCIA))
+                .thenReturn(TransactionType.builder().name("TRANSFERENCIA").build());
+        when(catalogService.getTransactionStatus(TransactionStatusCode.SUCCESS))
+                .thenReturn(TransactionStatus.builder().name("SUCCESS").build());
+
+        CurrencyExchangeService currencyExchangeService = mock(CurrencyExchangeService.class);
+        when(currencyExchangeService.quote(anyString(), anyString())).thenReturn(ExchangeQuote.IDENTITY);
+
+        IdGeneratorService idGeneratorService = mock(IdGeneratorService.class);
+        when(idGeneratorService.nextReferenceCode()).thenReturn("0000000109");
+
+        transactionService = new TransactionServiceImpl(bankAccountRepository, currencyExchangeService, catalogService,
+                bankTransactionRepository, mock(AccountPostingLegRepository.class), mock(TransactionJournalService.class),
+                mock(TransactionArchiveService.class), accountLockService, idGeneratorService);
+        ReflectionTestUtils.setField(transactionService, "batchChunkSize", 100);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public Object disbursePayroll() {
+        return transactionService.disbursePayroll(payrollRequest, 1L, line -> { });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public Object transferPerEmployee() {
+        Object last = null;
+        for (TransferRequest request : transferRequests) {
+            last = transactionService.transfer(request, 1L);
+        }
+        return last;
+    }
+
+    private Answer<Object> roundTrip(Answer<Object> answer) {
+        return inv -> {
+            if (roundTripMicros > 0) {
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(roundTripMicros));
+            }
+            return answer.answer(inv);
+        };
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(PayrollBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(options).run();
+    }
+}
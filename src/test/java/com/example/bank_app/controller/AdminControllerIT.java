@@ -21,6 +21,7 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.*;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.mockito.ArgumentMatchers.any;
@@ -181,6 +182,41 @@ class AdminControllerIT extends AbstractIntegrationTest {
                 .andExpect(jsonPath("$.content", hasSize(1)));
     }
 
+    @Test
+    void getAllTransactions_PageLoadsInOneQueryPlusCount() throws Exception {
+        // Given: una página de 20 movimientos entre cuentas distintas
+        BankAccount otherAccount = bankAccountRepository.save(BankAccount.builder()
+                .user(clientUser)
+                .accountType(clientAccount.getAccountType())
+                .accountNumber("444555666")
+                .currency(clientAccount.getCurrency())
+                .currentBalance(BigDecimal.ZERO)
+                .build());
+        BankTransaction template = bankTransactionRepository.findAll().get(0);
+        for (int i = 0; i < 20; i++) {
+            bankTransactionRepository.save(BankTransaction.builder()
+                    .sourceAccount(i % 2 == 0 ? clientAccount : otherAccount)
+                    .targetAccount(i % 2 == 0 ? otherAccount : clientAccount)
+                    .transactionType(template.getTransactionType())
+                    .amount(BigDecimal.ONE)
+                    .currency(template.getCurrency())
+                    .transactionStatus(template.getTransactionStatus())
+                    .referenceCode("REF-N1-" + i)
+                    .build());
+        }
+
+        // When
+        long statements = countStatements(() -> mockMvc.perform(get("/api/v1/admin/transactions")
+                        .with(authentication(auth))
+                        .param("size", "20"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", hasSize(20)))
+                .andExpect(jsonPath("$.content[*].targetAccount", hasItem("444555666"))));
+
+        // Then: la proyección y el conteo; cualquier carga perezosa por fila lo rompe
+        assertThat(statements).isLessThanOrEqualTo(2);
+    }
+
     // --- Tests Users ---
 
     @Test
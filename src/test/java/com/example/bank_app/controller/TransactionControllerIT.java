@@ -1,12 +1,15 @@
 package com.example.bank_app.controller;
 
 import com.example.bank_app.AbstractIntegrationTest;
+import com.example.bank_app.dto.transaction.BatchTransferRequest;
 import com.example.bank_app.dto.transaction.DepositRequest;
 import com.example.bank_app.dto.transaction.PayServiceRequest;
+import com.example.bank_app.dto.transaction.PayrollRequest;
 import com.example.bank_app.dto.transaction.TransferRequest;
 import com.example.bank_app.dto.transaction.WithdrawRequest;
 import com.example.bank_app.model.*;
 import com.example.bank_app.repository.*;
+import com.example.bank_app.service.TransactionJournalService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -17,10 +20,13 @@ import org.springframework.test.web.servlet.MockMvc;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.math.BigDecimal;
+import java.util.List;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.hasSize;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -36,6 +42,7 @@ class TransactionControllerIT extends AbstractIntegrationTest {
     @Autowired private AccountTypeRepository accountTypeRepository;
     @Autowired private TransactionTypeRepository transactionTypeRepository;
     @Autowired private TransactionStatusRepository transactionStatusRepository;
+    @Autowired private TransactionJournalService transactionJournalService;
 
     @Autowired private MockMvc mockMvc;
     @Autowired private ObjectMapper objectMapper;
@@ -142,6 +149,56 @@ class TransactionControllerIT extends AbstractIntegrationTest {
                 .andExpect(jsonPath("$.transactionType").value("TRANSFERENCIA"));
     }
 
+    @Test
+    void transferBatch_ShouldReportEachTransfer() throws Exception {
+        // Given
+        BatchTransferRequest request = new BatchTransferRequest(List.of(
+                new TransferRequest("1234567", "0001112", BigDecimal.valueOf(100), "USD", "lote 1"),
+                new TransferRequest("1234567", "9999999", BigDecimal.valueOf(50), "USD", "lote 2"),
+                new TransferRequest("1234567", "0001112", BigDecimal.valueOf(1000), "USD", "lote 3")
+        ));
+
+        // When & Then
+        mockMvc.perform(post("/api/v1/transactions/user/{id}/transfer/batch", sourceUser.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(3))
+                .andExpect(jsonPath("$.succeeded").value(1))
+                .andExpect(jsonPath("$.results[0].transaction.transactionType").value("TRANSFERENCIA"))
+                .andExpect(jsonPath("$.results[1].error").value("Cuenta destino no disponible"))
+                .andExpect(jsonPath("$.results[2].error").value("Saldo no disponible"));
+
+        assertThat(bankAccountRepository.findById(sourceAcc.getId()).orElseThrow().getCurrentBalance())
+                .isEqualByComparingTo("400");
+    }
+
+    @Test
+    void disbursePayroll_ShouldStreamOneLinePerResult() throws Exception {
+        // Given
+        PayrollRequest request = new PayrollRequest("1234567", "USD", "planilla", List.of(
+                new PayrollRequest.Line("0001112", BigDecimal.valueOf(100)),
+                new PayrollRequest.Line("9999999", BigDecimal.valueOf(50))
+        ));
+
+        // When: las líneas se escriben en la respuesta a medida que se confirma cada bloque
+        String body = mockMvc.perform(post("/api/v1/transactions/user/{id}/payroll", sourceUser.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        // Then
+        List<String> lines = body.lines().toList();
+        assertThat(lines).hasSize(3);
+        assertThat(objectMapper.readTree(lines.get(0)).get("status").asText()).isEqualTo("SUCCESS");
+        assertThat(objectMapper.readTree(lines.get(1)).get("error").asText()).isEqualTo("Cuenta destino no disponible");
+        assertThat(objectMapper.readTree(lines.get(2)).get("succeeded").asInt()).isEqualTo(1);
+        assertThat(bankAccountRepository.findById(sourceAcc.getId()).orElseThrow().getCurrentBalance())
+                .isEqualByComparingTo("400");
+    }
+
     @Test
     void deposit_ShouldCreateDepositTransaction() throws Exception {
         // Given
@@ -209,7 +266,7 @@ class TransactionControllerIT extends AbstractIntegrationTest {
     @Test
     void get_ShouldReturnListOfAllTransactions() throws Exception {
         // Given
-        bankTransactionRepository.saveAndFlush(BankTransaction.builder()
+        record(BankTransaction.builder()
                 .sourceAccount(sourceAcc)
                 .targetAccount(targetAcc)
                 .transactionType(transferType)
@@ -220,7 +277,7 @@ class TransactionControllerIT extends AbstractIntegrationTest {
                 .description("transfer")
                 .build());
 
-        bankTransactionRepository.saveAndFlush(BankTransaction.builder()
+        record(BankTransaction.builder()
                 .sourceAccount(sourceAcc)
                 .targetAccount(targetAcc)
                 .transactionType(transferType)
@@ -239,4 +296,78 @@ class TransactionControllerIT extends AbstractIntegrationTest {
                 .andExpect(jsonPath("$.content[0].referenceCode").value("REF-2"))
                 .andExpect(jsonPath("$.content[1].referenceCode").value("REF-1"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void getHistoryPage_ShouldWalkHistoryWithCursor() throws Exception {
+        // Given: tres movimientos, dos como origen y uno como destino (el historial lee account_posting_leg)
+        for (int i = 1; i <= 3; i++) {
+            record(BankTransaction.builder()
+                    .sourceAccount(i == 2 ? targetAcc : sourceAcc)
+                    .targetAccount(i == 2 ? sourceAcc : targetAcc)
+                    .transactionType(transferType)
+                    .amount(BigDecimal.valueOf(100L * i))
+                    .currency(currencyUSD)
+                    .transactionStatus(transactionStatus)
+                    .referenceCode("REF-" + i)
+                    .description("transfer " + i)
+                    .build());
+        }
+
+        // When & Then
+        String firstPage = mockMvc.perform(get("/api/v1/transactions/history/account/{accountNumber}/cursor", sourceAcc.getAccountNumber())
+                    .param("userId", sourceUser.getId().toString())
+                    .param("size", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", hasSize(2)))
+                .andExpect(jsonPath("$.content[0].referenceCode").value("REF-3"))
+                .andExpect(jsonPath("$.content[1].referenceCode").value("REF-2"))
+                .andExpect(jsonPath("$.nextCursor").isNotEmpty())
+                .andReturn().getResponse().getContentAsString();
+
+        String cursor = objectMapper.readTree(firstPage).get("nextCursor").asText();
+
+        mockMvc.perform(get("/api/v1/transactions/history/account/{accountNumber}/cursor", sourceAcc.getAccountNumber())
+                    .param("userId", sourceUser.getId().toString())
+                    .param("size", "2")
+                    .param("cursor", cursor))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", hasSize(1)))
+                .andExpect(jsonPath("$.content[0].referenceCode").value("REF-1"))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    @Test
+    void getHistoryPage_ShouldNotLoadRelationsPerRow() throws Exception {
+        // Given
+        for (int i = 1; i <= 20; i++) {
+            record(BankTransaction.builder()
+                    .sourceAccount(sourceAcc)
+                    .targetAccount(targetAcc)
+                    .transactionType(transferType)
+                    .amount(BigDecimal.ONE)
+                    .currency(currencyUSD)
+                    .transactionStatus(transactionStatus)
+                    .referenceCode("REF-N1-" + i)
+                    .build());
+        }
+
+        // When
+        long statements = countStatements(() -> mockMvc.perform(
+                        get("/api/v1/transactions/history/account/{accountNumber}/cursor", sourceAcc.getAccountNumber())
+                                .param("userId", sourceUser.getId().toString())
+                                .param("size", "20"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", hasSize(20))));
+
+        // Then: referencia de la cuenta + página de account_posting_leg
+        assertThat(statements).isLessThanOrEqualTo(2);
+    }
+
+    // --- HELPERS ---
+    // Los movimientos de prueba se guardan como lo hace el posting: con su historial por cuenta
+    private BankTransaction record(BankTransaction transaction) {
+        BankTransaction saved = bankTransactionRepository.saveAndFlush(transaction);
+        transactionJournalService.recordLegs(saved);
+        return saved;
+    }
+}
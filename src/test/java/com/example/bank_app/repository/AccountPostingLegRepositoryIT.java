@@ -0,0 +1,72 @@
+package com.example.bank_app.repository;
+
+import com.example.bank_app.AbstractIntegrationTest;
+import com.example.bank_app.model.AccountPostingLeg;
+import com.example.bank_app.model.enums.PostingSide;
+import com.example.bank_app.util.DateRangeUtils;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AccountPostingLegRepositoryIT extends AbstractIntegrationTest {
+
+    @Autowired
+    private AccountPostingLegRepository accountPostingLegRepository;
+
+    private static final LocalDateTime NOON = LocalDateTime.of(2026, 10, 1, 12, 0);
+
+    @Test
+    void findPageByAccountId_WalksKeysetIncludingTiesOnCreatedAt() {
+        // Given: dos lados con el mismo created_at (el id desempata) y uno de otra cuenta
+        AccountPostingLeg older = save(10L, 1L, NOON.minusHours(1), "SUCCESS");
+        AccountPostingLeg tieA = save(10L, 2L, NOON, "SUCCESS");
+        AccountPostingLeg tieB = save(10L, 3L, NOON, "SUCCESS");
+        save(20L, 3L, NOON, "SUCCESS");
+
+        // When
+        List<AccountPostingLeg> first = accountPostingLegRepository.findPageByAccountId(
+                10L, null, DateRangeUtils.MIN_DATE, DateRangeUtils.MAX_DATE, DateRangeUtils.MAX_DATE, Long.MAX_VALUE, 2);
+        AccountPostingLeg last = first.get(first.size() - 1);
+        List<AccountPostingLeg> rest = accountPostingLegRepository.findPageByAccountId(
+                10L, null, DateRangeUtils.MIN_DATE, last.getCreatedAt(), last.getCreatedAt(), last.getId(), 2);
+
+        // Then
+        assertThat(first).containsExactly(tieB, tieA);
+        assertThat(rest).containsExactly(older);
+    }
+
+    @Test
+    void findPageByAccountId_FiltersByStatusAndDates() {
+        // Given
+        save(10L, 1L, NOON.minusDays(2), "SUCCESS");
+        AccountPostingLeg expected = save(10L, 2L, NOON, "SUCCESS");
+        save(10L, 3L, NOON, "FAILED");
+
+        // When
+        List<AccountPostingLeg> legs = accountPostingLegRepository.findPageByAccountId(
+                10L, "SUCCESS", NOON.minusDays(1), NOON.plusDays(1), DateRangeUtils.MAX_DATE, Long.MAX_VALUE, 20);
+
+        // Then
+        assertThat(legs).containsExactly(expected);
+    }
+
+    // --- HELPERS ---
+    private AccountPostingLeg save(Long accountId, Long transactionId, LocalDateTime createdAt, String status) {
+        return accountPostingLegRepository.saveAndFlush(AccountPostingLeg.builder()
+                .accountId(accountId)
+                .transactionId(transactionId)
+                .side(PostingSide.SOURCE)
+                .transactionType("TRANSFERENCIA")
+                .transactionStatus(status)
+                .currencyCode("PEN")
+                .amount(BigDecimal.TEN)
+                .referenceCode("REF-" + accountId + "-" + transactionId)
+                .createdAt(createdAt)
+                .build());
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.bank_app.repository;
 
 import com.example.bank_app.AbstractIntegrationTest;
+import com.example.bank_app.dto.account.AccountRef;
 import com.example.bank_app.model.AccountType;
 import com.example.bank_app.model.BankAccount;
 import com.example.bank_app.model.Currency;
@@ -109,6 +110,21 @@ class BankAccountRepositoryIT extends AbstractIntegrationTest {
         assertThat(inactiveFound).isEmpty();
     }
 
+    @Test
+    void findRefByAccountNumberAndIsActiveTrue_ReturnsIdsWithoutEntity() {
+        // Given
+        BankAccount account = createAccount("REF-001", true);
+        createAccount("REF-002", false);
+
+        // When
+        Optional<AccountRef> activeRef = bankAccountRepository.findRefByAccountNumberAndIsActiveTrue("REF-001");
+        Optional<AccountRef> inactiveRef = bankAccountRepository.findRefByAccountNumberAndIsActiveTrue("REF-002");
+
+        // Then
+        assertThat(activeRef).contains(new AccountRef(account.getId(), "REF-001", defaultUser.getId(), usdCurrency.getId()));
+        assertThat(inactiveRef).isEmpty();
+    }
+
     @Test
     void findAllByUserIdAndIsActiveTrue_ShouldReturnOnlyActive() {
         // Given
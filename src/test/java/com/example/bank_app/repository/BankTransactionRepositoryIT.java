@@ -2,6 +2,7 @@ package com.example.bank_app.repository;
 
 import com.example.bank_app.AbstractIntegrationTest;
 import com.example.bank_app.model.*;
+import com.example.bank_app.util.DateRangeUtils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -136,8 +137,8 @@ class BankTransactionRepositoryIT extends AbstractIntegrationTest {
         Page<BankTransaction> transactionsOfA = bankTransactionRepository.findAllByAccountId(
                 accountA.getId(),
                 null,
-                null,
-                null,
+                DateRangeUtils.MIN_DATE,
+                DateRangeUtils.MAX_DATE,
                 pageable
         );
 
@@ -0,0 +1,241 @@
+package com.example.bank_app.service.impl;
+
+import com.example.bank_app.model.BankAccount;
+import com.example.bank_app.repository.BankAccountRepository;
+import com.example.bank_app.service.AccountLockService.ConcurrencyMode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AccountLockServiceImplTest {
+    @Mock private BankAccountRepository bankAccountRepository;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+    private AccountLockServiceImpl accountLockService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        accountLockService = createService(ConcurrencyMode.PESSIMISTIC);
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            completeTransaction();
+        }
+    }
+
+    @Test
+    void lockAccounts_QueriesRowsInAscendingIdOrder() {
+        // Given
+        BankAccount account10 = BankAccount.builder().id(10L).build();
+        BankAccount account30 = BankAccount.builder().id(30L).build();
+        when(bankAccountRepository.findAllByIdInForUpdate(List.of(10L, 30L)))
+                .thenReturn(List.of(account10, account30));
+
+        // When
+        Map<Long, BankAccount> locked = accountLockService.lockAccounts(List.of(30L, 10L, 30L));
+
+        // Then
+        verify(bankAccountRepository).findAllByIdInForUpdate(List.of(10L, 30L));
+        assertThat(locked).containsEntry(10L, account10).containsEntry(30L, account30);
+    }
+
+    @Test
+    void lockAccounts_HotAccountWaitsUntilTransactionCompletes() throws Exception {
+        // Given
+        when(bankAccountRepository.findAllByIdInForUpdate(any())).thenReturn(List.of());
+        accountLockService.lockAccounts(List.of(10L));
+
+        // When & Then: otro hilo no obtiene el stripe mientras la transacción siga abierta
+        assertThatThrownBy(() -> lockInAnotherThread(10L))
+                .hasRootCauseInstanceOf(RuntimeException.class)
+                .hasRootCauseMessage("Cuenta ocupada, intente nuevamente en unos segundos");
+
+        completeTransaction();
+
+        lockInAnotherThread(10L);
+        verify(bankAccountRepository, times(2)).findAllByIdInForUpdate(List.of(10L));
+    }
+
+    @Test
+    void lockAccounts_WithoutTransaction() {
+        // Given
+        completeTransaction();
+
+        // When & Then
+        assertThatThrownBy(() -> accountLockService.lockAccounts(List.of(10L)))
+                .isInstanceOf(IllegalStateException.class);
+        verify(bankAccountRepository, never()).findAllByIdInForUpdate(any());
+    }
+
+    // --- Optimistic mode tests ---
+
+    @Test
+    void lockAccounts_OptimisticModeSkipsRowLocks() {
+        // Given
+        accountLockService = createService(ConcurrencyMode.OPTIMISTIC);
+
+        // When
+        accountLockService.lockAccounts(List.of(20L, 10L));
+
+        // Then
+        verify(bankAccountRepository).findAllByIdInOrderByIdAsc(List.of(10L, 20L));
+        verify(bankAccountRepository, never()).findAllByIdInForUpdate(any());
+    }
+
+    @Test
+    void executePosting_OptimisticConflictIsRetried() {
+        // Given
+        accountLockService = createService(ConcurrencyMode.OPTIMISTIC);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        doThrow(new ObjectOptimisticLockingFailureException(BankAccount.class, 10L))
+                .doNothing()
+                .when(transactionManager).commit(any());
+        when(bankAccountRepository.findAccountTypeNameById(10L)).thenReturn(Optional.of("AHORROS"));
+
+        // When
+        String result = accountLockService.executePosting(() -> "OK");
+
+        // Then
+        assertThat(result).isEqualTo("OK");
+        verify(transactionManager, times(2)).commit(any());
+        assertThat(meterRegistry.counter("bank.posting.optimistic.retries", "account_type", "AHORROS").count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    void executePosting_OptimisticConflictAbortsAfterMaxAttempts() {
+        // Given
+        accountLockService = createService(ConcurrencyMode.OPTIMISTIC);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        doThrow(new ObjectOptimisticLockingFailureException(BankAccount.class, 10L))
+                .when(transactionManager).commit(any());
+        when(bankAccountRepository.findAccountTypeNameById(10L)).thenReturn(Optional.of("CORRIENTE"));
+
+        // When & Then
+        assertThatThrownBy(() -> accountLockService.executePosting(() -> "OK"))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessage("La cuenta está siendo modificada por otra operación, intente nuevamente");
+        verify(transactionManager, times(3)).commit(any());
+        assertThat(meterRegistry.counter("bank.posting.optimistic.retries", "account_type", "CORRIENTE").count())
+                .isEqualTo(2.0);
+        assertThat(meterRegistry.counter("bank.posting.optimistic.aborts", "account_type", "CORRIENTE").count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    void executePosting_BusinessErrorIsNotRetried() {
+        // Given
+        accountLockService = createService(ConcurrencyMode.OPTIMISTIC);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+
+        // When & Then
+        assertThatThrownBy(() -> accountLockService.executePosting(() -> {
+            throw new RuntimeException("Saldo no disponible");
+        }))
+                .hasMessage("Saldo no disponible");
+        verify(transactionManager, times(1)).getTransaction(any());
+        verify(transactionManager).rollback(any());
+    }
+
+    @Test
+    void executePosting_ReferenceCodeCollisionIsRetriedOnce() {
+        // Given
+        accountLockService = createService(ConcurrencyMode.PESSIMISTIC);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        doThrow(uniqueViolation("transaction_reference_pkey"))
+                .doNothing()
+                .when(transactionManager).commit(any());
+
+        // When
+        String result = accountLockService.executePosting(() -> "OK");
+
+        // Then
+        assertThat(result).isEqualTo("OK");
+        verify(transactionManager, times(2)).commit(any());
+        assertThat(meterRegistry.counter("bank.posting.reference.collisions").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void executePosting_ReferenceCodeCollisionTwiceFails() {
+        // Given
+        accountLockService = createService(ConcurrencyMode.OPTIMISTIC);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        doThrow(uniqueViolation("transaction_reference_pkey"))
+                .when(transactionManager).commit(any());
+
+        // When & Then
+        assertThatThrownBy(() -> accountLockService.executePosting(() -> "OK"))
+                .isInstanceOf(DataIntegrityViolationException.class);
+        verify(transactionManager, times(2)).commit(any());
+    }
+
+    @Test
+    void executePosting_OtherIntegrityViolationIsNotRetried() {
+        // Given
+        accountLockService = createService(ConcurrencyMode.PESSIMISTIC);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        doThrow(uniqueViolation("bank_account_account_number_key"))
+                .when(transactionManager).commit(any());
+
+        // When & Then
+        assertThatThrownBy(() -> accountLockService.executePosting(() -> "OK"))
+                .isInstanceOf(DataIntegrityViolationException.class);
+        verify(transactionManager, times(1)).commit(any());
+        assertThat(meterRegistry.counter("bank.posting.reference.collisions").count()).isZero();
+    }
+
+    // --- HELPERS ---
+    private DataIntegrityViolationException uniqueViolation(String constraint) {
+        return new DataIntegrityViolationException("could not execute statement", new SQLException(
+                "ERROR: duplicate key value violates unique constraint \"" + constraint + "\"", "23505"));
+    }
+
+    private AccountLockServiceImpl createService(ConcurrencyMode mode) {
+        return new AccountLockServiceImpl(bankAccountRepository, transactionManager, meterRegistry, mode, 16, 100, 3, 1, 2);
+    }
+
+    private void completeTransaction() {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+    }
+
+    private void lockInAnotherThread(Long accountId) throws Exception {
+        CompletableFuture.runAsync(() -> {
+            TransactionSynchronizationManager.initSynchronization();
+            try {
+                accountLockService.lockAccounts(List.of(accountId));
+            } finally {
+                completeTransaction();
+            }
+        }).get(5, TimeUnit.SECONDS);
+    }
+}
@@ -6,10 +6,10 @@ import com.example.bank_app.model.AccountType;
 import com.example.bank_app.model.BankAccount;
 import com.example.bank_app.model.Currency;
 import com.example.bank_app.model.User;
-import com.example.bank_app.repository.AccountTypeRepository;
 import com.example.bank_app.repository.BankAccountRepository;
-import com.example.bank_app.repository.CurrencyRepository;
 import com.example.bank_app.repository.UserRepository;
+import com.example.bank_app.service.CatalogService;
+import com.example.bank_app.service.IdGeneratorService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -30,10 +30,10 @@ import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class AccountServiceImplTest {
-    @Mock private AccountTypeRepository accountTypeRepository;
     @Mock private BankAccountRepository bankAccountRepository;
-    @Mock private CurrencyRepository currencyRepository;
     @Mock private UserRepository userRepository;
+    @Mock private CatalogService catalogService;
+    @Mock private IdGeneratorService idGeneratorService;
 
     @InjectMocks
     private AccountServiceImpl accountService;
@@ -68,6 +68,10 @@ class AccountServiceImplTest {
 
         when(bankAccountRepository.findAllByUserIdAndIsActiveTrue(userId))
                 .thenReturn(List.of(account));
+        when(catalogService.getCurrency(1))
+                .thenReturn(currencyPEN);
+        when(catalogService.getAccountType(1))
+                .thenReturn(accountTypeSavings);
 
         // When
         List<AccountResponse> result = accountService.getAccountsByUserId(userId);
@@ -93,12 +97,12 @@ class AccountServiceImplTest {
 
         when(userRepository.findById(userId))
                 .thenReturn(Optional.of(user));
-        when(currencyRepository.findByCode("PEN"))
+        when(catalogService.findCurrency("PEN"))
                 .thenReturn(Optional.of(currencyPEN));
-        when(accountTypeRepository.findByName("AHORROS"))
+        when(catalogService.findAccountType("AHORROS"))
                 .thenReturn(Optional.of(accountTypeSavings));
-        when(bankAccountRepository.existsByAccountNumber(anyString()))
-                .thenReturn(false);
+        when(idGeneratorService.nextAccountNumber())
+                .thenReturn("00000000000018");
         when(bankAccountRepository.save(any(BankAccount.class)))
                 .thenAnswer(inv -> {
                     BankAccount b = inv.getArgument(0);
@@ -118,20 +122,18 @@ class AccountServiceImplTest {
     }
 
     @Test
-    void createAccount_CollisionRetry() {
+    void createAccount_AccountNumberWithoutDatabaseCheck() {
         // Given
         AccountCreationRequest request = new AccountCreationRequest(
                 "PEN",
                 "AHORROS");
 
-        when(currencyRepository.findByCode("PEN"))
+        when(catalogService.findCurrency("PEN"))
                 .thenReturn(Optional.of(currencyPEN));
-        when(accountTypeRepository.findByName("AHORROS"))
+        when(catalogService.findAccountType("AHORROS"))
                 .thenReturn(Optional.of(accountTypeSavings));
-
-        when(bankAccountRepository.existsByAccountNumber(anyString()))
-                .thenReturn(true)
-                .thenReturn(false);
+        when(idGeneratorService.nextAccountNumber())
+                .thenReturn("12345678901231");
 
         when(bankAccountRepository.save(any(BankAccount.class)))
                 .thenAnswer(inv -> {
@@ -145,8 +147,8 @@ class AccountServiceImplTest {
         AccountResponse response = accountService.createAccount(request, user);
 
         // Then
-        assertThat(response).isNotNull();
-        verify(bankAccountRepository, times(2)).existsByAccountNumber(anyString());
+        assertThat(response.accountNumber()).isEqualTo("12345678901231");
+        verify(bankAccountRepository, never()).existsByAccountNumber(anyString());
         verify(bankAccountRepository).save(any(BankAccount.class));
     }
 }
\ No newline at end of file
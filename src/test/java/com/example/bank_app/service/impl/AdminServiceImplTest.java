@@ -1,41 +1,66 @@
 package com.example.bank_app.service.impl;
 
 import com.example.bank_app.dto.admin.AdminDashboardResponse;
+import com.example.bank_app.dto.admin.TransactionCurveResponse;
 import com.example.bank_app.model.LoginAttempt;
 import com.example.bank_app.model.User;
-import com.example.bank_app.repository.BankTransactionRepository;
+import com.example.bank_app.model.enums.CurveGranularity;
 import com.example.bank_app.repository.LoginAttemptRepository;
+import com.example.bank_app.repository.TransactionDailyRollupRepository;
 import com.example.bank_app.repository.UserRepository;
+import com.example.bank_app.service.RetainedUsersService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.math.BigDecimal;
+import java.sql.Date;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class AdminServiceImplTest {
 
-    @Mock private BankTransactionRepository bankTransactionRepository;
     @Mock private LoginAttemptRepository loginAttemptRepository;
+    @Mock private TransactionDailyRollupRepository transactionDailyRollupRepository;
     @Mock private UserRepository userRepository;
+    @Mock private RetainedUsersService retainedUsersService;
+    @Mock private PlatformTransactionManager transactionManager;
 
-    @InjectMocks private AdminServiceImpl adminService;
+    private SimpleMeterRegistry meterRegistry;
+    private AdminServiceImpl adminService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        // Timeout corto para que la prueba de degradación no espere
+        adminService = new AdminServiceImpl(loginAttemptRepository, transactionDailyRollupRepository, userRepository,
+                retainedUsersService, meterRegistry, transactionManager, new MockEnvironment(), 4, 300, 5_000, 30_000, 365, 120, 1_000);
+    }
 
     @Test
     void getDashboard_ShouldReturnCompleteData_WhenRepositoriesReturnValues() {
         // --- GIVEN ---
 
-        when(bankTransactionRepository.getRetainedUsers()).thenReturn(150L);
+        when(retainedUsersService.estimate()).thenReturn(150L);
         when(loginAttemptRepository.countByIsBlockedTrue()).thenReturn(5L);
         when(userRepository.countByRole_Name("CLIENT")).thenReturn(2L);
 
@@ -64,7 +89,7 @@ class AdminServiceImplTest {
 
         List<Object[]> rawChartData = List.of(row1, row2, row3);
 
-        when(bankTransactionRepository.getTransactionCurveDataGroupedByCurrency())
+        when(transactionDailyRollupRepository.getCurveGroupedByCurrency(any(), any()))
                 .thenReturn(rawChartData);
 
         // --- WHEN ---
@@ -75,6 +100,7 @@ class AdminServiceImplTest {
         assertThat(response.retainedUsersCount()).isEqualTo(150L);
         assertThat(response.totalBlockedUsersCount()).isEqualTo(5L);
         assertThat(response.totalUsers()).isEqualTo(2L);
+        assertThat(response.unavailableSections()).isEmpty();
 
         // Validar lista de bloqueados (Mapping correcto de nombre y apellido)
         assertThat(response.lastUsersBlocked()).hasSize(2);
@@ -102,11 +128,11 @@ class AdminServiceImplTest {
     void getDashboard_ShouldHandleNullsAndEmptyLists() {
         // --- GIVEN ---
         // Escenario donde la DB devuelve nulls o listas vacías
-        when(bankTransactionRepository.getRetainedUsers()).thenReturn(null);
+        when(retainedUsersService.estimate()).thenReturn(0L);
         when(loginAttemptRepository.countByIsBlockedTrue()).thenReturn(0L);
 
         when(loginAttemptRepository.findLastBlockedUsers(any())).thenReturn(Collections.emptyList());
-        when(bankTransactionRepository.getTransactionCurveDataGroupedByCurrency()).thenReturn(Collections.emptyList());
+        when(transactionDailyRollupRepository.getCurveGroupedByCurrency(any(), any())).thenReturn(Collections.emptyList());
         when(userRepository.countByRole_Name("CLIENT")).thenReturn(0L);
 
         // --- WHEN ---
@@ -119,4 +145,185 @@ class AdminServiceImplTest {
         assertThat(response.transactionCurve()).isEmpty();
         assertThat(response.totalUsers()).isZero();
     }
-}
\ No newline at end of file
+
+    @Test
+    void getDashboard_ShouldDegradeFailedAndSlowSectionsOnly() {
+        // --- GIVEN ---
+        when(retainedUsersService.estimate()).thenReturn(10L);
+        when(loginAttemptRepository.countByIsBlockedTrue()).thenThrow(new RuntimeException("conexión perdida"));
+        when(userRepository.countByRole_Name("CLIENT")).thenAnswer(inv -> {
+            Thread.sleep(2_000);
+            return 99L;
+        });
+        when(loginAttemptRepository.findLastBlockedUsers(any())).thenReturn(Collections.emptyList());
+        Object[] row = { LocalDate.now(), "PEN", new BigDecimal("5.00") };
+        when(transactionDailyRollupRepository.getCurveGroupedByCurrency(any(), any())).thenReturn(List.<Object[]>of(row));
+
+        // --- WHEN ---
+        long start = System.nanoTime();
+        AdminDashboardResponse response = adminService.getDashboard();
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        // --- THEN ---
+        // No espera a la consulta lenta: responde al vencer su timeout
+        assertThat(elapsedMs).isLessThan(1_500);
+        assertThat(response.unavailableSections()).containsExactly("blocked-count", "user-count");
+        assertThat(response.totalBlockedUsersCount()).isNull();
+        assertThat(response.totalUsers()).isNull();
+        assertThat(response.retainedUsersCount()).isEqualTo(10L);
+        assertThat(response.transactionCurve()).containsOnlyKeys("PEN");
+
+        assertThat(meterRegistry.get("bank.dashboard.query").tags("query", "curve", "outcome", "success").timer().count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.get("bank.dashboard.query").tags("query", "user-count", "outcome", "timeout").timer().count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.get("bank.dashboard.query").tags("query", "blocked-count", "outcome", "error").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void getDashboard_ConcurrentCallersShareOneComputation() throws Exception {
+        // --- GIVEN ---
+        AdminServiceImpl cachedService = cachedService(5_000);
+        stubEmptyDashboard();
+        CountDownLatch release = new CountDownLatch(1);
+        when(userRepository.countByRole_Name("CLIENT")).thenAnswer(inv -> {
+            release.await(5, TimeUnit.SECONDS);
+            return 3L;
+        });
+
+        // --- WHEN ---
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        try {
+            List<CompletableFuture<AdminDashboardResponse>> responses = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                responses.add(CompletableFuture.supplyAsync(cachedService::getDashboard, callers));
+            }
+            Thread.sleep(200);
+            release.countDown();
+
+            // --- THEN ---
+            for (CompletableFuture<AdminDashboardResponse> response : responses) {
+                assertThat(response.get(5, TimeUnit.SECONDS).totalUsers()).isEqualTo(3L);
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+        verify(userRepository, times(1)).countByRole_Name("CLIENT");
+        assertThat(meterRegistry.get("bank.dashboard.cache.refresh").tag("outcome", "success").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void getDashboard_ServesStaleResponseWhileRevalidating() throws Exception {
+        // --- GIVEN ---
+        AdminServiceImpl cachedService = cachedService(300);
+        stubEmptyDashboard();
+        when(userRepository.countByRole_Name("CLIENT")).thenReturn(1L, 2L);
+
+        // --- WHEN ---
+        AdminDashboardResponse first = cachedService.getDashboard();
+        Thread.sleep(350);
+        AdminDashboardResponse stale = cachedService.getDashboard();
+
+        // --- THEN ---
+        // La vencida se devuelve al instante y el recálculo corre aparte
+        assertThat(stale).isSameAs(first);
+        verify(userRepository, timeout(2_000).times(2)).countByRole_Name("CLIENT");
+        verify(transactionDailyRollupRepository, timeout(2_000).times(2)).getCurveGroupedByCurrency(any(), any());
+        Thread.sleep(100);
+        assertThat(cachedService.getDashboard().totalUsers()).isEqualTo(2L);
+
+        assertThat(meterRegistry.get("bank.dashboard.cache").tag("result", "miss").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("bank.dashboard.cache").tag("result", "stale").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("bank.dashboard.cache").tag("result", "hit").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void getFreshDashboard_BypassesTheCacheAndRefreshesIt() {
+        // --- GIVEN ---
+        AdminServiceImpl cachedService = cachedService(5_000);
+        stubEmptyDashboard();
+        when(userRepository.countByRole_Name("CLIENT")).thenReturn(1L, 2L);
+        cachedService.getDashboard();
+
+        // --- WHEN ---
+        AdminDashboardResponse fresh = cachedService.getFreshDashboard();
+
+        // --- THEN ---
+        // Recalcula aunque la entrada siga fresca, y la deja en caché para las demás peticiones
+        assertThat(fresh.totalUsers()).isEqualTo(2L);
+        assertThat(cachedService.getDashboard()).isSameAs(fresh);
+        verify(userRepository, times(2)).countByRole_Name("CLIENT");
+    }
+
+    @Test
+    void getTransactionCurve_DownsamplesKeepingEndsAndPeaks() {
+        // --- GIVEN ---
+        // Diez días planos con un pico y un valle: 10 días caben en cubos diarios para 5 puntos
+        LocalDate from = LocalDate.of(2026, 3, 1);
+        LocalDate to = from.plusDays(9);
+        List<Object[]> rows = new ArrayList<>();
+        for (int day = 0; day < 10; day++) {
+            String amount = day == 3 ? "100.00" : day == 6 ? "-50.00" : "1.00";
+            rows.add(new Object[]{ from.plusDays(day), "PEN", new BigDecimal(amount) });
+        }
+        when(transactionDailyRollupRepository.getCurveGroupedByCurrency(from, to)).thenReturn(rows);
+
+        // --- WHEN ---
+        TransactionCurveResponse curve = adminService.getTransactionCurve(from, to, 5);
+
+        // --- THEN ---
+        assertThat(curve.granularity()).isEqualTo(CurveGranularity.DAY);
+        assertThat(curve.series().get("PEN"))
+                .extracting(AdminDashboardResponse.ChartDataPoint::date)
+                .hasSize(5)
+                .startsWith(from)
+                .endsWith(to)
+                .contains(from.plusDays(3), from.plusDays(6));
+    }
+
+    @Test
+    void getTransactionCurve_UsesMonthlyBucketsForLongWindows() {
+        // --- GIVEN ---
+        // ~6 años para 10 puntos: ni días ni semanas caben en 40 cubos
+        LocalDate from = LocalDate.of(2020, 1, 15);
+        LocalDate to = LocalDate.of(2025, 12, 31);
+        Object[] firstMonth = { Date.valueOf(LocalDate.of(2020, 1, 1)), "USD", new BigDecimal("10.00") };
+        Object[] secondMonth = { Date.valueOf(LocalDate.of(2020, 2, 1)), "USD", new BigDecimal("20.00") };
+        when(transactionDailyRollupRepository.getCurveBucketedByCurrency("month", from, to))
+                .thenReturn(List.of(firstMonth, secondMonth));
+
+        // --- WHEN ---
+        TransactionCurveResponse curve = adminService.getTransactionCurve(from, to, 10);
+
+        // --- THEN ---
+        assertThat(curve.granularity()).isEqualTo(CurveGranularity.MONTH);
+        // El primer cubo empieza antes de la ventana y se fecha en "from"
+        assertThat(curve.series().get("USD"))
+                .extracting(AdminDashboardResponse.ChartDataPoint::date)
+                .containsExactly(from, LocalDate.of(2020, 2, 1));
+        verify(transactionDailyRollupRepository, never()).getCurveGroupedByCurrency(any(), any());
+    }
+
+    @Test
+    void getTransactionCurve_RejectsPointsOutOfRange() {
+        // --- WHEN / THEN ---
+        assertThatThrownBy(() -> adminService.getTransactionCurve(null, null, 2))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessage("La curva admite entre 3 y 1000 puntos");
+
+        verifyNoInteractions(transactionDailyRollupRepository);
+    }
+
+    // --- HELPERS ---
+    private AdminServiceImpl cachedService(long ttlMs) {
+        return new AdminServiceImpl(loginAttemptRepository, transactionDailyRollupRepository, userRepository,
+                retainedUsersService, meterRegistry, transactionManager, new MockEnvironment(), 4, 2_000, ttlMs, 60_000, 365, 120, 1_000);
+    }
+
+    private void stubEmptyDashboard() {
+        when(loginAttemptRepository.countByIsBlockedTrue()).thenReturn(0L);
+        when(loginAttemptRepository.findLastBlockedUsers(any())).thenReturn(Collections.emptyList());
+        when(transactionDailyRollupRepository.getCurveGroupedByCurrency(any(), any())).thenReturn(Collections.emptyList());
+    }
+}
@@ -7,10 +7,11 @@ import com.example.bank_app.dto.auth.LoginRequest;
 import com.example.bank_app.dto.auth.RegisterRequest;
 import com.example.bank_app.model.Role;
 import com.example.bank_app.model.User;
+import com.example.bank_app.model.enums.RoleCode;
 import com.example.bank_app.repository.LoginAttemptRepository;
-import com.example.bank_app.repository.RoleRepository;
 import com.example.bank_app.repository.UserRepository;
 import com.example.bank_app.service.AccountService;
+import com.example.bank_app.service.CatalogService;
 import com.example.bank_app.service.LoginAttemptService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -35,7 +36,7 @@ import static org.mockito.Mockito.*;
 class AuthServiceImplTest {
 
     @Mock private UserRepository userRepository;
-    @Mock private RoleRepository roleRepository;
+    @Mock private CatalogService catalogService;
     @Mock private AccountService accountService;
     @Mock private PasswordEncoder passwordEncoder;
     @Mock private JwtService jwtService;
@@ -144,8 +145,8 @@ class AuthServiceImplTest {
                 .thenReturn(false);
         when(userRepository.existsByDocumentId(request.documentId()))
                 .thenReturn(false);
-        when(roleRepository.findByName("CLIENT"))
-                .thenReturn(Optional.of(roleClient));
+        when(catalogService.getRole(RoleCode.CLIENT))
+                .thenReturn(roleClient);
         when(passwordEncoder.encode(request.password()))
                 .thenReturn("ENCODED_PASS");
 
@@ -229,11 +230,12 @@ class AuthServiceImplTest {
 
         when(userRepository.existsByEmail(anyString())).thenReturn(false);
         when(userRepository.existsByDocumentId(anyString())).thenReturn(false);
-        when(roleRepository.findByName("CLIENT")).thenReturn(Optional.empty());
+        when(catalogService.getRole(RoleCode.CLIENT))
+                .thenThrow(new RuntimeException("Error: Rol CLIENT no encontrado en BD"));
 
         // When & Then
         assertThatThrownBy(() -> authService.register(request))
                 .isInstanceOf(RuntimeException.class)
-                .hasMessage("Error: Rol por defecto no encontrado en BD");
+                .hasMessage("Error: Rol CLIENT no encontrado en BD");
     }
 }
\ No newline at end of file
@@ -0,0 +1,119 @@
+package com.example.bank_app.service.impl;
+
+import com.example.bank_app.model.*;
+import com.example.bank_app.model.enums.RoleCode;
+import com.example.bank_app.model.enums.TransactionStatusCode;
+import com.example.bank_app.model.enums.TransactionTypeCode;
+import com.example.bank_app.repository.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CatalogServiceImplTest {
+    @Mock private TransactionTypeRepository transactionTypeRepository;
+    @Mock private TransactionStatusRepository transactionStatusRepository;
+    @Mock private CurrencyRepository currencyRepository;
+    @Mock private AccountTypeRepository accountTypeRepository;
+    @Mock private RoleRepository roleRepository;
+
+    @InjectMocks private CatalogServiceImpl catalogService;
+
+    private Currency currencyPEN;
+    private Currency currencyUSD;
+
+    @BeforeEach
+    void setUp() {
+        currencyPEN = Currency.builder().id(1).code("PEN").build();
+        currencyUSD = Currency.builder().id(2).code("USD").build();
+
+        ReflectionTestUtils.setField(catalogService, "missReloadIntervalMs", 60_000L);
+
+        lenient().when(transactionTypeRepository.findAll())
+                .thenReturn(List.of(TransactionType.builder().id(1).name("TRANSFERENCIA").build()));
+        lenient().when(transactionStatusRepository.findAll())
+                .thenReturn(List.of(TransactionStatus.builder().id(2).name("SUCCESS").build()));
+        lenient().when(currencyRepository.findAll()).thenReturn(List.of(currencyPEN));
+        lenient().when(accountTypeRepository.findAll())
+                .thenReturn(List.of(AccountType.builder().id(1).name("AHORROS").build()));
+        lenient().when(roleRepository.findAll())
+                .thenReturn(List.of(Role.builder().id(1).name("CLIENT").build()));
+    }
+
+    @Test
+    void lookups_ServedFromMemoryAfterLoad() {
+        // Given
+        catalogService.loadOnStartup();
+
+        // When
+        for (int i = 0; i < 100; i++) {
+            catalogService.getTransactionType(TransactionTypeCode.TRANSFERENCIA);
+            catalogService.getTransactionStatus(TransactionStatusCode.SUCCESS);
+            catalogService.findCurrency("PEN");
+        }
+
+        // Then
+        assertThat(catalogService.getCurrency(1)).isSameAs(currencyPEN);
+        assertThat(catalogService.getAccountType(1).getName()).isEqualTo("AHORROS");
+        assertThat(catalogService.getRole(RoleCode.CLIENT).getName()).isEqualTo("CLIENT");
+        verify(currencyRepository, times(1)).findAll();
+        verify(transactionTypeRepository, times(1)).findAll();
+    }
+
+    @Test
+    void findCurrency_MissTriggersReload() {
+        // Given: sin carga inicial
+        when(currencyRepository.findAll()).thenReturn(List.of(currencyPEN, currencyUSD));
+
+        // When
+        Currency currency = catalogService.findCurrency("USD").orElseThrow();
+
+        // Then
+        assertThat(currency).isSameAs(currencyUSD);
+        verify(currencyRepository, times(1)).findAll();
+    }
+
+    @Test
+    void findCurrency_MissReloadIsThrottled() {
+        // Given
+        catalogService.loadOnStartup();
+
+        // When
+        for (int i = 0; i < 100; i++) {
+            assertThat(catalogService.findCurrency("EUR")).isEmpty();
+        }
+
+        // Then: solo la carga inicial
+        verify(currencyRepository, times(1)).findAll();
+    }
+
+    @Test
+    void findCurrency_MalformedCodeDoesNotReload() {
+        // When & Then
+        for (String code : new String[]{"usd", "US", "USDX", "U$D", "", null}) {
+            assertThat(catalogService.findCurrency(code)).isEmpty();
+        }
+        verifyNoInteractions(currencyRepository);
+    }
+
+    @Test
+    void getTransactionType_NotFound() {
+        // Given
+        catalogService.loadOnStartup();
+
+        // When & Then
+        assertThatThrownBy(() -> catalogService.getTransactionType(TransactionTypeCode.DEPOSITO))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessage("Tipo de transacción no existente");
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.bank_app.service.impl;
+
+import com.example.bank_app.config.WebClientConfig;
+import com.example.bank_app.model.Currency;
+import com.example.bank_app.model.ExchangeRateSnapshot;
+import com.example.bank_app.repository.ExchangeRateSnapshotRepository;
+import com.example.bank_app.service.CatalogService;
+import com.sun.net.httpserver.HttpServer;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+
+/**
+ * Cliente real (Reactor Netty + Resilience4j) contra un servidor HTTP local que simula latencia y errores.
+ */
+@ExtendWith(MockitoExtension.class)
+class CurrencyExchangeResilienceTest {
+    @Mock private CatalogService catalogService;
+    @Mock private ExchangeRateSnapshotRepository exchangeRateSnapshotRepository;
+
+    private HttpServer server;
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile int responseStatus = 200;
+    private volatile long latencyMs = 0;
+    private final CountDownLatch shutdown = new CountDownLatch(1);
+
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+    private CurrencyExchangeServiceImpl currencyExchangeService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/latest.json", exchange -> {
+            requests.incrementAndGet();
+            await(latencyMs);
+
+            byte[] body = "{\"base\":\"USD\",\"rates\":{\"PEN\":3.37}}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(responseStatus, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            } catch (IOException ignored) {
+                // El cliente cortó la conexión por timeout
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+
+        WebClientConfig webClientConfig = new WebClientConfig();
+        ReflectionTestUtils.setField(webClientConfig, "baseUrl", "http://127.0.0.1:" + server.getAddress().getPort());
+        ReflectionTestUtils.setField(webClientConfig, "connectTimeoutMs", 500);
+        ReflectionTestUtils.setField(webClientConfig, "readTimeoutMs", 1_000L);
+        WebClient webClient = webClientConfig.webClient(WebClient.builder());
+
+        circuitBreakerRegistry = CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+                .slidingWindowSize(3)
+                .minimumNumberOfCalls(3)
+                .failureRateThreshold(50)
+                .waitDurationInOpenState(Duration.ofMinutes(1))
+                .build());
+
+        currencyExchangeService = new CurrencyExchangeServiceImpl(
+                webClient,
+                catalogService,
+                exchangeRateSnapshotRepository,
+                new SimpleMeterRegistry(),
+                circuitBreakerRegistry,
+                BulkheadRegistry.ofDefaults()
+        );
+        ReflectionTestUtils.setField(currencyExchangeService, "apiKey", "test-api-key");
+        ReflectionTestUtils.setField(currencyExchangeService, "refreshAfterMs", 600_000L);
+        ReflectionTestUtils.setField(currencyExchangeService, "ttlMs", 900_000L);
+        ReflectionTestUtils.setField(currencyExchangeService, "maxStaleMs", 86_400_000L);
+
+        lenient().when(catalogService.getCurrencies()).thenReturn(List.of(
+                Currency.builder().id(1).code("USD").build(),
+                Currency.builder().id(2).code("PEN").build()
+        ));
+        lenient().when(exchangeRateSnapshotRepository.save(any(ExchangeRateSnapshot.class)))
+                .thenAnswer(inv -> {
+                    ExchangeRateSnapshot snapshot = inv.getArgument(0);
+                    snapshot.setId(100L);
+                    return snapshot;
+                });
+    }
+
+    @AfterEach
+    void tearDown() {
+        shutdown.countDown();
+        server.stop(0);
+    }
+
+    @Test
+    void refreshRates_HealthyProvider() {
+        // When
+        currencyExchangeService.refreshRates();
+
+        // Then
+        assertThat(currencyExchangeService.convert(BigDecimal.TEN, "USD", "PEN"))
+                .isEqualByComparingTo("33.7000");
+    }
+
+    @Test
+    void refreshRates_SlowProviderTimesOut() {
+        // Given: primera llamada para no medir la inicialización de Netty
+        currencyExchangeService.refreshRates();
+        latencyMs = 4_000;
+        long start = System.nanoTime();
+
+        // When & Then
+        assertThatThrownBy(() -> currencyExchangeService.refreshRates())
+                .isInstanceOf(RuntimeException.class);
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(3_000));
+    }
+
+    @Test
+    void refreshRates_CircuitOpensAndFailsFast() {
+        // Given
+        responseStatus = 500;
+
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(() -> currencyExchangeService.refreshRates()).isInstanceOf(RuntimeException.class);
+        }
+
+        // When & Then: el proveedor ya no recibe llamadas
+        assertThatThrownBy(() -> currencyExchangeService.refreshRates())
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageStartingWith("Servicio de tipo de cambio no disponible");
+        assertThat(requests.get()).isEqualTo(3);
+        assertThat(circuitBreakerRegistry.circuitBreaker("exchangeRates").getState())
+                .isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    // --- HELPER ---
+    private void await(long millis) {
+        try {
+            shutdown.await(millis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,26 +1,38 @@
 package com.example.bank_app.service.impl;
 
 import com.example.bank_app.dto.external.ExchangeRateResponse;
+import com.example.bank_app.model.Currency;
+import com.example.bank_app.model.ExchangeRateSnapshot;
+import com.example.bank_app.repository.ExchangeRateSnapshotRepository;
+import com.example.bank_app.service.CatalogService;
+import com.example.bank_app.service.CurrencyExchangeService.ExchangeQuote;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.reactive.function.client.WebClient;
 
-import java.util.Collections;
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.function.Function;
 import reactor.core.publisher.Mono;
 
 import java.math.BigDecimal;
 import java.util.Map;
+import java.util.Optional;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class CurrencyExchangeServiceImplTest {
@@ -28,6 +40,11 @@ class CurrencyExchangeServiceImplTest {
     @Mock private WebClient.RequestHeadersUriSpec<?> requestHeadersUriSpec;
     @Mock private WebClient.RequestHeadersSpec<?> requestHeadersSpec;
     @Mock private WebClient.ResponseSpec responseSpec;
+    @Mock private CatalogService catalogService;
+    @Mock private ExchangeRateSnapshotRepository exchangeRateSnapshotRepository;
+    @Spy private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    @Spy private CircuitBreakerRegistry circuitBreakerRegistry = CircuitBreakerRegistry.ofDefaults();
+    @Spy private BulkheadRegistry bulkheadRegistry = BulkheadRegistry.ofDefaults();
 
     @InjectMocks private CurrencyExchangeServiceImpl currencyExchangeService;
 
@@ -35,6 +52,21 @@ class CurrencyExchangeServiceImplTest {
     void setUp() {
         // API Key falsa para que no sea null
         ReflectionTestUtils.setField(currencyExchangeService, "apiKey", "test-api-key");
+        ReflectionTestUtils.setField(currencyExchangeService, "refreshAfterMs", 600_000L);
+        ReflectionTestUtils.setField(currencyExchangeService, "ttlMs", 900_000L);
+        ReflectionTestUtils.setField(currencyExchangeService, "maxStaleMs", 86_400_000L);
+
+        lenient().when(catalogService.getCurrencies()).thenReturn(List.of(
+                Currency.builder().id(1).code("USD").build(),
+                Currency.builder().id(2).code("PEN").build(),
+                Currency.builder().id(3).code("MXN").build()
+        ));
+        lenient().when(exchangeRateSnapshotRepository.save(any(ExchangeRateSnapshot.class)))
+                .thenAnswer(inv -> {
+                    ExchangeRateSnapshot snapshot = inv.getArgument(0);
+                    snapshot.setId(100L);
+                    return snapshot;
+                });
     }
 
     // --- Identity logic tests ---
@@ -69,8 +101,7 @@ class CurrencyExchangeServiceImplTest {
     void convert_UsdToPen() {
         // Given
         BigDecimal amount = new BigDecimal("10.00");
-        BigDecimal rate = new BigDecimal("3.37");
-        mockWebClientCall(new ExchangeRateResponse("USD", Map.of("PEN", rate)));
+        loadRates(Map.of("PEN", new BigDecimal("3.37")));
 
         // When
         BigDecimal result = currencyExchangeService.convert(amount, "USD", "PEN");
@@ -83,8 +114,7 @@ class CurrencyExchangeServiceImplTest {
     void convert_PenToUsd() {
         // Given
         BigDecimal amount = new BigDecimal("10.00");
-        BigDecimal rate = new BigDecimal("3.37");
-        mockWebClientCall(new ExchangeRateResponse("USD", Map.of("PEN", rate)));
+        loadRates(Map.of("PEN", new BigDecimal("3.37")));
 
         // When
         BigDecimal result = currencyExchangeService.convert(amount, "PEN", "USD");
@@ -97,11 +127,10 @@ class CurrencyExchangeServiceImplTest {
     void convert_MxnToPen() {
         // Given
         BigDecimal amount = new BigDecimal("100.00");
-        Map<String, BigDecimal> rates = Map.of(
+        loadRates(Map.of(
                 "MXN", new BigDecimal("18.00"),
                 "PEN", new BigDecimal("3.60")
-        );
-        mockWebClientCall(new ExchangeRateResponse("USD", rates));
+        ));
 
         // When
         BigDecimal result = currencyExchangeService.convert(amount, "MXN", "PEN");
@@ -110,33 +139,147 @@ class CurrencyExchangeServiceImplTest {
         assertThat(result).isEqualByComparingTo("20.0000");
     }
 
+    // --- Snapshot tests ---
+
+    @Test
+    void convert_ServedFromSnapshotWithoutCallingApi() {
+        // Given
+        loadRates(Map.of("MXN", new BigDecimal("18.00"), "PEN", new BigDecimal("3.60")));
+
+        // When
+        for (int i = 0; i < 100; i++) {
+            currencyExchangeService.convert(BigDecimal.TEN, "MXN", "PEN");
+            currencyExchangeService.convert(BigDecimal.TEN, "PEN", "USD");
+        }
+
+        // Then: una sola llamada (la carga), con todas las monedas del catálogo
+        verify(webClient, times(1)).get();
+    }
+
+    @Test
+    void refreshIfDue_SkipsFreshSnapshot() {
+        // Given
+        loadRates(Map.of("PEN", new BigDecimal("3.37")));
+
+        // When
+        currencyExchangeService.refreshIfDue();
+
+        // Then
+        verify(webClient, times(1)).get();
+    }
+
+    @Test
+    void refreshIfDue_FailureKeepsPreviousSnapshot() {
+        // Given
+        loadRates(Map.of("PEN", new BigDecimal("3.37")));
+        ReflectionTestUtils.setField(currencyExchangeService, "refreshAfterMs", 0L);
+        when(responseSpec.bodyToMono(ExchangeRateResponse.class)).thenReturn(Mono.error(new RuntimeException("timeout")));
+
+        // When
+        currencyExchangeService.refreshIfDue();
+
+        // Then
+        assertThat(currencyExchangeService.convert(BigDecimal.TEN, "USD", "PEN")).isEqualByComparingTo("33.7000");
+        assertThat(meterRegistry.counter("bank.fx.refresh.failures").count()).isEqualTo(1.0);
+    }
+
     // --- Error validation tests ---
 
+    @Test
+    void convert_WithoutSnapshot() {
+        // When & then
+        assertThatThrownBy(() -> currencyExchangeService.convert(BigDecimal.TEN, "USD", "PEN"))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("Error obteniendo el tipo de cambio de USD a PEN");
+        verify(webClient, never()).get();
+    }
+
+    @Test
+    void quote_ReturnsRateAndPersistedSnapshot() {
+        // Given
+        loadRates(Map.of("PEN", new BigDecimal("3.37")));
+
+        // When
+        ExchangeQuote quote = currencyExchangeService.quote("USD", "PEN");
+
+        // Then
+        assertThat(quote.rate()).isEqualByComparingTo("3.37");
+        assertThat(quote.snapshotId()).isEqualTo(100L);
+        verify(exchangeRateSnapshotRepository).save(any(ExchangeRateSnapshot.class));
+    }
+
+    @Test
+    void quote_SameCurrencyHasNoSnapshot() {
+        // When
+        ExchangeQuote quote = currencyExchangeService.quote("PEN", "PEN");
+
+        // Then
+        assertThat(quote).isEqualTo(ExchangeQuote.IDENTITY);
+    }
+
+    @Test
+    void loadOnStartup_FallsBackToLastPersistedSnapshot() {
+        // Given
+        when(exchangeRateSnapshotRepository.findFirstByOrderByFetchedAtDesc()).thenReturn(Optional.of(
+                ExchangeRateSnapshot.builder()
+                        .id(42L)
+                        .baseCurrency("USD")
+                        .fetchedAt(LocalDateTime.now().minusHours(2))
+                        .rates(Map.of("PEN", new BigDecimal("3.37")))
+                        .build()));
+        mockWebClientCall(new ExchangeRateResponse("USD", Map.of("PEN", BigDecimal.ONE)));
+        when(responseSpec.bodyToMono(ExchangeRateResponse.class)).thenReturn(Mono.error(new RuntimeException("API caída")));
+
+        // When
+        currencyExchangeService.loadOnStartup();
+
+        // Then: snapshot vencido (ttl) pero dentro de max-stale
+        ExchangeQuote quote = currencyExchangeService.quote("USD", "PEN");
+        assertThat(quote.snapshotId()).isEqualTo(42L);
+        assertThat(currencyExchangeService.convert(BigDecimal.TEN, "USD", "PEN")).isEqualByComparingTo("33.7000");
+        assertThat(meterRegistry.counter("bank.fx.stale.quotes").count()).isEqualTo(2.0);
+    }
+
+    @Test
+    void convert_ExpiredSnapshot() {
+        // Given
+        loadRates(Map.of("PEN", new BigDecimal("3.37")));
+        ReflectionTestUtils.setField(currencyExchangeService, "maxStaleMs", -1L);
+
+        // When & then
+        assertThatThrownBy(() -> currencyExchangeService.convert(BigDecimal.TEN, "USD", "PEN"))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("Error obteniendo el tipo de cambio de USD a PEN");
+    }
+
     @Test
     void convert_UnsupportedSource() {
         // Given
-        BigDecimal amount = BigDecimal.TEN;
-        mockWebClientCall(new ExchangeRateResponse("USD", Collections.emptyMap()));
+        loadRates(Map.of("PEN", BigDecimal.TEN));
 
         // When & then
-        assertThatThrownBy(() -> currencyExchangeService.convert(amount, "EUR", "USD"))
+        assertThatThrownBy(() -> currencyExchangeService.convert(BigDecimal.TEN, "EUR", "USD"))
                 .isInstanceOf(RuntimeException.class)
-                .hasMessageContaining("Error obteniendo el tipo de cambio de USD a EUR");
+                .hasMessage("Tasa no encontrada para: EUR");
     }
 
     @Test
     void convert_UnsupportedTarget() {
         // Given
-        BigDecimal amount = BigDecimal.TEN;
-        mockWebClientCall(new ExchangeRateResponse("USD", Map.of("PEN", BigDecimal.TEN)));
+        loadRates(Map.of("PEN", BigDecimal.TEN));
 
         // When & then
-        assertThatThrownBy(() -> currencyExchangeService.convert(amount, "USD", "JPY"))
+        assertThatThrownBy(() -> currencyExchangeService.convert(BigDecimal.TEN, "USD", "JPY"))
                 .isInstanceOf(RuntimeException.class)
                 .hasMessage("Tasa no encontrada para: JPY");
     }
 
     // --- HELPER ---
+    private void loadRates(Map<String, BigDecimal> rates) {
+        mockWebClientCall(new ExchangeRateResponse("USD", rates));
+        currencyExchangeService.refreshRates();
+    }
+
     @SuppressWarnings({"unchecked", "rawtypes"})
     private void mockWebClientCall(ExchangeRateResponse mockResponse) {
         when(webClient.get()).thenReturn((WebClient.RequestHeadersUriSpec) requestHeadersUriSpec);
@@ -144,4 +287,4 @@ class CurrencyExchangeServiceImplTest {
         when(requestHeadersSpec.retrieve()).thenReturn(responseSpec);
         when(responseSpec.bodyToMono(ExchangeRateResponse.class)).thenReturn(Mono.just(mockResponse));
     }
-}
\ No newline at end of file
+}
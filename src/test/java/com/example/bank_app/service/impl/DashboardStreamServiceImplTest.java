@@ -0,0 +1,176 @@
+package com.example.bank_app.service.impl;
+
+import com.example.bank_app.dto.admin.AdminDashboardDelta;
+import com.example.bank_app.dto.admin.AdminDashboardResponse;
+import com.example.bank_app.model.User;
+import com.example.bank_app.service.AdminService;
+import com.example.bank_app.service.RetainedUsersService;
+import com.example.bank_app.service.TransactionRollupService.Delta;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DashboardStreamServiceImplTest {
+    private static final LocalDate DAY = LocalDate.of(2026, 10, 5);
+
+    @Mock private AdminService adminService;
+    @Mock private RetainedUsersService retainedUsersService;
+
+    private SimpleMeterRegistry meterRegistry;
+    private DashboardStreamServiceImpl dashboardStreamService;
+
+    private final User user = User.builder().id(1L).name("Juan").lastName1("Perez").documentId("123").build();
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        dashboardStreamService = new DashboardStreamServiceImpl(adminService, retainedUsersService, meterRegistry,
+                60_000, 60_000, 15_000);
+        dashboardStreamService.registerMetrics();
+
+        lenient().when(adminService.getDashboard()).thenReturn(
+                new AdminDashboardResponse(0L, 0L, 0L, List.of(), Map.of(), List.of()));
+        lenient().when(adminService.getFreshDashboard()).thenReturn(
+                new AdminDashboardResponse(0L, 1L, 0L, List.of(), Map.of(), List.of()));
+        lenient().when(retainedUsersService.estimate()).thenReturn(5L);
+    }
+
+    @Test
+    void subscribe_SendsSnapshotAndRegistersSubscriber() {
+        // When
+        dashboardStreamService.subscribe();
+
+        // Then
+        verify(adminService).getDashboard();
+        assertThat(meterRegistry.get("bank.dashboard.stream.subscribers").gauge().value()).isEqualTo(1.0);
+    }
+
+    @Test
+    void subscribe_EventsWhileTheSnapshotLoadsAreNotLost() {
+        // Given: un alta se confirma mientras se lee el snapshot del primer suscriptor
+        when(adminService.getDashboard()).thenAnswer(inv -> {
+            dashboardStreamService.userRegistered();
+            return new AdminDashboardResponse(0L, 0L, 0L, List.of(), Map.of(), List.of());
+        });
+
+        // When
+        dashboardStreamService.subscribe();
+
+        // Then
+        assertThat(dashboardStreamService.drain().totalUsersIncrement()).isEqualTo(1);
+    }
+
+    @Test
+    void drain_CoalescesEverythingSinceTheLastTick() {
+        // Given
+        dashboardStreamService.subscribe();
+        dashboardStreamService.curvePosted(List.of(
+                new Delta(DAY, "PEN", "DEPOSITO", "SUCCESS", 1, new BigDecimal("10.00")),
+                new Delta(DAY, "USD", "DEPOSITO", "SUCCESS", 1, new BigDecimal("1.00"))
+        ));
+        dashboardStreamService.curvePosted(List.of(
+                new Delta(DAY, "PEN", "TRANSFERENCIA", "SUCCESS", 2, new BigDecimal("2.50"))
+        ));
+        dashboardStreamService.blockChanged(user, true);
+        dashboardStreamService.blockChanged(user, false);
+        dashboardStreamService.userRegistered();
+        dashboardStreamService.userRegistered();
+
+        // When
+        AdminDashboardDelta delta = dashboardStreamService.drain();
+
+        // Then: un punto por (día, moneda) y solo el último cambio de cada usuario
+        assertThat(delta.curveIncrements().get("PEN")).extracting(p -> p.amount().toPlainString()).containsExactly("12.50");
+        assertThat(delta.curveIncrements().get("USD")).extracting(p -> p.amount().toPlainString()).containsExactly("1.00");
+        assertThat(delta.blockedUserChanges())
+                .extracting(AdminDashboardDelta.BlockedUserChange::documentId, AdminDashboardDelta.BlockedUserChange::blocked)
+                .containsExactly(tuple("123", false));
+        assertThat(delta.totalBlockedUsersIncrement()).isZero();
+        assertThat(delta.totalUsersIncrement()).isEqualTo(2);
+        assertThat(delta.retainedUsersCount()).isEqualTo(5L);
+
+        // El siguiente tick sin cambios queda vacío (la estimación no cambió)
+        assertThat(dashboardStreamService.drain().isEmpty()).isTrue();
+    }
+
+    @Test
+    void curvePosted_WaitsForCommit() {
+        // Given
+        dashboardStreamService.subscribe();
+        dashboardStreamService.drain();
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            // When
+            dashboardStreamService.curvePosted(List.of(new Delta(DAY, "PEN", "DEPOSITO", "SUCCESS", 1, BigDecimal.TEN)));
+
+            // Then
+            assertThat(dashboardStreamService.drain().isEmpty()).isTrue();
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            assertThat(dashboardStreamService.drain().curveIncrements()).containsOnlyKeys("PEN");
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void tick_DueSnapshotIsComputedWithoutTheCache() {
+        // Given: snapshot en cada tick
+        DashboardStreamServiceImpl everyTick = new DashboardStreamServiceImpl(adminService, retainedUsersService,
+                meterRegistry, 60_000, 0, 15_000);
+        everyTick.subscribe();
+        everyTick.userRegistered();
+
+        // When
+        everyTick.tick();
+
+        // Then: el delta vaciado ya está en el snapshot recalculado, no en el de la caché
+        verify(adminService).getDashboard();
+        verify(adminService).getFreshDashboard();
+        assertThat(meterRegistry.get("bank.dashboard.stream.events").tag("type", "snapshot").counter().count()).isEqualTo(1.0);
+        assertThat(meterRegistry.find("bank.dashboard.stream.events").tag("type", "delta").counter()).isNull();
+    }
+
+    @Test
+    void tick_SendsTheDeltaWhenTheSnapshotFails() {
+        // Given
+        DashboardStreamServiceImpl everyTick = new DashboardStreamServiceImpl(adminService, retainedUsersService,
+                meterRegistry, 60_000, 0, 15_000);
+        everyTick.subscribe();
+        everyTick.userRegistered();
+        when(adminService.getFreshDashboard()).thenThrow(new RuntimeException("timeout"));
+
+        // When
+        everyTick.tick();
+
+        // Then
+        assertThat(meterRegistry.get("bank.dashboard.stream.events").tag("type", "delta").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void events_AreIgnoredWithoutSubscribers() {
+        // When
+        dashboardStreamService.curvePosted(List.of(new Delta(DAY, "PEN", "DEPOSITO", "SUCCESS", 1, BigDecimal.TEN)));
+        dashboardStreamService.userRegistered();
+
+        // Then
+        AdminDashboardDelta delta = dashboardStreamService.drain();
+        assertThat(delta.curveIncrements()).isEmpty();
+        assertThat(delta.totalUsersIncrement()).isZero();
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.bank_app.service.impl;
+
+import com.example.bank_app.model.enums.DepositFileFormat;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DepositFileReaderTest {
+    @TempDir
+    Path dir;
+
+    // --- CSV tests ---
+
+    @Test
+    void next_CsvSkipsHeaderAndBlankLines() throws IOException {
+        // Given
+        Path file = write("""
+                cuenta,monto,moneda,descripcion
+                0001112,150.50,PEN,Depósito agencia 12
+
+                1234567,20,USD
+                """);
+
+        // When
+        List<DepositFileReader.Line> lines = readAll(file, DepositFileFormat.CSV, 0, 0, 1024);
+
+        // Then
+        assertThat(lines).hasSize(2);
+        assertThat(lines.get(0).number()).isEqualTo(2);
+        assertThat(lines.get(0).accountKey()).isEqualTo(DepositFileReader.accountKey("0001112"));
+        assertThat(lines.get(0).amount()).isEqualByComparingTo("150.50");
+        assertThat(lines.get(0).currencyKey()).isEqualTo(DepositFileReader.currencyKey("PEN"));
+        assertThat(lines.get(0).description()).isEqualTo("Depósito agencia 12");
+        assertThat(lines.get(1).number()).isEqualTo(4);
+        assertThat(lines.get(1).description()).isNull();
+        assertThat(lines.get(1).endOffset()).isEqualTo(Files.size(file));
+    }
+
+    @Test
+    void next_CsvRejectsInvalidFields() throws IOException {
+        // Given
+        Path file = write("""
+                12A4567,10.00,PEN
+                1234567,0,PEN
+                1234567,10.123456,PEN
+                1234567,10.00,pen
+                1234567;10.00;PEN
+                """);
+
+        // When
+        List<DepositFileReader.Line> lines = readAll(file, DepositFileFormat.CSV, 0, 0, 1024);
+
+        // Then
+        assertThat(lines).extracting(DepositFileReader.Line::error).containsExactly(
+                "Número de cuenta inválido",
+                "Monto inválido",
+                "Monto inválido",
+                "Moneda inválida",
+                "Formato de línea inválido"
+        );
+    }
+
+    @Test
+    void accountKey_KeepsLeadingZeros() {
+        assertThat(DepositFileReader.accountKey("0001112")).isNotEqualTo(DepositFileReader.accountKey("1112"));
+        assertThat(DepositFileReader.accountKey("ABC")).isEqualTo(-1);
+        assertThat(DepositFileReader.accountKey("12345678901234567")).isEqualTo(-1);
+    }
+
+    // --- Fixed width tests ---
+
+    @Test
+    void next_FixedWidthUsesImpliedCents() throws IOException {
+        // Given
+        Path file = write(String.format("%-20s%015d%s%s\r\n", "1234567", 12345, "USD", "Liquidación socio"));
+
+        // When
+        List<DepositFileReader.Line> lines = readAll(file, DepositFileFormat.FIXED_WIDTH, 0, 0, 1024);
+
+        // Then
+        assertThat(lines).hasSize(1);
+        assertThat(lines.get(0).error()).isNull();
+        assertThat(lines.get(0).accountKey()).isEqualTo(DepositFileReader.accountKey("1234567"));
+        assertThat(lines.get(0).amount()).isEqualByComparingTo("123.45");
+        assertThat(lines.get(0).description()).isEqualTo("Liquidación socio");
+    }
+
+    // --- Window and checkpoint tests ---
+
+    @Test
+    void next_LinesCrossingWindowBoundaryAreRemapped() throws IOException {
+        // Given: ventana de 32 bytes, varias líneas la cruzan
+        StringBuilder content = new StringBuilder();
+        for (int i = 1; i <= 50; i++) {
+            content.append(String.format("%07d,%d.00,PEN,linea %d%n", i, i, i));
+        }
+        Path file = write(content.toString());
+
+        // When
+        List<DepositFileReader.Line> lines = readAll(file, DepositFileFormat.CSV, 0, 0, 32);
+
+        // Then
+        assertThat(lines).hasSize(50);
+        assertThat(lines).allMatch(line -> line.error() == null);
+        assertThat(lines.get(49).amount()).isEqualByComparingTo("50.00");
+        assertThat(lines.get(49).description()).isEqualTo("linea 50");
+    }
+
+    @Test
+    void next_ResumesFromCheckpoint() throws IOException {
+        // Given
+        Path file = write("1234567,1.00,PEN\n1234567,2.00,PEN\n1234567,3.00,PEN\n");
+        DepositFileReader.Line first = readAll(file, DepositFileFormat.CSV, 0, 0, 1024).get(0);
+
+        // When
+        List<DepositFileReader.Line> rest = readAll(file, DepositFileFormat.CSV, first.endOffset(), first.number(), 1024);
+
+        // Then
+        assertThat(rest).extracting(DepositFileReader.Line::number).containsExactly(2L, 3L);
+        assertThat(rest.get(0).amount()).isEqualByComparingTo("2.00");
+    }
+
+    @Test
+    void next_LineLongerThanWindow() throws IOException {
+        // Given
+        Path file = write("1234567,1.00,PEN," + "x".repeat(100) + "\n");
+
+        // When & Then
+        assertThatThrownBy(() -> readAll(file, DepositFileFormat.CSV, 0, 0, 32))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("excede el tamaño de ventana");
+    }
+
+    // --- HELPERS ---
+    private Path write(String content) throws IOException {
+        return Files.writeString(dir.resolve("deposits.txt"), content, StandardCharsets.UTF_8);
+    }
+
+    private static List<DepositFileReader.Line> readAll(
+            Path file, DepositFileFormat format, long offset, long lineNumber, int windowBytes) throws IOException {
+        List<DepositFileReader.Line> lines = new ArrayList<>();
+
+        try (DepositFileReader reader = new DepositFileReader(file, format, offset, lineNumber, windowBytes)) {
+            DepositFileReader.Line line;
+            while ((line = reader.next()) != null) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,230 @@
+package com.example.bank_app.service.impl;
+
+import com.example.bank_app.dto.account.AccountRef;
+import com.example.bank_app.dto.ingestion.DepositIngestionRequest;
+import com.example.bank_app.dto.ingestion.DepositIngestionResponse;
+import com.example.bank_app.model.*;
+import com.example.bank_app.model.enums.DepositFileFormat;
+import com.example.bank_app.model.enums.JobStatus;
+import com.example.bank_app.model.enums.TransactionStatusCode;
+import com.example.bank_app.model.enums.TransactionTypeCode;
+import com.example.bank_app.repository.BankAccountRepository;
+import com.example.bank_app.repository.BankTransactionRepository;
+import com.example.bank_app.repository.DepositIngestionJobRepository;
+import com.example.bank_app.service.AccountLockService;
+import com.example.bank_app.service.CatalogService;
+import com.example.bank_app.service.CurrencyExchangeService;
+import com.example.bank_app.service.CurrencyExchangeService.ExchangeQuote;
+import com.example.bank_app.service.IdGeneratorService;
+import com.example.bank_app.service.JobLockService;
+import com.example.bank_app.service.TransactionJournalService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DepositIngestionServiceImplTest {
+    @Mock private DepositIngestionJobRepository depositIngestionJobRepository;
+    @Mock private BankAccountRepository bankAccountRepository;
+    @Mock private BankTransactionRepository bankTransactionRepository;
+    @Mock private TransactionJournalService transactionJournalService;
+    @Mock private AccountLockService accountLockService;
+    @Mock private CatalogService catalogService;
+    @Mock private CurrencyExchangeService currencyExchangeService;
+    @Mock private IdGeneratorService idGeneratorService;
+    @Mock private JobLockService jobLockService;
+
+    @TempDir
+    Path inbox;
+
+    private SimpleMeterRegistry meterRegistry;
+    private DepositIngestionServiceImpl depositIngestionService;
+    private BankAccount account;
+    private DepositIngestionJob storedJob;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        depositIngestionService = new DepositIngestionServiceImpl(depositIngestionJobRepository, bankAccountRepository,
+                bankTransactionRepository, transactionJournalService, accountLockService, catalogService, currencyExchangeService,
+                idGeneratorService, jobLockService, meterRegistry);
+        ReflectionTestUtils.setField(depositIngestionService, "directory", inbox.toString());
+        ReflectionTestUtils.setField(depositIngestionService, "chunkSize", 2);
+        ReflectionTestUtils.setField(depositIngestionService, "windowBytes", 1024);
+
+        Currency pen = Currency.builder().id(2).code("PEN").build();
+        account = BankAccount.builder()
+                .id(10L)
+                .accountNumber("1234567")
+                .currency(pen)
+                .currentBalance(new BigDecimal("100.00"))
+                .isActive(true)
+                .build();
+
+        lenient().when(bankAccountRepository.findAllRefsByIsActiveTrue())
+                .thenReturn(List.of(new AccountRef(10L, "1234567", 1L, 2)));
+        lenient().when(catalogService.getCurrencies()).thenReturn(List.of(pen));
+        lenient().when(catalogService.getCurrency(2)).thenReturn(pen);
+        lenient().when(catalogService.getTransactionType(TransactionTypeCode.DEPOSITO))
+                .thenReturn(TransactionType.builder().name("DEPOSITO").build());
+        lenient().when(catalogService.getTransactionStatus(TransactionStatusCode.SUCCESS))
+                .thenReturn(TransactionStatus.builder().name("SUCCESS").build());
+        lenient().when(currencyExchangeService.quote("PEN", "PEN")).thenReturn(ExchangeQuote.IDENTITY);
+        lenient().when(idGeneratorService.nextReferenceCode()).thenReturn("0000000109");
+        lenient().when(jobLockService.tryLock(anyString())).thenReturn(Optional.of(() -> {}));
+        lenient().when(accountLockService.executePosting(any()))
+                .thenAnswer(inv -> inv.<Supplier<?>>getArgument(0).get());
+        lenient().when(accountLockService.lockAccounts(any())).thenAnswer(inv ->
+                inv.<Collection<Long>>getArgument(0).contains(10L) ? Map.of(10L, account) : Map.of());
+
+        // El repositorio de jobs guarda una copia, como lo haría la BD
+        lenient().when(depositIngestionJobRepository.save(any())).thenAnswer(inv -> {
+            DepositIngestionJob job = inv.getArgument(0);
+            if (job.getId() == null) job.setId(1L);
+            storedJob = copy(job);
+            return copy(job);
+        });
+        lenient().when(depositIngestionJobRepository.findById(1L)).thenAnswer(inv -> Optional.ofNullable(storedJob).map(this::copy));
+    }
+
+    @Test
+    void ingest_PostsChunksAndCommitsCheckpointWithEachOne() throws IOException {
+        // Given
+        Path file = Files.writeString(inbox.resolve("agencias.csv"), """
+                1234567,10.00,PEN,uno
+                9999999,5.00,PEN,cuenta desconocida
+                1234567,20.00,PEN,dos
+                """);
+
+        // When
+        DepositIngestionResponse response = depositIngestionService.ingest(
+                new DepositIngestionRequest("agencias.csv", DepositFileFormat.CSV));
+
+        // Then
+        assertThat(response.status()).isEqualTo("COMPLETED");
+        assertThat(response.linesRead()).isEqualTo(3);
+        assertThat(response.linesPosted()).isEqualTo(2);
+        assertThat(response.linesRejected()).isEqualTo(1);
+        assertThat(response.checkpointOffset()).isEqualTo(Files.size(file));
+        assertThat(response.rejections()).containsExactly(
+                new DepositIngestionResponse.Rejection(2, "Cuenta destino no disponible"));
+        assertThat(response.linesPerSecond()).isPositive();
+        assertThat(account.getCurrentBalance()).isEqualByComparingTo("130.00");
+        verify(accountLockService, times(2)).executePosting(any());
+        verify(bankTransactionRepository, times(2)).saveAll(any());
+        verify(bankAccountRepository, times(1)).findAllRefsByIsActiveTrue();
+        assertThat(meterRegistry.counter("bank.ingestion.deposits.lines", "outcome", "posted").count()).isEqualTo(2.0);
+    }
+
+    @Test
+    void ingest_FailureKeepsLastCommittedCheckpointAndResumeSkipsIt() throws IOException {
+        // Given
+        Files.writeString(inbox.resolve("socios.csv"), """
+                1234567,10.00,PEN
+                1234567,20.00,PEN
+                1234567,30.00,PEN
+                """);
+        AtomicInteger postings = new AtomicInteger();
+        doAnswer(inv -> {
+            if (postings.incrementAndGet() == 2) throw new RuntimeException("Conexión perdida");
+            return inv.<Supplier<?>>getArgument(0).get();
+        }).when(accountLockService).executePosting(any());
+        DepositIngestionRequest request = new DepositIngestionRequest("socios.csv", DepositFileFormat.CSV);
+
+        // When
+        DepositIngestionResponse failed = depositIngestionService.ingest(request);
+
+        when(depositIngestionJobRepository.findFirstByFileNameOrderByIdDesc("socios.csv"))
+                .thenAnswer(inv -> Optional.of(copy(storedJob)));
+        DepositIngestionResponse resumed = depositIngestionService.ingest(request);
+
+        // Then
+        assertThat(failed.status()).isEqualTo("FAILED");
+        assertThat(failed.lastError()).isEqualTo("Conexión perdida");
+        assertThat(failed.linesRead()).isEqualTo(2);
+        assertThat(resumed.status()).isEqualTo("COMPLETED");
+        assertThat(resumed.linesRead()).isEqualTo(3);
+        assertThat(resumed.linesPosted()).isEqualTo(3);
+        assertThat(account.getCurrentBalance()).isEqualByComparingTo("160.00");
+    }
+
+    @Test
+    void ingest_CompletedFileIsNotProcessedTwice() throws IOException {
+        // Given
+        Files.writeString(inbox.resolve("agencias.csv"), "1234567,10.00,PEN\n");
+        when(depositIngestionJobRepository.findFirstByFileNameOrderByIdDesc("agencias.csv"))
+                .thenReturn(Optional.of(DepositIngestionJob.builder().status(JobStatus.COMPLETED).build()));
+
+        // When & Then
+        assertThatThrownBy(() -> depositIngestionService.ingest(
+                new DepositIngestionRequest("agencias.csv", DepositFileFormat.CSV)))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessage("El archivo ya fue procesado");
+        verify(accountLockService, never()).executePosting(any());
+    }
+
+    @Test
+    void ingest_FileLockedByAnotherNodeIsNotOpened() throws IOException {
+        // Given: otro nodo tiene el lock del archivo
+        Files.writeString(inbox.resolve("agencias.csv"), "1234567,10.00,PEN\n");
+        when(jobLockService.tryLock("deposit-ingestion:agencias.csv")).thenReturn(Optional.empty());
+
+        // When & Then: ni se lee ni se reanuda su job
+        assertThatThrownBy(() -> depositIngestionService.ingest(
+                new DepositIngestionRequest("agencias.csv", DepositFileFormat.CSV)))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessage("El archivo ya se está procesando");
+        verify(depositIngestionJobRepository, never()).findFirstByFileNameOrderByIdDesc(any());
+        verify(depositIngestionJobRepository, never()).save(any());
+    }
+
+    @Test
+    void ingest_RejectsPathsOutsideInbox() {
+        assertThatThrownBy(() -> depositIngestionService.ingest(
+                new DepositIngestionRequest("../secreto.csv", DepositFileFormat.CSV)))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessage("Archivo no encontrado: ../secreto.csv");
+    }
+
+    // --- HELPERS ---
+    private DepositIngestionJob copy(DepositIngestionJob job) {
+        return DepositIngestionJob.builder()
+                .id(job.getId())
+                .fileName(job.getFileName())
+                .format(job.getFormat())
+                .status(job.getStatus())
+                .fileSize(job.getFileSize())
+                .checkpointOffset(job.getCheckpointOffset())
+                .linesRead(job.getLinesRead())
+                .linesPosted(job.getLinesPosted())
+                .linesRejected(job.getLinesRejected())
+                .lastError(job.getLastError())
+                .startedAt(job.getStartedAt() != null ? job.getStartedAt() : LocalDateTime.now())
+                .updatedAt(job.getUpdatedAt())
+                .finishedAt(job.getFinishedAt())
+                .build();
+    }
+}
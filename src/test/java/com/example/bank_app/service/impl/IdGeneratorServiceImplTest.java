@@ -0,0 +1,143 @@
+package com.example.bank_app.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IdGeneratorServiceImplTest {
+
+    // --- Format tests ---
+
+    @Test
+    void nextReferenceCode_TenDigitsWithCheckDigit() {
+        // Given
+        IdGeneratorServiceImpl generator = new IdGeneratorServiceImpl(new FakeSequences());
+
+        // When
+        String referenceCode = generator.nextReferenceCode();
+
+        // Then: los 9 primeros dígitos son la secuencia (primer bloque, 1000)
+        assertThat(referenceCode).hasSize(10).containsOnlyDigits().startsWith("000001000");
+        assertThat(IdGeneratorServiceImpl.hasValidCheckDigit(referenceCode)).isTrue();
+    }
+
+    @Test
+    void nextAccountNumber_FourteenDigitsWithCheckDigit() {
+        // Given
+        IdGeneratorServiceImpl generator = new IdGeneratorServiceImpl(new FakeSequences());
+
+        // When
+        String accountNumber = generator.nextAccountNumber();
+
+        // Then
+        assertThat(accountNumber).hasSize(14).containsOnlyDigits();
+        assertThat(IdGeneratorServiceImpl.hasValidCheckDigit(accountNumber)).isTrue();
+    }
+
+    @Test
+    void hasValidCheckDigit_DetectsSingleDigitTypo() {
+        assertThat(IdGeneratorServiceImpl.hasValidCheckDigit("79927398713")).isTrue();
+        assertThat(IdGeneratorServiceImpl.hasValidCheckDigit("79927398714")).isFalse();
+    }
+
+    // --- Uniqueness tests ---
+
+    @Test
+    void nextReferenceCode_UniqueUnderConcurrency() {
+        // Given
+        FakeSequences sequences = new FakeSequences();
+        IdGeneratorServiceImpl generator = new IdGeneratorServiceImpl(sequences);
+        Set<String> codes = ConcurrentHashMap.newKeySet();
+
+        // When: los hilos agotan bloques a la vez
+        IntStream.range(0, 100_000).parallel().forEach(i -> codes.add(generator.nextReferenceCode()));
+
+        // Then: un nextval() por bloque, no por código
+        assertThat(codes).hasSize(100_000);
+        assertThat(sequences.reservations(IdGeneratorServiceImpl.REFERENCE_SEQUENCE))
+                .isEqualTo(100_000 / IdGeneratorServiceImpl.BLOCK_SIZE);
+    }
+
+    @Test
+    void nextReferenceCode_DoesNotRepeatAfterRestart() {
+        // Given: el mismo nodo emite más códigos de los que caben en un bloque y se reinicia
+        FakeSequences sequences = new FakeSequences();
+        IdGeneratorServiceImpl beforeRestart = new IdGeneratorServiceImpl(sequences);
+        Set<String> codes = new HashSet<>();
+        IntStream.range(0, 2_500).forEach(i -> codes.add(beforeRestart.nextReferenceCode()));
+
+        // When
+        IdGeneratorServiceImpl afterRestart = new IdGeneratorServiceImpl(sequences);
+
+        // Then: arranca en un bloque nuevo, después de todo lo emitido
+        IntStream.range(0, 2_500).forEach(i -> assertThat(codes.add(afterRestart.nextReferenceCode())).isTrue());
+        assertThat(codes).hasSize(5_000);
+    }
+
+    @Test
+    void nextReferenceCode_NodesSharingTheSequenceNeverCollide() {
+        // Given: dos nodos sobre la misma secuencia de la BD
+        FakeSequences sequences = new FakeSequences();
+        IdGeneratorServiceImpl nodeA = new IdGeneratorServiceImpl(sequences);
+        IdGeneratorServiceImpl nodeB = new IdGeneratorServiceImpl(sequences);
+
+        // When
+        Set<String> codesA = ConcurrentHashMap.newKeySet();
+        IntStream.range(0, 1_000).forEach(i -> codesA.add(nodeA.nextReferenceCode()));
+
+        // Then
+        IntStream.range(0, 1_000).forEach(i -> assertThat(codesA).doesNotContain(nodeB.nextReferenceCode()));
+    }
+
+    @Test
+    void nextReferenceCode_FailsWhenTheSequenceIsExhausted() {
+        // Given: el último bloque que cabe en 9 dígitos ya se entregó
+        IdGeneratorServiceImpl generator = new IdGeneratorServiceImpl(sequence -> 1_000_000_000L);
+
+        // When / Then
+        assertThatThrownBy(generator::nextReferenceCode)
+                .isInstanceOf(RuntimeException.class)
+                .hasMessage("Secuencia de identificadores agotada: reference_code_block_seq");
+    }
+
+    @Test
+    void nextReferenceCode_UsesTheWholeNineDigitRange() {
+        // Given: el último bloque que cabe en 9 dígitos
+        IdGeneratorServiceImpl generator = new IdGeneratorServiceImpl(sequence -> 999_999_000L);
+
+        // When
+        String referenceCode = generator.nextReferenceCode();
+
+        // Then
+        assertThat(referenceCode).startsWith("999999000");
+        assertThat(IdGeneratorServiceImpl.hasValidCheckDigit(referenceCode)).isTrue();
+    }
+
+    // --- HELPERS ---
+
+    // Como una secuencia de Postgres con INCREMENT BY BLOCK_SIZE: sobrevive a las instancias del generador
+    private static final class FakeSequences implements IdGeneratorServiceImpl.BlockSource {
+        private final Map<String, AtomicLong> values = new ConcurrentHashMap<>();
+        private final Map<String, AtomicInteger> calls = new ConcurrentHashMap<>();
+
+        @Override
+        public long reserve(String sequence) {
+            calls.computeIfAbsent(sequence, name -> new AtomicInteger()).incrementAndGet();
+            return values.computeIfAbsent(sequence, name -> new AtomicLong(IdGeneratorServiceImpl.BLOCK_SIZE))
+                    .getAndAdd(IdGeneratorServiceImpl.BLOCK_SIZE);
+        }
+
+        int reservations(String sequence) {
+            return calls.getOrDefault(sequence, new AtomicInteger()).get();
+        }
+    }
+}
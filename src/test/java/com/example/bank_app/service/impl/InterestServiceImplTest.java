@@ -0,0 +1,343 @@
+package com.example.bank_app.service.impl;
+
+import com.example.bank_app.dto.interest.InterestRunResponse;
+import com.example.bank_app.model.AccountType;
+import com.example.bank_app.model.Currency;
+import com.example.bank_app.model.InterestRun;
+import com.example.bank_app.model.InterestRunPartition;
+import com.example.bank_app.model.TransactionStatus;
+import com.example.bank_app.model.TransactionType;
+import com.example.bank_app.model.enums.JobStatus;
+import com.example.bank_app.model.enums.TransactionStatusCode;
+import com.example.bank_app.model.enums.TransactionTypeCode;
+import com.example.bank_app.repository.InterestRunPartitionRepository;
+import com.example.bank_app.repository.InterestRunRepository;
+import com.example.bank_app.service.CatalogService;
+import com.example.bank_app.service.IdGeneratorService;
+import com.example.bank_app.service.JobLockService;
+import com.example.bank_app.service.RetainedUsersService;
+import com.example.bank_app.service.TransactionRollupService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class InterestServiceImplTest {
+    private static final YearMonth PERIOD = YearMonth.of(2026, 9);
+
+    @Mock private InterestRunRepository interestRunRepository;
+    @Mock private InterestRunPartitionRepository interestRunPartitionRepository;
+    @Mock private JdbcTemplate jdbcTemplate;
+    @Mock private PlatformTransactionManager transactionManager;
+    @Mock private JobLockService jobLockService;
+    @Mock private CatalogService catalogService;
+    @Mock private IdGeneratorService idGeneratorService;
+    @Mock private TransactionRollupService transactionRollupService;
+    @Mock private RetainedUsersService retainedUsersService;
+
+    private SimpleMeterRegistry meterRegistry;
+    private InterestServiceImpl interestService;
+    private final AtomicBoolean lockReleased = new AtomicBoolean();
+    private final List<InterestRunPartition> storedPartitions = new ArrayList<>();
+    // Columnas last_account_id y completed de interest_run_partition, como las ve cada transacción de bloque
+    private final Map<Long, Long> cursors = new ConcurrentHashMap<>();
+    private final List<Long> completedPartitions = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        // Tasa 3.65% anual: septiembre (30 días) liquida exactamente 0.3%
+        interestService = new InterestServiceImpl(interestRunRepository, interestRunPartitionRepository, jdbcTemplate,
+                transactionManager, jobLockService, catalogService, idGeneratorService, transactionRollupService,
+                retainedUsersService, meterRegistry, "AHORROS", new BigDecimal("0.0365"), 2, 2, 2);
+
+        lenient().when(jobLockService.tryLock("interest-engine"))
+                .thenReturn(Optional.of(() -> lockReleased.set(true)));
+        lenient().when(catalogService.findAccountType("AHORROS"))
+                .thenReturn(Optional.of(AccountType.builder().id(1).name("AHORROS").build()));
+        lenient().when(catalogService.getTransactionType(TransactionTypeCode.PAGO_INTERESES))
+                .thenReturn(TransactionType.builder().id(5).name("PAGO_INTERESES").build());
+        lenient().when(catalogService.getTransactionStatus(TransactionStatusCode.SUCCESS))
+                .thenReturn(TransactionStatus.builder().id(2).name("SUCCESS").build());
+        lenient().when(idGeneratorService.nextReferenceCode()).thenReturn("0000000109");
+        lenient().when(catalogService.getCurrency(1)).thenReturn(Currency.builder().id(1).code("USD").build());
+        lenient().when(catalogService.getCurrency(2)).thenReturn(Currency.builder().id(2).code("PEN").build());
+
+        lenient().when(interestRunRepository.save(any())).thenAnswer(inv -> {
+            InterestRun run = inv.getArgument(0);
+            if (run.getId() == null) run.setId(1L);
+            return run;
+        });
+        lenient().when(interestRunPartitionRepository.saveAll(any())).thenAnswer(inv -> {
+            List<InterestRunPartition> partitions = inv.getArgument(0);
+            long id = 1;
+            for (InterestRunPartition partition : partitions) {
+                partition.setId(id++);
+                storedPartitions.add(partition);
+            }
+            return partitions;
+        });
+        lenient().when(interestRunPartitionRepository.findAllByRunIdOrderByPartitionNo(1L)).thenAnswer(inv -> storedPartitions);
+
+        lenient().when(jdbcTemplate.queryForObject(contains("FOR UPDATE"), eq(Long.class), any(Object[].class))).thenAnswer(inv -> {
+            Long partitionId = (Long) inv.getArguments()[2];
+            return cursors.computeIfAbsent(partitionId, id -> storedPartitions.stream()
+                    .filter(p -> p.getId().equals(id)).findFirst().orElseThrow().getLastAccountId());
+        });
+        lenient().when(jdbcTemplate.update(contains("SET last_account_id"), any(Object[].class))).thenAnswer(inv -> {
+            Object[] args = inv.getArguments();
+            cursors.put((Long) args[4], (Long) args[1]);
+            if (Boolean.TRUE.equals(args[3])) completedPartitions.add((Long) args[4]);
+            return 1;
+        });
+    }
+
+    @Test
+    void runMonthlyInterest_SplitsAccountsAndPostsChunksWithBatches() throws SQLException {
+        // Given: cuentas 1..4 en dos particiones (0, 2] y (2, 4]
+        when(jdbcTemplate.queryForMap(anyString(), eq(1))).thenReturn(Map.of("min_id", 1L, "max_id", 4L));
+        Map<Long, List<Object[]>> accountsByRange = Map.of(
+                0L, List.of(new Object[]{1L, "1000.00", 2}, new Object[]{2L, "0.00", 2}),
+                2L, List.of(new Object[]{3L, "365.00", 1}, new Object[]{4L, "10.00", 2})
+        );
+        doAnswer(inv -> {
+            RowMapper<?> mapper = inv.getArgument(1);
+            long afterId = inv.getArgument(3);
+            long toId = inv.getArgument(4);
+            List<Object> rows = new ArrayList<>();
+            for (Object[] account : accountsByRange.getOrDefault(afterId, List.of())) {
+                if ((Long) account[0] <= toId) rows.add(mapper.mapRow(row(account), rows.size()));
+            }
+            return rows;
+        }).when(jdbcTemplate).query(anyString(), any(RowMapper.class), any(Object[].class));
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), any(Object[].class))).thenReturn(List.of(149L));
+
+        // When
+        InterestRunResponse response = interestService.runMonthlyInterest(PERIOD);
+
+        // Then
+        assertThat(response.status()).isEqualTo("COMPLETED");
+        assertThat(response.partitions()).isEqualTo(2);
+        assertThat(storedPartitions).extracting(InterestRunPartition::getFromId).containsExactly(0L, 2L);
+        assertThat(storedPartitions).extracting(InterestRunPartition::getToId).containsExactly(2L, 4L);
+        assertThat(lockReleased).isTrue();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Object[]>> inserts = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(2)).batchUpdate(contains("INSERT INTO bank_transaction"), inserts.capture());
+        List<Object[]> rows = inserts.getAllValues().stream().flatMap(List::stream).toList();
+
+        // La cuenta 2 tiene saldo cero y no recibe movimiento
+        assertThat(rows).extracting(r -> r[1]).containsExactlyInAnyOrder(1L, 3L, 4L);
+        assertThat(rows).extracting(r -> ((BigDecimal) r[3]).toPlainString())
+                .containsExactlyInAnyOrder("3.0000", "1.0950", "0.0300");
+        // Ids tomados del bloque pooled que termina en 149
+        assertThat(rows).extracting(r -> (long) r[0]).allMatch(id -> id >= 100 && id <= 149);
+        assertThat(rows).allMatch(r -> "Intereses 2026-09".equals(r[7]));
+
+        // Cada pago deja su lado destino en el historial, con la misma referencia y moneda resuelta
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Object[]>> legs = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(2)).batchUpdate(contains("INSERT INTO account_posting_leg"), legs.capture());
+        List<Object[]> legRows = legs.getAllValues().stream().flatMap(List::stream).toList();
+        assertThat(legRows).extracting(r -> r[1]).containsExactlyInAnyOrder(1L, 3L, 4L);
+        assertThat(legRows).extracting(r -> r[6]).containsExactlyInAnyOrder("PEN", "USD", "PEN");
+        assertThat(legRows).allMatch(r -> "TARGET".equals(r[3]) && "PAGO_INTERESES".equals(r[4]));
+
+        // Los códigos también entran al registro global de referencias
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Object[]>> references = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(2)).batchUpdate(contains("INSERT INTO transaction_reference"), references.capture());
+        assertThat(references.getAllValues().stream().flatMap(List::stream).map(r -> r[0]))
+                .containsExactlyInAnyOrderElementsOf(rows.stream().map(r -> r[6]).toList());
+
+        // Y suma al agregado diario del dashboard en la misma transacción
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<TransactionRollupService.Delta>> deltas = ArgumentCaptor.forClass(List.class);
+        verify(transactionRollupService, times(2)).add(deltas.capture());
+        assertThat(deltas.getAllValues().stream().flatMap(List::stream).toList())
+                .extracting(TransactionRollupService.Delta::currencyCode).containsExactlyInAnyOrder("PEN", "USD", "PEN");
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Long>> users = ArgumentCaptor.forClass(List.class);
+        verify(retainedUsersService, times(2)).addUsers(users.capture());
+        assertThat(users.getAllValues().stream().flatMap(List::stream).toList()).containsExactlyInAnyOrder(101L, 103L, 104L);
+
+        // Cada partición se marca completada en la transacción de su último bloque
+        assertThat(completedPartitions).containsExactlyInAnyOrder(1L, 2L);
+        assertThat(cursors).containsEntry(1L, 2L).containsEntry(2L, 4L);
+        assertThat(meterRegistry.counter("bank.interest.accounts.credited").count()).isEqualTo(3.0);
+    }
+
+    @Test
+    void runMonthlyInterest_CompletedRunIsNotPaidTwice() {
+        // Given
+        when(interestRunRepository.findByPeriod("2026-09")).thenReturn(Optional.of(run(JobStatus.COMPLETED)));
+
+        // When
+        InterestRunResponse response = interestService.runMonthlyInterest(PERIOD);
+
+        // Then
+        assertThat(response.status()).isEqualTo("COMPLETED");
+        verifyNoInteractions(jdbcTemplate);
+        verify(interestRunRepository, never()).save(any());
+    }
+
+    @Test
+    void runMonthlyInterest_ResumesOnlyPendingPartitionsFromTheirCursor() {
+        // Given
+        when(interestRunRepository.findByPeriod("2026-09")).thenReturn(Optional.of(run(JobStatus.FAILED)));
+        storedPartitions.add(InterestRunPartition.builder()
+                .id(1L).runId(1L).partitionNo(0).fromId(0L).toId(2L).lastAccountId(2L).completed(true).build());
+        storedPartitions.add(InterestRunPartition.builder()
+                .id(2L).runId(1L).partitionNo(1).fromId(2L).toId(4L).lastAccountId(3L).build());
+        doReturn(List.of()).when(jdbcTemplate).query(anyString(), any(RowMapper.class), any(Object[].class));
+
+        // When
+        InterestRunResponse response = interestService.runMonthlyInterest(PERIOD);
+
+        // Then
+        assertThat(response.status()).isEqualTo("COMPLETED");
+        verify(jdbcTemplate).query(anyString(), any(RowMapper.class), eq(1), eq(3L), eq(4L), eq(2));
+        assertThat(completedPartitions).containsExactly(2L);
+        verify(interestRunPartitionRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void runMonthlyInterest_ChunkStartsFromTheCommittedCursor() {
+        // Given: la partición se leyó con cursor 0, pero otra ejecución ya confirmó hasta la cuenta 3
+        when(interestRunRepository.findByPeriod("2026-09")).thenReturn(Optional.of(run(JobStatus.FAILED)));
+        storedPartitions.add(InterestRunPartition.builder()
+                .id(1L).runId(1L).partitionNo(0).fromId(0L).toId(4L).lastAccountId(0L).build());
+        cursors.put(1L, 3L);
+        doReturn(List.of()).when(jdbcTemplate).query(anyString(), any(RowMapper.class), any(Object[].class));
+
+        // When
+        interestService.runMonthlyInterest(PERIOD);
+
+        // Then: las cuentas 1..3 no se vuelven a pagar
+        verify(jdbcTemplate).query(anyString(), any(RowMapper.class), eq(1), eq(3L), eq(4L), eq(2));
+    }
+
+    @Test
+    void runMonthlyInterest_FailureWaitsForChunksInFlightBeforeReleasingTheLock() throws Exception {
+        // Given: la partición 1 falla mientras la 2 está a mitad de un bloque
+        when(interestRunRepository.findByPeriod("2026-09")).thenReturn(Optional.of(run(JobStatus.RUNNING)));
+        storedPartitions.add(InterestRunPartition.builder()
+                .id(1L).runId(1L).partitionNo(0).fromId(0L).toId(2L).lastAccountId(0L).build());
+        storedPartitions.add(InterestRunPartition.builder()
+                .id(2L).runId(1L).partitionNo(1).fromId(2L).toId(6L).lastAccountId(2L).build());
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), any(Object[].class))).thenReturn(List.of(149L));
+
+        CountDownLatch secondStarted = new CountDownLatch(1);
+        List<String> events = new CopyOnWriteArrayList<>();
+        doAnswer(inv -> {
+            long afterId = inv.getArgument(3);
+            if (afterId == 0L) {
+                secondStarted.await(2, TimeUnit.SECONDS);
+                throw new RuntimeException("Conexión perdida");
+            }
+            secondStarted.countDown();
+            events.add("chunk " + afterId);
+            Thread.sleep(300);
+            RowMapper<?> mapper = inv.getArgument(1);
+            return List.of(mapper.mapRow(row(new Object[]{3L, "100.00", 2}), 0), mapper.mapRow(row(new Object[]{4L, "100.00", 2}), 1));
+        }).when(jdbcTemplate).query(anyString(), any(RowMapper.class), any(Object[].class));
+        lockReleased.set(false);
+        when(jobLockService.tryLock("interest-engine")).thenReturn(Optional.of(() -> {
+            events.add("lock released");
+            lockReleased.set(true);
+        }));
+
+        // When
+        InterestRunResponse response = interestService.runMonthlyInterest(PERIOD);
+        Thread.sleep(400);
+
+        // Then: el bloque en curso confirmó antes de liberar el lock y no empezó otro
+        assertThat(response.status()).isEqualTo("FAILED");
+        assertThat(events).last().isEqualTo("lock released");
+        assertThat(events).filteredOn(e -> e.startsWith("chunk")).hasSizeLessThanOrEqualTo(1);
+        assertThat(completedPartitions).isEmpty();
+    }
+
+    @Test
+    void runMonthlyInterest_FailedChunkMarksRunFailed() {
+        // Given
+        when(interestRunRepository.findByPeriod("2026-09")).thenReturn(Optional.of(run(JobStatus.RUNNING)));
+        storedPartitions.add(InterestRunPartition.builder()
+                .id(1L).runId(1L).partitionNo(0).fromId(0L).toId(2L).lastAccountId(0L).build());
+        doThrow(new RuntimeException("Conexión perdida"))
+                .when(jdbcTemplate).query(anyString(), any(RowMapper.class), any(Object[].class));
+
+        // When
+        InterestRunResponse response = interestService.runMonthlyInterest(PERIOD);
+
+        // Then
+        assertThat(response.status()).isEqualTo("FAILED");
+        assertThat(response.lastError()).isEqualTo("Conexión perdida");
+        assertThat(response.partitionsCompleted()).isZero();
+        assertThat(lockReleased).isTrue();
+    }
+
+    @Test
+    void runMonthlyInterest_LockHeldByAnotherNode() {
+        // Given
+        when(jobLockService.tryLock("interest-engine")).thenReturn(Optional.empty());
+
+        // When & Then
+        assertThatThrownBy(() -> interestService.runMonthlyInterest(PERIOD))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessage("La liquidación de intereses ya se está ejecutando en otro nodo");
+        verifyNoInteractions(interestRunRepository);
+    }
+
+    // --- HELPERS ---
+    private static InterestRun run(JobStatus status) {
+        return InterestRun.builder()
+                .id(1L)
+                .period("2026-09")
+                .status(status)
+                .annualRate(new BigDecimal("0.0365"))
+                .accountTypeId(1)
+                .startedAt(LocalDateTime.now())
+                .build();
+    }
+
+    private static ResultSet row(Object[] account) throws SQLException {
+        ResultSet resultSet = mock(ResultSet.class);
+        when(resultSet.getLong(1)).thenReturn((Long) account[0]);
+        when(resultSet.getBigDecimal(2)).thenReturn(new BigDecimal((String) account[1]));
+        when(resultSet.getInt(3)).thenReturn((Integer) account[2]);
+        when(resultSet.getLong(4)).thenReturn(100 + (Long) account[0]);
+        return resultSet;
+    }
+}
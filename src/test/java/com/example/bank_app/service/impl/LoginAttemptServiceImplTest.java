@@ -3,6 +3,7 @@ package com.example.bank_app.service.impl;
 import com.example.bank_app.model.LoginAttempt;
 import com.example.bank_app.model.User;
 import com.example.bank_app.repository.LoginAttemptRepository;
+import com.example.bank_app.service.DashboardStreamService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -22,6 +23,7 @@ import static org.mockito.Mockito.*;
 class LoginAttemptServiceImplTest {
 
     @Mock private LoginAttemptRepository loginAttemptRepository;
+    @Mock private DashboardStreamService dashboardStreamService;
     @InjectMocks private LoginAttemptServiceImpl loginAttemptService;
 
     private User user;
@@ -136,6 +138,7 @@ class LoginAttemptServiceImplTest {
         // Then
         assertThat(loginAttempt.getAttempts()).isEqualTo(1);
         assertThat(loginAttempt.getIsBlocked()).isFalse();
+        verify(dashboardStreamService, never()).blockChanged(any(), anyBoolean());
     }
 
     @Test
@@ -151,6 +154,7 @@ class LoginAttemptServiceImplTest {
         // Then
         assertThat(loginAttempt.getAttempts()).isEqualTo(3);
         assertThat(loginAttempt.getIsBlocked()).isTrue();
+        verify(dashboardStreamService).blockChanged(user, true);
     }
 
     @Test
@@ -166,6 +170,7 @@ class LoginAttemptServiceImplTest {
         // Then
         assertThat(loginAttempt.getAttempts()).isEqualTo(5);
         assertThat(loginAttempt.getIsBlocked()).isTrue();
+        verify(dashboardStreamService).blockChanged(user, true);
     }
 
     @Test
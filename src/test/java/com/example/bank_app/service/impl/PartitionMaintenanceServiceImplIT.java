@@ -0,0 +1,135 @@
+package com.example.bank_app.service.impl;
+
+import com.example.bank_app.dto.partition.PartitionMaintenanceResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.utility.MountableFile;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * El DDL de particiones contra el esquema real (database/01_schema.sql), no el que genera Hibernate en los
+ * demás ITs: allí las tablas no están particionadas y el mantenimiento las omite.
+ */
+class PartitionMaintenanceServiceImplIT {
+    // Contenedor propio: el esquema se aplica como en docker-compose (docker-entrypoint-initdb.d)
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine")
+            .withDatabaseName("bank_partition_db")
+            .withUsername("testuser")
+            .withPassword("testpass")
+            .withCopyFileToContainer(MountableFile.forHostPath("database/01_schema.sql"),
+                    "/docker-entrypoint-initdb.d/01_schema.sql");
+
+    static {
+        postgres.start();
+    }
+
+    private JdbcTemplate jdbcTemplate;
+    private PartitionMaintenanceServiceImpl partitionMaintenanceService;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+        jdbcTemplate = new JdbcTemplate(dataSource);
+
+        // Un mes por adelantado y dos de retención
+        partitionMaintenanceService = new PartitionMaintenanceServiceImpl(jdbcTemplate,
+                new DataSourceTransactionManager(dataSource), new JobLockServiceImpl(dataSource),
+                new SimpleMeterRegistry(), 1, 2);
+
+        // Cada test deja sus meses: se vuelve a una tabla con solo la partición DEFAULT
+        for (String table : new String[]{"bank_transaction", "account_posting_leg"}) {
+            for (String partition : jdbcTemplate.queryForList("""
+                    SELECT c.relname FROM pg_class c
+                    WHERE c.relname LIKE ? AND c.relkind = 'r'
+                    """, String.class, table + "\\_p%")) {
+                jdbcTemplate.execute("DROP TABLE " + partition);
+            }
+            jdbcTemplate.execute("TRUNCATE " + table);
+        }
+        jdbcTemplate.execute("""
+                INSERT INTO currency (id, code, name) VALUES (1, 'PEN', 'Sol') ON CONFLICT DO NOTHING;
+                INSERT INTO transaction_type (id, name) VALUES (1, 'DEPOSITO') ON CONFLICT DO NOTHING;
+                INSERT INTO transaction_status (id, name) VALUES (1, 'SUCCESS') ON CONFLICT DO NOTHING;
+                """);
+    }
+
+    @Test
+    void maintainPartitions_MovesDefaultRowsAcrossTheMonthBoundaryAndDetachesOldMonths() {
+        // Given: sin particiones mensuales, todo cae en DEFAULT (incluido el último segundo del año y el primero del siguiente)
+        insertTransaction(1L, "REF-OLD", LocalDateTime.of(2025, 10, 15, 12, 0));
+        insertTransaction(2L, "REF-DEC", LocalDateTime.of(2025, 12, 31, 23, 59, 59));
+        insertTransaction(3L, "REF-JAN", LocalDateTime.of(2026, 1, 1, 0, 0));
+        assertThat(count("bank_transaction_default")).isEqualTo(3);
+
+        // When
+        PartitionMaintenanceResponse response = partitionMaintenanceService.maintainPartitions(YearMonth.of(2026, 1));
+
+        // Then: los meses de DEFAULT más el en curso y el siguiente; octubre supera la retención y se separa
+        assertThat(response.created()).containsExactly(
+                "bank_transaction_p202510", "bank_transaction_p202512", "bank_transaction_p202601", "bank_transaction_p202602",
+                "account_posting_leg_p202601", "account_posting_leg_p202602");
+        assertThat(response.detached()).containsExactly("bank_transaction_p202510");
+
+        assertThat(count("bank_transaction_default")).isZero();
+        assertThat(partitionOf("REF-DEC")).isEqualTo("bank_transaction_p202512");
+        assertThat(partitionOf("REF-JAN")).isEqualTo("bank_transaction_p202601");
+
+        // La separada queda suelta con su fila, fuera de la tabla padre
+        assertThat(attachedPartitions("bank_transaction")).containsExactlyInAnyOrder(
+                "bank_transaction_default", "bank_transaction_p202512", "bank_transaction_p202601", "bank_transaction_p202602");
+        assertThat(count("bank_transaction_p202510")).isEqualTo(1);
+        assertThat(count("bank_transaction")).isEqualTo(2);
+    }
+
+    @Test
+    void maintainPartitions_NextMonthOnlyAddsWhatIsMissing() {
+        // Given
+        partitionMaintenanceService.maintainPartitions(YearMonth.of(2026, 1));
+
+        // When: un mes después
+        insertTransaction(4L, "REF-FEB", LocalDateTime.of(2026, 2, 10, 9, 0));
+        PartitionMaintenanceResponse response = partitionMaintenanceService.maintainPartitions(YearMonth.of(2026, 2));
+
+        // Then: las filas nuevas ya van a su mes y solo falta el mes por adelantado
+        assertThat(partitionOf("REF-FEB")).isEqualTo("bank_transaction_p202602");
+        assertThat(response.created()).containsExactly("bank_transaction_p202603", "account_posting_leg_p202603");
+        assertThat(response.detached()).isEmpty();
+        assertThat(count("bank_transaction_default")).isZero();
+    }
+
+    // --- HELPERS ---
+    private void insertTransaction(Long id, String referenceCode, LocalDateTime createdAt) {
+        jdbcTemplate.update("""
+                INSERT INTO bank_transaction (id, transaction_type_id, amount, currency_id, transaction_status_id, reference_code, created_at)
+                VALUES (?, 1, 10, 1, 1, ?, ?)
+                """, id, referenceCode, Timestamp.valueOf(createdAt));
+    }
+
+    private String partitionOf(String referenceCode) {
+        return jdbcTemplate.queryForObject("SELECT tableoid::regclass::text FROM bank_transaction WHERE reference_code = ?",
+                String.class, referenceCode);
+    }
+
+    private List<String> attachedPartitions(String table) {
+        return jdbcTemplate.queryForList("""
+                SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+                WHERE i.inhparent = to_regclass(?)
+                """, String.class, table);
+    }
+
+    private long count(String table) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Long.class);
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.bank_app.service.impl;
+
+import com.example.bank_app.dto.partition.PartitionMaintenanceResponse;
+import com.example.bank_app.service.JobLockService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PartitionMaintenanceServiceImplTest {
+    private static final YearMonth CURRENT = YearMonth.of(2026, 10);
+
+    @Mock private JdbcTemplate jdbcTemplate;
+    @Mock private PlatformTransactionManager transactionManager;
+    @Mock private JobLockService jobLockService;
+
+    private SimpleMeterRegistry meterRegistry;
+    private PartitionMaintenanceServiceImpl partitionMaintenanceService;
+    private final AtomicBoolean lockReleased = new AtomicBoolean();
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        // 1 mes por adelantado, retención de 12 meses
+        partitionMaintenanceService = new PartitionMaintenanceServiceImpl(jdbcTemplate, transactionManager, jobLockService,
+                meterRegistry, 1, 12);
+
+        lenient().when(jobLockService.tryLock("partition-maintenance"))
+                .thenReturn(Optional.of(() -> lockReleased.set(true)));
+        lenient().when(jdbcTemplate.queryForObject(anyString(), eq(Boolean.class), anyString())).thenReturn(true);
+        lenient().when(jdbcTemplate.queryForList(anyString(), eq(String.class), anyString())).thenReturn(List.of());
+        lenient().when(jdbcTemplate.query(anyString(), any(RowMapper.class))).thenReturn(List.of());
+    }
+
+    @Test
+    void maintainPartitions_CreatesMissingMonthsAndDetachesExpired() {
+        // Given: bank_transaction ya tiene octubre y un mes fuera de la retención; legs no tiene ninguno
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class), eq("bank_transaction")))
+                .thenReturn(List.of("bank_transaction_default", "bank_transaction_p202610", "bank_transaction_p202509"));
+
+        // When
+        PartitionMaintenanceResponse response = partitionMaintenanceService.maintainPartitions(CURRENT);
+
+        // Then
+        assertThat(response.created()).containsExactly(
+                "bank_transaction_p202611", "account_posting_leg_p202610", "account_posting_leg_p202611");
+        assertThat(response.detached()).containsExactly("bank_transaction_p202509");
+
+        InOrder inOrder = inOrder(jdbcTemplate);
+        inOrder.verify(jdbcTemplate).execute(
+                "CREATE TABLE bank_transaction_p202611 (LIKE bank_transaction INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+        inOrder.verify(jdbcTemplate).update(contains("DELETE FROM bank_transaction_default"),
+                eq(Timestamp.valueOf("2026-11-01 00:00:00")), eq(Timestamp.valueOf("2026-12-01 00:00:00")));
+        inOrder.verify(jdbcTemplate).execute("ALTER TABLE bank_transaction ATTACH PARTITION bank_transaction_p202611"
+                + " FOR VALUES FROM ('2026-11-01 00:00:00.0') TO ('2026-12-01 00:00:00.0')");
+        verify(jdbcTemplate).execute("ALTER TABLE bank_transaction DETACH PARTITION bank_transaction_p202509");
+        verify(jdbcTemplate, never()).execute(contains("bank_transaction_p202610"));
+
+        assertThat(meterRegistry.counter("bank.partitions.created", "table", "account_posting_leg").count()).isEqualTo(2.0);
+        assertThat(lockReleased).isTrue();
+    }
+
+    @Test
+    void maintainPartitions_CreatesMonthsFoundInDefaultPartition() {
+        // Given: filas de marzo en DEFAULT (base migrada); sin retención para no separarlo en la misma pasada
+        partitionMaintenanceService = new PartitionMaintenanceServiceImpl(jdbcTemplate, transactionManager, jobLockService,
+                meterRegistry, 0, 0);
+        when(jdbcTemplate.query(eq("SELECT DISTINCT date_trunc('month', created_at) FROM bank_transaction_default"),
+                any(RowMapper.class))).thenReturn(List.of(YearMonth.of(2026, 3)));
+
+        // When
+        PartitionMaintenanceResponse response = partitionMaintenanceService.maintainPartitions(CURRENT);
+
+        // Then
+        assertThat(response.created()).containsExactly(
+                "bank_transaction_p202603", "bank_transaction_p202610", "account_posting_leg_p202610");
+        assertThat(response.detached()).isEmpty();
+    }
+
+    @Test
+    void maintainPartitions_SkipsTablesThatAreNotPartitioned() {
+        // Given: esquema sin particionar (p. ej. generado por Hibernate)
+        when(jdbcTemplate.queryForObject(anyString(), eq(Boolean.class), anyString())).thenReturn(false);
+
+        // When
+        PartitionMaintenanceResponse response = partitionMaintenanceService.maintainPartitions(CURRENT);
+
+        // Then
+        assertThat(response.created()).isEmpty();
+        assertThat(response.detached()).isEmpty();
+        verify(jdbcTemplate, never()).execute(anyString());
+        verifyNoInteractions(transactionManager);
+    }
+
+    @Test
+    void maintainPartitions_LockHeldByAnotherNode() {
+        when(jobLockService.tryLock("partition-maintenance")).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> partitionMaintenanceService.maintainPartitions(CURRENT))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessage("El mantenimiento de particiones ya se está ejecutando en otro nodo");
+        verifyNoInteractions(jdbcTemplate);
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.bank_app.service.impl;
+
+import com.example.bank_app.model.BankAccount;
+import com.example.bank_app.model.BankTransaction;
+import com.example.bank_app.model.User;
+import com.example.bank_app.service.JobLockService;
+import com.example.bank_app.service.TransactionArchiveService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RetainedUsersServiceImplTest {
+    @Mock private TransactionArchiveService transactionArchiveService;
+    @Mock private DataSource dataSource;
+    @Mock private PlatformTransactionManager transactionManager;
+    @Mock private JobLockService jobLockService;
+    @Mock private JdbcTemplate jdbcTemplate;
+
+    private SimpleMeterRegistry meterRegistry;
+    private RetainedUsersServiceImpl retainedUsersService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        retainedUsersService = new RetainedUsersServiceImpl(transactionArchiveService, dataSource, transactionManager,
+                jobLockService, meterRegistry, 14, 500);
+        ReflectionTestUtils.setField(retainedUsersService, "jdbcTemplate", jdbcTemplate);
+        retainedUsersService.registerMetrics();
+
+        lenient().when(jobLockService.tryLock("retained-users-rebuild")).thenReturn(Optional.of(() -> { }));
+    }
+
+    @Test
+    void estimate_StaysWithinErrorBoundAndIgnoresRepeatedUsers() {
+        // Given
+        List<Long> users = LongStream.rangeClosed(1, 50_000).boxed().toList();
+
+        // When: cada usuario opera dos veces
+        retainedUsersService.addUsers(users);
+        retainedUsersService.addUsers(users);
+
+        // Then: precisión 14 → error típico ~0.8%
+        assertThat((double) retainedUsersService.estimate()).isCloseTo(50_000, within(1_500.0));
+        assertThat(meterRegistry.get("bank.retained_users.estimate").gauge().value())
+                .isEqualTo((double) retainedUsersService.estimate());
+    }
+
+    @Test
+    void record_CountsOwnersOnlyAfterCommit() {
+        // Given
+        BankAccount source = BankAccount.builder().id(1L).user(User.builder().id(7L).build()).build();
+        BankAccount target = BankAccount.builder().id(2L).user(User.builder().id(8L).build()).build();
+        BankTransaction transfer = BankTransaction.builder().sourceAccount(source).targetAccount(target).build();
+        BankTransaction deposit = BankTransaction.builder().targetAccount(target).build();
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            // When
+            retainedUsersService.record(List.of(transfer, deposit));
+
+            // Then: nada hasta confirmar; al confirmar, dos titulares distintos
+            assertThat(retainedUsersService.estimate()).isZero();
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            assertThat(retainedUsersService.estimate()).isEqualTo(2);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void flush_MergesTheStoredSketchOfOtherNodes() {
+        // Given: otro nodo ya guardó los usuarios 1001..2000; este nodo vio 1..1000
+        HyperLogLog otherNode = new HyperLogLog(14);
+        LongStream.rangeClosed(1001, 2000).forEach(otherNode::add);
+        when(jdbcTemplate.queryForObject(contains("FOR UPDATE"), eq(byte[].class), eq("retained-users")))
+                .thenReturn(otherNode.toBytes());
+        retainedUsersService.addUsers(LongStream.rangeClosed(1, 1000).boxed().toList());
+
+        // When
+        retainedUsersService.flush();
+
+        // Then: la fila y la estimación local quedan con la unión
+        assertThat((double) retainedUsersService.estimate()).isCloseTo(2_000, within(60.0));
+        ArgumentCaptor<Object> registers = ArgumentCaptor.forClass(Object.class);
+        verify(jdbcTemplate).update(contains("UPDATE user_activity_sketch"), registers.capture(), any(), eq("retained-users"));
+        assertThat(HyperLogLog.fromBytes((byte[]) registers.getValue()).estimate()).isEqualTo(retainedUsersService.estimate());
+    }
+
+    @Test
+    void rebuild_ReplacesSketchWithTheHistoryScan() throws Exception {
+        // Given: un usuario que ya no tiene movimientos vivos ni archivados y tres que sí
+        retainedUsersService.addUsers(List.of(99L));
+        archivedAccounts(10L, 11L);
+        doAnswer(inv -> {
+            RowCallbackHandler handler = inv.getArgument(1);
+            for (long userId : new long[]{1L, 2L, 3L}) {
+                ResultSet row = mock(ResultSet.class);
+                when(row.getLong(1)).thenReturn(userId);
+                handler.processRow(row);
+            }
+            return null;
+        }).when(jdbcTemplate).query(contains("FROM bank_account"), any(RowCallbackHandler.class));
+
+        // When
+        long estimate = retainedUsersService.rebuild();
+
+        // Then: el recorrido incluye las cuentas del archivo frío
+        assertThat(estimate).isEqualTo(3);
+        verify(jdbcTemplate).execute(contains("CREATE TEMP TABLE archived_account"));
+        ArgumentCaptor<List<Object[]>> archived = ArgumentCaptor.captor();
+        verify(jdbcTemplate).batchUpdate(contains("INSERT INTO archived_account"), archived.capture());
+        assertThat(archived.getValue()).extracting(row -> row[0]).containsExactly(10L, 11L);
+        verify(jdbcTemplate).query(contains("archived_account x"), any(RowCallbackHandler.class));
+        verify(jdbcTemplate).update(contains("ON CONFLICT (name) DO UPDATE"), eq("retained-users"), any(byte[].class), any());
+    }
+
+    @Test
+    void recountExact_PublishesTheExactCountIncludingArchivedMonths() {
+        // Given
+        archivedAccounts(10L);
+        when(jdbcTemplate.queryForObject(contains("COUNT(DISTINCT a.user_id)"), eq(Long.class))).thenReturn(42L);
+
+        // When
+        long exact = retainedUsersService.recountExact();
+
+        // Then
+        assertThat(exact).isEqualTo(42);
+        assertThat(meterRegistry.get("bank.retained_users.exact").gauge().value()).isEqualTo(42.0);
+        verify(jdbcTemplate).batchUpdate(contains("INSERT INTO archived_account"), anyList());
+    }
+
+    // --- HELPERS ---
+    private void archivedAccounts(long... accountIds) {
+        doAnswer(inv -> {
+            LongConsumer action = inv.getArgument(0);
+            for (long accountId : accountIds) {
+                action.accept(accountId);
+            }
+            return null;
+        }).when(transactionArchiveService).forEachArchivedAccount(any());
+    }
+}
@@ -0,0 +1,327 @@
+package com.example.bank_app.service.impl;
+
+import com.example.bank_app.dto.archive.ArchivedTransaction;
+import com.example.bank_app.dto.archive.TransactionArchiveResponse;
+import com.example.bank_app.model.AccountPostingLeg;
+import com.example.bank_app.model.TransactionArchiveFile;
+import com.example.bank_app.repository.TransactionArchiveFileRepository;
+import com.example.bank_app.service.JobLockService;
+import com.example.bank_app.util.DateRangeUtils;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TransactionArchiveServiceImplTest {
+    private static final YearMonth PERIOD = YearMonth.of(2024, 3);
+    private static final LocalDateTime DAY = LocalDateTime.of(2024, 3, 10, 9, 0);
+
+    private static final String[] LEG_COLUMNS = {"id", "account_id", "transaction_id", "side", "counterparty_account_number",
+            "transaction_type", "transaction_status", "currency_code", "amount", "description", "reference_code", "created_at"};
+    private static final int[] LEG_TYPES = {Types.BIGINT, Types.BIGINT, Types.BIGINT, Types.VARCHAR, Types.VARCHAR,
+            Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.NUMERIC, Types.VARCHAR, Types.VARCHAR, Types.TIMESTAMP};
+    private static final String[] TRANSACTION_COLUMNS = {"id", "source_account_id", "target_account_id", "transaction_type_id",
+            "amount", "currency_id", "transaction_status_id", "reference_code", "description", "source_applied_rate", "created_at"};
+    private static final int[] TRANSACTION_TYPES = {Types.BIGINT, Types.BIGINT, Types.BIGINT, Types.INTEGER,
+            Types.NUMERIC, Types.INTEGER, Types.INTEGER, Types.VARCHAR, Types.VARCHAR, Types.NUMERIC, Types.TIMESTAMP};
+
+    @Mock private TransactionArchiveFileRepository transactionArchiveFileRepository;
+    @Mock private DataSource dataSource;
+    @Mock private PlatformTransactionManager transactionManager;
+    @Mock private JobLockService jobLockService;
+    @Mock private JdbcTemplate jdbcTemplate;
+
+    @TempDir
+    Path archiveDirectory;
+
+    private TransactionArchiveServiceImpl transactionArchiveService;
+    private final List<TransactionArchiveFile> storedFiles = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        // 2 filas por archivo para forzar el reparto por rangos de cuenta
+        transactionArchiveService = new TransactionArchiveServiceImpl(transactionArchiveFileRepository, dataSource,
+                transactionManager, jobLockService, new SimpleMeterRegistry(), archiveDirectory.toString(), 12, 2, 500);
+        ReflectionTestUtils.setField(transactionArchiveService, "jdbcTemplate", jdbcTemplate);
+
+        lenient().when(jobLockService.tryLock("transaction-archive")).thenReturn(Optional.of(() -> { }));
+        lenient().when(jdbcTemplate.queryForObject(anyString(), eq(Boolean.class), any(Object[].class))).thenReturn(false);
+        lenient().when(transactionArchiveFileRepository.saveAll(any())).thenAnswer(inv -> {
+            inv.<List<TransactionArchiveFile>>getArgument(0).forEach(storedFiles::add);
+            return inv.getArgument(0);
+        });
+        // Mismo filtro que la consulta JPQL sobre los rangos min/max
+        lenient().when(transactionArchiveFileRepository.findLegFiles(any(), any(), any())).thenAnswer(inv -> {
+            Long accountId = inv.getArgument(0);
+            LocalDateTime minDate = inv.getArgument(1);
+            LocalDateTime maxDate = inv.getArgument(2);
+            return storedFiles.stream()
+                    .filter(f -> f.getSourceTable().equals("account_posting_leg"))
+                    .filter(f -> f.getMinAccountId() <= accountId && f.getMaxAccountId() >= accountId)
+                    .filter(f -> !f.getMaxCreatedAt().isBefore(minDate) && !f.getMinCreatedAt().isAfter(maxDate))
+                    .sorted(Comparator.comparing(TransactionArchiveFile::getPeriod).reversed()
+                            .thenComparing(TransactionArchiveFile::getFileName))
+                    .toList();
+        });
+        lenient().when(transactionArchiveFileRepository.findTransactionFiles(any(), any())).thenAnswer(inv -> {
+            LocalDateTime minDate = inv.getArgument(0);
+            LocalDateTime maxDate = inv.getArgument(1);
+            return storedFiles.stream()
+                    .filter(f -> f.getSourceTable().equals("bank_transaction"))
+                    .filter(f -> !f.getMaxCreatedAt().isBefore(minDate) && !f.getMinCreatedAt().isAfter(maxDate))
+                    .sorted(Comparator.comparing(TransactionArchiveFile::getPeriod).thenComparing(TransactionArchiveFile::getFileName))
+                    .toList();
+        });
+    }
+
+    @Test
+    void archiveMonth_WritesFilesByAccountRangeAndPurgesHotRows() throws Exception {
+        // Given: 5 lados en orden (account_id, created_at DESC, id DESC); la cuenta 20 tiene 3 y no se parte
+        archiveSampleMonth();
+
+        // Then
+        List<TransactionArchiveFile> legFiles = storedFiles.stream()
+                .filter(f -> f.getSourceTable().equals("account_posting_leg")).toList();
+        assertThat(legFiles).extracting(TransactionArchiveFile::getMinAccountId, TransactionArchiveFile::getMaxAccountId)
+                .containsExactly(tuple(10L, 20L), tuple(30L, 30L));
+        assertThat(legFiles.get(0).getRowCount()).isEqualTo(4);
+        assertThat(legFiles).allSatisfy(f -> assertThat(archiveDirectory.resolve(f.getFileName())).exists());
+        assertThat(Files.list(archiveDirectory.resolve("2024-03"))).noneMatch(p -> p.toString().endsWith(".tmp"));
+
+        verify(jdbcTemplate).execute("DROP TABLE IF EXISTS account_posting_leg_p202403");
+        verify(jdbcTemplate).execute("DROP TABLE IF EXISTS bank_transaction_p202403");
+        verify(jdbcTemplate).update(startsWith("INSERT INTO transaction_archive_count"),
+                eq("2024-03"), eq(Timestamp.valueOf("2024-03-01 00:00:00")), eq(Timestamp.valueOf("2024-04-01 00:00:00")));
+        verify(jdbcTemplate).update(eq("DELETE FROM bank_transaction WHERE created_at >= ? AND created_at < ?"),
+                eq(Timestamp.valueOf("2024-03-01 00:00:00")), eq(Timestamp.valueOf("2024-04-01 00:00:00")));
+    }
+
+    @Test
+    void findLegs_ReadsArchivedLegsInHistoryOrderWithCursor() throws Exception {
+        archiveSampleMonth();
+
+        // Sin cursor: los 3 lados de la cuenta 20, del más reciente al más antiguo
+        List<AccountPostingLeg> all = transactionArchiveService.findLegs(
+                20L, null, DateRangeUtils.MIN_DATE, DateRangeUtils.MAX_DATE, DateRangeUtils.MAX_DATE, Long.MAX_VALUE, 10);
+        assertThat(all).extracting(AccountPostingLeg::getId).containsExactly(4L, 3L, 2L);
+        assertThat(all.get(0).getAmount()).isEqualByComparingTo("40.5000");
+        assertThat(all.get(0).getCounterpartyAccountNumber()).isNull();
+
+        // Con cursor en el primero y límite 1
+        List<AccountPostingLeg> next = transactionArchiveService.findLegs(
+                20L, null, DateRangeUtils.MIN_DATE, DateRangeUtils.MAX_DATE, all.get(0).getCreatedAt(), 4L, 1);
+        assertThat(next).extracting(AccountPostingLeg::getId).containsExactly(3L);
+    }
+
+    @Test
+    void countAndOffset_ApplyStatusAndDateFilters() throws Exception {
+        archiveSampleMonth();
+
+        assertThat(transactionArchiveService.countLegs(20L, "SUCCESS", DateRangeUtils.MIN_DATE, DateRangeUtils.MAX_DATE)).isEqualTo(2);
+        assertThat(transactionArchiveService.countLegs(20L, null, DAY.plusHours(1), DateRangeUtils.MAX_DATE)).isEqualTo(2);
+        assertThat(transactionArchiveService.findLegs(20L, null, DateRangeUtils.MIN_DATE, DateRangeUtils.MAX_DATE, 1L, 5))
+                .extracting(AccountPostingLeg::getId).containsExactly(3L, 2L);
+        // Cuenta fuera de todo rango: no se abre ningún archivo
+        assertThat(transactionArchiveService.countLegs(99L, null, DateRangeUtils.MIN_DATE, DateRangeUtils.MAX_DATE)).isZero();
+    }
+
+    @Test
+    void scan_SkipsTheArchiveIndexForWindowsAfterTheNewestArchivedMonth() throws Exception {
+        // Given: índice leído sin meses archivados
+        transactionArchiveService.refreshArchiveIndex();
+
+        // Then: ni siquiera se consulta transaction_archive_file
+        assertThat(transactionArchiveService.countLegs(20L, null, DateRangeUtils.MIN_DATE, DateRangeUtils.MAX_DATE)).isZero();
+        verify(transactionArchiveFileRepository, never()).findLegFiles(any(), any(), any());
+
+        // When: se archiva marzo
+        archiveSampleMonth();
+
+        // Then: las ventanas que lo cubren lo cuentan; las que empiezan en abril no consultan
+        assertThat(transactionArchiveService.countLegs(20L, null, DateRangeUtils.MIN_DATE, DateRangeUtils.MAX_DATE)).isEqualTo(3);
+        assertThat(transactionArchiveService.countLegs(20L, null, PERIOD.plusMonths(1).atDay(1).atStartOfDay(), DateRangeUtils.MAX_DATE)).isZero();
+        verify(jdbcTemplate, times(1)).query(contains("FROM transaction_archive_count"), any(RowMapper.class), any(Object[].class));
+        verify(transactionArchiveFileRepository, never()).findLegFiles(any(), any(), any());
+    }
+
+    @Test
+    void countLegs_OpensOnlyTheMonthsTheWindowCuts() throws Exception {
+        // Given: marzo archivado y sus archivos fuera del disco
+        archiveSampleMonth();
+        for (TransactionArchiveFile file : storedFiles) {
+            Files.delete(archiveDirectory.resolve(file.getFileName()));
+        }
+
+        // Then: el mes completo se suma del conteo sin abrir archivos
+        assertThat(transactionArchiveService.countLegs(20L, "SUCCESS", DateRangeUtils.MIN_DATE, DateRangeUtils.MAX_DATE)).isEqualTo(2);
+        assertThat(transactionArchiveService.countLegs(20L, null, PERIOD.atDay(1).atStartOfDay(), PERIOD.plusMonths(1).atDay(1).atStartOfDay()))
+                .isEqualTo(3);
+        verify(transactionArchiveFileRepository, never()).findLegFiles(any(), any(), any());
+
+        // Una ventana que corta marzo sí tiene que leerlo
+        assertThatThrownBy(() -> transactionArchiveService.countLegs(20L, null, DAY.plusHours(1), DateRangeUtils.MAX_DATE))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageStartingWith("No se pudo leer el archivo frío");
+    }
+
+    @Test
+    void forEachArchivedAccount_EmitsEachAccountOncePerFile() throws Exception {
+        // Given
+        archiveSampleMonth();
+        when(transactionArchiveFileRepository.findAllBySourceTableOrderByFileName("account_posting_leg")).thenReturn(
+                storedFiles.stream().filter(f -> f.getSourceTable().equals("account_posting_leg")).toList());
+
+        // When
+        List<Long> accounts = new ArrayList<>();
+        transactionArchiveService.forEachArchivedAccount(accounts::add);
+
+        // Then: la cuenta 20 tiene 3 lados pero sale una vez
+        assertThat(accounts).containsExactly(10L, 20L, 30L);
+    }
+
+    @Test
+    void forEachTransaction_ReadsArchivedTransactionsByIdWithinTheRange() throws Exception {
+        // Given
+        archiveSampleMonth();
+
+        // When: la ventana deja fuera el movimiento de las 09:00
+        List<ArchivedTransaction> transactions = new ArrayList<>();
+        transactionArchiveService.forEachTransaction(DAY.plusHours(1), DateRangeUtils.MAX_DATE, transactions::add);
+
+        // Then: los dos de la tarde, repartidos en dos archivos, en orden de id y con sus columnas
+        assertThat(transactions).extracting(ArchivedTransaction::id).containsExactly(103L, 104L);
+        assertThat(transactions.get(0)).isEqualTo(new ArchivedTransaction(
+                103L, 20L, 30L, 3L, new BigDecimal("30.0000"), 2L, 2L, "R3", null, DAY.plusHours(2)));
+        assertThat(transactions.get(1).sourceAccountId()).isNull();
+    }
+
+    @Test
+    void archiveMonth_AlreadyArchivedReturnsExistingSummary() {
+        when(transactionArchiveFileRepository.findAllByPeriodOrderByFileName("2024-03")).thenReturn(List.of(
+                TransactionArchiveFile.builder().sourceTable("account_posting_leg").rowCount(4L).sizeBytes(100L).build(),
+                TransactionArchiveFile.builder().sourceTable("bank_transaction").rowCount(3L).sizeBytes(50L).build()));
+
+        TransactionArchiveResponse response = transactionArchiveService.archiveMonth(PERIOD);
+
+        assertThat(response).isEqualTo(new TransactionArchiveResponse("2024-03", 2, 4, 3, 150));
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void archiveMonth_RejectsRecentMonths() {
+        YearMonth recent = YearMonth.now().minusMonths(3);
+
+        assertThatThrownBy(() -> transactionArchiveService.archiveMonth(recent))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageStartingWith("Solo se archivan meses anteriores a ");
+        verifyNoInteractions(jobLockService);
+    }
+
+    // --- HELPERS ---
+    private void archiveSampleMonth() {
+        List<Object[]> legs = List.of(
+                new Object[]{1L, 10L, 101L, "SOURCE", "0000000020", "TRANSFERENCIA", "SUCCESS", "PEN", new BigDecimal("10.0000"), "a,b", "R1", DAY},
+                new Object[]{4L, 20L, 104L, "TARGET", null, "DEPOSITO", "SUCCESS", "PEN", new BigDecimal("40.5000"), null, "R4", DAY.plusHours(3)},
+                new Object[]{3L, 20L, 103L, "SOURCE", "0000000030", "TRANSFERENCIA", "FAILED", "USD", new BigDecimal("30.0000"), null, "R3", DAY.plusHours(2)},
+                new Object[]{2L, 20L, 102L, "TARGET", "0000000010", "TRANSFERENCIA", "SUCCESS", "PEN", new BigDecimal("10.0000"), "a,b", "R1", DAY},
+                new Object[]{5L, 30L, 103L, "TARGET", "0000000020", "TRANSFERENCIA", "FAILED", "PEN", new BigDecimal("30.0000"), null, "R3", DAY.plusHours(2)}
+        );
+        List<Object[]> transactions = List.of(
+                new Object[]{101L, 10L, 20L, 3L, new BigDecimal("10.0000"), 1L, 1L, "R1", "a,b", null, DAY},
+                new Object[]{103L, 20L, 30L, 3L, new BigDecimal("30.0000"), 2L, 2L, "R3", null,
+                        new BigDecimal("0.268500000000000000"), DAY.plusHours(2)},
+                new Object[]{104L, null, 20L, 1L, new BigDecimal("40.5000"), 1L, 1L, "R4", null, null, DAY.plusHours(3)}
+        );
+
+        doAnswer(inv -> {
+            String sql = inv.getArgument(0);
+            RowCallbackHandler handler = inv.getArgument(1);
+            boolean isLegs = sql.contains("FROM account_posting_leg");
+            for (Object[] row : isLegs ? legs : transactions) {
+                handler.processRow(resultSet(isLegs ? LEG_COLUMNS : TRANSACTION_COLUMNS, isLegs ? LEG_TYPES : TRANSACTION_TYPES, row));
+            }
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), any(Object[].class));
+
+        TransactionArchiveResponse response = transactionArchiveService.archiveMonth(PERIOD);
+
+        // transaction_archive_count tal como la deja el INSERT ... SELECT del archivado
+        lenient().doAnswer(inv -> {
+            Object[] args = inv.getArguments();
+            Long accountId = (Long) args[2];
+            String status = args.length > 3 ? (String) args[3] : null;
+            long count = legs.stream()
+                    .filter(leg -> leg[1].equals(accountId) && (status == null || status.equals(leg[6])))
+                    .count();
+            return count == 0 ? List.of() : List.of(Map.entry(PERIOD.toString(), count));
+        }).when(jdbcTemplate).query(contains("FROM transaction_archive_count"), any(RowMapper.class), any(Object[].class));
+
+        assertThat(response.postingLegRows()).isEqualTo(5);
+        assertThat(response.transactionRows()).isEqualTo(3);
+        assertThat(response.files()).isEqualTo(4);
+    }
+
+    // Fila de un cursor JDBC: solo lo que usa el archivador (metadatos y getters por índice)
+    private static ResultSet resultSet(String[] columns, int[] types, Object[] row) {
+        ResultSetMetaData metaData = (ResultSetMetaData) Proxy.newProxyInstance(ResultSetMetaData.class.getClassLoader(),
+                new Class<?>[]{ResultSetMetaData.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "getColumnCount" -> columns.length;
+                    case "getColumnLabel" -> columns[(int) args[0] - 1];
+                    case "getColumnType" -> types[(int) args[0] - 1];
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+
+        Object[] last = new Object[1];
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("getMetaData")) return metaData;
+                    if (method.getName().equals("wasNull")) return last[0] == null;
+
+                    Object value = row[(int) args[0] - 1];
+                    last[0] = value;
+                    return switch (method.getName()) {
+                        case "getLong" -> value != null ? (Long) value : 0L;
+                        case "getString" -> value;
+                        case "getBigDecimal" -> value;
+                        case "getTimestamp" -> value != null ? Timestamp.valueOf((LocalDateTime) value) : null;
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    };
+                });
+    }
+}
@@ -0,0 +1,257 @@
+package com.example.bank_app.service.impl;
+
+import com.example.bank_app.dto.account.AccountRef;
+import com.example.bank_app.dto.archive.ArchivedTransaction;
+import com.example.bank_app.model.AccountPostingLeg;
+import com.example.bank_app.model.enums.ExportFormat;
+import com.example.bank_app.model.enums.PostingSide;
+import com.example.bank_app.repository.BankAccountRepository;
+import com.example.bank_app.service.TransactionArchiveService;
+import com.example.bank_app.util.DateRangeUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TransactionExportServiceImplTest {
+    @Mock private BankAccountRepository bankAccountRepository;
+    @Mock private TransactionArchiveService transactionArchiveService;
+    @Mock private DataSource dataSource;
+    @Mock private PlatformTransactionManager transactionManager;
+    @Mock private JdbcTemplate jdbcTemplate;
+
+    private SimpleMeterRegistry meterRegistry;
+    private TransactionExportServiceImpl transactionExportService;
+
+    private static final LocalDateTime CREATED_AT = LocalDateTime.of(2026, 10, 1, 9, 30);
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        transactionExportService = new TransactionExportServiceImpl(bankAccountRepository, transactionArchiveService, dataSource,
+                transactionManager, new ObjectMapper().registerModule(new JavaTimeModule()), meterRegistry, 500);
+        ReflectionTestUtils.setField(transactionExportService, "jdbcTemplate", jdbcTemplate);
+
+        lenient().when(bankAccountRepository.findRefByAccountNumberAndIsActiveTrue("111111"))
+                .thenReturn(Optional.of(new AccountRef(10L, "111111", 1L, 2)));
+    }
+
+    @Test
+    void exportAccountHistory_CsvStreamsEveryRowAndEscapesFields() throws IOException {
+        // Given: un lado origen con descripción que necesita comillas y un depósito externo
+        feedRows(
+                new Object[]{1L, "SOURCE", "222222", "TRANSFERENCIA", "10.50", "SUCCESS", "Pago \"cena\", viernes", "REF-1", "PEN"},
+                new Object[]{2L, "TARGET", null, "DEPOSITO", "100", "SUCCESS", null, "REF-2", "USD"}
+        );
+
+        // When
+        String csv = export(ExportFormat.CSV);
+
+        // Then
+        assertThat(csv.split("\n")).containsExactly(
+                "id,sourceAccount,targetAccount,transactionType,amount,transactionStatus,description,referenceCode,currency,createdAt",
+                "1,111111,222222,TRANSFERENCIA,10.50,SUCCESS,\"Pago \"\"cena\"\", viernes\",REF-1,PEN,2026-10-01T09:30",
+                "2,EXTERNO,111111,DEPOSITO,100,SUCCESS,,REF-2,USD,2026-10-01T09:30"
+        );
+        assertThat(meterRegistry.counter("bank.export.rows", "scope", "account", "format", "CSV").count()).isEqualTo(2.0);
+    }
+
+    @Test
+    void exportAccountHistory_NdjsonWritesOneObjectPerLine() throws IOException {
+        // Given
+        feedRows(
+                new Object[]{1L, "SOURCE", "222222", "TRANSFERENCIA", "10.50", "SUCCESS", null, "REF-1", "PEN"},
+                new Object[]{2L, "SOURCE", null, "PAGO_SERVICIO", "5", "SUCCESS", null, "REF-2", "PEN"}
+        );
+
+        // When
+        String ndjson = export(ExportFormat.NDJSON);
+
+        // Then
+        List<String> lines = ndjson.lines().toList();
+        assertThat(lines).hasSize(2);
+        assertThat(lines.get(0)).startsWith("{\"id\":1,").contains("\"targetAccount\":\"222222\"");
+        assertThat(lines.get(1)).contains("\"targetAccount\":\"EXTERNO/VENTANILLA\"");
+        assertThat(ndjson).endsWith("}\n");
+    }
+
+    @Test
+    void exportAccountHistory_FiltersOnlyWhenPresent() throws IOException {
+        // Given
+        feedRows();
+
+        // When
+        transactionExportService.exportAccountHistory("111111", 1L, "SUCCESS", CREATED_AT, null, ExportFormat.CSV)
+                .writeTo(new ByteArrayOutputStream());
+
+        // Then
+        verify(jdbcTemplate).query(
+                argThat((String sql) -> sql.contains("transaction_status = ?") && sql.contains("created_at >= ?") && !sql.contains("created_at <= ?")),
+                any(RowCallbackHandler.class),
+                eq(10L), eq("SUCCESS"), eq(Timestamp.valueOf(CREATED_AT)));
+    }
+
+    @Test
+    void exportAccountHistory_AppendsArchivedLegsAfterHotRows() throws IOException {
+        // Given: una fila viva y un lado de un mes archivado
+        feedRows(new Object[]{2L, "SOURCE", "222222", "TRANSFERENCIA", "10", "SUCCESS", null, "REF-2", "PEN"});
+        doAnswer(inv -> {
+            Consumer<AccountPostingLeg> action = inv.getArgument(4);
+            action.accept(AccountPostingLeg.builder()
+                    .transactionId(1L)
+                    .side(PostingSide.TARGET)
+                    .transactionType("DEPOSITO")
+                    .amount(new BigDecimal("5"))
+                    .transactionStatus("SUCCESS")
+                    .referenceCode("REF-1")
+                    .currencyCode("PEN")
+                    .createdAt(CREATED_AT.minusYears(2))
+                    .build());
+            return null;
+        }).when(transactionArchiveService).forEachLeg(eq(10L), isNull(), eq(DateRangeUtils.MIN_DATE), eq(DateRangeUtils.MAX_DATE), any());
+
+        // When
+        String csv = export(ExportFormat.CSV);
+
+        // Then
+        assertThat(csv.split("\n")).containsExactly(
+                "id,sourceAccount,targetAccount,transactionType,amount,transactionStatus,description,referenceCode,currency,createdAt",
+                "2,111111,222222,TRANSFERENCIA,10,SUCCESS,,REF-2,PEN,2026-10-01T09:30",
+                "1,EXTERNO,111111,DEPOSITO,5,SUCCESS,,REF-1,PEN,2024-10-01T09:30"
+        );
+        assertThat(meterRegistry.counter("bank.export.rows", "scope", "account", "format", "CSV").count()).isEqualTo(2.0);
+    }
+
+    @Test
+    void exportAccountHistory_NotOwnerFailsBeforeStreaming() {
+        assertThatThrownBy(() -> transactionExportService.exportAccountHistory("111111", 99L, null, null, null, ExportFormat.CSV))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessage("La cuenta origen no te pertenece");
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void exportAllTransactions_AppendsArchivedTransactionsAfterHotRows() throws IOException {
+        // Given: una fila viva y dos movimientos archivados, uno de otra cuenta
+        feedRows(new Object[]{3L, "111111", "222222", "TRANSFERENCIA", "10", "SUCCESS", null, "REF-3", "PEN"});
+        catalogRows("SELECT id, name FROM transaction_type", 1L, "DEPOSITO", 3L, "TRANSFERENCIA");
+        catalogRows("SELECT id, name FROM transaction_status", 1L, "SUCCESS");
+        catalogRows("SELECT id, code FROM currency", 2L, "PEN");
+        when(bankAccountRepository.findRefByAccountNumber("111111")).thenReturn(Optional.of(new AccountRef(10L, "111111", 1L, 2)));
+        when(bankAccountRepository.findRefsByIdIn(Set.of(10L, 20L))).thenReturn(List.of(
+                new AccountRef(10L, "111111", 1L, 2), new AccountRef(20L, "222222", 2L, 2)));
+        doAnswer(inv -> {
+            Consumer<ArchivedTransaction> action = inv.getArgument(2);
+            LocalDateTime at = CREATED_AT.minusYears(2);
+            action.accept(new ArchivedTransaction(1L, null, 10L, 1L, new BigDecimal("5"), 2L, 1L, "REF-1", null, at));
+            action.accept(new ArchivedTransaction(2L, 30L, 40L, 3L, new BigDecimal("7"), 2L, 1L, "REF-2", null, at));
+            action.accept(new ArchivedTransaction(4L, 10L, 20L, 3L, new BigDecimal("9"), 2L, 1L, "REF-4", "a,b", at));
+            return null;
+        }).when(transactionArchiveService).forEachTransaction(eq(DateRangeUtils.MIN_DATE), eq(DateRangeUtils.MAX_DATE), any());
+
+        // When
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        transactionExportService.exportAllTransactions("111111", null, null, null, ExportFormat.CSV).writeTo(out);
+
+        // Then: catálogos y números de cuenta resueltos; la cuenta 30/40 no pasa el filtro
+        assertThat(out.toString(StandardCharsets.UTF_8).split("\n")).containsExactly(
+                "id,sourceAccount,targetAccount,transactionType,amount,transactionStatus,description,referenceCode,currency,createdAt",
+                "3,111111,222222,TRANSFERENCIA,10,SUCCESS,,REF-3,PEN,2026-10-01T09:30",
+                "1,EXTERNO,111111,DEPOSITO,5,SUCCESS,,REF-1,PEN,2024-10-01T09:30",
+                "4,111111,222222,TRANSFERENCIA,9,SUCCESS,\"a,b\",REF-4,PEN,2024-10-01T09:30"
+        );
+        assertThat(meterRegistry.counter("bank.export.rows", "scope", "all", "format", "CSV").count()).isEqualTo(3.0);
+    }
+
+    @Test
+    void exportAllTransactions_ClientDisconnectStopsTheCursor() throws SQLException {
+        // Given
+        feedRows(new Object[]{1L, "111111", "222222", "TRANSFERENCIA", "1", "SUCCESS", null, "REF-1", "PEN"});
+        OutputStream closed = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+
+        // When & Then
+        assertThatThrownBy(() -> transactionExportService.exportAllTransactions(null, null, null, null, ExportFormat.NDJSON)
+                .writeTo(closed))
+                .isInstanceOf(IOException.class)
+                .hasMessage("Broken pipe");
+    }
+
+    // --- HELPERS ---
+    private String export(ExportFormat format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        transactionExportService.exportAccountHistory("111111", 1L, null, null, null, format).writeTo(out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    // Simula el cursor: entrega cada fila al RowCallbackHandler como lo hace JdbcTemplate
+    private void feedRows(Object[]... rows) {
+        doAnswer(inv -> {
+            RowCallbackHandler handler = inv.getArgument(1);
+            for (Object[] row : rows) {
+                handler.processRow(resultSet(row));
+            }
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), any(Object[].class));
+    }
+
+    // Catálogo (id, nombre) leído con jdbcTemplate.query(sql, RowCallbackHandler)
+    private void catalogRows(String sql, Object... idsAndNames) {
+        doAnswer(inv -> {
+            RowCallbackHandler handler = inv.getArgument(1);
+            for (int i = 0; i < idsAndNames.length; i += 2) {
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getLong(1)).thenReturn((Long) idsAndNames[i]);
+                when(rs.getString(2)).thenReturn((String) idsAndNames[i + 1]);
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(jdbcTemplate).query(eq(sql), any(RowCallbackHandler.class));
+    }
+
+    private static ResultSet resultSet(Object[] row) throws SQLException {
+        ResultSet rs = mock(ResultSet.class);
+        lenient().when(rs.getLong(1)).thenReturn((Long) row[0]);
+        for (int i = 1; i < row.length; i++) {
+            if (i == 4) continue;
+            lenient().when(rs.getString(i + 1)).thenReturn((String) row[i]);
+        }
+        lenient().when(rs.getBigDecimal(5)).thenReturn(new BigDecimal((String) row[4]));
+        lenient().when(rs.getTimestamp(10)).thenReturn(Timestamp.valueOf(CREATED_AT));
+        return rs;
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.bank_app.service.impl;
+
+import com.example.bank_app.model.*;
+import com.example.bank_app.model.enums.PostingSide;
+import com.example.bank_app.repository.AccountPostingLegRepository;
+import com.example.bank_app.service.RetainedUsersService;
+import com.example.bank_app.service.TransactionRollupService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class TransactionJournalServiceImplTest {
+    @Mock private AccountPostingLegRepository accountPostingLegRepository;
+    @Mock private JdbcTemplate jdbcTemplate;
+    @Mock private TransactionRollupService transactionRollupService;
+    @Mock private RetainedUsersService retainedUsersService;
+
+    @InjectMocks private TransactionJournalServiceImpl transactionJournalService;
+
+    private final BankAccount source = BankAccount.builder().id(10L).accountNumber("111111").build();
+    private final BankAccount target = BankAccount.builder().id(20L).accountNumber("222222").build();
+
+    @Test
+    void recordLegs_TransferWritesOneLegPerAccount() {
+        // When
+        transactionJournalService.recordLegs(transaction(1L, source, target));
+
+        // Then
+        List<AccountPostingLeg> legs = savedLegs();
+        assertThat(legs).extracting(AccountPostingLeg::getAccountId).containsExactly(10L, 20L);
+        assertThat(legs).extracting(AccountPostingLeg::getSide).containsExactly(PostingSide.SOURCE, PostingSide.TARGET);
+        assertThat(legs).extracting(AccountPostingLeg::getCounterpartyAccountNumber).containsExactly("222222", "111111");
+        assertThat(legs).allSatisfy(leg -> {
+            assertThat(leg.getTransactionId()).isEqualTo(1L);
+            assertThat(leg.getTransactionType()).isEqualTo("TRANSFERENCIA");
+            assertThat(leg.getTransactionStatus()).isEqualTo("SUCCESS");
+            assertThat(leg.getCurrencyCode()).isEqualTo("PEN");
+            assertThat(leg.getReferenceCode()).isEqualTo("REF-1");
+            assertThat(leg.getCreatedAt()).isNotNull();
+        });
+    }
+
+    @Test
+    void recordLegs_DepositHasOnlyTargetLegWithExternalCounterparty() {
+        // When
+        transactionJournalService.recordLegs(List.of(transaction(1L, null, target), transaction(2L, source, null)));
+
+        // Then
+        List<AccountPostingLeg> legs = savedLegs();
+        assertThat(legs).extracting(AccountPostingLeg::getTransactionId).containsExactly(1L, 2L);
+        assertThat(legs).extracting(AccountPostingLeg::getSide).containsExactly(PostingSide.TARGET, PostingSide.SOURCE);
+        assertThat(legs).extracting(AccountPostingLeg::getCounterpartyAccountNumber).containsOnlyNulls();
+        // Ambos movimientos van al agregado diario en la misma llamada
+        verify(transactionRollupService).record(argThat(transactions -> transactions.size() == 2));
+    }
+
+    @Test
+    void recordLegs_SelfTransferAppearsOnce() {
+        // When
+        transactionJournalService.recordLegs(transaction(1L, source, source));
+
+        // Then
+        assertThat(savedLegs()).singleElement()
+                .extracting(AccountPostingLeg::getSide).isEqualTo(PostingSide.SOURCE);
+    }
+
+    @Test
+    void recordLegs_RegistersEveryReferenceCodeInTheSameTransaction() {
+        // When
+        transactionJournalService.recordLegs(List.of(transaction(1L, null, target), transaction(2L, source, target)));
+
+        // Then: una fila por movimiento en el registro global, no por lado
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<BankTransaction>> registered = ArgumentCaptor.forClass(Collection.class);
+        verify(jdbcTemplate).batchUpdate(contains("INSERT INTO transaction_reference"), registered.capture(), eq(2),
+                any(ParameterizedPreparedStatementSetter.class));
+        assertThat(registered.getValue()).extracting(BankTransaction::getReferenceCode).containsExactly("REF-1", "REF-2");
+    }
+
+    // --- HELPERS ---
+    @SuppressWarnings("unchecked")
+    private List<AccountPostingLeg> savedLegs() {
+        ArgumentCaptor<List<AccountPostingLeg>> captor = ArgumentCaptor.forClass(List.class);
+        verify(accountPostingLegRepository).saveAll(captor.capture());
+        return captor.getValue();
+    }
+
+    private static BankTransaction transaction(Long id, BankAccount source, BankAccount target) {
+        return BankTransaction.builder()
+                .id(id)
+                .sourceAccount(source)
+                .targetAccount(target)
+                .transactionType(TransactionType.builder().name("TRANSFERENCIA").build())
+                .transactionStatus(TransactionStatus.builder().name("SUCCESS").build())
+                .currency(Currency.builder().code("PEN").build())
+                .amount(BigDecimal.TEN)
+                .referenceCode("REF-" + id)
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.bank_app.service.impl;
+
+import com.example.bank_app.model.BankTransaction;
+import com.example.bank_app.model.Currency;
+import com.example.bank_app.model.TransactionStatus;
+import com.example.bank_app.model.TransactionType;
+import com.example.bank_app.service.DashboardStreamService;
+import com.example.bank_app.service.JobLockService;
+import com.example.bank_app.service.TransactionRollupService.Delta;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TransactionRollupServiceImplTest {
+    private static final LocalDate DAY = LocalDate.of(2026, 10, 5);
+
+    @Mock private JdbcTemplate jdbcTemplate;
+    @Mock private PlatformTransactionManager transactionManager;
+    @Mock private JobLockService jobLockService;
+    @Mock private DashboardStreamService dashboardStreamService;
+
+    private TransactionRollupServiceImpl transactionRollupService;
+    private final AtomicBoolean lockReleased = new AtomicBoolean();
+
+    @BeforeEach
+    void setUp() {
+        transactionRollupService = new TransactionRollupServiceImpl(jdbcTemplate, transactionManager, jobLockService,
+                dashboardStreamService, 4);
+
+        lenient().when(jobLockService.tryLock("daily-rollup"))
+                .thenReturn(Optional.of(() -> lockReleased.set(true)));
+    }
+
+    @Test
+    void add_MergesSameKeyIntoOneSortedUpsert() {
+        // Given: dos deltas de la misma clave y una clave que ordena antes
+        List<Delta> deltas = List.of(
+                new Delta(DAY, "USD", "DEPOSITO", "SUCCESS", 1, new BigDecimal("10.00")),
+                new Delta(DAY, "PEN", "DEPOSITO", "SUCCESS", 1, new BigDecimal("5.00")),
+                new Delta(DAY, "USD", "DEPOSITO", "SUCCESS", 2, new BigDecimal("2.50"))
+        );
+
+        // When
+        transactionRollupService.add(deltas);
+
+        // Then
+        List<Delta> rows = upsertedRows();
+        assertThat(rows).extracting(Delta::currencyCode, Delta::count, d -> d.amount().toPlainString())
+                .containsExactly(tuple("PEN", 1L, "5.00"), tuple("USD", 3L, "12.50"));
+        verify(dashboardStreamService).curvePosted(rows);
+    }
+
+    @Test
+    void record_MapsEachTransactionToItsDayAndKey() {
+        // When
+        transactionRollupService.record(List.of(
+                transaction("PEN", "TRANSFERENCIA", "10.00", DAY.atTime(9, 0)),
+                transaction("PEN", "TRANSFERENCIA", "20.00", DAY.atTime(23, 59)),
+                transaction("PEN", "TRANSFERENCIA", "1.00", DAY.plusDays(1).atStartOfDay())
+        ));
+
+        // Then
+        assertThat(upsertedRows()).extracting(Delta::day, Delta::count, d -> d.amount().toPlainString())
+                .containsExactly(tuple(DAY, 2L, "30.00"), tuple(DAY.plusDays(1), 1L, "1.00"));
+    }
+
+    @Test
+    void add_EmptyDoesNotTouchTheDatabase() {
+        // When
+        transactionRollupService.add(List.of());
+
+        // Then
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void rebuild_ReplacesLiveDaysInsideOneTransaction() {
+        // Given
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        Timestamp start = Timestamp.valueOf(yesterday.atStartOfDay());
+        Timestamp end = Timestamp.valueOf(yesterday.plusDays(1).atStartOfDay());
+        when(jdbcTemplate.update(anyString(), eq(start), eq(end)))
+                .thenAnswer(inv -> inv.<String>getArgument(0).contains("INSERT") ? 6 : 2);
+
+        // When
+        int rows = transactionRollupService.rebuild(yesterday, yesterday);
+
+        // Then
+        assertThat(rows).isEqualTo(6);
+
+        InOrder inOrder = inOrder(transactionManager, jdbcTemplate);
+        inOrder.verify(transactionManager).getTransaction(any());
+        inOrder.verify(jdbcTemplate).update(contains("DELETE FROM transaction_daily_rollup"), eq(start), eq(end));
+        inOrder.verify(jdbcTemplate).update(contains("INSERT INTO transaction_daily_rollup"), eq(start), eq(end));
+        inOrder.verify(transactionManager).commit(any());
+        assertThat(lockReleased).isTrue();
+    }
+
+    @Test
+    void rebuild_RejectsDaysStillOpen() {
+        // When / Then
+        assertThatThrownBy(() -> transactionRollupService.rebuild(LocalDate.now().minusDays(3), LocalDate.now()))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessage("Solo se reconstruyen días cerrados");
+
+        verifyNoInteractions(jdbcTemplate, jobLockService);
+    }
+
+    // --- HELPERS ---
+    @SuppressWarnings("unchecked")
+    private List<Delta> upsertedRows() {
+        ArgumentCaptor<Collection<Delta>> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(jdbcTemplate).batchUpdate(contains("ON CONFLICT"), captor.capture(), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class));
+        return List.copyOf(captor.getValue());
+    }
+
+    private static BankTransaction transaction(String currency, String type, String amount, LocalDateTime createdAt) {
+        return BankTransaction.builder()
+                .currency(Currency.builder().code(currency).build())
+                .transactionType(TransactionType.builder().name(type).build())
+                .transactionStatus(TransactionStatus.builder().name("SUCCESS").build())
+                .amount(new BigDecimal(amount))
+                .createdAt(createdAt)
+                .build();
+    }
+}
@@ -1,12 +1,27 @@
 package com.example.bank_app.service.impl;
 
+import com.example.bank_app.dto.account.AccountRef;
 import com.example.bank_app.dto.transaction.*;
 import com.example.bank_app.model.*;
-import com.example.bank_app.repository.*;
+import com.example.bank_app.model.enums.PostingSide;
+import com.example.bank_app.model.enums.TransactionStatusCode;
+import com.example.bank_app.model.enums.TransactionTypeCode;
+import com.example.bank_app.repository.AccountPostingLegRepository;
+import com.example.bank_app.repository.BankAccountRepository;
+import com.example.bank_app.repository.BankTransactionRepository;
+import com.example.bank_app.service.AccountLockService;
+import com.example.bank_app.service.CatalogService;
 import com.example.bank_app.service.CurrencyExchangeService;
+import com.example.bank_app.service.CurrencyExchangeService.ExchangeQuote;
+import com.example.bank_app.service.IdGeneratorService;
+import com.example.bank_app.service.TransactionArchiveService;
+import com.example.bank_app.service.TransactionJournalService;
+import com.example.bank_app.util.DateRangeUtils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -14,11 +29,19 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -29,11 +52,14 @@ import static org.mockito.Mockito.*;
 class TransactionServiceImplTest {
 
     @Mock private BankAccountRepository bankAccountRepository;
-    @Mock private CurrencyRepository currencyRepository;
+    @Mock private CatalogService catalogService;
     @Mock private CurrencyExchangeService currencyExchangeService;
-    @Mock private TransactionTypeRepository transactionTypeRepository;
-    @Mock private TransactionStatusRepository transactionStatusRepository;
     @Mock private BankTransactionRepository bankTransactionRepository;
+    @Mock private AccountLockService accountLockService;
+    @Mock private IdGeneratorService idGeneratorService;
+    @Mock private AccountPostingLegRepository accountPostingLegRepository;
+    @Mock private TransactionJournalService transactionJournalService;
+    @Mock private TransactionArchiveService transactionArchiveService;
 
     @InjectMocks private TransactionServiceImpl transactionService;
 
@@ -52,8 +78,8 @@ class TransactionServiceImplTest {
         user = User.builder().id(1L).build();
         targetUser = User.builder().id(2L).build();
 
-        currencyUSD = Currency.builder().code("USD").build();
-        currencyPEN = Currency.builder().code("PEN").build();
+        currencyUSD = Currency.builder().id(1).code("USD").build();
+        currencyPEN = Currency.builder().id(2).code("PEN").build();
 
         // 2. Cuentas
         sourceAccount = BankAccount.builder()
@@ -76,7 +102,23 @@ class TransactionServiceImplTest {
         statusSuccess = TransactionStatus.builder().name("SUCCESS").build();
 
         // lenient
-        lenient().when(transactionStatusRepository.findById(2)).thenReturn(Optional.of(statusSuccess));
+        lenient().when(idGeneratorService.nextReferenceCode()).thenReturn("0000000109");
+        lenient().when(bankAccountRepository.findRefByAccountNumberAndIsActiveTrue("111111"))
+                .thenAnswer(inv -> Optional.of(refOf(sourceAccount)));
+        lenient().when(bankAccountRepository.findRefByAccountNumberAndIsActiveTrue("222222"))
+                .thenAnswer(inv -> Optional.of(refOf(targetAccount)));
+        lenient().when(accountLockService.executePosting(any()))
+                .thenAnswer(inv -> inv.<Supplier<?>>getArgument(0).get());
+        lenient().when(accountLockService.lockAccounts(any())).thenAnswer(inv -> {
+            Collection<Long> ids = inv.getArgument(0);
+            Map<Long, BankAccount> locked = new HashMap<>();
+            Stream.of(sourceAccount, targetAccount)
+                    .filter(account -> ids.contains(account.getId()))
+                    .forEach(account -> locked.put(account.getId(), account));
+            return locked;
+        });
+        lenient().when(catalogService.getCurrency(2)).thenReturn(currencyPEN);
+        lenient().when(catalogService.getTransactionStatus(TransactionStatusCode.SUCCESS)).thenReturn(statusSuccess);
         lenient().when(bankTransactionRepository.save(any(BankTransaction.class)))
                 .thenAnswer(inv -> {
                     BankTransaction t = inv.getArgument(0);
@@ -99,17 +141,13 @@ class TransactionServiceImplTest {
                 "Test transfer"
         );
 
-        when(bankAccountRepository.findByAccountNumberAndIsActiveTrue("111111"))
-                .thenReturn(Optional.of(sourceAccount));
-        when(bankAccountRepository.findByAccountNumberAndIsActiveTrue("222222"))
-                .thenReturn(Optional.of(targetAccount));
-        when(currencyRepository.findByCode("USD"))
+        when(catalogService.findCurrency("USD"))
                 .thenReturn(Optional.of(currencyUSD));
-        when(currencyExchangeService.convert(any(), any(), any()))
-                .thenReturn(BigDecimal.valueOf(37.00));
+        when(currencyExchangeService.quote(any(), any()))
+                .thenReturn(new ExchangeQuote(new BigDecimal("3.7"), 1L));
 
         TransactionType transactionType = TransactionType.builder().name("TRANSFERENCIA").build();
-        when(transactionTypeRepository.findById(1)).thenReturn(Optional.of(transactionType));
+        when(catalogService.getTransactionType(TransactionTypeCode.TRANSFERENCIA)).thenReturn(transactionType);
 
         // When
         TransactionResponse response = transactionService.transfer(request, 1L);
@@ -119,6 +157,193 @@ class TransactionServiceImplTest {
         assertThat(response.transactionType()).isEqualTo("TRANSFERENCIA");
         assertThat(sourceAccount.getCurrentBalance()).isEqualByComparingTo("463.00");
         assertThat(targetAccount.getCurrentBalance()).isEqualByComparingTo("637.00");
+        verify(transactionJournalService).recordLegs(any(BankTransaction.class));
+    }
+
+    @Test
+    void transfer_RecordsAppliedRatesAndSnapshot() {
+        // Given
+        TransferRequest request = new TransferRequest(
+                "111111",
+                "222222",
+                BigDecimal.valueOf(10.00),
+                "USD",
+                "Test transfer"
+        );
+
+        when(catalogService.findCurrency("USD"))
+                .thenReturn(Optional.of(currencyUSD));
+        when(currencyExchangeService.quote("USD", "PEN"))
+                .thenReturn(new ExchangeQuote(new BigDecimal("3.7"), 7L));
+        when(catalogService.getTransactionType(TransactionTypeCode.TRANSFERENCIA))
+                .thenReturn(TransactionType.builder().name("TRANSFERENCIA").build());
+
+        // When
+        transactionService.transfer(request, 1L);
+
+        // Then
+        ArgumentCaptor<BankTransaction> captor = ArgumentCaptor.forClass(BankTransaction.class);
+        verify(bankTransactionRepository).save(captor.capture());
+        assertThat(captor.getValue().getSourceAppliedRate()).isEqualByComparingTo("3.7");
+        assertThat(captor.getValue().getTargetAppliedRate()).isEqualByComparingTo("3.7");
+        assertThat(captor.getValue().getRateSnapshotId()).isEqualTo(7L);
+    }
+
+    // --- Batch transfer tests ---
+
+    @Test
+    void transferBatch_ResolvesAccountsAndQuotesOnceAndSavesInOneBatch() {
+        // Given
+        ReflectionTestUtils.setField(transactionService, "batchChunkSize", 100);
+        BatchTransferRequest request = new BatchTransferRequest(List.of(
+                new TransferRequest("111111", "222222", BigDecimal.valueOf(10.00), "USD", "Lote 1"),
+                new TransferRequest("111111", "222222", BigDecimal.valueOf(20.00), "USD", "Lote 2")
+        ));
+
+        when(bankAccountRepository.findRefsByAccountNumberInAndIsActiveTrue(any()))
+                .thenReturn(List.of(refOf(sourceAccount), refOf(targetAccount)));
+        when(catalogService.findCurrency("USD")).thenReturn(Optional.of(currencyUSD));
+        when(currencyExchangeService.quote("USD", "PEN"))
+                .thenReturn(new ExchangeQuote(new BigDecimal("3.7"), 1L));
+        when(catalogService.getTransactionType(TransactionTypeCode.TRANSFERENCIA))
+                .thenReturn(TransactionType.builder().name("TRANSFERENCIA").build());
+        when(bankTransactionRepository.saveAll(any())).thenAnswer(inv -> inv.getArgument(0));
+
+        // When
+        BatchTransferResponse response = transactionService.transferBatch(request, 1L);
+
+        // Then
+        assertThat(response.succeeded()).isEqualTo(2);
+        assertThat(response.results()).extracting(BatchTransferResponse.ItemResult::status)
+                .containsOnly("SUCCESS");
+        assertThat(sourceAccount.getCurrentBalance()).isEqualByComparingTo("389.00");
+        assertThat(targetAccount.getCurrentBalance()).isEqualByComparingTo("711.00");
+        verify(bankAccountRepository).findRefsByAccountNumberInAndIsActiveTrue(any());
+        verify(currencyExchangeService, times(1)).quote("USD", "PEN");
+        verify(accountLockService, times(1)).lockAccounts(any());
+        verify(bankTransactionRepository, times(1)).saveAll(any());
+        verify(bankTransactionRepository, never()).save(any());
+    }
+
+    @Test
+    void transferBatch_FailedItemsDoNotAbortTheBatch() {
+        // Given
+        ReflectionTestUtils.setField(transactionService, "batchChunkSize", 100);
+        BatchTransferRequest request = new BatchTransferRequest(List.of(
+                new TransferRequest("111111", "999999", BigDecimal.valueOf(10.00), "PEN", "Destino inexistente"),
+                new TransferRequest("111111", "222222", BigDecimal.valueOf(400.00), "PEN", "Válida"),
+                new TransferRequest("111111", "222222", BigDecimal.valueOf(200.00), "PEN", "Sin saldo")
+        ));
+
+        when(bankAccountRepository.findRefsByAccountNumberInAndIsActiveTrue(any()))
+                .thenReturn(List.of(refOf(sourceAccount), refOf(targetAccount)));
+        when(catalogService.findCurrency("PEN")).thenReturn(Optional.of(currencyPEN));
+        when(currencyExchangeService.quote("PEN", "PEN")).thenReturn(ExchangeQuote.IDENTITY);
+        when(catalogService.getTransactionType(TransactionTypeCode.TRANSFERENCIA))
+                .thenReturn(TransactionType.builder().name("TRANSFERENCIA").build());
+        when(bankTransactionRepository.saveAll(any())).thenAnswer(inv -> inv.getArgument(0));
+
+        // When
+        BatchTransferResponse response = transactionService.transferBatch(request, 1L);
+
+        // Then
+        assertThat(response.total()).isEqualTo(3);
+        assertThat(response.succeeded()).isEqualTo(1);
+        assertThat(response.failed()).isEqualTo(2);
+        assertThat(response.results()).extracting(BatchTransferResponse.ItemResult::error)
+                .containsExactly("Cuenta destino no disponible", null, "Saldo no disponible");
+        assertThat(sourceAccount.getCurrentBalance()).isEqualByComparingTo("100.00");
+    }
+
+    // --- Payroll tests ---
+
+    @Test
+    void disbursePayroll_CommitsEachChunkWithOneAscendingLock() {
+        // Given
+        ReflectionTestUtils.setField(transactionService, "batchChunkSize", 1);
+        BankAccount thirdAccount = BankAccount.builder()
+                .id(5L)
+                .user(targetUser)
+                .accountNumber("333333")
+                .currentBalance(new BigDecimal("0.00"))
+                .currency(currencyUSD)
+                .isActive(true)
+                .build();
+        sourceAccount.setIsActive(true);
+        targetAccount.setIsActive(true);
+
+        PayrollRequest request = new PayrollRequest("111111", "PEN", "Planilla", List.of(
+                new PayrollRequest.Line("222222", new BigDecimal("100.00")),
+                new PayrollRequest.Line("333333", new BigDecimal("37.00")),
+                new PayrollRequest.Line("999999", new BigDecimal("10.00"))
+        ));
+
+        when(bankAccountRepository.findRefsByAccountNumberInAndIsActiveTrue(any()))
+                .thenReturn(List.of(refOf(targetAccount), refOf(thirdAccount)));
+        when(catalogService.findCurrency("PEN")).thenReturn(Optional.of(currencyPEN));
+        when(catalogService.getCurrency(1)).thenReturn(currencyUSD);
+        when(currencyExchangeService.quote("PEN", "PEN")).thenReturn(ExchangeQuote.IDENTITY);
+        when(currencyExchangeService.quote("PEN", "USD")).thenReturn(new ExchangeQuote(new BigDecimal("0.27"), 3L));
+        when(catalogService.getTransactionType(TransactionTypeCode.TRANSFERENCIA))
+                .thenReturn(TransactionType.builder().name("TRANSFERENCIA").build());
+        doAnswer(inv -> {
+            Collection<Long> ids = inv.getArgument(0);
+            Map<Long, BankAccount> locked = new HashMap<>();
+            Stream.of(sourceAccount, targetAccount, thirdAccount)
+                    .filter(account -> ids.contains(account.getId()))
+                    .forEach(account -> locked.put(account.getId(), account));
+            return locked;
+        }).when(accountLockService).lockAccounts(any());
+
+        // When
+        List<PayrollResponse.LineResult> lines = new ArrayList<>();
+        PayrollResponse.Summary summary = transactionService.disbursePayroll(request, 1L, lines::add);
+
+        // Then: las líneas salen por bloque confirmado (destinos por id) y las rechazadas al final
+        assertThat(summary.succeeded()).isEqualTo(2);
+        assertThat(summary.failed()).isEqualTo(1);
+        assertThat(summary.totalDebited()).isEqualByComparingTo("137.00");
+        assertThat(lines).extracting(PayrollResponse.LineResult::index).containsExactly(1, 0, 2);
+        assertThat(lines).extracting(PayrollResponse.LineResult::error)
+                .containsExactly(null, null, "Cuenta destino no disponible");
+        assertThat(sourceAccount.getCurrentBalance()).isEqualByComparingTo("363.00");
+        assertThat(targetAccount.getCurrentBalance()).isEqualByComparingTo("700.00");
+        assertThat(thirdAccount.getCurrentBalance()).isEqualByComparingTo("9.99");
+
+        // Un solo lockAccounts por bloque con origen y destinos: nunca se toma un lock con otro ya tomado
+        InOrder inOrder = inOrder(accountLockService);
+        inOrder.verify(accountLockService).executePosting(any());
+        inOrder.verify(accountLockService).lockAccounts(Set.of(10L, 5L));
+        inOrder.verify(accountLockService).executePosting(any());
+        inOrder.verify(accountLockService).lockAccounts(Set.of(10L, 20L));
+        verify(accountLockService, times(2)).lockAccounts(any());
+        verify(currencyExchangeService, times(1)).quote("PEN", "PEN");
+        verify(bankTransactionRepository, times(2)).saveAll(any());
+    }
+
+    @Test
+    void disbursePayroll_TotalExceedsBalance() {
+        // Given
+        sourceAccount.setIsActive(true);
+        PayrollRequest request = new PayrollRequest("111111", "PEN", "Planilla", List.of(
+                new PayrollRequest.Line("222222", new BigDecimal("300.00")),
+                new PayrollRequest.Line("222222", new BigDecimal("300.00"))
+        ));
+
+        when(bankAccountRepository.findRefsByAccountNumberInAndIsActiveTrue(any()))
+                .thenReturn(List.of(refOf(targetAccount)));
+        when(catalogService.findCurrency("PEN")).thenReturn(Optional.of(currencyPEN));
+        when(currencyExchangeService.quote("PEN", "PEN")).thenReturn(ExchangeQuote.IDENTITY);
+
+        // When & Then
+        List<PayrollResponse.LineResult> lines = new ArrayList<>();
+        assertThatThrownBy(() -> transactionService.disbursePayroll(request, 1L, lines::add))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessage("Saldo no disponible");
+        verify(accountLockService, times(1)).lockAccounts(any());
+        verify(bankTransactionRepository, never()).saveAll(any());
+        assertThat(lines).isEmpty();
+        assertThat(targetAccount.getCurrentBalance()).isEqualByComparingTo("600.00");
     }
 
     @Test
@@ -132,8 +357,6 @@ class TransactionServiceImplTest {
                 "Test transfer"
         );
 
-        when(bankAccountRepository.findByAccountNumberAndIsActiveTrue("111111"))
-                .thenReturn(Optional.of(sourceAccount));
 
         // When & Then
         assertThatThrownBy(() -> transactionService.transfer(request, 5L))
@@ -154,14 +377,10 @@ class TransactionServiceImplTest {
                 "Test transfer"
         );
 
-        when(bankAccountRepository.findByAccountNumberAndIsActiveTrue("111111"))
-                .thenReturn(Optional.of(sourceAccount));
-        when(bankAccountRepository.findByAccountNumberAndIsActiveTrue("222222"))
-                .thenReturn(Optional.of(targetAccount));
-        when(currencyRepository.findByCode("USD"))
+        when(catalogService.findCurrency("USD"))
                 .thenReturn(Optional.of(currencyUSD));
-        when(currencyExchangeService.convert(any(), any(), any()))
-                .thenReturn(BigDecimal.valueOf(1000.00));
+        when(currencyExchangeService.quote(any(), any()))
+                .thenReturn(new ExchangeQuote(new BigDecimal("100"), 1L));
 
         // When & Then
         assertThatThrownBy(() -> transactionService.transfer(request, 1L))
@@ -171,6 +390,35 @@ class TransactionServiceImplTest {
         assertThat(targetAccount.getCurrentBalance()).isEqualByComparingTo("600.00");
     }
 
+    @Test
+    void transfer_LocksBothAccountsTogether() {
+        // Given
+        TransferRequest request = new TransferRequest(
+                "222222",
+                "111111",
+                BigDecimal.valueOf(10.00),
+                "PEN",
+                "Test transfer"
+        );
+        targetAccount.setUser(user);
+
+        when(catalogService.findCurrency("PEN"))
+                .thenReturn(Optional.of(currencyPEN));
+        when(currencyExchangeService.quote(any(), any()))
+                .thenReturn(ExchangeQuote.IDENTITY);
+        when(catalogService.getTransactionType(TransactionTypeCode.TRANSFERENCIA))
+                .thenReturn(TransactionType.builder().name("TRANSFERENCIA").build());
+
+        // When
+        transactionService.transfer(request, 1L);
+
+        // Then
+        verify(accountLockService, times(1)).lockAccounts(List.of(20L, 10L));
+        verify(bankAccountRepository, never()).findByAccountNumberAndIsActiveTrue(any());
+        assertThat(targetAccount.getCurrentBalance()).isEqualByComparingTo("590.00");
+        assertThat(sourceAccount.getCurrentBalance()).isEqualByComparingTo("510.00");
+    }
+
     // --- Deposit test ---
 
     @Test
@@ -183,15 +431,13 @@ class TransactionServiceImplTest {
                 "Depósito Ventanilla"
         );
 
-        when(bankAccountRepository.findByAccountNumberAndIsActiveTrue("222222"))
-                .thenReturn(Optional.of(targetAccount));
-        when(currencyRepository.findByCode("USD"))
+        when(catalogService.findCurrency("USD"))
                 .thenReturn(Optional.of(currencyUSD));
-        when(currencyExchangeService.convert(any(), any(), any()))
-                .thenReturn(BigDecimal.valueOf(370.00));
+        when(currencyExchangeService.quote(any(), any()))
+                .thenReturn(new ExchangeQuote(new BigDecimal("3.7"), 1L));
 
         TransactionType typeDeposit = TransactionType.builder().name("DEPOSITO").build();
-        when(transactionTypeRepository.findById(2)).thenReturn(Optional.of(typeDeposit));
+        when(catalogService.getTransactionType(TransactionTypeCode.DEPOSITO)).thenReturn(typeDeposit);
 
         // When
         TransactionResponse response = transactionService.deposit(request);
@@ -214,15 +460,13 @@ class TransactionServiceImplTest {
                 "Retiro de prueba"
         );
 
-        when(bankAccountRepository.findByAccountNumberAndIsActiveTrue("111111"))
-                .thenReturn(Optional.of(sourceAccount));
-        when(currencyRepository.findByCode("PEN"))
+        when(catalogService.findCurrency("PEN"))
                 .thenReturn(Optional.of(currencyPEN));
-        when(currencyExchangeService.convert(any(), any(), any()))
-                .thenReturn(BigDecimal.valueOf(50.00));
+        when(currencyExchangeService.quote(any(), any()))
+                .thenReturn(ExchangeQuote.IDENTITY);
 
         TransactionType transactionType = TransactionType.builder().name("RETIRO").build();
-        when(transactionTypeRepository.findById(3)).thenReturn(Optional.of(transactionType));
+        when(catalogService.getTransactionType(TransactionTypeCode.RETIRO)).thenReturn(transactionType);
 
         // When
         TransactionResponse response = transactionService.withdraw(request, 1L);
@@ -245,8 +489,6 @@ class TransactionServiceImplTest {
                 "Retiro ilegitimo"
         );
 
-        when(bankAccountRepository.findByAccountNumberAndIsActiveTrue("111111"))
-                .thenReturn(Optional.of(sourceAccount));
 
         // When & Then
         assertThatThrownBy(() -> transactionService.withdraw(request, 99L))
@@ -265,12 +507,10 @@ class TransactionServiceImplTest {
                 "Retiro gigante"
         );
 
-        when(bankAccountRepository.findByAccountNumberAndIsActiveTrue("111111"))
-                .thenReturn(Optional.of(sourceAccount));
-        when(currencyRepository.findByCode("PEN"))
+        when(catalogService.findCurrency("PEN"))
                 .thenReturn(Optional.of(currencyPEN));
-        when(currencyExchangeService.convert(any(), any(), any()))
-                .thenReturn(BigDecimal.valueOf(1000.00));
+        when(currencyExchangeService.quote(any(), any()))
+                .thenReturn(ExchangeQuote.IDENTITY);
 
         // When & Then
         assertThatThrownBy(() -> transactionService.withdraw(request, 1L))
@@ -279,6 +519,55 @@ class TransactionServiceImplTest {
         assertThat(sourceAccount.getCurrentBalance()).isEqualByComparingTo("500.00");
     }
 
+    @Test
+    void withdraw_PricesBeforeOpeningPosting() {
+        // Given
+        WithdrawRequest request = new WithdrawRequest(
+                "111111",
+                BigDecimal.valueOf(50.00),
+                "PEN",
+                "Retiro de prueba"
+        );
+        when(catalogService.findCurrency("PEN"))
+                .thenReturn(Optional.of(currencyPEN));
+        when(currencyExchangeService.quote(any(), any()))
+                .thenReturn(ExchangeQuote.IDENTITY);
+        when(catalogService.getTransactionType(TransactionTypeCode.RETIRO))
+                .thenReturn(TransactionType.builder().name("RETIRO").build());
+
+        // When
+        transactionService.withdraw(request, 1L);
+
+        // Then: la tasa se obtiene antes de abrir la transacción que bloquea la cuenta
+        InOrder inOrder = inOrder(currencyExchangeService, accountLockService);
+        inOrder.verify(currencyExchangeService).quote("PEN", "PEN");
+        inOrder.verify(accountLockService).executePosting(any());
+        inOrder.verify(accountLockService).lockAccounts(List.of(10L));
+    }
+
+    @Test
+    void withdraw_AccountDeactivatedBeforeLock() {
+        // Given
+        WithdrawRequest request = new WithdrawRequest(
+                "111111",
+                BigDecimal.valueOf(50.00),
+                "PEN",
+                "Retiro de prueba"
+        );
+        when(catalogService.findCurrency("PEN"))
+                .thenReturn(Optional.of(currencyPEN));
+        when(currencyExchangeService.quote(any(), any()))
+                .thenReturn(ExchangeQuote.IDENTITY);
+        sourceAccount.setIsActive(false);
+
+        // When & Then
+        assertThatThrownBy(() -> transactionService.withdraw(request, 1L))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessage("Cuenta origen no disponible");
+        assertThat(sourceAccount.getCurrentBalance()).isEqualByComparingTo("500.00");
+        verify(bankTransactionRepository, never()).save(any());
+    }
+
     // --- PayService tests ---
 
     @Test
@@ -293,15 +582,13 @@ class TransactionServiceImplTest {
                 "123-456-789"
         );
 
-        when(bankAccountRepository.findByAccountNumberAndIsActiveTrue("111111"))
-                .thenReturn(Optional.of(sourceAccount));
-        when(currencyRepository.findByCode("PEN"))
+        when(catalogService.findCurrency("PEN"))
                 .thenReturn(Optional.of(currencyPEN));
-        when(currencyExchangeService.convert(any(), any(), any()))
-                .thenReturn(BigDecimal.valueOf(100.00));
+        when(currencyExchangeService.quote(any(), any()))
+                .thenReturn(ExchangeQuote.IDENTITY);
 
         TransactionType transactionType = TransactionType.builder().name("PAGO_SERVICIO").build();
-        when(transactionTypeRepository.findById(4)).thenReturn(Optional.of(transactionType));
+        when(catalogService.getTransactionType(TransactionTypeCode.PAGO_SERVICIO)).thenReturn(transactionType);
 
         // When
         TransactionResponse response = transactionService.payService(request, 1L);
@@ -329,8 +616,6 @@ class TransactionServiceImplTest {
                 "123"
         );
 
-        when(bankAccountRepository.findByAccountNumberAndIsActiveTrue("111111"))
-                .thenReturn(Optional.of(sourceAccount));
 
         // When & Then
         assertThatThrownBy(() -> transactionService.payService(request, 99L))
@@ -351,12 +636,10 @@ class TransactionServiceImplTest {
                 "123"
         );
 
-        when(bankAccountRepository.findByAccountNumberAndIsActiveTrue("111111"))
-                .thenReturn(Optional.of(sourceAccount));
-        when(currencyRepository.findByCode("PEN"))
+        when(catalogService.findCurrency("PEN"))
                 .thenReturn(Optional.of(currencyPEN));
-        when(currencyExchangeService.convert(any(), any(), any()))
-                .thenReturn(BigDecimal.valueOf(1000.00));
+        when(currencyExchangeService.quote(any(), any()))
+                .thenReturn(ExchangeQuote.IDENTITY);
 
         // When & Then
         assertThatThrownBy(() -> transactionService.payService(request, 1L))
@@ -377,15 +660,13 @@ class TransactionServiceImplTest {
                 "Pago de intereses mensuales"
         );
 
-        when(bankAccountRepository.findByAccountNumberAndIsActiveTrue("222222"))
-                .thenReturn(Optional.of(targetAccount));
-        when(currencyRepository.findByCode("PEN"))
+        when(catalogService.findCurrency("PEN"))
                 .thenReturn(Optional.of(currencyPEN));
-        when(currencyExchangeService.convert(any(), any(), any()))
-                .thenReturn(BigDecimal.valueOf(15.50));
+        when(currencyExchangeService.quote(any(), any()))
+                .thenReturn(ExchangeQuote.IDENTITY);
 
         TransactionType transactionType = TransactionType.builder().name("PAGO_INTERESES").build();
-        when(transactionTypeRepository.findById(5)).thenReturn(Optional.of(transactionType));
+        when(catalogService.getTransactionType(TransactionTypeCode.PAGO_INTERESES)).thenReturn(transactionType);
 
         // When
         TransactionResponse response = transactionService.payInterest(request);
@@ -402,29 +683,13 @@ class TransactionServiceImplTest {
 
     @Test
     void getHistorySuccess() {
-        // Given
-        BankTransaction transaction = BankTransaction.builder()
-                .id(1L)
-                .sourceAccount(sourceAccount)
-                .targetAccount(targetAccount)
-                .transactionType(TransactionType.builder().name("TRANSFERENCIA").build())
-                .transactionStatus(statusSuccess)
-                .currency(currencyPEN)
-                .amount(BigDecimal.valueOf(1999.00))
-                .build();
-
+        // Given: el historial sale de account_posting_leg, sin cargar BankTransaction ni sus relaciones
+        AccountPostingLeg leg = leg(1L, PostingSide.SOURCE, "222222", LocalDateTime.now());
         Pageable pageable = PageRequest.of(0, 10);
-        Page<BankTransaction> transactionPage = new PageImpl<>(List.of(transaction));
-
-        when(bankAccountRepository.findByAccountNumberAndIsActiveTrue("111111"))
-                .thenReturn(Optional.of(sourceAccount));
-        when(bankTransactionRepository.findAllByAccountId(
-                eq(sourceAccount.getId()),
-                any(), // status
-                any(), // startDate
-                any(), // endDate
-                any(Pageable.class) // pageable
-        )).thenReturn(transactionPage);
+
+        when(accountPostingLegRepository.findAllByAccountId(
+                eq(10L), isNull(), eq(DateRangeUtils.MIN_DATE), eq(DateRangeUtils.MAX_DATE), any(Pageable.class)))
+                .thenReturn(new PageImpl<>(List.of(leg)));
 
         // When
         Page<TransactionResponse> result = transactionService.getHistory(
@@ -441,19 +706,32 @@ class TransactionServiceImplTest {
         assertThat(result.getTotalElements()).isEqualTo(1);
 
         TransactionResponse response = result.getContent().get(0);
+        assertThat(response.id()).isEqualTo(1L);
         assertThat(response.sourceAccount()).isEqualTo("111111");
         assertThat(response.targetAccount()).isEqualTo("222222");
         assertThat(response.transactionType()).isEqualTo("TRANSFERENCIA");
         assertThat(response.amount()).isEqualByComparingTo("1999.00");
+        verifyNoInteractions(bankTransactionRepository);
     }
 
     @Test
-    void getHistory_AccessDenied_NotOwner() {
+    void getHistory_TargetLegWithExternalCounterparty() {
         // Given
-        String accountNumber = "111111";
+        when(accountPostingLegRepository.findAllByAccountId(eq(10L), any(), any(), any(), any(Pageable.class)))
+                .thenReturn(new PageImpl<>(List.of(leg(1L, PostingSide.TARGET, null, LocalDateTime.now()))));
 
-        when(bankAccountRepository.findByAccountNumberAndIsActiveTrue("111111"))
-                .thenReturn(Optional.of(sourceAccount));
+        // When
+        TransactionResponse response = transactionService.getHistory("111111", 1L, null, null, null, PageRequest.of(0, 10))
+                .getContent().get(0);
+
+        // Then
+        assertThat(response.sourceAccount()).isEqualTo("EXTERNO");
+        assertThat(response.targetAccount()).isEqualTo("111111");
+    }
+
+    @Test
+    void getHistory_AccessDenied_NotOwner() {
+        // Given
         Pageable pageable = PageRequest.of(0, 10);
 
         // When & Then
@@ -467,6 +745,115 @@ class TransactionServiceImplTest {
         )
                 .isInstanceOf(RuntimeException.class)
                 .hasMessage("La cuenta origen no te pertenece");
-        verify(bankTransactionRepository, never()).findAllByAccountId(any(), any(), any(), any(), any());
+        verify(accountPostingLegRepository, never()).findAllByAccountId(any(), any(), any(), any(), any());
+    }
+
+    // --- GetHistoryPage (keyset) tests ---
+
+    @Test
+    void getHistoryPage_ReturnsCursorOfLastRowWhenMoreRowsExist() {
+        // Given: size 2, el repositorio devuelve 3 filas (una de más); sin filtros ni cursor se pasan los centinelas
+        LocalDateTime t1 = LocalDateTime.of(2026, 10, 1, 12, 0, 0, 123_456_000);
+        when(accountPostingLegRepository.findPageByAccountId(
+                10L, null, DateRangeUtils.MIN_DATE, DateRangeUtils.MAX_DATE, DateRangeUtils.MAX_DATE, Long.MAX_VALUE, 3))
+                .thenReturn(List.of(
+                        leg(3L, PostingSide.SOURCE, "222222", t1.plusMinutes(1)),
+                        leg(2L, PostingSide.SOURCE, "222222", t1),
+                        leg(1L, PostingSide.SOURCE, "222222", t1.minusMinutes(1))));
+
+        // When
+        TransactionHistoryResponse page = transactionService.getHistoryPage("111111", 1L, null, null, null, null, 2);
+
+        // Then
+        assertThat(page.content()).extracting(TransactionResponse::id).containsExactly(3L, 2L);
+        assertThat(page.size()).isEqualTo(2);
+        assertThat(page.nextCursor()).isNotNull();
+
+        // Y el cursor lleva a la posición (created_at, id) de la última fila entregada, que también acota maxDate
+        when(accountPostingLegRepository.findPageByAccountId(10L, null, DateRangeUtils.MIN_DATE, t1, t1, 1002L, 3))
+                .thenReturn(List.of(leg(1L, PostingSide.SOURCE, "222222", t1.minusMinutes(1))));
+
+        TransactionHistoryResponse last = transactionService.getHistoryPage("111111", 1L, null, null, null, page.nextCursor(), 2);
+
+        assertThat(last.content()).extracting(TransactionResponse::id).containsExactly(1L);
+        assertThat(last.nextCursor()).isNull();
+    }
+
+    @Test
+    void getHistoryPage_ContinuesIntoArchiveWhenHotRowsRunOut() {
+        // Given: una sola fila viva; el resto de la página sale del archivo frío con el mismo cursor
+        LocalDateTime t1 = LocalDateTime.of(2026, 10, 1, 12, 0);
+        LocalDateTime old = LocalDateTime.of(2025, 3, 1, 12, 0);
+        when(accountPostingLegRepository.findPageByAccountId(
+                10L, null, DateRangeUtils.MIN_DATE, DateRangeUtils.MAX_DATE, DateRangeUtils.MAX_DATE, Long.MAX_VALUE, 3))
+                .thenReturn(List.of(leg(3L, PostingSide.SOURCE, "222222", t1)));
+        when(transactionArchiveService.findLegs(
+                10L, null, DateRangeUtils.MIN_DATE, DateRangeUtils.MAX_DATE, DateRangeUtils.MAX_DATE, Long.MAX_VALUE, 2))
+                .thenReturn(List.of(
+                        leg(2L, PostingSide.TARGET, "222222", old),
+                        leg(1L, PostingSide.TARGET, "222222", old.minusDays(1))));
+
+        // When
+        TransactionHistoryResponse page = transactionService.getHistoryPage("111111", 1L, null, null, null, null, 2);
+
+        // Then
+        assertThat(page.content()).extracting(TransactionResponse::id).containsExactly(3L, 2L);
+        assertThat(page.nextCursor()).isNotNull();
+    }
+
+    @Test
+    void getHistory_FillsPageWithArchivedLegsAndCountsThem() {
+        // Given: página 1 de tamaño 2 con 3 filas vivas en total: queda una viva y se completa con el archivo
+        Pageable pageable = PageRequest.of(1, 2);
+        LocalDateTime old = LocalDateTime.of(2025, 3, 1, 12, 0);
+        when(accountPostingLegRepository.findAllByAccountId(eq(10L), any(), any(), any(), eq(pageable)))
+                .thenReturn(new PageImpl<>(List.of(leg(1L, PostingSide.SOURCE, "222222", LocalDateTime.now())), pageable, 3));
+        when(transactionArchiveService.countLegs(10L, null, DateRangeUtils.MIN_DATE, DateRangeUtils.MAX_DATE)).thenReturn(5L);
+        when(transactionArchiveService.findLegs(10L, null, DateRangeUtils.MIN_DATE, DateRangeUtils.MAX_DATE, 0L, 1))
+                .thenReturn(List.of(leg(90L, PostingSide.TARGET, null, old)));
+
+        // When
+        Page<TransactionResponse> result = transactionService.getHistory("111111", 1L, null, null, null, pageable);
+
+        // Then
+        assertThat(result.getContent()).extracting(TransactionResponse::id).containsExactly(1L, 90L);
+        assertThat(result.getTotalElements()).isEqualTo(8);
+    }
+
+    @Test
+    void getHistoryPage_InvalidCursor() {
+        assertThatThrownBy(() -> transactionService.getHistoryPage("111111", 1L, null, null, null, "no-es-un-cursor", 20))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessage("Cursor de paginación inválido");
+    }
+
+    @Test
+    void getHistoryPage_AccessDenied_NotOwner() {
+        assertThatThrownBy(() -> transactionService.getHistoryPage("111111", 99L, null, null, null, null, 20))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessage("La cuenta origen no te pertenece");
+        verify(accountPostingLegRepository, never()).findPageByAccountId(any(), any(), any(), any(), any(), any(), anyInt());
+    }
+
+    // --- HELPER ---
+    // id del lado = 1000 + id del movimiento, para distinguirlos en el cursor
+    private static AccountPostingLeg leg(Long transactionId, PostingSide side, String counterparty, LocalDateTime createdAt) {
+        return AccountPostingLeg.builder()
+                .id(1000L + transactionId)
+                .accountId(10L)
+                .transactionId(transactionId)
+                .side(side)
+                .counterpartyAccountNumber(counterparty)
+                .transactionType("TRANSFERENCIA")
+                .transactionStatus("SUCCESS")
+                .currencyCode("PEN")
+                .amount(BigDecimal.valueOf(1999.00))
+                .referenceCode("REF-" + transactionId)
+                .createdAt(createdAt)
+                .build();
+    }
+
+    private static AccountRef refOf(BankAccount account) {
+        return new AccountRef(account.getId(), account.getAccountNumber(), account.getUser().getId(), account.getCurrency().getId());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,3 @@
+-- Hibernate lo ejecuta tras create-drop en los ITs: objetos del esquema que no salen de las entidades
+CREATE SEQUENCE IF NOT EXISTS reference_code_block_seq START WITH 1000 INCREMENT BY 1000 MINVALUE 1000;
+CREATE SEQUENCE IF NOT EXISTS account_number_block_seq START WITH 1000 INCREMENT BY 1000 MINVALUE 1000;